@@ -33,10 +33,12 @@ import java.util.Map;
 import java.util.SortedMap;
 
 import org.forester.go.GoId;
+import org.forester.go.GoOntologyIndex;
 import org.forester.go.GoTerm;
 import org.forester.go.GoUtils;
 import org.forester.go.OBOparser;
 import org.forester.util.BasicDescriptiveStatistics;
+import org.forester.util.CacheFileUtil;
 import org.forester.util.CommandLineArguments;
 import org.forester.util.DescriptiveStatistics;
 import org.forester.util.ForesterUtil;
@@ -45,6 +47,7 @@ import org.forester.util.GeneralTable;
 public class goac {
 
     private static final String ALL           = "{ALL}";
+    final static private String CACHE_DIR     = "cache_dir";
     final static private String HELP_OPTION_1 = "help";
     final static private String HELP_OPTION_2 = "h";
     final static private String PRG_NAME      = "goac";
@@ -90,6 +93,7 @@ public class goac {
             System.exit( 0 );
         }
         final List<String> allowed_options = new ArrayList<String>();
+        allowed_options.add( CACHE_DIR );
         if ( cla.getNumberOfNames() != 3 ) {
             printHelp();
             System.exit( -1 );
@@ -102,6 +106,7 @@ public class goac {
         final File query_superterms_file = cla.getFile( 1 );
         final File exp_file = cla.getFile( 2 );
         final OBOparser parser = new OBOparser( obofile, OBOparser.ReturnType.BASIC_GO_TERM );
+        parser.setSnapshotDirectory( CacheFileUtil.obtainCacheDirectory( cla, CACHE_DIR, PRG_NAME ) );
         List<GoTerm> all_go_terms = null;
         try {
             all_go_terms = parser.parse();
@@ -110,6 +115,14 @@ public class goac {
             ForesterUtil.fatalError( PRG_NAME, e.toString() );
         }
         final Map<GoId, GoTerm> goid_to_term_map = GoUtils.createGoIdToGoTermMap( all_go_terms );
+        GoOntologyIndex go_index = null;
+        try {
+            go_index = GoOntologyIndex.createInstance( goid_to_term_map );
+        }
+        catch ( final IllegalArgumentException e ) {
+            ForesterUtil.printErrorMessage( PRG_NAME, e.getMessage() );
+            System.exit( -1 );
+        }
         final List<GoId> query_superterms_ids = new ArrayList<GoId>();
         SortedMap<String, List<GoId>> query_superterms_id_raw = null;
         try {
@@ -157,7 +170,7 @@ public class goac {
             final List<GoId> experiment_set_ids = data_to_be_analyzed.get( label );
             Map<GoId, Integer> counts_id = null;
             try {
-                counts_id = GoUtils.countCategoriesId( query_superterms_ids, experiment_set_ids, goid_to_term_map );
+                counts_id = GoUtils.countCategoriesId( query_superterms_ids, experiment_set_ids, go_index );
             }
             catch ( final Exception e ) {
                 ForesterUtil.printErrorMessage( PRG_NAME, e.getMessage() );
@@ -201,7 +214,10 @@ public class goac {
         System.out.println();
         System.out
         .println( PRG_NAME
-                  + " <file with all GO terms, in 'obo' format> <file with ancestral term ids> <file with go ids to be analyzed>" );
+                  + " [-" + CACHE_DIR + "=<dir>] <file with all GO terms, in 'obo' format> <file with ancestral term ids> <file with go ids to be analyzed>" );
+        System.out.println();
+        System.out.println( " -" + CACHE_DIR
+                            + "=<dir>: directory for a binary snapshot of the parsed GO terms (re-used if up-to-date)" );
         System.out.println();
         System.out.println();
     }
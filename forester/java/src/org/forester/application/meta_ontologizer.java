@@ -33,11 +33,13 @@ import java.util.List;
 import org.forester.go.PfamToGoMapping;
 import org.forester.go.PfamToGoParser;
 import org.forester.go.etc.MetaOntologizer;
+import org.forester.util.CacheFileUtil;
 import org.forester.util.CommandLineArguments;
 import org.forester.util.ForesterUtil;
 
 public class meta_ontologizer {
 
+    final static private String CACHE_DIR          = "cache_dir";
     final static private String HELP_OPTION_1      = "help";
     final static private String HELP_OPTION_2      = "h";
     final static private String P_OPTION           = "p";
@@ -70,6 +72,7 @@ public class meta_ontologizer {
         }
         final List<String> allowed_options = new ArrayList<String>();
         allowed_options.add( P_OPTION );
+        allowed_options.add( CACHE_DIR );
         final List<String> mandatory_options = new ArrayList<String>();
         mandatory_options.add( P_OPTION );
         if ( ( cla.getNumberOfNames() != 5 ) && ( cla.getNumberOfNames() != 6 ) ) {
@@ -109,8 +112,10 @@ public class meta_ontologizer {
         catch ( final IOException e ) {
             ForesterUtil.fatalError( PRG_NAME, e.getMessage() );
         }
+        final File cache_dir = CacheFileUtil.obtainCacheDirectory( cla, CACHE_DIR, PRG_NAME );
         try {
             final PfamToGoParser parser = new PfamToGoParser( pfam2go_file );
+            parser.setSnapshotDirectory( cache_dir );
             final List<PfamToGoMapping> pfam_to_go_mappings = parser.parse();
             ForesterUtil.programMessage( PRG_NAME, "parsed " + pfam_to_go_mappings.size() + " Pfam to GO mappings" );
             MetaOntologizer.reformat( ontologizer_outdir,
@@ -120,7 +125,8 @@ public class meta_ontologizer {
                                       obo_file,
                                       p_adjusted_upper_limit,
                                       comment,
-                                      pfam_to_go_mappings );
+                                      pfam_to_go_mappings,
+                                      cache_dir );
         }
         catch ( final IOException e ) {
             ForesterUtil.fatalError( PRG_NAME, e.getMessage() );
@@ -135,7 +141,10 @@ public class meta_ontologizer {
         System.out.println();
         System.out
         .println( PRG_NAME
-                  + " -p=<adj P value limit> <obo file> <pfam to go file> <ontologizer outdir> [domain gain loss file] <base for meta ontologizer outfile> <comment>" );
+                  + " -p=<adj P value limit> [-" + CACHE_DIR + "=<dir>] <obo file> <pfam to go file> <ontologizer outdir> [domain gain loss file] <base for meta ontologizer outfile> <comment>" );
+        System.out.println();
+        System.out.println( " -" + CACHE_DIR
+                            + "=<dir>: directory for binary snapshots of the parsed GO terms and Pfam to GO mappings (re-used if up-to-date)" );
         System.out.println();
     }
 }
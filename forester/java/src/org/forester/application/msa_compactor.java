@@ -77,9 +77,11 @@ public class msa_compactor {
     final static private String       OUTPUT_REMOVED_SEQS_OPTION             = "ro";
     final static private String       MAFFT_OPTIONS                          = "mo";
     final static private String       PERFORM_PHYLOGENETIC_INFERENCE         = "t";
+    final static private String       BOOTSTRAP_OPTION                       = "b";
     //
     final static private String       PATH_TO_MAFFT_OPTION                   = "mafft";
     final static private String       DO_NOT_NORMALIZE_FOR_EFF_LENGTH_OPTION = "nn";
+    final static private String       UPDATE_GAP_CONTRIBUTIONS_OPTION        = "u";
     final static private String       PRG_NAME                               = "msa_compactor";
     final static private String       PRG_DESC                               = "multiple sequence aligment compactor";
     final static private String       PRG_VERSION                            = "0.3";
@@ -115,12 +117,14 @@ public class msa_compactor {
             File removed_seqs_out_base = null;
             String mafft_options = "--auto";
             boolean perform_phylogenetic_inference = false;
+            int bootstrap_samples = 0;
             final List<String> allowed_options = new ArrayList<String>();
             allowed_options.add( REMOVE_WORST_OFFENDERS_OPTION );
             allowed_options.add( AV_GAPINESS_OPTION );
             allowed_options.add( LENGTH_OPTION );
             allowed_options.add( REALIGN_OPTION );
             allowed_options.add( DO_NOT_NORMALIZE_FOR_EFF_LENGTH_OPTION );
+            allowed_options.add( UPDATE_GAP_CONTRIBUTIONS_OPTION );
             allowed_options.add( STEP_OPTION );
             allowed_options.add( PATH_TO_MAFFT_OPTION );
             allowed_options.add( STEP_FOR_DIAGNOSTICS_OPTION );
@@ -132,6 +136,7 @@ public class msa_compactor {
             allowed_options.add( MAFFT_OPTIONS );
             allowed_options.add( PERFORM_PHYLOGENETIC_INFERENCE );
             allowed_options.add( INFO_ONLY_OPTION );
+            allowed_options.add( BOOTSTRAP_OPTION );
             final String dissallowed_options = cla.validateAllowedOptionsAsString( allowed_options );
             if ( dissallowed_options.length() > 0 ) {
                 ForesterUtil.fatalError( PRG_NAME, "unknown option(s): " + dissallowed_options );
@@ -225,6 +230,10 @@ public class msa_compactor {
             if ( cla.isOptionSet( DO_NOT_NORMALIZE_FOR_EFF_LENGTH_OPTION ) ) {
                 normalize_for_effective_seq_length = false;
             }
+            boolean update_gap_contributions = false;
+            if ( cla.isOptionSet( UPDATE_GAP_CONTRIBUTIONS_OPTION ) ) {
+                update_gap_contributions = true;
+            }
             if ( cla.isOptionSet( STEP_FOR_DIAGNOSTICS_OPTION ) ) {
                 step_for_diagnostics = cla.getOptionValueAsInt( STEP_FOR_DIAGNOSTICS_OPTION );
                 if ( ( step_for_diagnostics < 1 )
@@ -291,6 +300,16 @@ public class msa_compactor {
                                                      + STEP_FOR_DIAGNOSTICS_OPTION + " instead" );
                 }
             }
+            if ( cla.isOptionSet( BOOTSTRAP_OPTION ) ) {
+                if ( !perform_phylogenetic_inference ) {
+                    ForesterUtil.fatalError( PRG_NAME, "no need to indicate bootstrap resamples without tree calculation" );
+                }
+                bootstrap_samples = cla.getOptionValueAsInt( BOOTSTRAP_OPTION );
+                if ( bootstrap_samples < 1 ) {
+                    ForesterUtil.fatalError( PRG_NAME, "number of bootstrap resamples is out of range: "
+                            + bootstrap_samples );
+                }
+            }
             if ( perform_phylogenetic_inference ) {
                 if ( step_for_diagnostics != 1 ) {
                     ForesterUtil.fatalError( PRG_NAME,
@@ -352,11 +371,15 @@ public class msa_compactor {
                 else {
                     System.out.println( "Normalize                            : with MSA length" );
                 }
+                System.out.println( "Update gap-contributions             : " + update_gap_contributions );
                 System.out.println( "Realign with MAFFT                   : " + realign );
                 if ( realign ) {
                     System.out.println( "MAFFT options                        : " + mafft_options );
                 }
                 System.out.println( "Simple tree (Kimura distances, NJ)   : " + perform_phylogenetic_inference );
+                if ( bootstrap_samples > 0 ) {
+                    System.out.println( "Bootstrap resamples                  : " + bootstrap_samples );
+                }
             }
             System.out.println();
             final int initial_number_of_seqs = msa.getNumberOfSequences();
@@ -372,10 +395,12 @@ public class msa_compactor {
             }
             else {
                 mc.setPeformPhylogenticInference( perform_phylogenetic_inference );
+                mc.setBootstrapSamples( bootstrap_samples );
                 if ( removed_seqs_out_base != null ) {
                     mc.setRemovedSeqsOutBase( removed_seqs_out_base );
                 }
                 mc.setNorm( normalize_for_effective_seq_length );
+                mc.setRecalculateGapContributions( update_gap_contributions );
                 mc.setRealign( realign );
                 if ( realign ) {
                     mc.setPathToMafft( path_to_mafft );
@@ -503,8 +528,13 @@ public class msa_compactor {
                             + "=<decimal>  maximal allowed gap ratio per column (for deleting of columms) (0.0-1.0)" );
         System.out.println( "   -" + PERFORM_PHYLOGENETIC_INFERENCE
                             + "             to calculate a simple phylogenetic tree (Kimura distances, NJ)" );
+        System.out.println( "   -" + BOOTSTRAP_OPTION
+                            + "=<integer>   number of bootstrap resamples for the simple phylogenetic tree (requires -"
+                            + PERFORM_PHYLOGENETIC_INFERENCE + ")" );
         System.out.println( "   -" + DO_NOT_NORMALIZE_FOR_EFF_LENGTH_OPTION
                             + "            to normalize gap-contributions with MSA length, instead of individual effective sequence lenghts" );
+        System.out.println( "   -" + UPDATE_GAP_CONTRIBUTIONS_OPTION
+                            + "             to update gap-contributions after each removed sequence, instead of ranking only once" );
        
         System.out.println();
         System.out.println();
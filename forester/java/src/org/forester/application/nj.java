@@ -27,16 +27,25 @@
 package org.forester.application;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 
 import org.forester.evoinference.distance.NeighborJoining;
+import org.forester.evoinference.distance.NeighborJoiningOutOfCore;
+import org.forester.evoinference.distance.PairwiseDistanceCalculator;
+import org.forester.evoinference.distance.PairwiseDistanceCalculator.PWD_DISTANCE_METHOD;
 import org.forester.evoinference.matrix.distance.BasicSymmetricalDistanceMatrix;
 import org.forester.evoinference.matrix.distance.DistanceMatrix;
+import org.forester.evoinference.matrix.distance.TiledSymmetricalDistanceMatrix;
+import org.forester.evoinference.tools.BootstrapNeighborJoining;
+import org.forester.io.parsers.FastaParser;
+import org.forester.io.parsers.GeneralMsaParser;
 import org.forester.io.parsers.SymmetricalDistanceMatrixParser;
 import org.forester.io.writers.PhylogenyWriter;
+import org.forester.msa.Msa;
 import org.forester.phylogeny.Phylogeny;
 import org.forester.util.CommandLineArguments;
 import org.forester.util.ForesterUtil;
@@ -47,6 +56,12 @@ public class nj {
     final static private String HELP_OPTION_2         = "h";
     final static private String VERBOSE_OPTION        = "v";
     final static private String UPPER_TRIANGLE_OPTION = "u";
+    final static private String MSA_OPTION            = "m";
+    final static private String BOOTSTRAP_OPTION      = "b";
+    final static private String SEED_OPTION           = "s";
+    final static private String THREADS_OPTION        = "t";
+    final static private String OUT_OF_CORE_OPTION    = "d";
+    final static private long   DEFAULT_SEED          = 42;
     final static private String PRG_NAME              = "nj";
     final static private String PRG_VERSION           = "0.0.1";
     final static private String PRG_DATE              = "2008.03.04";
@@ -60,6 +75,11 @@ public class nj {
         allowed_options.add( HELP_OPTION_2 );
         allowed_options.add( VERBOSE_OPTION );
         allowed_options.add( UPPER_TRIANGLE_OPTION );
+        allowed_options.add( MSA_OPTION );
+        allowed_options.add( BOOTSTRAP_OPTION );
+        allowed_options.add( SEED_OPTION );
+        allowed_options.add( THREADS_OPTION );
+        allowed_options.add( OUT_OF_CORE_OPTION );
         if ( ( args.length < 2 ) ) {
             printHelp();
             System.exit( -1 );
@@ -87,6 +107,58 @@ public class nj {
         if ( cla.isOptionSet( UPPER_TRIANGLE_OPTION ) ) {
             upper_triangle = true;
         }
+        final String dissallowed_options = cla.validateAllowedOptionsAsString( allowed_options );
+        if ( dissallowed_options.length() > 0 ) {
+            ForesterUtil.fatalError( PRG_NAME, "unknown option(s): " + dissallowed_options );
+        }
+        final boolean msa_input = cla.isOptionSet( MSA_OPTION );
+        int bootstrap_samples = 0;
+        long seed = DEFAULT_SEED;
+        int threads = Runtime.getRuntime().availableProcessors();
+        try {
+            if ( cla.isOptionSet( BOOTSTRAP_OPTION ) ) {
+                bootstrap_samples = cla.getOptionValueAsInt( BOOTSTRAP_OPTION );
+            }
+            if ( cla.isOptionSet( SEED_OPTION ) ) {
+                seed = cla.getOptionValueAsLong( SEED_OPTION );
+            }
+            if ( cla.isOptionSet( THREADS_OPTION ) ) {
+                threads = cla.getOptionValueAsInt( THREADS_OPTION );
+            }
+        }
+        catch ( final IOException e ) {
+            ForesterUtil.fatalError( PRG_NAME, e.getMessage() );
+        }
+        if ( !msa_input
+                && ( cla.isOptionSet( BOOTSTRAP_OPTION ) || cla.isOptionSet( SEED_OPTION ) || cla
+                        .isOptionSet( THREADS_OPTION ) ) ) {
+            ForesterUtil.fatalError( PRG_NAME, "bootstrap resampling requires a multiple sequence alignment as input (-"
+                    + MSA_OPTION + ")" );
+        }
+        if ( msa_input && upper_triangle ) {
+            ForesterUtil.fatalError( PRG_NAME, "no need to indicate matrix type for multiple sequence alignment input" );
+        }
+        if ( bootstrap_samples < 0 ) {
+            ForesterUtil.fatalError( PRG_NAME, "number of bootstrap resamples is out of range: " + bootstrap_samples );
+        }
+        if ( threads < 1 ) {
+            ForesterUtil.fatalError( PRG_NAME, "number of threads is out of range: " + threads );
+        }
+        File out_of_core_dir = null;
+        if ( cla.isOptionSet( OUT_OF_CORE_OPTION ) ) {
+            if ( !cla.isOptionValueSet( OUT_OF_CORE_OPTION ) ) {
+                ForesterUtil.fatalError( PRG_NAME, "no directory for the pairwise distances file given (-"
+                        + OUT_OF_CORE_OPTION + "=<dir>)" );
+            }
+            if ( !msa_input || ( bootstrap_samples > 0 ) ) {
+                ForesterUtil.fatalError( PRG_NAME, "out-of-core neighbor joining requires a multiple sequence alignment as input (-"
+                        + MSA_OPTION + ") and no bootstrap resampling" );
+            }
+            out_of_core_dir = new File( cla.getOptionValue( OUT_OF_CORE_OPTION ) );
+            if ( !out_of_core_dir.isDirectory() || !out_of_core_dir.canWrite() ) {
+                ForesterUtil.fatalError( PRG_NAME, "cannot write to directory [" + out_of_core_dir + "]" );
+            }
+        }
         final File infile = cla.getFile( 0 );
         final File outfile = cla.getFile( 1 );
         final String error1 = ForesterUtil.isReadableFile( infile );
@@ -100,29 +172,74 @@ public class nj {
         if ( !ForesterUtil.isEmpty( error2 ) ) {
             ForesterUtil.fatalError( PRG_NAME, "cannot write to outfile [" + outfile + "]: " + error2 );
         }
-        final SymmetricalDistanceMatrixParser parser = SymmetricalDistanceMatrixParser.createInstance();
-        if ( upper_triangle ) {
-            parser.setInputMatrixType( SymmetricalDistanceMatrixParser.InputMatrixType.UPPER_TRIANGLE );
+        final List<Phylogeny> ps = new ArrayList<Phylogeny>();
+        long start_time = 0;
+        if ( msa_input ) {
+            Msa msa = null;
+            try {
+                if ( FastaParser.isLikelyFasta( infile ) ) {
+                    msa = FastaParser.parseMsa( infile );
+                }
+                else {
+                    msa = GeneralMsaParser.parse( new FileInputStream( infile ) );
+                }
+            }
+            catch ( final IOException e ) {
+                ForesterUtil.fatalError( PRG_NAME, "failed to read from infile [" + infile + "]: " + e.getMessage() );
+            }
+            if ( verbose ) {
+                System.out.println( PRG_NAME + " > read multiple sequence alignment of " + msa.getNumberOfSequences()
+                        + " sequences and length " + msa.getLength() );
+            }
+            start_time = new Date().getTime();
+            if ( bootstrap_samples > 0 ) {
+                if ( verbose ) {
+                    System.out.println( PRG_NAME + " > " + bootstrap_samples + " bootstrap resamples (seed " + seed
+                            + ") on " + threads + " thread(s)" );
+                }
+                try {
+                    ps.add( BootstrapNeighborJoining.createInstance( msa, PWD_DISTANCE_METHOD.KIMURA_DISTANCE, threads )
+                            .execute( bootstrap_samples, seed ) );
+                }
+                catch ( final InterruptedException e ) {
+                    ForesterUtil.fatalError( PRG_NAME, "bootstrap resampling interrupted" );
+                }
+                catch ( final IllegalArgumentException e ) {
+                    ForesterUtil.fatalError( PRG_NAME, e.getMessage() );
+                }
+            }
+            else if ( out_of_core_dir != null ) {
+                ps.add( executeOutOfCore( msa, out_of_core_dir, verbose ) );
+            }
+            else {
+                final NeighborJoining nj = NeighborJoining.createInstance( verbose, 6 );
+                ps.add( nj.execute( PairwiseDistanceCalculator.calcKimuraDistances( msa ) ) );
+            }
         }
         else {
-            parser.setInputMatrixType( SymmetricalDistanceMatrixParser.InputMatrixType.LOWER_TRIANGLE );
-        }
-        DistanceMatrix[] matrices = null;
-        try {
-            matrices = parser.parse( infile );
-        }
-        catch ( final IOException e ) {
-            ForesterUtil.fatalError( PRG_NAME, "failed to read from infile [" + infile + "]: " + e.getMessage() );
-        }
-        if ( verbose ) {
-            System.out.println( PRG_NAME + " > read " + matrices.length + " pairwise distance matrice(s) of size "
-                    + matrices[ 0 ].getSize() );
-        }
-        final List<Phylogeny> ps = new ArrayList<Phylogeny>();
-        final NeighborJoining nj = NeighborJoining.createInstance( verbose, 6 );
-        final long start_time = new Date().getTime();
-        for( final DistanceMatrix matrix : matrices ) {
-            ps.add( nj.execute( ( BasicSymmetricalDistanceMatrix ) matrix ) );
+            final SymmetricalDistanceMatrixParser parser = SymmetricalDistanceMatrixParser.createInstance();
+            if ( upper_triangle ) {
+                parser.setInputMatrixType( SymmetricalDistanceMatrixParser.InputMatrixType.UPPER_TRIANGLE );
+            }
+            else {
+                parser.setInputMatrixType( SymmetricalDistanceMatrixParser.InputMatrixType.LOWER_TRIANGLE );
+            }
+            DistanceMatrix[] matrices = null;
+            try {
+                matrices = parser.parse( infile );
+            }
+            catch ( final IOException e ) {
+                ForesterUtil.fatalError( PRG_NAME, "failed to read from infile [" + infile + "]: " + e.getMessage() );
+            }
+            if ( verbose ) {
+                System.out.println( PRG_NAME + " > read " + matrices.length + " pairwise distance matrice(s) of size "
+                        + matrices[ 0 ].getSize() );
+            }
+            final NeighborJoining nj = NeighborJoining.createInstance( verbose, 6 );
+            start_time = new Date().getTime();
+            for( final DistanceMatrix matrix : matrices ) {
+                ps.add( nj.execute( ( BasicSymmetricalDistanceMatrix ) matrix ) );
+            }
         }
         final long end_time = new Date().getTime();
         final PhylogenyWriter w = new PhylogenyWriter();
@@ -137,16 +254,60 @@ public class nj {
         System.out.println();
     }
 
+    // Pairwise distances are stored in a temporary file in dir (deleted
+    // afterwards), for alignments of too many sequences for in-memory
+    // neighbor joining.
+    private static Phylogeny executeOutOfCore( final Msa msa, final File dir, final boolean verbose ) {
+        TiledSymmetricalDistanceMatrix d = null;
+        File f = null;
+        try {
+            f = File.createTempFile( PRG_NAME + "_", ".dist", dir );
+            f.deleteOnExit();
+            d = new TiledSymmetricalDistanceMatrix( msa.getNumberOfSequences(), f );
+            if ( verbose ) {
+                System.out.println( PRG_NAME + " > storing pairwise distances in [" + f + "]" );
+            }
+            PairwiseDistanceCalculator.calcDistances( msa, PWD_DISTANCE_METHOD.KIMURA_DISTANCE, d );
+            return NeighborJoiningOutOfCore.createInstance( NeighborJoiningOutOfCore.DEFAULT_MAX_SORTED_PER_ROW, 6 )
+                    .execute( d );
+        }
+        catch ( final IOException e ) {
+            ForesterUtil.fatalError( PRG_NAME, "failed to store pairwise distances in [" + dir + "]: "
+                    + e.getMessage() );
+            return null;
+        }
+        finally {
+            if ( d != null ) {
+                try {
+                    d.close();
+                }
+                catch ( final IOException e ) {
+                    ForesterUtil.printWarningMessage( PRG_NAME, "failed to close [" + f + "]: " + e.getMessage() );
+                }
+            }
+            if ( f != null ) {
+                f.delete();
+            }
+        }
+    }
+
     private static void printHelp() {
         System.out.println();
         System.out.println( "Usage:" );
         System.out.println();
         System.out.println( "% java -cp forester.jar org.forester.applications." + PRG_NAME
                             + " [options] <pairwise distances infile> <out file>" );
+        System.out.println( "% java -cp forester.jar org.forester.applications." + PRG_NAME
+                            + " -" + MSA_OPTION + " [options] <msa infile> <out file>" );
         System.out.println();
         System.out.println( " Options: " );
         System.out.println( VERBOSE_OPTION + ": verbose on" );
         System.out.println( UPPER_TRIANGLE_OPTION + ": upper triangle option on (lower triangle is default)" );
+        System.out.println( MSA_OPTION + ": input is a multiple sequence alignment (Kimura distances are calculated)" );
+        System.out.println( BOOTSTRAP_OPTION + "=<integer>: number of bootstrap resamples (requires -" + MSA_OPTION + ")" );
+        System.out.println( SEED_OPTION + "=<integer>: seed for bootstrap resampling (default: " + DEFAULT_SEED + ")" );
+        System.out.println( THREADS_OPTION + "=<integer>: number of threads for bootstrap resampling (default: number of processors)" );
+        System.out.println( OUT_OF_CORE_OPTION + "=<dir>: out-of-core neighbor joining, pairwise distances are stored in a temporary file in <dir> (requires -" + MSA_OPTION + ")" );
         System.out.println();
     }
 }
@@ -35,12 +35,14 @@ import java.util.List;
 
 import org.forester.go.GoTerm;
 import org.forester.go.OBOparser;
+import org.forester.util.CacheFileUtil;
 import org.forester.util.CommandLineArguments;
 import org.forester.util.ForesterUtil;
 
 public class obo_tool {
 
     private static final String IDS_TO_NAMES_SUFFIX  = "_ids_to_names";
+    final static private String CACHE_DIR            = "cache_dir";
     final static private String HELP_OPTION_1        = "help";
     final static private String HELP_OPTION_2        = "h";
     final static private String GO_ID_TO_NAME_OPTION = "i";
@@ -72,6 +74,7 @@ public class obo_tool {
         }
         final List<String> allowed_options = new ArrayList<String>();
         allowed_options.add( GO_ID_TO_NAME_OPTION );
+        allowed_options.add( CACHE_DIR );
         if ( cla.getNumberOfNames() != 2 ) {
             System.out.println();
             System.out.println( "[" + PRG_NAME + "] incorrect number of arguments" );
@@ -89,7 +92,9 @@ public class obo_tool {
         }
         final File infile = cla.getFile( 0 );
         final File outfile = cla.getFile( 1 );
+        final File cache_dir = CacheFileUtil.obtainCacheDirectory( cla, CACHE_DIR, PRG_NAME );
         final OBOparser parser = new OBOparser( infile, OBOparser.ReturnType.BASIC_GO_TERM );
+        parser.setSnapshotDirectory( cache_dir );
         List<GoTerm> go_terms = null;
         try {
             go_terms = parser.parse();
@@ -132,6 +137,8 @@ public class obo_tool {
         System.out.println( " options: " );
         System.out.println();
         System.out.println( "   -" + GO_ID_TO_NAME_OPTION + ": output GO id to name map file" );
+        System.out.println( "   -" + CACHE_DIR
+                            + "=<dir>: directory for a binary snapshot of the parsed GO terms (re-used if up-to-date)" );
         System.out.println();
     }
 }
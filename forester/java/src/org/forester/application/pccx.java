@@ -39,7 +39,6 @@ import org.forester.pccx.BasicExternalNodeBasedCoverageExtender;
 import org.forester.pccx.Coverage;
 import org.forester.pccx.CoverageCalculationOptions;
 import org.forester.pccx.CoverageCalculator;
-import org.forester.pccx.CoverageExtender;
 import org.forester.pccx.ExternalNodeBasedCoverageMethod;
 import org.forester.pccx.ExternalNodeBasedCoverageMethodOptions;
 import org.forester.phylogeny.Phylogeny;
@@ -64,6 +63,7 @@ public class pccx {
     final static private String OUTPUT_OPTION                       = "o";
     final static private String INPUT_OPTION                        = "i";
     final static private String OUTPUT_ANNOTATED_PHYLOGENIES_OPTION = "p";
+    final static private String THREADS_OPTION                      = "t";
     final static private String PRG_NAME                            = "pccx";
     final static private String PRG_VERSION                         = "1.0.0";
     final static private String BRANCH_LENGTH_BASED_SCORING         = "org.forester.tools.modeling.BranchLengthBasedScoringMethod";
@@ -98,12 +98,14 @@ public class pccx {
         boolean use_bl = false;
         boolean use_log_bl = false;
         int extend_by = pccx.EXTEND_BY_DEFAULT;
+        int threads = 1;
         allowed_options.add( pccx.USE_REAL_BL_OPTION );
         allowed_options.add( pccx.USE_LOG_REAL_BL_OPTION );
         allowed_options.add( pccx.EXTEND_BY_OPTION );
         allowed_options.add( pccx.INPUT_OPTION );
         allowed_options.add( pccx.OUTPUT_OPTION );
         allowed_options.add( pccx.OUTPUT_ANNOTATED_PHYLOGENIES_OPTION );
+        allowed_options.add( pccx.THREADS_OPTION );
         final String dissallowed_options = cla.validateAllowedOptionsAsString( allowed_options );
         if ( dissallowed_options.length() > 0 ) {
             ForesterUtil.fatalError( pccx.PRG_NAME, "unknown option(s): " + dissallowed_options );
@@ -142,6 +144,17 @@ public class pccx {
                 ForesterUtil.fatalError( pccx.PRG_NAME, e.getMessage() );
             }
         }
+        if ( cla.isOptionSet( pccx.THREADS_OPTION ) ) {
+            try {
+                threads = cla.getOptionValueAsInt( pccx.THREADS_OPTION );
+            }
+            catch ( final Exception e ) {
+                ForesterUtil.fatalError( pccx.PRG_NAME, e.getMessage() );
+            }
+            if ( threads < 1 ) {
+                ForesterUtil.fatalError( pccx.PRG_NAME, "number of threads cannot be smaller than one" );
+            }
+        }
         Phylogeny[] phylogenies = null;
         try {
             final PhylogenyFactory factory = ParserBasedPhylogenyFactory.getInstance();
@@ -229,7 +242,8 @@ public class pccx {
                 System.out.println();
                 final CoverageCalculator cc = CoverageCalculator.getInstance( new ExternalNodeBasedCoverageMethod(),
                                                                               options );
-                final CoverageExtender ce = new BasicExternalNodeBasedCoverageExtender();
+                final BasicExternalNodeBasedCoverageExtender ce = new BasicExternalNodeBasedCoverageExtender();
+                ce.setNumberOfThreads( threads );
                 Coverage cov = cc.calculateCoverage( phylogenies_list, external_otu_names, false );
                 System.out.println( " before:" );
                 System.out.println( cov.asString() );
@@ -291,6 +305,7 @@ public class pccx {
         System.out.println( " -ld       : -ln(distance) based scoring method (instead of branch counting based)" );
         System.out.println( " -x[=<n>]  : optimally extend coverage by <n> external nodes. Use none, 0," );
         System.out.println( "             or negative value for complete coverage extension." );
+        System.out.println( " -t=<n>    : number of threads for coverage extension (default: 1)" );
         System.out.println( " -o=<file> : write output to <file>" );
         System.out.println( " -i=<file> : read (new-line separated) external node names from <file>" );
         System.out.println( " -" + pccx.OUTPUT_ANNOTATED_PHYLOGENIES_OPTION
@@ -29,11 +29,11 @@ import java.io.File;
 import java.io.IOException;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
 
 import org.forester.go.GoId;
+import org.forester.go.GoOntologyIndex;
 import org.forester.go.GoTerm;
 import org.forester.go.GoUtils;
 import org.forester.go.OBOparser;
@@ -67,6 +67,7 @@ public class pfam2go_extractor {
             e.printStackTrace();
         }
         final Map<GoId, GoTerm> goid_to_term_map = GoUtils.createGoIdToGoTermMap( all_go_terms );
+        final GoOntologyIndex go_index = GoOntologyIndex.createInstance( goid_to_term_map );
         System.out.println( "# pfam2go : " + args[ 0 ] );
         System.out.println( "# OBO file: " + args[ 1 ] );
         final GoId[] queries = new GoId[ args.length - 2 ];
@@ -80,10 +81,8 @@ public class pfam2go_extractor {
         for( final PfamToGoMapping pfam_to_go_mapping : pfam2go ) {
             final String domain_id = pfam_to_go_mapping.getKey();
             final GoId go_id = pfam_to_go_mapping.getValue();
-            final Set<GoId> supers = GoUtils.getAllSuperGoIds( go_id, goid_to_term_map );
-            supers.add( go_id );
             for( final GoId querie : queries ) {
-                if ( supers.contains( querie ) ) {
+                if ( go_index.isSuperGoIdOrSelf( querie, go_id ) ) {
                     pfams.add( domain_id.toString() );
                 }
             }
@@ -69,6 +69,7 @@ public class phyloxml_converter {
     final static private String  NO_TREE_LEVEL_INDENDATION         = "ni";
     final static private String  REPLACE_UNDER_SCORES              = "ru";
     final static private String  IGNORE_QUOTES                     = "iqs";
+    final static private String  THREADS_OPTION                    = "t";
     final static private String  PRG_NAME                          = "phyloxml_converter";
     final static private String  PRG_VERSION                       = "1.302";
     final static private String  PRG_DATE                          = "140516";
@@ -106,6 +107,7 @@ public class phyloxml_converter {
         allowed_options.add( EXTRACT_TAXONOMY );
         allowed_options.add( EXTRACT_TAXONOMY_PF );
         allowed_options.add( IGNORE_QUOTES );
+        allowed_options.add( THREADS_OPTION );
         if ( cla.getNumberOfNames() != 2 ) {
             System.out.println();
             System.out.println( "[" + PRG_NAME + "] incorrect number of arguments" );
@@ -192,6 +194,18 @@ public class phyloxml_converter {
         if ( cla.isOptionSet( EXTRACT_TAXONOMY_PF ) ) {
             extr_taxonomy_pf_only = true;
         }
+        int threads = 1;
+        if ( cla.isOptionSet( THREADS_OPTION ) ) {
+            try {
+                threads = cla.getOptionValueAsInt( THREADS_OPTION );
+            }
+            catch ( final IOException e ) {
+                ForesterUtil.fatalError( PRG_NAME, "error in command line: " + e.getMessage() );
+            }
+            if ( threads < 1 ) {
+                ForesterUtil.fatalError( PRG_NAME, "number of threads cannot be smaller than one" );
+            }
+        }
         final File infile = cla.getFile( 0 );
         final File outfile = cla.getFile( 1 );
         if ( outfile.exists() ) {
@@ -273,6 +287,7 @@ public class phyloxml_converter {
             if ( no_indendation ) {
                 writer.setIndentPhyloxml( false );
             }
+            writer.setNumberOfThreads( threads );
             writer.toPhyloXML( phys, 0, outfile, ForesterUtil.LINE_SEPARATOR );
         }
         catch ( final IOException e ) {
@@ -399,6 +414,8 @@ public class phyloxml_converter {
                 + FIELD_TAXONOMY_CODE + ", " + FIELD_TAXONOMY_COMM_NAME + ", " + FIELD_TAXONOMY_SCI_NAME + ")" );
         System.out.println( " -" + NO_TREE_LEVEL_INDENDATION + " : no tree level indendation in phyloXML output" );
         System.out.println( " -" + IGNORE_QUOTES + ": ignore quotes and whitespace (e.g. \"a b\" becomes ab)" );
+        System.out.println( " -" + THREADS_OPTION
+                + "=<n>: number of threads for writing multiple trees (default: 1)" );
         System.out.println();
     }
 }
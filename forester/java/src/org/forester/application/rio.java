@@ -34,15 +34,9 @@ import java.util.ArrayList;
 import java.util.List;
 
 import org.forester.datastructures.IntMatrix;
-import org.forester.io.parsers.IteratingPhylogenyParser;
-import org.forester.io.parsers.PhylogenyParser;
-import org.forester.io.parsers.nexus.NexusPhylogeniesParser;
-import org.forester.io.parsers.nhx.NHXParser;
-import org.forester.io.parsers.nhx.NHXParser.TAXONOMY_EXTRACTION;
-import org.forester.io.parsers.phyloxml.PhyloXmlParser;
-import org.forester.io.parsers.util.ParserUtils;
 import org.forester.io.writers.PhylogenyWriter;
 import org.forester.phylogeny.Phylogeny;
+import org.forester.rio.AnalyzedGeneTreeSink;
 import org.forester.rio.RIO;
 import org.forester.rio.RIO.REROOTING;
 import org.forester.rio.RIOException;
@@ -70,6 +64,8 @@ public class rio {
     final static private String RETURN_BEST_GENE_TREE    = "g";
     final static private String USE_SDIR                 = "b";
     final static private String TRANSFER_TAXONOMY_OPTION = "t";
+    final static private String THREADS_OPTION           = "c";
+    final static private String RETURN_ALL_GENE_TREES    = "w";
 
     public static void main( final String[] args ) {
         ForesterUtil.printProgramInformation( PRG_NAME,
@@ -89,7 +85,7 @@ public class rio {
         if ( cla.isOptionSet( HELP_OPTION_1 ) || cla.isOptionSet( HELP_OPTION_2 ) || ( args.length == 0 ) ) {
             printHelp();
         }
-        if ( ( args.length < 3 ) || ( args.length > 11 ) || ( cla.getNumberOfNames() < 3 ) ) {
+        if ( ( args.length < 3 ) || ( args.length > 12 ) || ( cla.getNumberOfNames() < 3 ) ) {
             System.out.println();
             System.out.println( "error: incorrect number of arguments" );
             System.out.println();
@@ -104,6 +100,8 @@ public class rio {
         allowed_options.add( RETURN_SPECIES_TREE );
         allowed_options.add( RETURN_BEST_GENE_TREE );
         allowed_options.add( TRANSFER_TAXONOMY_OPTION );
+        allowed_options.add( THREADS_OPTION );
+        allowed_options.add( RETURN_ALL_GENE_TREES );
         final String dissallowed_options = cla.validateAllowedOptionsAsString( allowed_options );
         if ( dissallowed_options.length() > 0 ) {
             ForesterUtil.fatalError( "unknown option(s): " + dissallowed_options );
@@ -232,6 +230,20 @@ public class rio {
                 ForesterUtil.fatalError( "\"" + return_gene_tree + "\" already exists" );
             }
         }
+        File return_all_gene_trees = null;
+        if ( cla.isOptionSet( RETURN_ALL_GENE_TREES ) ) {
+            if ( !cla.isOptionHasAValue( RETURN_ALL_GENE_TREES ) ) {
+                ForesterUtil.fatalError( "no value for -" + RETURN_ALL_GENE_TREES );
+            }
+            if ( sdir ) {
+                ForesterUtil.fatalError( "no output of all analyzed gene trees for SDIR algorithm" );
+            }
+            final String s = cla.getOptionValueAsCleanString( RETURN_ALL_GENE_TREES );
+            return_all_gene_trees = new File( s );
+            if ( return_all_gene_trees.exists() ) {
+                ForesterUtil.fatalError( "\"" + return_all_gene_trees + "\" already exists" );
+            }
+        }
         boolean transfer_taxonomy = false;
         if ( !sdir && cla.isOptionSet( TRANSFER_TAXONOMY_OPTION ) ) {
             if ( return_gene_tree == null ) {
@@ -239,6 +251,21 @@ public class rio {
             }
             transfer_taxonomy = true;
         }
+        int threads = 1;
+        if ( cla.isOptionSet( THREADS_OPTION ) ) {
+            if ( !cla.isOptionHasAValue( THREADS_OPTION ) ) {
+                ForesterUtil.fatalError( "no value for -" + THREADS_OPTION );
+            }
+            try {
+                threads = cla.getOptionValueAsInt( THREADS_OPTION );
+            }
+            catch ( final IOException e ) {
+                ForesterUtil.fatalError( "could not parse integer for -" + THREADS_OPTION + " option" );
+            }
+            if ( threads < 1 ) {
+                ForesterUtil.fatalError( "attempt to set number of threads to: " + threads );
+            }
+        }
         ForesterUtil.fatalErrorIfFileNotReadable( gene_trees_file );
         ForesterUtil.fatalErrorIfFileNotReadable( species_tree_file );
         if ( orthology_outtable.exists() ) {
@@ -290,6 +317,12 @@ public class rio {
             System.out.println( "Write best gene tree to   : " + return_gene_tree );
             System.out.println( "Transfer taxonomic data   : " + transfer_taxonomy );
         }
+        if ( return_all_gene_trees != null ) {
+            System.out.println( "Write all gene trees to   : " + return_all_gene_trees );
+        }
+        if ( threads > 1 ) {
+            System.out.println( "Threads                   : " + threads );
+        }
         time = System.currentTimeMillis();
         final ALGORITHM algorithm;
         if ( sdir ) {
@@ -299,10 +332,12 @@ public class rio {
             algorithm = ALGORITHM.GSDIR;
         }
         try {
+            // Analyzed gene trees are not kept in memory, but written to file
+            // (if requested) as they are produced.
+            final EasyWriter all_gene_trees_writer = return_all_gene_trees != null ? ForesterUtil
+                    .createEasyWriter( return_all_gene_trees ) : null;
             final RIO rio;
-            boolean iterating = false;
-            final PhylogenyParser p = ParserUtils.createParserDependingOnFileType( gene_trees_file, true );
-            if ( p instanceof PhyloXmlParser ) {
+            try {
                 rio = RIO.executeAnalysis( gene_trees_file,
                                            species_tree_file,
                                            algorithm,
@@ -312,48 +347,22 @@ public class rio {
                                            gt_last,
                                            logfile != null,
                                            true,
-                                           transfer_taxonomy );
+                                           transfer_taxonomy,
+                                           threads,
+                                           createSink( all_gene_trees_writer ) );
             }
-            else {
-                iterating = true;
-                if ( p instanceof NHXParser ) {
-                    final NHXParser nhx = ( NHXParser ) p;
-                    nhx.setReplaceUnderscores( false );
-                    nhx.setIgnoreQuotes( true );
-                    nhx.setTaxonomyExtraction( TAXONOMY_EXTRACTION.AGGRESSIVE );
-                }
-                else if ( p instanceof NexusPhylogeniesParser ) {
-                    final NexusPhylogeniesParser nex = ( NexusPhylogeniesParser ) p;
-                    nex.setReplaceUnderscores( false );
-                    nex.setIgnoreQuotes( true );
-                    nex.setTaxonomyExtraction( TAXONOMY_EXTRACTION.AGGRESSIVE );
-                }
-                else {
-                    throw new RuntimeException( "unknown parser type: " + p );
+            finally {
+                if ( all_gene_trees_writer != null ) {
+                    all_gene_trees_writer.close();
                 }
-                final IteratingPhylogenyParser ip = ( IteratingPhylogenyParser ) p;
-                ip.setSource( gene_trees_file );
-                rio = RIO.executeAnalysis( ip,
-                                           species_tree_file,
-                                           algorithm,
-                                           rerooting,
-                                           outgroup,
-                                           gt_first,
-                                           gt_last,
-                                           logfile != null,
-                                           true,
-                                           transfer_taxonomy );
+            }
+            if ( all_gene_trees_writer != null ) {
+                System.out.println( "Wrote all analyzed gene trees to \"" + return_all_gene_trees + "\"" );
             }
             if ( algorithm == ALGORITHM.GSDIR ) {
                 System.out.println( "Taxonomy linking based on : " + rio.getGSDIRtaxCompBase() );
             }
-            final IntMatrix m;
-            if ( iterating ) {
-                m = rio.getOrthologTable();
-            }
-            else {
-                m = RIO.calculateOrthologTable( rio.getAnalyzedGeneTrees(), true );
-            }
+            final IntMatrix m = rio.getOrthologTable();
             final BasicDescriptiveStatistics stats = rio.getDuplicationsStatistics();
             writeTable( orthology_outtable, stats.getN(), m );
             if ( ( algorithm != ALGORITHM.SDIR ) && ( logfile != null ) ) {
@@ -418,6 +427,20 @@ public class rio {
         System.exit( 0 );
     }
 
+    private final static AnalyzedGeneTreeSink createSink( final EasyWriter w ) {
+        final PhylogenyWriter writer = new PhylogenyWriter();
+        return new AnalyzedGeneTreeSink() {
+
+            @Override
+            public void accept( final Phylogeny analyzed_gene_tree, final int index ) throws IOException {
+                if ( w != null ) {
+                    writer.toNewHampshireX( w, analyzed_gene_tree );
+                    w.println();
+                }
+            }
+        };
+    }
+
     private final static void printHelp() {
         System.out.println( "Usage" );
         System.out.println();
@@ -445,6 +468,9 @@ public class rio {
         System.out.println( "  -" + USE_SDIR
                             + "             : to use SDIR instead of GSDIR (faster, but non-binary species trees are" );
         System.out.println( "                   disallowed, as are most options)" );
+        System.out.println( "  -" + RETURN_ALL_GENE_TREES
+                            + "=<outfile>   : to write all analyzed gene trees to file (New Hampshire X format)" );
+        System.out.println( "  -" + THREADS_OPTION + "=<threads>   : number of threads to use (default: 1)" );
         System.out.println();
         System.out.println( " Formats" );
         System.out
@@ -78,6 +78,7 @@ import org.forester.surfacing.SurfacingUtil;
 import org.forester.util.BasicDescriptiveStatistics;
 import org.forester.util.BasicTable;
 import org.forester.util.BasicTableParser;
+import org.forester.util.CacheFileUtil;
 import org.forester.util.CommandLineArguments;
 import org.forester.util.DescriptiveStatistics;
 import org.forester.util.ForesterConstants;
@@ -141,6 +142,7 @@ public class surfacing {
     final static private String                                     HELP_OPTION_1                                                                 = "help";
     final static private String                                     HELP_OPTION_2                                                                 = "h";
     final static private String                                     OUTPUT_DIR_OPTION                                                             = "out_dir";
+    final static private String                                     CACHE_DIR_OPTION                                                              = "cache_dir";
     final static private String                                     SCORING_OPTION                                                                = "scoring";
     private static final DomainSimilarityScoring                    SCORING_DEFAULT                                                               = DomainSimilarity.DomainSimilarityScoring.COMBINATIONS;
     final static private String                                     SCORING_DOMAIN_COUNT_BASED                                                    = "domains";
@@ -224,6 +226,7 @@ public class surfacing {
     final static private double                                     MAX_E_VALUE_DEFAULT                                                           = -1;
     public final static int                                         MAX_ALLOWED_OVERLAP_DEFAULT                                                   = -1;
     private static final String                                     RANDOM_SEED_FOR_FITCH_PARSIMONY_OPTION                                        = "random_seed";
+    private static final String                                     THREADS_OPTION                                                                = "threads";
     private static final String                                     CONSIDER_DOMAIN_COMBINATION_DIRECTEDNESS                                      = "consider_bdc_direction";
     private static final String                                     CONSIDER_DOMAIN_COMBINATION_DIRECTEDNESS_AND_ADJACENCY                        = "consider_bdc_adj";
     public static final String                                      SEQ_EXTRACT_SUFFIX                                                            = ".prot";
@@ -317,6 +320,7 @@ public class surfacing {
         allowed_options.add( surfacing.CUTOFF_SCORE_FILE_OPTION );
         allowed_options.add( surfacing.DOMAIN_SIMILARITY_SORT_BY_SPECIES_COUNT_FIRST_OPTION );
         allowed_options.add( surfacing.OUTPUT_DIR_OPTION );
+        allowed_options.add( surfacing.CACHE_DIR_OPTION );
         allowed_options.add( surfacing.IGNORE_COMBINATION_WITH_SAME_OPTION );
         allowed_options.add( surfacing.PFAM_TO_GO_FILE_USE_OPTION );
         allowed_options.add( surfacing.GO_OBO_FILE_USE_OPTION );
@@ -346,6 +350,7 @@ public class surfacing {
         allowed_options.add( USE_LAST_IN_FITCH_OPTION );
         allowed_options.add( PERFORM_DC_FITCH );
         allowed_options.add( PERFORM_DOMAIN_LENGTH_ANALYSIS_OPTION );
+        allowed_options.add( THREADS_OPTION );
         boolean ignore_dufs = surfacing.IGNORE_DUFS_DEFAULT;
         boolean ignore_combination_with_same = surfacing.IGNORE_COMBINATION_WITH_SAME_DEFAULLT;
         double fs_e_value_max = surfacing.MAX_E_VALUE_DEFAULT;
@@ -495,6 +500,9 @@ public class surfacing {
                 ForesterUtil.fatalError( surfacing.PRG_NAME, "cannot write to \"" + out_dir + "\"" );
             }
         }
+        final File cache_dir = CacheFileUtil.obtainCacheDirectory( cla,
+                                                                   surfacing.CACHE_DIR_OPTION,
+                                                                   surfacing.PRG_NAME );
         File positive_filter_file = null;
         File negative_filter_file = null;
         File negative_domains_filter_file = null;
@@ -822,6 +830,7 @@ public class surfacing {
         int domain_id_to_go_ids_count = 0;
         try {
             final PfamToGoParser parser = new PfamToGoParser( pfam_to_go_file );
+            parser.setSnapshotDirectory( cache_dir );
             final List<PfamToGoMapping> pfam_to_go_mappings = parser.parse();
             domain_id_to_go_ids_map = SurfacingUtil.createDomainIdToGoIdMap( pfam_to_go_mappings );
             if ( parser.getMappingCount() < domain_id_to_go_ids_map.size() ) {
@@ -848,6 +857,7 @@ public class surfacing {
         List<GoTerm> go_terms = null;
         try {
             final OBOparser parser = new OBOparser( go_obo_file, OBOparser.ReturnType.BASIC_GO_TERM );
+            parser.setSnapshotDirectory( cache_dir );
             go_terms = parser.parse();
             if ( parser.getGoTermCount() != go_terms.size() ) {
                 ForesterUtil.unexpectedFatalError( surfacing.PRG_NAME, "parser.getGoTermCount() != go_terms.size()" );
@@ -944,6 +954,22 @@ public class surfacing {
             }
             radomize_fitch_parsimony = true;
         }
+        int threads = 1;
+        if ( cla.isOptionSet( surfacing.THREADS_OPTION ) ) {
+            if ( !cla.isOptionValueSet( surfacing.THREADS_OPTION ) ) {
+                ForesterUtil.fatalError( surfacing.PRG_NAME, "no value for number of threads: -"
+                        + surfacing.THREADS_OPTION + "=<threads>" );
+            }
+            try {
+                threads = cla.getOptionValueAsInt( surfacing.THREADS_OPTION );
+            }
+            catch ( final IOException e ) {
+                ForesterUtil.fatalError( surfacing.PRG_NAME, e.getMessage() );
+            }
+            if ( threads < 1 ) {
+                ForesterUtil.fatalError( surfacing.PRG_NAME, "number of threads cannot be smaller than one" );
+            }
+        }
         SortedSet<String> filter = null;
         if ( ( positive_filter_file != null ) || ( negative_filter_file != null )
                 || ( negative_domains_filter_file != null ) ) {
@@ -1171,6 +1197,9 @@ public class surfacing {
         if ( out_dir != null ) {
             System.out.println( "Output directory            : " + out_dir );
         }
+        if ( cache_dir != null ) {
+            System.out.println( "Cache directory             : " + cache_dir );
+        }
         if ( query_domain_ids != null ) {
             System.out.println( "Query domains (ordered)     : " + query_domain_ids );
             html_desc.append( "<tr><td></td><td>" + query_domain_ids + "</td></tr>" + nl );
@@ -1521,6 +1550,7 @@ public class surfacing {
             if ( individual_score_cutoffs != null ) {
                 parser.setIndividualScoreCutoffs( individual_score_cutoffs );
             }
+            parser.setCacheDirectory( cache_dir );
             List<Protein> protein_list = null;
             try {
                 protein_list = parser.parse();
@@ -1622,7 +1652,8 @@ public class surfacing {
                 System.out.println( "Distinct domain architectures stored           : " + distinct_das );
                 SurfacingUtil.log( "Distinct domain architectures stored           : " + distinct_das, log_writer );
             }
-            System.out.println( "Time for processing                            : " + parser.getTime() + "ms" );
+            System.out.println( "Time for processing                            : " + parser.getTime() + "ms"
+                    + ( parser.isLoadedFromCache() ? " (from cache)" : "" ) );
             SurfacingUtil.log( "", log_writer );
             try {
                 int count = 0;
@@ -1808,11 +1839,12 @@ public class surfacing {
         domain_lengths_table = null;
         final long analysis_start_time = new Date().getTime();
         PairwiseDomainSimilarityCalculator pw_calc = null;
-        final DomainSimilarityCalculator calc = new BasicDomainSimilarityCalculator( domain_similarity_sort_field,
-                                                                                     sort_by_species_count_first,
-                                                                                     number_of_genomes == 2,
-                                                                                     CALC_SIMILARITY_SCORES,
-                                                                                     true );
+        final BasicDomainSimilarityCalculator calc = new BasicDomainSimilarityCalculator( domain_similarity_sort_field,
+                                                                                          sort_by_species_count_first,
+                                                                                          number_of_genomes == 2,
+                                                                                          CALC_SIMILARITY_SCORES,
+                                                                                          true );
+        calc.setNumberOfThreads( threads );
         switch ( scoring ) {
             case COMBINATIONS:
                 pw_calc = new CombinationsBasedPairwiseDomainSimilarityCalculator();
@@ -1922,7 +1954,8 @@ public class surfacing {
                                              write_pwc_files,
                                              tax_code_to_id_map,
                                              CALC_SIMILARITY_SCORES,
-                                             intree_0_orig );
+                                             intree_0_orig,
+                                             threads );
             String matrix_output_file = new String( output_file.toString() );
             if ( matrix_output_file.indexOf( '.' ) > 1 ) {
                 matrix_output_file = matrix_output_file.substring( 0, matrix_output_file.indexOf( '.' ) );
@@ -1978,6 +2011,7 @@ public class surfacing {
                         + ForesterUtil.removeSuffix( intree_files[ i ].toString() );
                 final DomainParsimonyCalculator domain_parsimony = DomainParsimonyCalculator.createInstance( intree,
                                                                                                              gwcd_list );
+                domain_parsimony.setNumberOfThreads( threads );
                 SurfacingUtil.executeParsimonyAnalysis( random_number_seed_for_fitch_parsimony,
                                                         radomize_fitch_parsimony,
                                                         outfile_name,
@@ -2008,6 +2042,7 @@ public class surfacing {
                         final Map<Species, MappingResults> mapping_results_map = new TreeMap<Species, MappingResults>();
                         final DomainParsimonyCalculator secondary_features_parsimony = DomainParsimonyCalculator
                                 .createInstance( intree, gwcd_list, domain_id_to_secondary_features_map );
+                        secondary_features_parsimony.setNumberOfThreads( threads );
                         SurfacingUtil
                         .executeParsimonyAnalysisForSecondaryFeatures( outfile_name
                                                                        + "_"
@@ -2146,6 +2181,8 @@ public class surfacing {
         System.out.println( surfacing.DOMAIN_SIMILARITY_SORT_BY_SPECIES_COUNT_FIRST_OPTION
                             + ": sort by species count first" );
         System.out.println( surfacing.OUTPUT_DIR_OPTION + ": output directory" );
+        System.out.println( surfacing.CACHE_DIR_OPTION
+                            + ": directory for binary caches of parsed hmmscan outputs, GO terms and Pfam to GO mappings (re-used if up-to-date)" );
         System.out.println( surfacing.PFAM_TO_GO_FILE_USE_OPTION + ": Pfam to GO mapping file" );
         System.out.println( surfacing.GO_OBO_FILE_USE_OPTION + ": GO terms file (OBO format)" );
         System.out.println( surfacing.GO_NAMESPACE_LIMIT_OPTION + ": limit GO term to one GO namespace" );
@@ -2166,6 +2203,8 @@ public class surfacing {
         System.out
         .println( surfacing.RANDOM_SEED_FOR_FITCH_PARSIMONY_OPTION
                   + "=<seed>: seed for random number generator for Fitch Parsimony analysis (type: long, default: no randomization - given a choice, prefer absence" );
+        System.out.println( surfacing.THREADS_OPTION
+                            + "=<threads>: number of threads for domain similarities, pairwise genome comparisons and parsimony analyses (default: 1)" );
         System.out.println( surfacing.CONSIDER_DOMAIN_COMBINATION_DIRECTEDNESS
                             + ": to consider directedness in binary combinations: e.g. A-B != B-A" );
         System.out.println( surfacing.CONSIDER_DOMAIN_COMBINATION_DIRECTEDNESS_AND_ADJACENCY
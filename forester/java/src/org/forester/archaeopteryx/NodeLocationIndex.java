@@ -0,0 +1,198 @@
+// $Id:
+// FORESTER -- software libraries and applications
+// for evolutionary biology research and applications.
+//
+// Copyright (C) 2014 Christian M. Zmasek
+// Copyright (C) 2014 Sanford-Burnham Medical Research Institute
+// All rights reserved
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA
+//
+// Contact: phylosoft @ gmail . com
+// WWW: https://sites.google.com/site/cmzmasek/home/software/forester
+
+
+package org.forester.archaeopteryx;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+import org.forester.phylogeny.Phylogeny;
+import org.forester.phylogeny.PhylogenyNode;
+import org.forester.phylogeny.iterators.PhylogenyNodeIterator;
+
+/*
+ * Index of the node coordinates of a phylogeny as painted by a TreePanel, for
+ * finding the node at a given location in logarithmic time: the nodes are
+ * sorted by the cell of a uniform grid (with cells larger than the node boxes)
+ * they are located in, within each cell by postorder. Cells are ordered by
+ * column (x) first and by row (y) within a column (see calcKey). This works for
+ * all tree layouts, as each lookup searches the cells around the location
+ * individually.
+ *
+ * The coordinates are copied when the index is created, an index has to be
+ * replaced when they change (see isCoordinatesUnchanged).
+ */
+public final class NodeLocationIndex {
+
+    private final int             _cell_size;
+    private final int             _half_box_size;
+    private final long[]          _keys;
+    private final PhylogenyNode[] _nodes;
+    private final Phylogeny       _phylogeny;
+    private final int[]           _ranks;
+    private final boolean         _rooted;
+    private final float[]         _x;
+    private final float[]         _y;
+
+    private NodeLocationIndex( final Phylogeny phylogeny, final int half_box_size ) {
+        if ( half_box_size < 0 ) {
+            throw new IllegalArgumentException( "half box size cannot be negative" );
+        }
+        _phylogeny = phylogeny;
+        _half_box_size = half_box_size;
+        _cell_size = ( 2 * half_box_size ) + 1;
+        _rooted = phylogeny.isRooted();
+        // Same nodes, in the same (post-)order, as a scan of the phylogeny would find.
+        int n = 0;
+        final PhylogenyNode[] nodes = new PhylogenyNode[ phylogeny.isEmpty() ? 0 : phylogeny.getNodeCount() ];
+        if ( !phylogeny.isEmpty() ) {
+            for( final PhylogenyNodeIterator it = phylogeny.iteratorPostorder(); it.hasNext(); ) {
+                final PhylogenyNode node = it.next();
+                if ( _rooted || !node.isRoot() || ( node.getNumberOfDescendants() > 2 ) ) {
+                    nodes[ n++ ] = node;
+                }
+            }
+        }
+        final long[] keys = new long[ n ];
+        final Integer[] order = new Integer[ n ];
+        for( int i = 0; i < n; ++i ) {
+            keys[ i ] = calcKey( calcCell( nodes[ i ].getXcoord() ), calcCell( nodes[ i ].getYcoord() ) );
+            order[ i ] = i;
+        }
+        // Stable, thus by postorder within each cell.
+        Arrays.sort( order, new Comparator<Integer>() {
+
+            @Override
+            public int compare( final Integer i1, final Integer i2 ) {
+                return Long.compare( keys[ i1 ], keys[ i2 ] );
+            }
+        } );
+        _keys = new long[ n ];
+        _nodes = new PhylogenyNode[ n ];
+        _ranks = new int[ n ];
+        _x = new float[ n ];
+        _y = new float[ n ];
+        for( int i = 0; i < n; ++i ) {
+            final int j = order[ i ];
+            _keys[ i ] = keys[ j ];
+            _nodes[ i ] = nodes[ j ];
+            _ranks[ i ] = j;
+            _x[ i ] = nodes[ j ].getXcoord();
+            _y[ i ] = nodes[ j ].getYcoord();
+        }
+    }
+
+    /**
+     * Returns the node whose box (of half box size, as given at creation)
+     * contains location x, y; the first one in postorder if several do (null
+     * if none).
+     *
+     */
+    public PhylogenyNode findNode( final int x, final int y ) {
+        final int h = getHalfBoxSize();
+        int best = -1;
+        // One cell more on each side, so that rounding cannot miss a node.
+        final int cx_max = calcCell( x + h + 1 );
+        final int cy_max = calcCell( y + h + 1 );
+        for( int cx = calcCell( x - h - 1 ); cx <= cx_max; ++cx ) {
+            for( int cy = calcCell( y - h - 1 ); cy <= cy_max; ++cy ) {
+                final long key = calcKey( cx, cy );
+                for( int i = findFirst( key ); ( i < _keys.length ) && ( _keys[ i ] == key ); ++i ) {
+                    if ( ( best >= 0 ) && ( _ranks[ i ] > _ranks[ best ] ) ) {
+                        break;
+                    }
+                    if ( ( ( _x[ i ] - h ) <= x ) && ( ( _x[ i ] + h ) >= x ) && ( ( _y[ i ] - h ) <= y )
+                            && ( ( _y[ i ] + h ) >= y ) ) {
+                        best = i;
+                        break;
+                    }
+                }
+            }
+        }
+        return best >= 0 ? _nodes[ best ] : null;
+    }
+
+    public int getHalfBoxSize() {
+        return _half_box_size;
+    }
+
+    public Phylogeny getPhylogeny() {
+        return _phylogeny;
+    }
+
+    /**
+     * Returns true if this index can be used for the given phylogeny and half
+     * box size (without checking the coordinates).
+     *
+     */
+    public boolean isApplicable( final Phylogeny phylogeny, final int half_box_size ) {
+        return ( phylogeny == getPhylogeny() ) && ( half_box_size == getHalfBoxSize() )
+                && ( phylogeny.isRooted() == _rooted );
+    }
+
+    /**
+     * Returns true if none of the indexed nodes has been moved since this
+     * index has been created (linear time).
+     *
+     */
+    public boolean isCoordinatesUnchanged() {
+        for( int i = 0; i < _nodes.length; ++i ) {
+            if ( ( _nodes[ i ].getXcoord() != _x[ i ] ) || ( _nodes[ i ].getYcoord() != _y[ i ] ) ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int calcCell( final float c ) {
+        return ( int ) Math.floor( c / _cell_size );
+    }
+
+    // First index with a key not smaller than key.
+    private int findFirst( final long key ) {
+        int lo = 0;
+        int hi = _keys.length;
+        while ( lo < hi ) {
+            final int mid = ( lo + hi ) >>> 1;
+            if ( _keys[ mid ] < key ) {
+                lo = mid + 1;
+            }
+            else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    public static NodeLocationIndex createInstance( final Phylogeny phylogeny, final int half_box_size ) {
+        return new NodeLocationIndex( phylogeny, half_box_size );
+    }
+
+    // x-major: the cells of one column are adjacent in the key order.
+    private static long calcKey( final int cx, final int cy ) {
+        return ( ( ( long ) cx ) << 32 ) | ( cy & 0xFFFFFFFFL );
+    }
+}
@@ -121,7 +121,6 @@ import org.forester.phylogeny.data.NodeVisualData.NodeShape;
 import org.forester.phylogeny.data.PhylogenyDataUtil;
 import org.forester.phylogeny.data.PropertiesMap;
 import org.forester.phylogeny.data.Property;
-import org.forester.phylogeny.data.ProteinDomain;
 import org.forester.phylogeny.data.Sequence;
 import org.forester.phylogeny.data.SequenceRelation;
 import org.forester.phylogeny.data.Taxonomy;
@@ -269,6 +268,7 @@ public final class TreePanel extends JPanel implements ActionListener, MouseWhee
     private Popup                        _node_desc_popup;
     private int                          _node_frame_index                                  = 0;
     private final NodeFrame[]            _node_frames                                       = new NodeFrame[ TreePanel.MAX_NODE_FRAMES ];
+    private NodeLocationIndex            _node_location_index                               = null;
     private JPopupMenu                   _node_popup_menu                                   = null;
     private JMenuItem                    _node_popup_menu_items[]                           = null;
     private PhylogenyNode[]              _nodes_in_preorder                                 = null;
@@ -3916,10 +3916,9 @@ public final class TreePanel extends JPanel implements ActionListener, MouseWhee
                             && ( n.getNodeData().getSequence().getDomainArchitecture() != null ) ) {
                         final DomainArchitecture da = n.getNodeData().getSequence().getDomainArchitecture();
                         final Set<String> s = new HashSet<String>();
-                        for( int i = 0; i < da.getDomains().size(); ++i ) {
-                            final ProteinDomain d = da.getDomain( i );
-                            if ( d.getConfidence() <= Math.pow( 10, getDomainStructureEvalueThresholdExp() ) ) {
-                                final String name = d.getName();
+                        for( int i = 0; i < da.getNumberOfDomains(); ++i ) {
+                            if ( da.getDomainConfidence( i ) <= Math.pow( 10, getDomainStructureEvalueThresholdExp() ) ) {
+                                final String name = da.getDomainName( i );
                                 if ( !( s.contains( name ) ) ) {
                                     data.add( name );
                                     if ( getOptions().getExtDescNodeDataToReturn() == NodeDataField.DOMAINS_COLLAPSED_PER_PROTEIN ) {
@@ -4802,17 +4801,13 @@ public final class TreePanel extends JPanel implements ActionListener, MouseWhee
             return null;
         }
         final int half_box_size_plus_wiggle = ( getOptions().getDefaultNodeShapeSize() / 2 ) + WIGGLE;
-        for( final PhylogenyNodeIterator iter = _phylogeny.iteratorPostorder(); iter.hasNext(); ) {
-            final PhylogenyNode node = iter.next();
-            if ( ( _phylogeny.isRooted() || !node.isRoot() || ( node.getNumberOfDescendants() > 2 ) )
-                    && ( ( node.getXcoord() - half_box_size_plus_wiggle ) <= x )
-                    && ( ( node.getXcoord() + half_box_size_plus_wiggle ) >= x )
-                    && ( ( node.getYcoord() - half_box_size_plus_wiggle ) <= y )
-                    && ( ( node.getYcoord() + half_box_size_plus_wiggle ) >= y ) ) {
-                return node;
-            }
+        // The index is dropped when the tree changes (setNodeInPreorderToNull) or when
+        // painting moves nodes (paintPhylogeny).
+        if ( ( _node_location_index == null )
+                || !_node_location_index.isApplicable( _phylogeny, half_box_size_plus_wiggle ) ) {
+            _node_location_index = NodeLocationIndex.createInstance( _phylogeny, half_box_size_plus_wiggle );
         }
-        return null;
+        return _node_location_index.findNode( x, y );
     }
 
     final Configuration getConfiguration() {
@@ -5618,6 +5613,9 @@ public final class TreePanel extends JPanel implements ActionListener, MouseWhee
                 paintOvRectangle( g );
             }
         }
+        if ( ( _node_location_index != null ) && !_node_location_index.isCoordinatesUnchanged() ) {
+            _node_location_index = null;
+        }
     }
 
     final void recalculateMaxDistanceToRoot() {
@@ -5778,6 +5776,7 @@ public final class TreePanel extends JPanel implements ActionListener, MouseWhee
 
     final void setNodeInPreorderToNull() {
         _nodes_in_preorder = null;
+        _node_location_index = null;
     }
 
     final void setOvOn( final boolean ov_on ) {
@@ -156,11 +156,31 @@ public final class RenderableDomainArchitecture extends DomainArchitecture imple
         return _domain_structure.getDomain( i );
     }
 
+    @Override
+    public double getDomainConfidence( final int i ) {
+        return _domain_structure.getDomainConfidence( i );
+    }
+
+    @Override
+    public int getDomainFrom( final int i ) {
+        return _domain_structure.getDomainFrom( i );
+    }
+
+    @Override
+    public String getDomainName( final int i ) {
+        return _domain_structure.getDomainName( i );
+    }
+
     @Override
     public SortedMap<BigDecimal, ProteinDomain> getDomains() {
         return _domain_structure.getDomains();
     }
 
+    @Override
+    public int getDomainTo( final int i ) {
+        return _domain_structure.getDomainTo( i );
+    }
+
     @Override
     public int getNumberOfDomains() {
         return _domain_structure.getNumberOfDomains();
@@ -216,16 +236,18 @@ public final class RenderableDomainArchitecture extends DomainArchitecture imple
         _rectangle.setFrame( start, y - 0.5, _domain_structure.getTotalLength() * f, 1 );
         g.fill( _rectangle );
         short special_domain_count = 0;
-        for( int i = 0; i < _domain_structure.getDomains().size(); ++i ) {
-            final ProteinDomain d = _domain_structure.getDomain( i );
-            if ( ( d.getConfidence() <= Math.pow( 10, _e_value_threshold_exp ) )
-                    || ( TreePanel.SPECIAL_DOMAIN_COLORING && ( d.getName().equals( SPECIAL_DOMAIN ) ) && ( ( d
-                            .getConfidence() <= 1 ) ) ) ) {
-                if ( TreePanel.SPECIAL_DOMAIN_COLORING && ( d.getName().equals( SPECIAL_DOMAIN ) ) ) {
+        final double e_value_threshold = Math.pow( 10, _e_value_threshold_exp );
+        for( int i = 0; i < _domain_structure.getNumberOfDomains(); ++i ) {
+            final String name = _domain_structure.getDomainName( i );
+            final double confidence = _domain_structure.getDomainConfidence( i );
+            if ( ( confidence <= e_value_threshold )
+                    || ( TreePanel.SPECIAL_DOMAIN_COLORING && ( name.equals( SPECIAL_DOMAIN ) ) && ( ( confidence <= 1 ) ) ) ) {
+                if ( TreePanel.SPECIAL_DOMAIN_COLORING && ( name.equals( SPECIAL_DOMAIN ) ) ) {
                     special_domain_count++;
                 }
-                final float xa = start + ( d.getFrom() * f );
-                final float xb = xa + ( d.getLength() * f );
+                final int from = _domain_structure.getDomainFrom( i );
+                final float xa = start + ( from * f );
+                final float xb = xa + ( ( ( _domain_structure.getDomainTo( i ) - from ) + 1 ) * f );
                 if ( tree_panel.getMainPanel().getOptions().isShowDomainLabels()
                         && ( tree_panel.getMainPanel().getTreeFontSet().getFontMetricsSmall().getHeight() > 4 ) ) {
                     g.setFont( tree_panel.getMainPanel().getTreeFontSet().getSmallFont() );
@@ -235,17 +257,17 @@ public final class RenderableDomainArchitecture extends DomainArchitecture imple
                     else {
                         g.setColor( Constants.DOMAIN_LABEL_COLOR_FOR_PDF );
                     }
-                    g.drawString( d.getName(), xa, y1
+                    g.drawString( name, xa, y1
                                   + tree_panel.getMainPanel().getTreeFontSet().getFontMetricsSmall().getAscent()
                                   + _rendering_height );
                 }
                 if ( TreePanel.SPECIAL_DOMAIN_COLORING && ( _node_name.indexOf( "~" ) > 1 )
-                        && ( d.getName().equals( SPECIAL_DOMAIN ) )
+                        && ( name.equals( SPECIAL_DOMAIN ) )
                         && ( _node_name.indexOf( "~" + special_domain_count + "-" ) < 1 ) ) {
-                    drawDomainGrey( xa, y1, xb - xa, _rendering_height, d.getName(), g, to_pdf );
+                    drawDomainGrey( xa, y1, xb - xa, _rendering_height, name, g, to_pdf );
                 }
                 else {
-                    drawDomain( xa, y1, xb - xa, _rendering_height, d.getName(), g, to_pdf );
+                    drawDomain( xa, y1, xb - xa, _rendering_height, name, g, to_pdf );
                 }
             }
         }
@@ -37,18 +37,15 @@ import org.forester.archaeopteryx.MainFrameApplication;
 import org.forester.evoinference.distance.NeighborJoiningF;
 import org.forester.evoinference.distance.PairwiseDistanceCalculator;
 import org.forester.evoinference.matrix.distance.BasicSymmetricalDistanceMatrix;
-import org.forester.evoinference.tools.BootstrapResampler;
-import org.forester.msa.BasicMsa;
+import org.forester.evoinference.tools.BootstrapNeighborJoining;
 import org.forester.msa.Mafft;
 import org.forester.msa.Msa;
 import org.forester.msa.Msa.MSA_FORMAT;
 import org.forester.msa.MsaInferrer;
 import org.forester.msa.MsaMethods;
-import org.forester.msa.ResampleableMsa;
 import org.forester.phylogeny.Phylogeny;
 import org.forester.phylogeny.PhylogenyMethods;
 import org.forester.sequence.MolecularSequence;
-import org.forester.tools.ConfidenceAssessor;
 import org.forester.util.ForesterUtil;
 
 public class PhylogeneticInferrer extends RunnableProcess {
@@ -229,15 +226,8 @@ public class PhylogeneticInferrer extends RunnableProcess {
         final long seed = _options.getRandomNumberGeneratorSeed();
         final Phylogeny master_phy = inferPhylogeny( _msa );
         if ( _options.isPerformBootstrapResampling() && ( n > 0 ) ) {
-            final ResampleableMsa resampleable_msa = new ResampleableMsa( ( BasicMsa ) _msa );
-            final int[][] resampled_column_positions = BootstrapResampler.createResampledColumnPositions( _msa
-                                                                                                          .getLength(), n, seed );
-            final Phylogeny[] eval_phys = new Phylogeny[ n ];
-            for( int i = 0; i < n; ++i ) {
-                resampleable_msa.resample( resampled_column_positions[ i ] );
-                eval_phys[ i ] = inferPhylogeny( resampleable_msa );
-            }
-            ConfidenceAssessor.evaluate( "bootstrap", eval_phys, master_phy, true, 1 );
+            BootstrapNeighborJoining.createInstance( _msa, _options.getPwdDistanceMethod() )
+                    .evaluate( BootstrapNeighborJoining.DEFAULT_CONFIDENCE_TYPE, master_phy, n, seed );
         }
         _mf.getMainPanel().addPhylogenyInNewTab( master_phy, _mf.getConfiguration(), "nj", "njpath" );
         //  _mf.getMainPanel().getCurrentTreePanel().setArrowCursor();
@@ -0,0 +1,186 @@
+// $Id:
+// FORESTER -- software libraries and applications
+// for evolutionary biology research and applications.
+//
+// Copyright (C) 2014 Christian M. Zmasek
+// Copyright (C) 2014 Sanford-Burnham Medical Research Institute
+// All rights reserved
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA
+//
+// WWW: https://sites.google.com/site/cmzmasek/home/software/forester
+
+package org.forester.datastructures;
+
+import java.util.NoSuchElementException;
+
+/*
+ * A binary max-heap of int indices (0 to capacity-1) with double priorities.
+ * The position of each index in the heap is kept, thus the priority of an
+ * index can be changed, and an index can be removed, in O(log n).
+ *
+ * Of two indices with equal priority, the smaller index comes first.
+ */
+public final class IndexedMaxPriorityQueue {
+
+    private final int[]    _heap;
+    private final int[]    _positions;
+    private final double[] _priorities;
+    private int            _size;
+
+    public IndexedMaxPriorityQueue( final int capacity ) {
+        if ( capacity < 0 ) {
+            throw new IllegalArgumentException( "capacity cannot be negative" );
+        }
+        _heap = new int[ capacity ];
+        _positions = new int[ capacity ];
+        _priorities = new double[ capacity ];
+        for( int i = 0; i < capacity; ++i ) {
+            _positions[ i ] = -1;
+        }
+        _size = 0;
+    }
+
+    public final boolean contains( final int i ) {
+        checkIndex( i );
+        return _positions[ i ] >= 0;
+    }
+
+    public final double getPriority( final int i ) {
+        checkContains( i );
+        return _priorities[ i ];
+    }
+
+    public final void insert( final int i, final double priority ) {
+        checkIndex( i );
+        if ( _positions[ i ] >= 0 ) {
+            throw new IllegalArgumentException( "index " + i + " is already present" );
+        }
+        _priorities[ i ] = priority;
+        _heap[ _size ] = i;
+        _positions[ i ] = _size;
+        ++_size;
+        up( _size - 1 );
+    }
+
+    public final boolean isEmpty() {
+        return _size == 0;
+    }
+
+    /**
+     * Returns the index with the highest priority, without removing it.
+     *
+     */
+    public final int peek() {
+        if ( isEmpty() ) {
+            throw new NoSuchElementException( "attempt to peek into empty priority queue" );
+        }
+        return _heap[ 0 ];
+    }
+
+    /**
+     * Removes and returns the index with the highest priority.
+     *
+     */
+    public final int poll() {
+        final int i = peek();
+        remove( i );
+        return i;
+    }
+
+    public final void remove( final int i ) {
+        checkContains( i );
+        final int pos = _positions[ i ];
+        --_size;
+        if ( pos != _size ) {
+            swap( pos, _size );
+            _positions[ i ] = -1;
+            down( pos );
+            up( pos );
+        }
+        else {
+            _positions[ i ] = -1;
+        }
+    }
+
+    public final void setPriority( final int i, final double priority ) {
+        checkContains( i );
+        final double old = _priorities[ i ];
+        _priorities[ i ] = priority;
+        if ( priority > old ) {
+            up( _positions[ i ] );
+        }
+        else if ( priority < old ) {
+            down( _positions[ i ] );
+        }
+    }
+
+    public final int size() {
+        return _size;
+    }
+
+    private final void checkContains( final int i ) {
+        if ( !contains( i ) ) {
+            throw new NoSuchElementException( "index " + i + " is not present" );
+        }
+    }
+
+    private final void checkIndex( final int i ) {
+        if ( ( i < 0 ) || ( i >= _positions.length ) ) {
+            throw new IllegalArgumentException( "index " + i + " is out of range" );
+        }
+    }
+
+    private final void down( int pos ) {
+        while ( true ) {
+            final int l = ( 2 * pos ) + 1;
+            if ( l >= _size ) {
+                return;
+            }
+            int c = l;
+            if ( ( ( l + 1 ) < _size ) && isHigher( _heap[ l + 1 ], _heap[ l ] ) ) {
+                c = l + 1;
+            }
+            if ( !isHigher( _heap[ c ], _heap[ pos ] ) ) {
+                return;
+            }
+            swap( pos, c );
+            pos = c;
+        }
+    }
+
+    private final boolean isHigher( final int i, final int j ) {
+        return ( _priorities[ i ] > _priorities[ j ] ) || ( ( _priorities[ i ] == _priorities[ j ] ) && ( i < j ) );
+    }
+
+    private final void swap( final int a, final int b ) {
+        final int t = _heap[ a ];
+        _heap[ a ] = _heap[ b ];
+        _heap[ b ] = t;
+        _positions[ _heap[ a ] ] = a;
+        _positions[ _heap[ b ] ] = b;
+    }
+
+    private final void up( int pos ) {
+        while ( pos > 0 ) {
+            final int parent = ( pos - 1 ) / 2;
+            if ( !isHigher( _heap[ pos ], _heap[ parent ] ) ) {
+                return;
+            }
+            swap( pos, parent );
+            pos = parent;
+        }
+    }
+}
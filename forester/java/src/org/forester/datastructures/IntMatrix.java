@@ -1,31 +1,68 @@
 
 package org.forester.datastructures;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.forester.util.ForesterUtil;
 
+/*
+ * Symmetrical matrix of ints, with labels. Only the upper triangle (including
+ * the diagonal) is stored, row by row, in one array; thus (x, y) and (y, x)
+ * refer to the same value.
+ */
 public final class IntMatrix {
 
-    private final int    _data[][];
-    private final String _labels[];
+    private final int                  _data[];
+    private final Map<String, Integer> _label_to_index;
+    private final String               _labels[];
+    private final int                  _offsets[];
 
     public IntMatrix( final int size ) {
-        _data = new int[ size ][ size ];
+        if ( ( ( ( long ) size * ( size + 1 ) ) / 2 ) > Integer.MAX_VALUE ) {
+            throw new IllegalArgumentException( "matrix size is too large: " + size );
+        }
+        _data = new int[ ( size * ( size + 1 ) ) / 2 ];
         _labels = new String[ size ];
+        _label_to_index = new HashMap<String, Integer>();
+        _offsets = new int[ size ];
+        for( int x = 0; x < size; ++x ) {
+            _offsets[ x ] = ( int ) ( ( ( ( long ) x * size ) - ( ( ( long ) x * ( x - 1 ) ) / 2 ) ) - x );
+        }
     }
 
     public IntMatrix( final List<String> labels ) {
-        final int size = labels.size();
-        _data = new int[ size ][ size ];
-        _labels = new String[ size ];
-        for( int i = 0; i < size; ++i ) {
+        this( labels.size() );
+        for( int i = 0; i < labels.size(); ++i ) {
             setLabel( i, labels.get( i ) );
         }
     }
 
+    /**
+     * Adds the values of matrix m (of the same size) to the values of this
+     * matrix.
+     */
+    final public void add( final IntMatrix m ) {
+        if ( m.size() != size() ) {
+            throw new IllegalArgumentException( "attempt to add matrix of size " + m.size() + " to matrix of size "
+                    + size() );
+        }
+        for( int i = 0; i < _data.length; ++i ) {
+            _data[ i ] += m._data[ i ];
+        }
+    }
+
     final public int get( final int x, final int y ) {
-        return _data[ x ][ y ];
+        return _data[ index( x, y ) ];
+    }
+
+    /**
+     * Returns the index of the row/column labeled label, or -1 if not found.
+     */
+    final public int getIndex( final String label ) {
+        final Integer i = _label_to_index.get( label );
+        return i == null ? -1 : i;
     }
 
     final public String getLabel( final int x ) {
@@ -43,18 +80,22 @@ public final class IntMatrix {
     }
 
     final public void inreaseByOne( final int x, final int y ) {
-        _data[ x ][ y ]++;
+        _data[ index( x, y ) ]++;
     }
 
     final public void set( final int x, final int y, final int value ) {
-        _data[ x ][ y ] = value;
+        _data[ index( x, y ) ] = value;
     }
 
     final public void setLabel( final int x, final String label ) {
         if ( label == null ) {
             throw new IllegalArgumentException( "matrix label must not be null" );
         }
+        if ( _labels[ x ] != null ) {
+            _label_to_index.remove( _labels[ x ] );
+        }
         _labels[ x ] = label;
+        _label_to_index.put( label, x );
     }
 
     final public int size() {
@@ -77,4 +118,11 @@ public final class IntMatrix {
         }
         return sb.toString();
     }
+
+    private final int index( final int x, final int y ) {
+        if ( ( x < 0 ) || ( y < 0 ) || ( x >= _labels.length ) || ( y >= _labels.length ) ) {
+            throw new IndexOutOfBoundsException( "index (" + x + ", " + y + ") is out of range" );
+        }
+        return x <= y ? _offsets[ x ] + y : _offsets[ y ] + x;
+    }
 }
@@ -30,31 +30,47 @@ package org.forester.evoinference;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.StringWriter;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
+import java.util.Random;
 import java.util.Set;
 
 import org.forester.evoinference.distance.NeighborJoining;
 import org.forester.evoinference.distance.NeighborJoiningF;
+import org.forester.evoinference.distance.NeighborJoiningOutOfCore;
 import org.forester.evoinference.distance.NeighborJoiningR;
 import org.forester.evoinference.distance.PairwiseDistanceCalculator;
+import org.forester.evoinference.distance.PairwiseDistanceCalculator.PWD_DISTANCE_METHOD;
 import org.forester.evoinference.distance.Sarray;
 import org.forester.evoinference.distance.Sset;
 import org.forester.evoinference.matrix.character.BasicCharacterStateMatrix;
+import org.forester.evoinference.matrix.character.BinaryCharacterStateMatrix;
 import org.forester.evoinference.matrix.character.CharacterStateMatrix;
 import org.forester.evoinference.matrix.character.CharacterStateMatrix.BinaryStates;
 import org.forester.evoinference.matrix.character.CharacterStateMatrix.GainLossStates;
 import org.forester.evoinference.matrix.distance.BasicSymmetricalDistanceMatrix;
 import org.forester.evoinference.matrix.distance.DistanceMatrix;
+import org.forester.evoinference.matrix.distance.TiledSymmetricalDistanceMatrix;
 import org.forester.evoinference.parsimony.DolloParsimony;
 import org.forester.evoinference.parsimony.FitchParsimony;
+import org.forester.evoinference.parsimony.IntSankoffParsimony;
+import org.forester.evoinference.parsimony.SankoffParsimony;
+import org.forester.evoinference.tools.BootstrapNeighborJoining;
+import org.forester.evoinference.tools.BootstrapResampler;
 import org.forester.io.parsers.GeneralMsaParser;
 import org.forester.io.parsers.SymmetricalDistanceMatrixParser;
 import org.forester.io.parsers.nhx.NHXParser;
+import org.forester.msa.BasicMsa;
 import org.forester.msa.Msa;
+import org.forester.msa.ResampleableMsa;
 import org.forester.phylogeny.Phylogeny;
+import org.forester.phylogeny.PhylogenyMethods;
+import org.forester.phylogeny.data.Confidence;
 import org.forester.phylogeny.factories.ParserBasedPhylogenyFactory;
 import org.forester.phylogeny.factories.PhylogenyFactory;
+import org.forester.phylogeny.iterators.PhylogenyNodeIterator;
+import org.forester.tools.ConfidenceAssessor;
 import org.forester.util.ForesterUtil;
 
 public class TestPhylogenyReconstruction {
@@ -126,6 +142,12 @@ public class TestPhylogenyReconstruction {
             return false;
         }
         System.out.println( "OK." );
+        System.out.print( "  Bootstrap Neighbor Joining: " );
+        if ( !testBootstrapNeighborJoining( test_dir ) ) {
+            System.out.println( "failed." );
+            return false;
+        }
+        System.out.println( "OK." );
         System.out.print( "  Datastructure S: " );
         if ( !testS() ) {
             System.out.println( "failed." );
@@ -138,6 +160,12 @@ public class TestPhylogenyReconstruction {
             return false;
         }
         System.out.println( "OK." );
+        System.out.print( "  Out-of-core Neighbor Joining: " );
+        if ( !testNeighborJoiningOutOfCore( test_dir ) ) {
+            System.out.println( "failed." );
+            return false;
+        }
+        System.out.println( "OK." );
         System.out.print( "  Dollo Parsimony: " );
         if ( !testDolloParsimony() ) {
             System.out.println( "failed." );
@@ -156,6 +184,24 @@ public class TestPhylogenyReconstruction {
             return false;
         }
         System.out.println( "OK." );
+        System.out.print( "  Bit-parallel parsimony: " );
+        if ( !testBitParallelParsimony() ) {
+            System.out.println( "failed." );
+            return false;
+        }
+        System.out.println( "OK." );
+        System.out.print( "  Multi-threaded parsimony: " );
+        if ( !testParallelParsimony() ) {
+            System.out.println( "failed." );
+            return false;
+        }
+        System.out.println( "OK." );
+        System.out.print( "  Sankoff parsimony on int-coded states: " );
+        if ( !testIntSankoffParsimony() ) {
+            System.out.println( "failed." );
+            return false;
+        }
+        System.out.println( "OK." );
         return true;
     }
 
@@ -455,6 +501,421 @@ public class TestPhylogenyReconstruction {
         return true;
     }
 
+    private static boolean testBitParallelParsimony() {
+        try {
+            final Phylogeny p = ParserBasedPhylogenyFactory.getInstance()
+                    .create( "((((((a,b)ab,c)ac,d)ad,(e,f)ef)af,(g,h,i)gi)ai,((j,k,l)jl,(m,n,o)mo,(p,q,r)pr)jr)root",
+                             new NHXParser() )[ 0 ];
+            final String[] ids = { "r", "q", "p", "o", "n", "m", "l", "k", "j", "i", "h", "g", "f", "e", "d", "c",
+                    "b", "a" };
+            final int chars = 150;
+            final Random r = new Random( 42 );
+            final BinaryCharacterStateMatrix m = new BinaryCharacterStateMatrix( ids.length, chars );
+            for( int i = 0; i < ids.length; ++i ) {
+                m.setIdentifier( i, ids[ i ] );
+            }
+            for( int c = 0; c < chars; ++c ) {
+                m.setCharacter( c, "c" + c );
+                for( int i = 0; i < ids.length; ++i ) {
+                    m.setState( i, c, r.nextInt( 3 ) == 0 ? BinaryStates.PRESENT : BinaryStates.ABSENT );
+                }
+            }
+            if ( m.containsUnknownStates() || ( m.getNumberOfWords() != 3 ) ) {
+                return false;
+            }
+            if ( !m.copy().equals( m ) || !m.pivot().pivot().equals( m ) ) {
+                return false;
+            }
+            for( final boolean use_last : new boolean[] { false, true } ) {
+                final FitchParsimony<BinaryStates> fitch = new FitchParsimony<BinaryStates>();
+                fitch.setUseLast( use_last );
+                fitch.setReturnGainLossMatrix( true );
+                fitch.setReturnInternalStates( true );
+                fitch.execute( p, m );
+                int cost = 0;
+                int gains = 0;
+                int losses = 0;
+                for( int c = 0; c < chars; ++c ) {
+                    final CharacterStateMatrix<BinaryStates> single = new BasicCharacterStateMatrix<BinaryStates>( ids.length,
+                                                                                                                  1 );
+                    single.setCharacter( 0, m.getCharacter( c ) );
+                    for( int i = 0; i < ids.length; ++i ) {
+                        single.setIdentifier( i, ids[ i ] );
+                        single.setState( i, 0, m.getState( i, c ) );
+                    }
+                    final FitchParsimony<BinaryStates> f = new FitchParsimony<BinaryStates>();
+                    f.setUseLast( use_last );
+                    f.setReturnGainLossMatrix( true );
+                    f.setReturnInternalStates( true );
+                    f.execute( p, single );
+                    cost += f.getCost();
+                    gains += f.getTotalGains();
+                    losses += f.getTotalLosses();
+                    for( int n = 0; n < f.getGainLossMatrix().getNumberOfIdentifiers(); ++n ) {
+                        if ( f.getGainLossMatrix().getState( n, 0 ) != fitch.getGainLossMatrix().getState( n, c ) ) {
+                            return false;
+                        }
+                    }
+                    for( int n = 0; n < f.getInternalStatesMatrix().getNumberOfIdentifiers(); ++n ) {
+                        if ( f.getInternalStatesMatrix().getState( n, 0 ) != fitch.getInternalStatesMatrix()
+                                .getState( n, c ) ) {
+                            return false;
+                        }
+                        if ( !f.getInternalStatesMatrixPriorToTraceback().getState( n, 0 )
+                                .equals( fitch.getInternalStatesMatrixPriorToTraceback().getState( n, c ) ) ) {
+                            return false;
+                        }
+                    }
+                }
+                if ( ( cost != fitch.getCost() ) || ( gains != fitch.getTotalGains() )
+                        || ( losses != fitch.getTotalLosses() ) ) {
+                    return false;
+                }
+            }
+            m.setState( "a", "c0", BinaryStates.UNKNOWN );
+            m.setState( "k", "c70", BinaryStates.UNKNOWN );
+            m.setState( "c", "c149", BinaryStates.UNKNOWN );
+            if ( !m.containsUnknownStates() || ( m.getState( "k", "c70" ) != BinaryStates.UNKNOWN ) ) {
+                return false;
+            }
+            final DolloParsimony dollo = DolloParsimony.createInstance();
+            dollo.setReturnGainLossMatrix( true );
+            dollo.setReturnInternalStates( true );
+            dollo.execute( p, m );
+            int gains = 0;
+            int losses = 0;
+            for( int c = 0; c < chars; ++c ) {
+                final CharacterStateMatrix<BinaryStates> single = new BasicCharacterStateMatrix<BinaryStates>( ids.length,
+                                                                                                              1 );
+                single.setCharacter( 0, m.getCharacter( c ) );
+                for( int i = 0; i < ids.length; ++i ) {
+                    single.setIdentifier( i, ids[ i ] );
+                    single.setState( i, 0, m.getState( i, c ) );
+                }
+                final DolloParsimony d = DolloParsimony.createInstance();
+                d.setReturnGainLossMatrix( true );
+                d.setReturnInternalStates( true );
+                d.execute( p, single );
+                gains += d.getTotalGains();
+                losses += d.getTotalLosses();
+                for( int n = 0; n < d.getGainLossMatrix().getNumberOfIdentifiers(); ++n ) {
+                    if ( d.getGainLossMatrix().getState( n, 0 ) != dollo.getGainLossMatrix().getState( n, c ) ) {
+                        return false;
+                    }
+                }
+                for( int n = 0; n < d.getInternalStatesMatrix().getNumberOfIdentifiers(); ++n ) {
+                    if ( d.getInternalStatesMatrix().getState( n, 0 ) != dollo.getInternalStatesMatrix().getState( n, c ) ) {
+                        return false;
+                    }
+                }
+            }
+            if ( ( gains != dollo.getTotalGains() ) || ( losses != dollo.getTotalLosses() ) ) {
+                return false;
+            }
+            if ( dollo.getGainLossMatrix().getState( "a", "c0" ) != null ) {
+                return false;
+            }
+        }
+        catch ( final Exception e ) {
+            e.printStackTrace( System.out );
+            return false;
+        }
+        return true;
+    }
+
+    private static boolean testIntSankoffParsimony() {
+        try {
+            final PhylogenyFactory factory = ParserBasedPhylogenyFactory.getInstance();
+            final Phylogeny p1 = factory.create( "((a,b)ab,(c,d)cd)root", new NHXParser() )[ 0 ];
+            final List<BinaryStates> binary = Arrays.asList( BinaryStates.ABSENT, BinaryStates.PRESENT );
+            final CharacterStateMatrix<BinaryStates> m1 = new BasicCharacterStateMatrix<BinaryStates>( 4, 2 );
+            m1.setIdentifier( 0, "a" );
+            m1.setIdentifier( 1, "b" );
+            m1.setIdentifier( 2, "c" );
+            m1.setIdentifier( 3, "d" );
+            m1.setCharacter( 0, "x" );
+            m1.setCharacter( 1, "y" );
+            m1.setState( "a", "x", BinaryStates.PRESENT );
+            m1.setState( "b", "x", BinaryStates.PRESENT );
+            m1.setState( "c", "x", BinaryStates.ABSENT );
+            m1.setState( "d", "x", BinaryStates.ABSENT );
+            m1.setState( "a", "y", BinaryStates.PRESENT );
+            m1.setState( "b", "y", BinaryStates.PRESENT );
+            m1.setState( "c", "y", BinaryStates.ABSENT );
+            // Irreversible: gains cost 1, losses 100.
+            final IntSankoffParsimony sankoff1 = IntSankoffParsimony.createInstance( new int[][] { { 0, 1 },
+                    { 100, 0 } } );
+            sankoff1.setReturnInternalStates( true );
+            sankoff1.setReturnGainLossMatrix( true );
+            sankoff1.execute( p1, m1, binary );
+            if ( ( sankoff1.getCost() != 2 ) || ( sankoff1.getTotalChanges() != 2 )
+                    || ( sankoff1.getTotalUnchanged() != 12 ) ) {
+                return false;
+            }
+            final CharacterStateMatrix<BinaryStates> i1 = sankoff1.getInternalStatesMatrix( binary );
+            if ( ( i1.getState( "ab", "x" ) != BinaryStates.PRESENT )
+                    || ( i1.getState( "cd", "x" ) != BinaryStates.ABSENT )
+                    || ( i1.getState( "root", "x" ) != BinaryStates.ABSENT )
+                    || ( i1.getState( "cd", "y" ) != BinaryStates.ABSENT ) ) {
+                return false;
+            }
+            if ( sankoff1.getInternalStatesMatrix().getState( "ab", "y" ) != 1 ) {
+                return false;
+            }
+            final CharacterStateMatrix<GainLossStates> gl1 = sankoff1.getGainLossMatrix();
+            if ( ( gl1.getState( "ab", "x" ) != GainLossStates.GAIN )
+                    || ( gl1.getState( "a", "x" ) != GainLossStates.UNCHANGED_PRESENT )
+                    || ( gl1.getState( "root", "x" ) != GainLossStates.UNCHANGED_ABSENT )
+                    || ( gl1.getState( "d", "y" ) != GainLossStates.UNCHANGED_ABSENT ) ) {
+                return false;
+            }
+            // Unweighted, on a bifurcating tree: same cost as Fitch parsimony.
+            final Phylogeny p2 = factory.create( "((((a,b),(c,d)),(e,(f,g))),((h,(i,j)),(k,l)))", new NHXParser() )[ 0 ];
+            p2.setRooted( true );
+            final String[] ids = { "a", "b", "c", "d", "e", "f", "g", "h", "i", "j", "k", "l" };
+            final List<String> dna = Arrays.asList( "A", "C", "G", "T" );
+            final int chars = 200;
+            final Random r = new Random( 11 );
+            final CharacterStateMatrix<String> m2 = new BasicCharacterStateMatrix<String>( ids.length, chars );
+            final int[][] coded = new int[ ids.length ][ chars ];
+            for( int i = 0; i < ids.length; ++i ) {
+                m2.setIdentifier( i, ids[ i ] );
+                for( int c = 0; c < chars; ++c ) {
+                    coded[ i ][ c ] = r.nextInt( dna.size() );
+                    m2.setState( i, c, dna.get( coded[ i ][ c ] ) );
+                }
+            }
+            for( int c = 0; c < chars; ++c ) {
+                m2.setCharacter( c, String.valueOf( c ) );
+            }
+            final FitchParsimony<String> fitch = new FitchParsimony<String>();
+            fitch.execute( p2, m2 );
+            final IntSankoffParsimony sankoff2 = IntSankoffParsimony.createInstance( IntSankoffParsimony
+                    .createUnitStepMatrix( 4 ) );
+            sankoff2.setReturnInternalStates( true );
+            sankoff2.execute( p2, ids, coded );
+            if ( ( sankoff2.getCost() != fitch.getCost() ) || ( sankoff2.getTotalChanges() != fitch.getCost() ) ) {
+                return false;
+            }
+            final IntSankoffParsimony sankoff3 = IntSankoffParsimony.createInstance( IntSankoffParsimony
+                    .createUnitStepMatrix( 4 ) );
+            sankoff3.setReturnInternalStates( true );
+            sankoff3.setNumberOfThreads( 3 );
+            sankoff3.execute( p2, m2, dna );
+            if ( ( sankoff3.getCost() != sankoff2.getCost() )
+                    || !sankoff3.getInternalStatesMatrix().equals( sankoff2.getInternalStatesMatrix() ) ) {
+                return false;
+            }
+            final IntSankoffParsimony sankoff4 = IntSankoffParsimony.createInstance( IntSankoffParsimony
+                    .createUnitStepMatrix( 4 ) );
+            final IntSankoffParsimony sankoff5 = IntSankoffParsimony.createInstance( IntSankoffParsimony
+                    .createUnitStepMatrix( 4 ) );
+            sankoff5.setNumberOfThreads( 3 );
+            for( final IntSankoffParsimony sankoff : new IntSankoffParsimony[] { sankoff4, sankoff5 } ) {
+                sankoff.setRandomize( true );
+                sankoff.setRandomNumberSeed( 3 );
+                sankoff.setReturnInternalStates( true );
+                sankoff.execute( p2, m2, dna );
+            }
+            if ( ( sankoff4.getCost() != sankoff2.getCost() )
+                    || !sankoff4.getInternalStatesMatrix( dna ).equals( sankoff5.getInternalStatesMatrix( dna ) ) ) {
+                return false;
+            }
+            try {
+                IntSankoffParsimony.createInstance( new int[][] { { 0, 1 }, { -1, 0 } } );
+                return false;
+            }
+            catch ( final IllegalArgumentException e ) {
+                // Expected.
+            }
+            try {
+                IntSankoffParsimony.createInstance( new int[][] { { 0, 1 }, { 1 } } );
+                return false;
+            }
+            catch ( final IllegalArgumentException e ) {
+                // Expected.
+            }
+        }
+        catch ( final Exception e ) {
+            e.printStackTrace( System.out );
+            return false;
+        }
+        return true;
+    }
+
+    private static boolean testParallelParsimony() {
+        try {
+            final Phylogeny p = ParserBasedPhylogenyFactory.getInstance()
+                    .create( "((((((a,b)ab,c)ac,d)ad,(e,f)ef)af,(g,h,i)gi)ai,((j,k,l)jl,(m,n,o)mo,(p,q,r)pr)jr)root",
+                             new NHXParser() )[ 0 ];
+            final String[] ids = { "r", "q", "p", "o", "n", "m", "l", "k", "j", "i", "h", "g", "f", "e", "d", "c",
+                    "b", "a" };
+            final String[] dna = { "A", "C", "G", "T" };
+            final int chars = 333;
+            final Random r = new Random( 7 );
+            final BinaryCharacterStateMatrix binary = new BinaryCharacterStateMatrix( ids.length, chars );
+            final CharacterStateMatrix<BinaryStates> basic = new BasicCharacterStateMatrix<BinaryStates>( ids.length,
+                                                                                                         chars );
+            final CharacterStateMatrix<String> nucleotides = new BasicCharacterStateMatrix<String>( ids.length, chars );
+            for( int i = 0; i < ids.length; ++i ) {
+                binary.setIdentifier( i, ids[ i ] );
+                basic.setIdentifier( i, ids[ i ] );
+                nucleotides.setIdentifier( i, ids[ i ] );
+            }
+            for( int c = 0; c < chars; ++c ) {
+                binary.setCharacter( c, "c" + c );
+                basic.setCharacter( c, "c" + c );
+                nucleotides.setCharacter( c, "c" + c );
+                for( int i = 0; i < ids.length; ++i ) {
+                    final BinaryStates state = r.nextBoolean() ? BinaryStates.PRESENT : BinaryStates.ABSENT;
+                    binary.setState( i, c, state );
+                    basic.setState( i, c, state );
+                    nucleotides.setState( i, c, dna[ r.nextInt( dna.length ) ] );
+                }
+            }
+            final DolloParsimony dollo_1 = DolloParsimony.createInstance();
+            final DolloParsimony dollo_4 = DolloParsimony.createInstance();
+            dollo_4.setNumberOfThreads( 4 );
+            for( final DolloParsimony dollo : new DolloParsimony[] { dollo_1, dollo_4 } ) {
+                dollo.setReturnGainLossMatrix( true );
+                dollo.setReturnInternalStates( true );
+                dollo.execute( p, binary );
+            }
+            if ( !dollo_1.getGainLossMatrix().equals( dollo_4.getGainLossMatrix() )
+                    || !dollo_1.getInternalStatesMatrix().equals( dollo_4.getInternalStatesMatrix() ) ) {
+                return false;
+            }
+            if ( ( dollo_1.getTotalGains() != dollo_4.getTotalGains() )
+                    || ( dollo_1.getTotalLosses() != dollo_4.getTotalLosses() )
+                    || ( dollo_1.getTotalUnchanged() != dollo_4.getTotalUnchanged() ) ) {
+                return false;
+            }
+            final List<CharacterStateMatrix<BinaryStates>> matrices = Arrays.asList( binary, basic );
+            for( final CharacterStateMatrix<BinaryStates> m : matrices ) {
+                for( final boolean randomize : new boolean[] { false, true } ) {
+                    final FitchParsimony<BinaryStates> fitch_1 = new FitchParsimony<BinaryStates>();
+                    final FitchParsimony<BinaryStates> fitch_4 = new FitchParsimony<BinaryStates>();
+                    fitch_4.setNumberOfThreads( 4 );
+                    final List<FitchParsimony<BinaryStates>> fitches = Arrays.asList( fitch_1, fitch_4 );
+                    for( final FitchParsimony<BinaryStates> fitch : fitches ) {
+                        fitch.setRandomize( randomize );
+                        if ( randomize ) {
+                            fitch.setRandomNumberSeed( 21 );
+                        }
+                        fitch.setReturnGainLossMatrix( true );
+                        fitch.setReturnInternalStates( true );
+                        fitch.execute( p, m );
+                    }
+                    if ( !fitch_1.getGainLossMatrix().equals( fitch_4.getGainLossMatrix() )
+                            || !fitch_1.getInternalStatesMatrix().equals( fitch_4.getInternalStatesMatrix() ) ) {
+                        return false;
+                    }
+                    if ( ( fitch_1.getCost() != fitch_4.getCost() )
+                            || ( fitch_1.getTotalGains() != fitch_4.getTotalGains() )
+                            || ( fitch_1.getTotalLosses() != fitch_4.getTotalLosses() )
+                            || ( fitch_1.getTotalUnchanged() != fitch_4.getTotalUnchanged() ) ) {
+                        return false;
+                    }
+                }
+            }
+            final SankoffParsimony<String> sankoff_1 = new SankoffParsimony<String>();
+            final SankoffParsimony<String> sankoff_4 = new SankoffParsimony<String>();
+            sankoff_4.setNumberOfThreads( 4 );
+            final List<SankoffParsimony<String>> sankoffs = Arrays.asList( sankoff_1, sankoff_4 );
+            for( final SankoffParsimony<String> sankoff : sankoffs ) {
+                sankoff.setRandomize( true );
+                sankoff.setRandomNumberSeed( 21 );
+                sankoff.setReturnInternalStates( true );
+                sankoff.execute( p, nucleotides );
+            }
+            if ( !sankoff_1.getInternalStatesMatrix().equals( sankoff_4.getInternalStatesMatrix() )
+                    || ( sankoff_1.getCost() != sankoff_4.getCost() ) ) {
+                return false;
+            }
+            try {
+                dollo_1.setNumberOfThreads( 0 );
+                return false;
+            }
+            catch ( final IllegalArgumentException e ) {
+                // Expected.
+            }
+        }
+        catch ( final Exception e ) {
+            e.printStackTrace( System.out );
+            return false;
+        }
+        return true;
+    }
+
+    private static boolean testBootstrapNeighborJoining( final File test_dir ) {
+        try {
+            final Msa msa = GeneralMsaParser.parse( new FileInputStream( test_dir + ForesterUtil.FILE_SEPARATOR
+                                                                         + "bcl.aln" ) );
+            final int n = 10;
+            final long seed = 7;
+            final int[][] positions = BootstrapResampler.createResampledColumnPositions( msa.getLength(), n, seed );
+            final int[][] weights = BootstrapResampler.createResampledColumnWeights( msa.getLength(), n, seed );
+            final Msa[] resampled = BootstrapResampler.resample( msa, n, seed );
+            final ResampleableMsa resampleable_msa = new ResampleableMsa( ( BasicMsa ) msa );
+            final Phylogeny[] eval_phys = new Phylogeny[ n ];
+            for( int i = 0; i < n; ++i ) {
+                int sum = 0;
+                for( final int w : weights[ i ] ) {
+                    sum += w;
+                }
+                if ( sum != msa.getLength() ) {
+                    return false;
+                }
+                final BasicSymmetricalDistanceMatrix d0 = PairwiseDistanceCalculator.calcKimuraDistances( resampled[ i ] );
+                final BasicSymmetricalDistanceMatrix d1 = PairwiseDistanceCalculator
+                        .calcDistances( msa, PWD_DISTANCE_METHOD.KIMURA_DISTANCE, weights[ i ] );
+                for( int x = 0; x < d0.getSize(); ++x ) {
+                    for( int y = 0; y < x; ++y ) {
+                        if ( isUnequal( d0.getValue( x, y ), d1.getValue( x, y ) ) ) {
+                            return false;
+                        }
+                    }
+                }
+                resampleable_msa.resample( positions[ i ] );
+                eval_phys[ i ] = NeighborJoiningF.createInstance()
+                        .execute( PairwiseDistanceCalculator.calcKimuraDistances( resampleable_msa ) );
+            }
+            final Phylogeny serial = NeighborJoiningF.createInstance()
+                    .execute( PairwiseDistanceCalculator.calcKimuraDistances( msa ) );
+            ConfidenceAssessor.evaluate( "bootstrap", eval_phys, serial, true, 1 );
+            final Phylogeny parallel = BootstrapNeighborJoining.createInstance( msa,
+                                                                                PWD_DISTANCE_METHOD.KIMURA_DISTANCE,
+                                                                                3 ).execute( n, seed );
+            final PhylogenyNodeIterator serial_it = serial.iteratorPostorder();
+            final PhylogenyNodeIterator parallel_it = parallel.iteratorPostorder();
+            int confidences = 0;
+            while ( serial_it.hasNext() ) {
+                if ( !parallel_it.hasNext() ) {
+                    return false;
+                }
+                final List<Confidence> c0 = serial_it.next().getBranchData().getConfidences();
+                final List<Confidence> c1 = parallel_it.next().getBranchData().getConfidences();
+                if ( c0.size() != c1.size() ) {
+                    return false;
+                }
+                if ( !c0.isEmpty() ) {
+                    if ( isUnequal( c0.get( 0 ).getValue(), c1.get( 0 ).getValue() ) ) {
+                        return false;
+                    }
+                    ++confidences;
+                }
+            }
+            if ( confidences < 1 ) {
+                return false;
+            }
+        }
+        catch ( final Exception e ) {
+            e.printStackTrace( System.out );
+            return false;
+        }
+        return true;
+    }
+
     private static boolean testDolloParsimony() {
         try {
             final BinaryStates PRESENT = BinaryStates.PRESENT;
@@ -1833,10 +2294,10 @@ public class TestPhylogenyReconstruction {
             if ( fitch9.getCost() != 2 ) {
                 return false;
             }
-            if ( fitch9.getTotalLosses() != 1 ) {
+            if ( fitch9.getTotalLosses() != 2 ) {
                 return false;
             }
-            if ( fitch9.getTotalGains() != 1 ) {
+            if ( fitch9.getTotalGains() != 0 ) {
                 return false;
             }
             if ( fitch9.getTotalUnchanged() != 5 ) {
@@ -2251,6 +2712,75 @@ public class TestPhylogenyReconstruction {
         return true;
     }
 
+    private static boolean testNeighborJoiningOutOfCore( final File test_dir ) {
+        try {
+            final Msa msa = GeneralMsaParser.parse( new FileInputStream( test_dir + ForesterUtil.FILE_SEPARATOR
+                                                                         + "bcl.aln" ) );
+            final BasicSymmetricalDistanceMatrix d0 = PairwiseDistanceCalculator.calcKimuraDistances( msa );
+            final File f0 = File.createTempFile( "forester_test_", ".dm" );
+            f0.deleteOnExit();
+            final TiledSymmetricalDistanceMatrix t0 = new TiledSymmetricalDistanceMatrix( msa.getNumberOfSequences(),
+                                                                                          f0,
+                                                                                          16,
+                                                                                          4 );
+            PairwiseDistanceCalculator.calcDistances( msa, PWD_DISTANCE_METHOD.KIMURA_DISTANCE, t0 );
+            for( int x = 0; x < d0.getSize(); ++x ) {
+                if ( !t0.getIdentifier( x ).equals( d0.getIdentifier( x ) ) ) {
+                    return false;
+                }
+                for( int y = 0; y < d0.getSize(); ++y ) {
+                    if ( Math.abs( d0.getValue( x, y ) - t0.getValue( y, x ) ) > 1E-6 ) {
+                        return false;
+                    }
+                }
+            }
+            final Phylogeny p0 = NeighborJoiningOutOfCore.createInstance().execute( t0 );
+            if ( p0.getNumberOfExternalNodes() != msa.getNumberOfSequences() ) {
+                return false;
+            }
+            t0.close();
+            f0.delete();
+            // Few sorted distances per row and few cached tiles, to force
+            // reading from disk.
+            final int size = 70;
+            final BasicSymmetricalDistanceMatrix d1 = new BasicSymmetricalDistanceMatrix( size );
+            d1.randomize( 11 );
+            final File f1 = File.createTempFile( "forester_test_", ".dm" );
+            f1.deleteOnExit();
+            final TiledSymmetricalDistanceMatrix t1 = new TiledSymmetricalDistanceMatrix( size, f1, 8, 3 );
+            for( int x = 0; x < size; ++x ) {
+                d1.setIdentifier( x, "s" + x );
+                t1.setIdentifier( x, "s" + x );
+                for( int y = 0; y < x; ++y ) {
+                    t1.setValue( x, y, d1.getValue( x, y ) );
+                }
+            }
+            final Phylogeny p1 = NeighborJoiningF.createInstance().execute( d1 );
+            final Phylogeny p2 = NeighborJoiningOutOfCore.createInstance( 5, 0 ).execute( t1 );
+            t1.close();
+            f1.delete();
+            // The last three nodes can be joined in any order (all have the
+            // same q value), thus only compare path lengths between leaves.
+            if ( p2.getNumberOfExternalNodes() != size ) {
+                return false;
+            }
+            for( int x = 0; x < size; ++x ) {
+                for( int y = 0; y < x; ++y ) {
+                    final double l1 = PhylogenyMethods.calculateDistance( p1.getNode( "s" + x ), p1.getNode( "s" + y ) );
+                    final double l2 = PhylogenyMethods.calculateDistance( p2.getNode( "s" + x ), p2.getNode( "s" + y ) );
+                    if ( Math.abs( l1 - l2 ) > 1E-4 ) {
+                        return false;
+                    }
+                }
+            }
+        }
+        catch ( final Exception e ) {
+            e.printStackTrace( System.out );
+            return false;
+        }
+        return true;
+    }
+
     private static boolean testS() {
         try {
             final Sset s0 = new Sset();
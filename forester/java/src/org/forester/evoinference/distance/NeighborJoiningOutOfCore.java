@@ -0,0 +1,367 @@
+// $Id:
+// FORESTER -- software libraries and applications
+// for evolutionary biology research and applications.
+//
+// Copyright (C) 2014 Christian M. Zmasek
+// Copyright (C) 2014 Sanford-Burnham Medical Research Institute
+// All rights reserved
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA
+//
+// WWW: https://sites.google.com/site/cmzmasek/home/software/forester
+
+package org.forester.evoinference.distance;
+
+import java.math.RoundingMode;
+import java.text.DecimalFormat;
+
+import org.forester.evoinference.matrix.distance.TiledSymmetricalDistanceMatrix;
+import org.forester.phylogeny.Phylogeny;
+import org.forester.phylogeny.PhylogenyNode;
+
+/*
+ * Neighbor joining on a (disk based) TiledSymmetricalDistanceMatrix, for
+ * numbers of sequences for which the distance matrix does not fit into
+ * memory.
+ *
+ * The search for the pair to join follows RapidNJ (Simonsen, Mailund and
+ * Pedersen, 2008): for each row, the (up to) max_sorted_per_row smallest
+ * distances are kept in memory, sorted, and each row is only searched as far
+ * as the upper bound of the net divergences allows. Only rows for which this
+ * bound is not reached within the in-memory part are read from disk (and
+ * their in-memory part is then rebuilt). Joining two nodes reads their two
+ * rows and writes the new row into the slot of the first one. Thus, memory
+ * use is linear in the number of sequences (times max_sorted_per_row), and
+ * each iteration reads O(n) matrix values in the common case.
+ *
+ * !matrix values will be changed!
+ */
+public final class NeighborJoiningOutOfCore {
+
+    public final static int                DEFAULT_MAX_SORTED_PER_ROW = 64;
+    private boolean[]                      _alive;
+    private int[]                          _birth;
+    private TiledSymmetricalDistanceMatrix _d;
+    private final DecimalFormat            _df;
+    private int                            _min_i;
+    private int                            _min_j;
+    private final int                      _max_sorted_per_row;
+    private int                            _n;
+    private PhylogenyNode[]                _nodes;
+    private double[]                       _r;
+    private float[][]                      _sorted_d;
+    private int[][]                        _sorted_j;
+    private boolean[]                      _sorted_complete;
+    private int[]                          _sorted_time;
+    private int                            _time;
+    private float[]                        _row_d;
+    private int[]                          _row_j;
+
+    private NeighborJoiningOutOfCore( final int max_sorted_per_row, final int maximum_fraction_digits_for_distances ) {
+        if ( max_sorted_per_row < 1 ) {
+            throw new IllegalArgumentException( "maximal number of sorted distances per row is out of range: "
+                    + max_sorted_per_row );
+        }
+        _max_sorted_per_row = max_sorted_per_row;
+        if ( maximum_fraction_digits_for_distances > 0 ) {
+            if ( maximum_fraction_digits_for_distances > 9 ) {
+                throw new IllegalArgumentException( "maximum fraction digits for distances is out of range: "
+                        + maximum_fraction_digits_for_distances );
+            }
+            _df = new DecimalFormat();
+            _df.setMaximumFractionDigits( maximum_fraction_digits_for_distances );
+            _df.setRoundingMode( RoundingMode.HALF_UP );
+        }
+        else {
+            _df = null;
+        }
+    }
+
+    public final Phylogeny execute( final TiledSymmetricalDistanceMatrix distance ) {
+        reset( distance );
+        while ( _n > 2 ) {
+            findMinQ();
+            join( _min_i, _min_j );
+            --_n;
+        }
+        int a = -1;
+        int b = -1;
+        for( int i = 0; i < _alive.length; ++i ) {
+            if ( _alive[ i ] ) {
+                if ( a < 0 ) {
+                    a = i;
+                }
+                else {
+                    b = i;
+                }
+            }
+        }
+        final PhylogenyNode root = new PhylogenyNode();
+        if ( b < 0 ) {
+            root.addAsChild( _nodes[ a ] );
+        }
+        else {
+            final double d = format( _d.getFloatValue( a, b ) / 2.0 );
+            _nodes[ a ].setDistanceToParent( d );
+            _nodes[ b ].setDistanceToParent( d );
+            root.addAsChild( _nodes[ a ] );
+            root.addAsChild( _nodes[ b ] );
+        }
+        final Phylogeny phylogeny = new Phylogeny();
+        phylogeny.setRoot( root );
+        phylogeny.setRooted( false );
+        clear();
+        return phylogeny;
+    }
+
+    // Sorts the first count entries of row, keeping the smallest
+    // _max_sorted_per_row of them for row i.
+    private final void buildSortedRow( final int i, final int count ) {
+        final int k = Math.min( count, _max_sorted_per_row );
+        final float[] heap_d = new float[ k ];
+        final int[] heap_j = new int[ k ];
+        // Max-heap of the k smallest distances seen so far.
+        int size = 0;
+        for( int x = 0; x < count; ++x ) {
+            final float d = _row_d[ x ];
+            if ( size < k ) {
+                int c = size++;
+                while ( c > 0 ) {
+                    final int p = ( c - 1 ) / 2;
+                    if ( heap_d[ p ] >= d ) {
+                        break;
+                    }
+                    heap_d[ c ] = heap_d[ p ];
+                    heap_j[ c ] = heap_j[ p ];
+                    c = p;
+                }
+                heap_d[ c ] = d;
+                heap_j[ c ] = _row_j[ x ];
+            }
+            else if ( d < heap_d[ 0 ] ) {
+                siftDown( heap_d, heap_j, k, d, _row_j[ x ] );
+            }
+        }
+        // Heap to ascending order.
+        for( int end = k - 1; end > 0; --end ) {
+            final float d = heap_d[ end ];
+            final int j = heap_j[ end ];
+            heap_d[ end ] = heap_d[ 0 ];
+            heap_j[ end ] = heap_j[ 0 ];
+            siftDown( heap_d, heap_j, end, d, j );
+        }
+        _sorted_d[ i ] = heap_d;
+        _sorted_j[ i ] = heap_j;
+        _sorted_complete[ i ] = count <= k;
+        _sorted_time[ i ] = _time;
+    }
+
+    private final void clear() {
+        _d = null;
+        _alive = null;
+        _birth = null;
+        _nodes = null;
+        _r = null;
+        _sorted_d = null;
+        _sorted_j = null;
+        _sorted_complete = null;
+        _sorted_time = null;
+        _row_d = null;
+        _row_j = null;
+    }
+
+    private final void findMinQ() {
+        double r_max = -Double.MAX_VALUE;
+        for( int i = 0; i < _alive.length; ++i ) {
+            if ( _alive[ i ] && ( _r[ i ] > r_max ) ) {
+                r_max = _r[ i ];
+            }
+        }
+        final double n_minus_2 = _n - 2;
+        double min_q = Double.MAX_VALUE;
+        _min_i = -1;
+        _min_j = -1;
+        for( int i = 0; i < _alive.length; ++i ) {
+            if ( !_alive[ i ] ) {
+                continue;
+            }
+            final double r_i = _r[ i ];
+            final double bound_r = ( r_i + r_max ) / n_minus_2;
+            final float[] sorted_d = _sorted_d[ i ];
+            final int[] sorted_j = _sorted_j[ i ];
+            final int time = _sorted_time[ i ];
+            boolean bounded = false;
+            for( int x = 0; x < sorted_d.length; ++x ) {
+                final double d = sorted_d[ x ];
+                if ( ( d - bound_r ) > min_q ) {
+                    bounded = true;
+                    break;
+                }
+                final int j = sorted_j[ x ];
+                // Entries for joined (or replaced) nodes are outdated.
+                if ( _alive[ j ] && ( _birth[ j ] <= time ) ) {
+                    final double q = d - ( ( r_i + _r[ j ] ) / n_minus_2 );
+                    if ( q < min_q ) {
+                        min_q = q;
+                        _min_i = i;
+                        _min_j = j;
+                    }
+                }
+            }
+            if ( !bounded && !_sorted_complete[ i ] ) {
+                // Distances not kept in memory might still give a smaller q.
+                final int count = readRow( i );
+                for( int x = 0; x < count; ++x ) {
+                    final double q = _row_d[ x ] - ( ( r_i + _r[ _row_j[ x ] ] ) / n_minus_2 );
+                    if ( q < min_q ) {
+                        min_q = q;
+                        _min_i = i;
+                        _min_j = _row_j[ x ];
+                    }
+                }
+                buildSortedRow( i, count );
+            }
+        }
+        if ( _min_i > _min_j ) {
+            final int t = _min_i;
+            _min_i = _min_j;
+            _min_j = t;
+        }
+    }
+
+    private final double format( final double d ) {
+        if ( _df == null ) {
+            return d;
+        }
+        return Double.parseDouble( _df.format( d ) );
+    }
+
+    // The new node replaces a (in slot a), b is removed.
+    private final void join( final int a, final int b ) {
+        final float d_ab = _d.getFloatValue( a, b );
+        final double d1 = ( d_ab / 2.0 ) + ( ( _r[ a ] - _r[ b ] ) / ( 2.0 * ( _n - 2 ) ) );
+        final double d2 = d_ab - d1;
+        _nodes[ a ].setDistanceToParent( format( d1 ) );
+        _nodes[ b ].setDistanceToParent( format( d2 ) );
+        final PhylogenyNode node = new PhylogenyNode();
+        node.addAsChild( _nodes[ a ] );
+        node.addAsChild( _nodes[ b ] );
+        _nodes[ a ] = node;
+        _nodes[ b ] = null;
+        _alive[ b ] = false;
+        int count = 0;
+        double r_u = 0;
+        for( int j = 0; j < _alive.length; ++j ) {
+            if ( _alive[ j ] && ( j != a ) ) {
+                final float d_aj = _d.getFloatValue( a, j );
+                final float d_bj = _d.getFloatValue( b, j );
+                final float d_uj = ( ( d_aj + d_bj ) - d_ab ) / 2;
+                _d.setFloatValue( a, j, d_uj );
+                _r[ j ] += d_uj - d_aj - d_bj;
+                r_u += d_uj;
+                _row_d[ count ] = d_uj;
+                _row_j[ count ] = j;
+                ++count;
+            }
+        }
+        _r[ a ] = r_u;
+        _r[ b ] = 0;
+        _sorted_d[ b ] = null;
+        _sorted_j[ b ] = null;
+        ++_time;
+        _birth[ a ] = _time;
+        buildSortedRow( a, count );
+    }
+
+    // Reads the distances from i to all other present nodes into _row_d and
+    // _row_j, and returns their number.
+    private final int readRow( final int i ) {
+        int count = 0;
+        for( int j = 0; j < _alive.length; ++j ) {
+            if ( _alive[ j ] && ( j != i ) ) {
+                _row_d[ count ] = _d.getFloatValue( i, j );
+                _row_j[ count ] = j;
+                ++count;
+            }
+        }
+        return count;
+    }
+
+    private final void reset( final TiledSymmetricalDistanceMatrix distances ) {
+        final int size = distances.getSize();
+        _d = distances;
+        _n = size;
+        _time = 0;
+        _alive = new boolean[ size ];
+        _birth = new int[ size ];
+        _nodes = new PhylogenyNode[ size ];
+        _r = new double[ size ];
+        _sorted_d = new float[ size ][];
+        _sorted_j = new int[ size ][];
+        _sorted_complete = new boolean[ size ];
+        _sorted_time = new int[ size ];
+        _row_d = new float[ size ];
+        _row_j = new int[ size ];
+        for( int i = 0; i < size; ++i ) {
+            _alive[ i ] = true;
+            _nodes[ i ] = new PhylogenyNode();
+            final String id = distances.getIdentifier( i );
+            _nodes[ i ].setName( id != null ? id : Integer.toString( i ) );
+        }
+        for( int i = 0; i < size; ++i ) {
+            final int count = readRow( i );
+            double r = 0;
+            for( int x = 0; x < count; ++x ) {
+                r += _row_d[ x ];
+            }
+            _r[ i ] = r;
+            buildSortedRow( i, count );
+        }
+    }
+
+    private final static void siftDown( final float[] heap_d,
+                                        final int[] heap_j,
+                                        final int size,
+                                        final float d,
+                                        final int j ) {
+        int c = 0;
+        while ( true ) {
+            int l = ( 2 * c ) + 1;
+            if ( l >= size ) {
+                break;
+            }
+            if ( ( ( l + 1 ) < size ) && ( heap_d[ l + 1 ] > heap_d[ l ] ) ) {
+                ++l;
+            }
+            if ( heap_d[ l ] <= d ) {
+                break;
+            }
+            heap_d[ c ] = heap_d[ l ];
+            heap_j[ c ] = heap_j[ l ];
+            c = l;
+        }
+        heap_d[ c ] = d;
+        heap_j[ c ] = j;
+    }
+
+    public final static NeighborJoiningOutOfCore createInstance() {
+        return new NeighborJoiningOutOfCore( DEFAULT_MAX_SORTED_PER_ROW, 0 );
+    }
+
+    public final static NeighborJoiningOutOfCore createInstance( final int max_sorted_per_row,
+                                                                 final int maximum_fraction_digits_for_distances ) {
+        return new NeighborJoiningOutOfCore( max_sorted_per_row, maximum_fraction_digits_for_distances );
+    }
+}
@@ -26,6 +26,7 @@
 package org.forester.evoinference.distance;
 
 import org.forester.evoinference.matrix.distance.BasicSymmetricalDistanceMatrix;
+import org.forester.evoinference.matrix.distance.TiledSymmetricalDistanceMatrix;
 import org.forester.msa.Msa;
 
 public final class PairwiseDistanceCalculator {
@@ -33,13 +34,58 @@ public final class PairwiseDistanceCalculator {
     public static final double DEFAULT_VALUE_FOR_TOO_LARGE_DISTANCE_FOR_KIMURA_FORMULA = 10; // Felsenstein uses -1
     private final Msa          _msa;
     private final double       _value_for_too_large_distance_for_kimura_formula;
+    private final int[]        _columns;
+    private final int[]        _column_weights;
+    private final int          _weight_sum;
 
     private PairwiseDistanceCalculator( final Msa msa, final double value_for_too_large_distance_for_kimura_formula ) {
         _msa = msa;
         _value_for_too_large_distance_for_kimura_formula = value_for_too_large_distance_for_kimura_formula;
+        _columns = null;
+        _column_weights = null;
+        _weight_sum = msa.getLength();
+    }
+
+    private PairwiseDistanceCalculator( final Msa msa,
+                                        final double value_for_too_large_distance_for_kimura_formula,
+                                        final int[] column_weights ) {
+        if ( column_weights.length != msa.getLength() ) {
+            throw new IllegalArgumentException( "illegal attempt to use " + column_weights.length
+                                                + " column weights on msa of length " + msa.getLength() );
+        }
+        _msa = msa;
+        _value_for_too_large_distance_for_kimura_formula = value_for_too_large_distance_for_kimura_formula;
+        int non_zero = 0;
+        int sum = 0;
+        for( final int w : column_weights ) {
+            if ( w < 0 ) {
+                throw new IllegalArgumentException( "negative column weight" );
+            }
+            if ( w > 0 ) {
+                ++non_zero;
+                sum += w;
+            }
+        }
+        if ( sum < 1 ) {
+            throw new IllegalArgumentException( "sum of column weights is zero" );
+        }
+        _columns = new int[ non_zero ];
+        _column_weights = new int[ non_zero ];
+        int i = 0;
+        for( int col = 0; col < column_weights.length; ++col ) {
+            if ( column_weights[ col ] > 0 ) {
+                _columns[ i ] = col;
+                _column_weights[ i ] = column_weights[ col ];
+                ++i;
+            }
+        }
+        _weight_sum = sum;
     }
 
     private double calcFractionalDissimilarity( final int row_1, final int row_2 ) {
+        if ( _columns != null ) {
+            return calcWeightedFractionalDissimilarity( row_1, row_2 );
+        }
         final int length = _msa.getLength();
         int nd = 0;
         for( int col = 0; col < length; ++col ) {
@@ -50,6 +96,21 @@ public final class PairwiseDistanceCalculator {
         return ( double ) nd / length;
     }
 
+    // Only columns with a non-zero weight are visited; a column with weight w
+    // counts as if it were present w times (as in a bootstrap resampled msa).
+    private double calcWeightedFractionalDissimilarity( final int row_1, final int row_2 ) {
+        final int[] columns = _columns;
+        final int[] weights = _column_weights;
+        int nd = 0;
+        for( int i = 0; i < columns.length; ++i ) {
+            final int col = columns[ i ];
+            if ( _msa.getResidueAt( row_1, col ) != _msa.getResidueAt( row_2, col ) ) {
+                nd += weights[ i ];
+            }
+        }
+        return ( double ) nd / _weight_sum;
+    }
+
     /**
      * "Kimura Distance"
      * Kimura, 1983
@@ -82,6 +143,42 @@ public final class PairwiseDistanceCalculator {
         return -Math.log( dp );
     }
 
+    private double calcDistance( final PWD_DISTANCE_METHOD pwd_distance_method, final int row_1, final int row_2 ) {
+        switch ( pwd_distance_method ) {
+            case KIMURA_DISTANCE:
+                return calcKimuraDistance( row_1, row_2 );
+            case POISSON_DISTANCE:
+                return calcPoissonDistance( row_1, row_2 );
+            case FRACTIONAL_DISSIMILARITY:
+                return calcFractionalDissimilarity( row_1, row_2 );
+            default:
+                throw new IllegalArgumentException( "invalid pwd method: " + pwd_distance_method );
+        }
+    }
+
+    private void calcDistances( final PWD_DISTANCE_METHOD pwd_distance_method, final TiledSymmetricalDistanceMatrix d ) {
+        final int s = _msa.getNumberOfSequences();
+        if ( d.getSize() != s ) {
+            throw new IllegalArgumentException( "distance matrix of size " + d.getSize() + " cannot hold distances of "
+                    + s + " sequences" );
+        }
+        for( int i = 0; i < s; i++ ) {
+            d.setIdentifier( i, _msa.getIdentifier( i ) );
+        }
+        final int t = d.getTileSize();
+        for( int tile_i = 0; tile_i < s; tile_i += t ) {
+            for( int tile_j = 0; tile_j <= tile_i; tile_j += t ) {
+                final int max_i = Math.min( tile_i + t, s );
+                for( int i = tile_i; i < max_i; i++ ) {
+                    final int max_j = Math.min( tile_j + t, i );
+                    for( int j = tile_j; j < max_j; j++ ) {
+                        d.setValue( i, j, calcDistance( pwd_distance_method, i, j ) );
+                    }
+                }
+            }
+        }
+    }
+
     private BasicSymmetricalDistanceMatrix calcKimuraDistances() {
         final int s = _msa.getNumberOfSequences();
         final BasicSymmetricalDistanceMatrix d = new BasicSymmetricalDistanceMatrix( s );
@@ -162,6 +259,52 @@ public final class PairwiseDistanceCalculator {
         .calcKimuraDistances();
     }
 
+    /**
+     * Calculates pairwise distances with each column of the msa counted
+     * column_weights[col] times. With the weights obtained from
+     * BootstrapResampler.createResampledColumnWeights this gives the same distances
+     * as calculating them on the corresponding resampled msa, without
+     * creating it.
+     *
+     * @param msa
+     * @param pwd_distance_method
+     * @param column_weights
+     * @return
+     */
+    public static BasicSymmetricalDistanceMatrix calcDistances( final Msa msa,
+                                                                final PWD_DISTANCE_METHOD pwd_distance_method,
+                                                                final int[] column_weights ) {
+        final PairwiseDistanceCalculator c = new PairwiseDistanceCalculator( msa,
+                                                                             DEFAULT_VALUE_FOR_TOO_LARGE_DISTANCE_FOR_KIMURA_FORMULA,
+                                                                             column_weights );
+        switch ( pwd_distance_method ) {
+            case KIMURA_DISTANCE:
+                return c.calcKimuraDistances();
+            case POISSON_DISTANCE:
+                return c.calcPoissonDistances();
+            case FRACTIONAL_DISSIMILARITY:
+                return c.calcFractionalDissimilarities();
+            default:
+                throw new IllegalArgumentException( "invalid pwd method: " + pwd_distance_method );
+        }
+    }
+
+    /**
+     * Calculates pairwise distances into a (disk based) tiled distance
+     * matrix, one tile at a time.
+     *
+     * @param msa
+     * @param pwd_distance_method
+     * @param d
+     *            the distance matrix to fill, of size number of sequences
+     */
+    public static void calcDistances( final Msa msa,
+                                      final PWD_DISTANCE_METHOD pwd_distance_method,
+                                      final TiledSymmetricalDistanceMatrix d ) {
+        new PairwiseDistanceCalculator( msa, DEFAULT_VALUE_FOR_TOO_LARGE_DISTANCE_FOR_KIMURA_FORMULA )
+        .calcDistances( pwd_distance_method, d );
+    }
+
     public enum PWD_DISTANCE_METHOD {
         KIMURA_DISTANCE, POISSON_DISTANCE, FRACTIONAL_DISSIMILARITY;
     }
@@ -0,0 +1,252 @@
+// $Id:
+// FORESTER -- software libraries and applications
+// for evolutionary biology research and applications.
+//
+// Copyright (C) 2014 Christian M. Zmasek
+// Copyright (C) 2014 Sanford-Burnham Medical Research Institute
+// All rights reserved
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA
+//
+// Contact: phylosoft @ gmail . com
+// WWW: https://sites.google.com/site/cmzmasek/home/software/forester
+
+
+package org.forester.evoinference.matrix.character;
+
+import org.forester.evoinference.matrix.character.CharacterStateMatrix.BinaryStates;
+
+/*
+ * Character state matrix for binary characters which uses one bit per cell (64
+ * characters per word and identifier) instead of one reference. A second bit
+ * plane for unknown states is only allocated once an unknown state is set.
+ * Cells which have never been set are absent (this matrix cannot hold null).
+ *
+ * The words are exposed for the bit-parallel parsimony implementations:
+ * character c is bit (c % 64) of word (c / 64).
+ */
+public class BinaryCharacterStateMatrix extends AbstractCharacterStateMatrix<BinaryStates> {
+
+    private final int      _number_of_characters;
+    private final long[][] _present;
+    private long[][]       _unknown;
+
+    public BinaryCharacterStateMatrix( final int number_of_identifiers, final int number_of_characters ) {
+        super( number_of_identifiers, number_of_characters );
+        _number_of_characters = number_of_characters;
+        _present = new long[ number_of_identifiers ][ calcNumberOfWords( number_of_characters ) ];
+        _unknown = null;
+    }
+
+    /**
+     * Returns true if at least one cell of this matrix is unknown.
+     *
+     */
+    public boolean containsUnknownStates() {
+        if ( _unknown != null ) {
+            for( final long[] words : _unknown ) {
+                for( final long word : words ) {
+                    if ( word != 0 ) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public CharacterStateMatrix<BinaryStates> copy() {
+        final BinaryCharacterStateMatrix new_matrix = new BinaryCharacterStateMatrix( getNumberOfIdentifiers(),
+                                                                                      _number_of_characters );
+        for( int character = 0; character < _number_of_characters; ++character ) {
+            if ( getCharacter( character ) != null ) {
+                new_matrix.setCharacter( character, getCharacter( character ) );
+            }
+        }
+        for( int identifier = 0; identifier < getNumberOfIdentifiers(); ++identifier ) {
+            if ( getIdentifier( identifier ) != null ) {
+                new_matrix.setIdentifier( identifier, getIdentifier( identifier ) );
+            }
+            for( int word = 0; word < getNumberOfWords(); ++word ) {
+                new_matrix.setWords( identifier, word, getPresentWord( identifier, word ), getUnknownWord( identifier,
+                                                                                                         word ) );
+            }
+        }
+        return new_matrix;
+    }
+
+    @Override
+    public int getNumberOfCharacters() {
+        if ( !isEmpty() ) {
+            return _number_of_characters;
+        }
+        else {
+            return 0;
+        }
+    }
+
+    @Override
+    public int getNumberOfIdentifiers() {
+        return _present.length;
+    }
+
+    /**
+     * Returns the number of words per identifier.
+     *
+     */
+    public int getNumberOfWords() {
+        return calcNumberOfWords( _number_of_characters );
+    }
+
+    /**
+     * Returns the present states of characters 64 * word_index to 64 *
+     * word_index + 63 of the given identifier as bits.
+     *
+     */
+    public long getPresentWord( final int identifier_index, final int word_index ) {
+        return _present[ identifier_index ][ word_index ];
+    }
+
+    @Override
+    public BinaryStates getState( final int identifier_index, final int character_index ) {
+        checkCharacterIndex( character_index );
+        final int word = character_index >>> 6;
+        final long bit = 1L << character_index;
+        if ( ( _present[ identifier_index ][ word ] & bit ) != 0 ) {
+            return BinaryStates.PRESENT;
+        }
+        else if ( ( _unknown != null ) && ( ( _unknown[ identifier_index ][ word ] & bit ) != 0 ) ) {
+            return BinaryStates.UNKNOWN;
+        }
+        return BinaryStates.ABSENT;
+    }
+
+    /**
+     * Returns the unknown states of characters 64 * word_index to 64 *
+     * word_index + 63 of the given identifier as bits.
+     *
+     */
+    public long getUnknownWord( final int identifier_index, final int word_index ) {
+        if ( _unknown == null ) {
+            return 0;
+        }
+        return _unknown[ identifier_index ][ word_index ];
+    }
+
+    /**
+     * Returns the bits of word word_index which correspond to characters of
+     * this matrix (all bits, except for the last word).
+     *
+     */
+    public long getWordMask( final int word_index ) {
+        return calcWordMask( _number_of_characters, word_index );
+    }
+
+    @Override
+    public CharacterStateMatrix<BinaryStates> pivot() {
+        final BinaryCharacterStateMatrix new_matrix = new BinaryCharacterStateMatrix( _number_of_characters,
+                                                                                      getNumberOfIdentifiers() );
+        for( int character = 0; character < _number_of_characters; ++character ) {
+            if ( getCharacter( character ) != null ) {
+                new_matrix.setIdentifier( character, getCharacter( character ) );
+            }
+        }
+        for( int identifier = 0; identifier < getNumberOfIdentifiers(); ++identifier ) {
+            if ( getIdentifier( identifier ) != null ) {
+                new_matrix.setCharacter( identifier, getIdentifier( identifier ) );
+            }
+            for( int character = 0; character < _number_of_characters; ++character ) {
+                new_matrix.setState( character, identifier, getState( identifier, character ) );
+            }
+        }
+        return new_matrix;
+    }
+
+    @Override
+    public void setState( final int identifier_index, final int character_index, final BinaryStates state ) {
+        if ( state == null ) {
+            throw new IllegalArgumentException( "attempt to set null state in binary character state matrix" );
+        }
+        checkCharacterIndex( character_index );
+        final int word = character_index >>> 6;
+        final long bit = 1L << character_index;
+        if ( state == BinaryStates.PRESENT ) {
+            _present[ identifier_index ][ word ] |= bit;
+        }
+        else {
+            _present[ identifier_index ][ word ] &= ~bit;
+        }
+        if ( state == BinaryStates.UNKNOWN ) {
+            if ( _unknown == null ) {
+                _unknown = new long[ getNumberOfIdentifiers() ][ getNumberOfWords() ];
+            }
+            _unknown[ identifier_index ][ word ] |= bit;
+        }
+        else if ( _unknown != null ) {
+            _unknown[ identifier_index ][ word ] &= ~bit;
+        }
+    }
+
+    /**
+     * Sets the states of characters 64 * word_index to 64 * word_index + 63 of
+     * the given identifier: present where present has a bit set, unknown where
+     * (only) unknown has a bit set, absent otherwise. Bits beyond the last
+     * character are ignored.
+     *
+     */
+    public void setWords( final int identifier_index, final int word_index, final long present, final long unknown ) {
+        final long mask = getWordMask( word_index );
+        _present[ identifier_index ][ word_index ] = present & mask;
+        final long u = unknown & ~present & mask;
+        if ( ( u != 0 ) && ( _unknown == null ) ) {
+            _unknown = new long[ getNumberOfIdentifiers() ][ getNumberOfWords() ];
+        }
+        if ( _unknown != null ) {
+            _unknown[ identifier_index ][ word_index ] = u;
+        }
+    }
+
+    private void checkCharacterIndex( final int character_index ) {
+        if ( ( character_index < 0 ) || ( character_index >= _number_of_characters ) ) {
+            throw new ArrayIndexOutOfBoundsException( character_index );
+        }
+    }
+
+    /**
+     * Returns the number of 64 bit words needed for the given number of
+     * characters.
+     *
+     */
+    public static int calcNumberOfWords( final int number_of_characters ) {
+        return ( number_of_characters + 63 ) >>> 6;
+    }
+
+    /**
+     * Returns the bits of word word_index which correspond to one of
+     * number_of_characters characters.
+     *
+     */
+    public static long calcWordMask( final int number_of_characters, final int word_index ) {
+        final int rest = number_of_characters - ( word_index << 6 );
+        if ( rest >= 64 ) {
+            return -1L;
+        }
+        else if ( rest <= 0 ) {
+            return 0L;
+        }
+        return ( 1L << rest ) - 1;
+    }
+}
@@ -0,0 +1,153 @@
+// $Id:
+// FORESTER -- software libraries and applications
+// for evolutionary biology research and applications.
+//
+// Copyright (C) 2014 Christian M. Zmasek
+// Copyright (C) 2014 Sanford-Burnham Medical Research Institute
+// All rights reserved
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA
+//
+// Contact: phylosoft @ gmail . com
+// WWW: https://sites.google.com/site/cmzmasek/home/software/forester
+
+
+package org.forester.evoinference.matrix.character;
+
+import org.forester.evoinference.matrix.character.CharacterStateMatrix.GainLossStates;
+
+/*
+ * Character state matrix for gain-loss states which uses three bits per cell
+ * (three bit planes of 64 characters per word and identifier) instead of one
+ * reference. A cell holds the ordinal of its state plus one, zero stands for
+ * null (cells which have never been set).
+ */
+public class GainLossCharacterStateMatrix extends AbstractCharacterStateMatrix<GainLossStates> {
+
+    private final static GainLossStates[] STATES = GainLossStates.values();
+    private final int                     _number_of_characters;
+    private final long[][][]              _planes;
+
+    public GainLossCharacterStateMatrix( final int number_of_identifiers, final int number_of_characters ) {
+        super( number_of_identifiers, number_of_characters );
+        _number_of_characters = number_of_characters;
+        final int words = BinaryCharacterStateMatrix.calcNumberOfWords( number_of_characters );
+        _planes = new long[ 3 ][ number_of_identifiers ][ words ];
+    }
+
+    @Override
+    public CharacterStateMatrix<GainLossStates> copy() {
+        final GainLossCharacterStateMatrix new_matrix = new GainLossCharacterStateMatrix( getNumberOfIdentifiers(),
+                                                                                          _number_of_characters );
+        for( int character = 0; character < _number_of_characters; ++character ) {
+            if ( getCharacter( character ) != null ) {
+                new_matrix.setCharacter( character, getCharacter( character ) );
+            }
+        }
+        for( int identifier = 0; identifier < getNumberOfIdentifiers(); ++identifier ) {
+            if ( getIdentifier( identifier ) != null ) {
+                new_matrix.setIdentifier( identifier, getIdentifier( identifier ) );
+            }
+            for( int plane = 0; plane < _planes.length; ++plane ) {
+                System.arraycopy( _planes[ plane ][ identifier ],
+                                  0,
+                                  new_matrix._planes[ plane ][ identifier ],
+                                  0,
+                                  _planes[ plane ][ identifier ].length );
+            }
+        }
+        return new_matrix;
+    }
+
+    @Override
+    public int getNumberOfCharacters() {
+        if ( !isEmpty() ) {
+            return _number_of_characters;
+        }
+        else {
+            return 0;
+        }
+    }
+
+    @Override
+    public int getNumberOfIdentifiers() {
+        return _planes[ 0 ].length;
+    }
+
+    @Override
+    public GainLossStates getState( final int identifier_index, final int character_index ) {
+        checkCharacterIndex( character_index );
+        final int word = character_index >>> 6;
+        int code = 0;
+        for( int plane = 0; plane < _planes.length; ++plane ) {
+            code |= ( int ) ( ( _planes[ plane ][ identifier_index ][ word ] >>> character_index ) & 1L ) << plane;
+        }
+        return code == 0 ? null : STATES[ code - 1 ];
+    }
+
+    @Override
+    public CharacterStateMatrix<GainLossStates> pivot() {
+        final GainLossCharacterStateMatrix new_matrix = new GainLossCharacterStateMatrix( _number_of_characters,
+                                                                                          getNumberOfIdentifiers() );
+        for( int character = 0; character < _number_of_characters; ++character ) {
+            if ( getCharacter( character ) != null ) {
+                new_matrix.setIdentifier( character, getCharacter( character ) );
+            }
+        }
+        for( int identifier = 0; identifier < getNumberOfIdentifiers(); ++identifier ) {
+            if ( getIdentifier( identifier ) != null ) {
+                new_matrix.setCharacter( identifier, getIdentifier( identifier ) );
+            }
+            for( int character = 0; character < _number_of_characters; ++character ) {
+                new_matrix.setState( character, identifier, getState( identifier, character ) );
+            }
+        }
+        return new_matrix;
+    }
+
+    @Override
+    public void setState( final int identifier_index, final int character_index, final GainLossStates state ) {
+        checkCharacterIndex( character_index );
+        setStates( identifier_index, character_index >>> 6, 1L << character_index, state );
+    }
+
+    /**
+     * Sets the cells of word word_index (characters 64 * word_index to 64 *
+     * word_index + 63) of the given identifier which have a bit set in mask to
+     * state (which may be null). Bits beyond the last character are ignored.
+     *
+     */
+    public void setStates( final int identifier_index,
+                           final int word_index,
+                           final long mask,
+                           final GainLossStates state ) {
+        final int code = state == null ? 0 : state.ordinal() + 1;
+        final long m = mask & BinaryCharacterStateMatrix.calcWordMask( _number_of_characters, word_index );
+        for( int plane = 0; plane < _planes.length; ++plane ) {
+            if ( ( ( code >>> plane ) & 1 ) != 0 ) {
+                _planes[ plane ][ identifier_index ][ word_index ] |= m;
+            }
+            else {
+                _planes[ plane ][ identifier_index ][ word_index ] &= ~m;
+            }
+        }
+    }
+
+    private void checkCharacterIndex( final int character_index ) {
+        if ( ( character_index < 0 ) || ( character_index >= _number_of_characters ) ) {
+            throw new ArrayIndexOutOfBoundsException( character_index );
+        }
+    }
+}
@@ -0,0 +1,343 @@
+// $Id:
+// FORESTER -- software libraries and applications
+// for evolutionary biology research and applications.
+//
+// Copyright (C) 2014 Christian M. Zmasek
+// Copyright (C) 2014 Sanford-Burnham Medical Research Institute
+// All rights reserved
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA
+//
+// WWW: https://sites.google.com/site/cmzmasek/home/software/forester
+
+package org.forester.evoinference.matrix.distance;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.text.DecimalFormat;
+import java.text.NumberFormat;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.forester.util.ForesterUtil;
+import org.forester.util.IllegalFormatUseException;
+
+/*
+ * Symmetrical distance matrix stored in a file, for matrices too large to be
+ * kept in memory.
+ *
+ * The lower triangle is stored as floats, in square tiles of tile_size x
+ * tile_size values (tile (ti, tj) with ti >= tj holds the values of rows
+ * ti*tile_size... and columns tj*tile_size...). Tiles are accessed as
+ * memory-mapped regions of the file; at most max_cached_tiles of these are
+ * kept (least recently used ones are unmapped first). Values are thus best
+ * accessed tile by tile, or row by row.
+ *
+ * Not thread-safe.
+ */
+public final class TiledSymmetricalDistanceMatrix implements DistanceMatrix, Closeable {
+
+    public final static int                   DEFAULT_MAX_CACHED_TILES = 512;
+    public final static int                   DEFAULT_TILE_SIZE        = 512;
+    private final static NumberFormat         PHYLIP_FORMATTER         = new DecimalFormat( "0.000000" );
+    private final static Method               INVOKE_CLEANER;
+    private final static Object               UNSAFE;
+    private final FileChannel                 _channel;
+    private final File                        _file;
+    private final String[]                    _identifiers;
+    private final Map<String, Integer>        _identifier_to_index;
+    private final RandomAccessFile            _raf;
+    private final int                         _size;
+    private final Map<Long, MappedByteBuffer> _tiles;
+    private final int                         _tile_size;
+    private long                              _last_tile_index;
+    private MappedByteBuffer                  _last_tile;
+    static {
+        Method invoke_cleaner = null;
+        Object unsafe = null;
+        try {
+            final Class<?> unsafe_class = Class.forName( "sun.misc.Unsafe" );
+            invoke_cleaner = unsafe_class.getMethod( "invokeCleaner", ByteBuffer.class );
+            final Field the_unsafe = unsafe_class.getDeclaredField( "theUnsafe" );
+            the_unsafe.setAccessible( true );
+            unsafe = the_unsafe.get( null );
+        }
+        catch ( final Exception e ) {
+            invoke_cleaner = null;
+        }
+        INVOKE_CLEANER = invoke_cleaner;
+        UNSAFE = unsafe;
+    }
+
+    /**
+     * Creates a distance matrix backed by file (which is overwritten).
+     *
+     * @param size
+     *            the number of rows/columns
+     * @param file
+     *            the file to store the values in
+     * @param tile_size
+     *            the number of rows/columns per tile
+     * @param max_cached_tiles
+     *            the maximal number of tiles mapped at the same time
+     * @throws IOException
+     */
+    public TiledSymmetricalDistanceMatrix( final int size,
+                                           final File file,
+                                           final int tile_size,
+                                           final int max_cached_tiles ) throws IOException {
+        if ( size < 1 ) {
+            throw new IllegalArgumentException( "distance matrix of size zero is illegal" );
+        }
+        if ( ( tile_size < 1 ) || ( ( ( long ) tile_size * tile_size * 4 ) > Integer.MAX_VALUE ) ) {
+            throw new IllegalArgumentException( "tile size is out of range: " + tile_size );
+        }
+        if ( max_cached_tiles < 1 ) {
+            throw new IllegalArgumentException( "maximal number of cached tiles is out of range: " + max_cached_tiles );
+        }
+        _size = size;
+        _file = file;
+        _tile_size = tile_size;
+        _identifiers = new String[ size ];
+        _identifier_to_index = new HashMap<String, Integer>();
+        _raf = new RandomAccessFile( file, "rw" );
+        _raf.setLength( 0 );
+        _channel = _raf.getChannel();
+        _tiles = new LinkedHashMap<Long, MappedByteBuffer>( 16, 0.75f, true ) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry( final Map.Entry<Long, MappedByteBuffer> eldest ) {
+                if ( size() > max_cached_tiles ) {
+                    unmap( eldest.getValue() );
+                    return true;
+                }
+                return false;
+            }
+        };
+        _last_tile_index = -1;
+        _last_tile = null;
+    }
+
+    public TiledSymmetricalDistanceMatrix( final int size, final File file ) throws IOException {
+        this( size, file, DEFAULT_TILE_SIZE, DEFAULT_MAX_CACHED_TILES );
+    }
+
+    /**
+     * Unmaps all tiles and closes the underlying file (which is not deleted).
+     * This matrix cannot be used afterwards.
+     */
+    @Override
+    public final void close() throws IOException {
+        for( final MappedByteBuffer tile : _tiles.values() ) {
+            unmap( tile );
+        }
+        _tiles.clear();
+        _last_tile = null;
+        _last_tile_index = -1;
+        _channel.close();
+        _raf.close();
+    }
+
+    public final File getFile() {
+        return _file;
+    }
+
+    /**
+     * Returns the value at (col, row) as stored (as float).
+     *
+     */
+    public final float getFloatValue( final int col, final int row ) {
+        if ( col == row ) {
+            checkIndex( col );
+            return 0;
+        }
+        if ( col > row ) {
+            return getTile( col, row ).getFloat( calcOffset( col, row ) );
+        }
+        return getTile( row, col ).getFloat( calcOffset( row, col ) );
+    }
+
+    @Override
+    public final String getIdentifier( final int i ) {
+        return _identifiers[ i ];
+    }
+
+    @Override
+    public final int getIndex( final String identifier ) {
+        final Integer i = _identifier_to_index.get( identifier );
+        if ( i == null ) {
+            throw new IllegalArgumentException( "identifier [" + identifier + "] not found in distance matrix" );
+        }
+        return i;
+    }
+
+    @Override
+    public final int getSize() {
+        return _size;
+    }
+
+    public final int getTileSize() {
+        return _tile_size;
+    }
+
+    @Override
+    public final double getValue( final int col, final int row ) {
+        return getFloatValue( col, row );
+    }
+
+    /**
+     * Sets the value at (col, row) without checking it (negative values are
+     * allowed), for algorithms using this matrix as working space (e.g.
+     * neighbor joining).
+     *
+     */
+    public final void setFloatValue( final int col, final int row, final float d ) {
+        if ( col > row ) {
+            getTile( col, row ).putFloat( calcOffset( col, row ), d );
+        }
+        else if ( col < row ) {
+            getTile( row, col ).putFloat( calcOffset( row, col ), d );
+        }
+        else if ( d != 0 ) {
+            throw new IllegalArgumentException( "attempt to set a non-zero value on the diagonal of a symmetrical distance matrix" );
+        }
+    }
+
+    @Override
+    public final void setIdentifier( final int i, final String identifier ) {
+        if ( _identifiers[ i ] != null ) {
+            _identifier_to_index.remove( _identifiers[ i ] );
+        }
+        _identifiers[ i ] = identifier;
+        _identifier_to_index.put( identifier, i );
+    }
+
+    @Override
+    public final void setValue( final int col, final int row, final double d ) {
+        if ( d < 0 ) {
+            throw new IllegalArgumentException( "negative distance value" );
+        }
+        setFloatValue( col, row, ( float ) d );
+    }
+
+    @Override
+    public final String toString() {
+        return toPhylip().toString();
+    }
+
+    @Override
+    public final StringBuffer toStringBuffer( final Format format ) {
+        switch ( format ) {
+            case PHYLIP:
+                return toPhylip();
+            default:
+                throw new IllegalArgumentException( "Unknown format:" + format );
+        }
+    }
+
+    // row > col
+    private final int calcOffset( final int row, final int col ) {
+        return ( ( ( row % _tile_size ) * _tile_size ) + ( col % _tile_size ) ) * 4;
+    }
+
+    private final void checkIndex( final int i ) {
+        if ( ( i < 0 ) || ( i >= _size ) ) {
+            throw new IndexOutOfBoundsException( "index " + i + " is out of range" );
+        }
+    }
+
+    // row > col
+    private final MappedByteBuffer getTile( final int row, final int col ) {
+        checkIndex( row );
+        checkIndex( col );
+        final long ti = row / _tile_size;
+        final long tile_index = ( ( ti * ( ti + 1 ) ) / 2 ) + ( col / _tile_size );
+        if ( tile_index == _last_tile_index ) {
+            return _last_tile;
+        }
+        MappedByteBuffer tile = _tiles.get( tile_index );
+        if ( tile == null ) {
+            final long tile_bytes = ( long ) _tile_size * _tile_size * 4;
+            try {
+                tile = _channel.map( FileChannel.MapMode.READ_WRITE, tile_index * tile_bytes, tile_bytes );
+            }
+            catch ( final IOException e ) {
+                throw new UncheckedIOException( "failed to map tile of distance matrix file [" + _file + "]", e );
+            }
+            _tiles.put( tile_index, tile );
+        }
+        _last_tile_index = tile_index;
+        _last_tile = tile;
+        return tile;
+    }
+
+    private final StringBuffer toPhylip() {
+        final StringBuffer sb = new StringBuffer();
+        sb.append( "    " );
+        sb.append( getSize() );
+        sb.append( ForesterUtil.LINE_SEPARATOR );
+        for( int row = 0; row < getSize(); ++row ) {
+            if ( ForesterUtil.isEmpty( getIdentifier( row ) ) ) {
+                throw new IllegalFormatUseException( "Phylip format does not allow empty identifiers" );
+            }
+            sb.append( ForesterUtil.pad( getIdentifier( row ), 10, ' ', false ) );
+            sb.append( "  " );
+            for( int col = 0; col < getSize(); ++col ) {
+                sb.append( PHYLIP_FORMATTER.format( getValue( col, row ) ) );
+                if ( col < ( getSize() - 1 ) ) {
+                    sb.append( "  " );
+                }
+            }
+            if ( row < ( getSize() - 1 ) ) {
+                sb.append( ForesterUtil.LINE_SEPARATOR );
+            }
+        }
+        return sb;
+    }
+
+    // Releases the mapping of tile right away (instead of when tile is garbage
+    // collected), if the JVM allows it. Tile must not be used afterwards.
+    private final static void unmap( final MappedByteBuffer tile ) {
+        try {
+            if ( INVOKE_CLEANER != null ) {
+                // Java 9 and later.
+                INVOKE_CLEANER.invoke( UNSAFE, tile );
+            }
+            else {
+                // Java 8.
+                final Method cleaner_method = tile.getClass().getMethod( "cleaner" );
+                cleaner_method.setAccessible( true );
+                final Object cleaner = cleaner_method.invoke( tile );
+                if ( cleaner != null ) {
+                    cleaner.getClass().getMethod( "clean" ).invoke( cleaner );
+                }
+            }
+        }
+        catch ( final Exception e ) {
+            // Left to the garbage collector.
+        }
+    }
+}
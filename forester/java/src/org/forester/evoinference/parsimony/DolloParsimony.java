@@ -26,24 +26,19 @@
 
 package org.forester.evoinference.parsimony;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.Arrays;
 
-import org.forester.evoinference.matrix.character.BasicCharacterStateMatrix;
+import org.forester.evoinference.matrix.character.BinaryCharacterStateMatrix;
 import org.forester.evoinference.matrix.character.CharacterStateMatrix;
 import org.forester.evoinference.matrix.character.CharacterStateMatrix.BinaryStates;
 import org.forester.evoinference.matrix.character.CharacterStateMatrix.GainLossStates;
+import org.forester.evoinference.matrix.character.GainLossCharacterStateMatrix;
 import org.forester.phylogeny.Phylogeny;
-import org.forester.phylogeny.PhylogenyNode;
-import org.forester.phylogeny.iterators.PhylogenyNodeIterator;
-import org.forester.util.ForesterUtil;
+import org.forester.util.ParallelUtil;
 
 public class DolloParsimony {
 
     final static private BinaryStates            PRESENT                         = BinaryStates.PRESENT;
-    final static private BinaryStates            ABSENT                          = BinaryStates.ABSENT;
     final static private BinaryStates            UNKNOWN                         = BinaryStates.UNKNOWN;
     final static private GainLossStates          LOSS                            = GainLossStates.LOSS;
     final static private GainLossStates          GAIN                            = GainLossStates.GAIN;
@@ -53,6 +48,7 @@ public class DolloParsimony {
     private static final boolean                 RETURN_GAIN_LOSS_MATRIX_DEFAULT = false;
     private boolean                              _return_internal_states         = false;
     private boolean                              _return_gain_loss               = false;
+    private int                                  _number_of_threads              = 1;
     private int                                  _total_gains;
     private int                                  _total_losses;
     private int                                  _total_unchanged;
@@ -63,6 +59,14 @@ public class DolloParsimony {
         init();
     }
 
+    /**
+     * Executes Dollo parsimony on all characters of external_node_states_matrix
+     * on phylogeny p. Characters are processed 64 at a time, as bits of a word
+     * (fastest if external_node_states_matrix is a
+     * BinaryCharacterStateMatrix). The matrices of gain-loss states and of
+     * internal states (if requested) are bit-packed as well.
+     *
+     */
     public void execute( final Phylogeny p, final CharacterStateMatrix<BinaryStates> external_node_states_matrix ) {
         if ( !p.isRooted() ) {
             throw new IllegalArgumentException( "attempt to execute Dollo parsimony on unroored phylogeny" );
@@ -76,28 +80,122 @@ public class DolloParsimony {
                     + external_node_states_matrix.getNumberOfIdentifiers() + "] in matrix are not equal" );
         }
         reset();
+        final ParsimonyNodeIndex index = ParsimonyNodeIndex.createInstance( p );
         if ( isReturnInternalStates() ) {
-            initializeInternalStates( p, external_node_states_matrix );
+            initializeInternalStates( index, external_node_states_matrix );
         }
         if ( isReturnGainLossMatrix() ) {
-            initializeGainLossMatrix( p, external_node_states_matrix );
-        }
-        for( int character_index = 0; character_index < external_node_states_matrix.getNumberOfCharacters(); ++character_index ) {
-            executeForOneCharacter( p,
-                                    getStatesForCharacter( p, external_node_states_matrix, character_index ),
-                                    character_index );
+            initializeGainLossMatrix( index, external_node_states_matrix );
         }
+        final int[] identifier_nodes = index.mapIdentifiers( p, external_node_states_matrix );
+        final int number_of_words = BinaryCharacterStateMatrix.calcNumberOfWords( external_node_states_matrix
+                .getNumberOfCharacters() );
+        final ParallelParsimony.RangeTask task = new ParallelParsimony.RangeTask() {
+
+            @Override
+            public ParallelParsimony.Counts execute( final int first, final int last ) {
+                return executeForWords( index, identifier_nodes, external_node_states_matrix, first, last );
+            }
+        };
+        final ParallelParsimony.Counts counts = ParallelParsimony.execute( number_of_words, getNumberOfThreads(), task );
+        setTotalGains( counts._gains );
+        setTotalLosses( counts._losses );
+        setTotalUnchanged( counts._unchanged );
         if ( ( external_node_states_matrix.getNumberOfCharacters() * p.getNumberOfBranches() ) != ( getTotalGains()
                 + getTotalLosses() + getTotalUnchanged() ) ) {
             throw new AssertionError( "this should not have happened: something is deeply wrong with Dollo parsimony implementation" );
         }
     }
 
-    private void executeForOneCharacter( final Phylogeny p,
-                                         final Map<PhylogenyNode, BinaryStates> states,
-                                         final int character_state_column ) {
-        postOrderTraversal( p, states );
-        preOrderTraversal( p, states, character_state_column );
+    private ParallelParsimony.Counts executeForWords( final ParsimonyNodeIndex index,
+                                                      final int[] identifier_nodes,
+                                                      final CharacterStateMatrix<BinaryStates> external_node_states_matrix,
+                                                      final int first_word,
+                                                      final int last_word ) {
+        final ParallelParsimony.Counts counts = new ParallelParsimony.Counts();
+        final int number_of_characters = external_node_states_matrix.getNumberOfCharacters();
+        final long[] present = new long[ index.getNumberOfNodes() ];
+        final long[] unknown = new long[ index.getNumberOfNodes() ];
+        for( int word = first_word; word < last_word; ++word ) {
+            Arrays.fill( present, 0 );
+            Arrays.fill( unknown, 0 );
+            for( int identifier_index = 0; identifier_index < identifier_nodes.length; ++identifier_index ) {
+                final int node = identifier_nodes[ identifier_index ];
+                present[ node ] = obtainWord( external_node_states_matrix, identifier_index, word, PRESENT );
+                unknown[ node ] = obtainWord( external_node_states_matrix, identifier_index, word, UNKNOWN );
+            }
+            executeForOneWord( index,
+                               present,
+                               unknown,
+                               word,
+                               BinaryCharacterStateMatrix.calcWordMask( number_of_characters, word ),
+                               counts );
+        }
+        return counts;
+    }
+
+    // The states of a node are two bits per character: present, or (only)
+    // unknown, or neither for absent.
+    private void executeForOneWord( final ParsimonyNodeIndex index,
+                                    final long[] present,
+                                    final long[] unknown,
+                                    final int word,
+                                    final long mask,
+                                    final ParallelParsimony.Counts counts ) {
+        final int n = index.getNumberOfNodes();
+        // Post-order: absent if present or unknown in no child node, unknown if
+        // in exactly one, present if in at least two.
+        for( int i = 0; i < n; ++i ) {
+            if ( !index.isExternal( i ) ) {
+                long at_least_one = 0;
+                long at_least_two = 0;
+                for( final int child : index.getChildren( i ) ) {
+                    final long present_or_unknown = present[ child ] | unknown[ child ];
+                    at_least_two |= at_least_one & present_or_unknown;
+                    at_least_one |= present_or_unknown;
+                }
+                present[ i ] = at_least_two;
+                unknown[ i ] = at_least_one & ~at_least_two;
+            }
+        }
+        // Pre-order: unknown becomes present if present in the parent node,
+        // absent otherwise.
+        long gained = 0;
+        for( int i = n - 1; i >= 0; --i ) {
+            final int parent = index.getParent( i );
+            if ( !index.isExternal( i ) ) {
+                if ( parent >= 0 ) {
+                    present[ i ] |= unknown[ i ] & present[ parent ];
+                }
+                unknown[ i ] = 0;
+                if ( isReturnInternalStates() ) {
+                    ( ( BinaryCharacterStateMatrix ) getInternalStatesMatrix() ).setWords( index
+                            .getInternalNodeIndex( i ), word, present[ i ], 0 );
+                }
+            }
+            final long absent = ~present[ i ] & ~unknown[ i ] & mask;
+            long losses = 0;
+            long gains = 0;
+            if ( parent >= 0 ) {
+                losses = present[ parent ] & absent;
+                gains = ~present[ parent ] & present[ i ] & mask;
+                if ( ( gained & gains ) != 0 ) {
+                    throw new RuntimeException( "this should not have happened: dollo parsimony cannot have more than one gain" );
+                }
+                gained |= gains;
+            }
+            final long unchanged = mask & ~losses & ~gains;
+            counts._losses += Long.bitCount( losses );
+            counts._gains += Long.bitCount( gains );
+            counts._unchanged += Long.bitCount( unchanged );
+            if ( isReturnGainLossMatrix() ) {
+                final GainLossCharacterStateMatrix gl = ( GainLossCharacterStateMatrix ) getGainLossMatrix();
+                gl.setStates( i, word, losses, LOSS );
+                gl.setStates( i, word, gains, GAIN );
+                gl.setStates( i, word, unchanged & present[ i ], UNCHANGED_PRESENT );
+                gl.setStates( i, word, unchanged & absent, UNCHANGED_ABSENT );
+            }
+        }
     }
 
     /* (non-Javadoc)
@@ -127,21 +225,6 @@ public class DolloParsimony {
         return _internal_states_matrix;
     }
 
-    private Map<PhylogenyNode, BinaryStates> getStatesForCharacter( final Phylogeny p,
-                                                                    final CharacterStateMatrix<BinaryStates> matrix,
-                                                                    final int character_index ) {
-        final Map<PhylogenyNode, BinaryStates> states = new HashMap<PhylogenyNode, BinaryStates>( matrix.getNumberOfIdentifiers() );
-        for( int indentifier_index = 0; indentifier_index < matrix.getNumberOfIdentifiers(); ++indentifier_index ) {
-            final BinaryStates state = matrix.getState( indentifier_index, character_index );
-            if ( state == null ) {
-                throw new IllegalArgumentException( "value at [" + indentifier_index + ", " + character_index
-                                                    + "] is null" );
-            }
-            states.put( p.getNode( matrix.getIdentifier( indentifier_index ) ), state );
-        }
-        return states;
-    }
-
     /* (non-Javadoc)
      * @see org.forester.phylogenyinference.Parsimony#getTotalGains()
      */
@@ -169,20 +252,12 @@ public class DolloParsimony {
         reset();
     }
 
-    private void initializeGainLossMatrix( final Phylogeny p,
+    private void initializeGainLossMatrix( final ParsimonyNodeIndex index,
                                            final CharacterStateMatrix<BinaryStates> external_node_states_matrix ) {
-        final List<PhylogenyNode> nodes = new ArrayList<PhylogenyNode>();
-        for( final PhylogenyNodeIterator postorder = p.iteratorPostorder(); postorder.hasNext(); ) {
-            nodes.add( postorder.next() );
-        }
-        setGainLossMatrix( new BasicCharacterStateMatrix<CharacterStateMatrix.GainLossStates>( nodes.size(),
-                external_node_states_matrix
-                .getNumberOfCharacters() ) );
-        int identifier_index = 0;
-        for( final PhylogenyNode node : nodes ) {
-            getGainLossMatrix().setIdentifier( identifier_index++,
-                                               ForesterUtil.isEmpty( node.getName() ) ? node.getId() + "" : node
-                                                       .getName() );
+        setGainLossMatrix( new GainLossCharacterStateMatrix( index.getNumberOfNodes(),
+                                                             external_node_states_matrix.getNumberOfCharacters() ) );
+        for( int i = 0; i < index.getNumberOfNodes(); ++i ) {
+            getGainLossMatrix().setIdentifier( i, index.getNodeIdentifier( i ) );
         }
         for( int character_index = 0; character_index < external_node_states_matrix.getNumberOfCharacters(); ++character_index ) {
             getGainLossMatrix().setCharacter( character_index,
@@ -190,30 +265,25 @@ public class DolloParsimony {
         }
     }
 
-    private void initializeInternalStates( final Phylogeny p,
+    private void initializeInternalStates( final ParsimonyNodeIndex index,
                                            final CharacterStateMatrix<BinaryStates> external_node_states_matrix ) {
-        final List<PhylogenyNode> internal_nodes = new ArrayList<PhylogenyNode>();
-        for( final PhylogenyNodeIterator postorder = p.iteratorPostorder(); postorder.hasNext(); ) {
-            final PhylogenyNode node = postorder.next();
-            if ( node.isInternal() ) {
-                internal_nodes.add( node );
+        setInternalStatesMatrix( new BinaryCharacterStateMatrix( index.getNumberOfInternalNodes(),
+                                                                 external_node_states_matrix.getNumberOfCharacters() ) );
+        for( int i = 0; i < index.getNumberOfNodes(); ++i ) {
+            if ( !index.isExternal( i ) ) {
+                getInternalStatesMatrix().setIdentifier( index.getInternalNodeIndex( i ), index.getNodeIdentifier( i ) );
             }
         }
-        setInternalStatesMatrix( new BasicCharacterStateMatrix<BinaryStates>( internal_nodes.size(),
-                external_node_states_matrix
-                .getNumberOfCharacters() ) );
-        int identifier_index = 0;
-        for( final PhylogenyNode node : internal_nodes ) {
-            getInternalStatesMatrix().setIdentifier( identifier_index++,
-                                                     ForesterUtil.isEmpty( node.getName() ) ? node.getId() + "" : node
-                                                             .getName() );
-        }
         for( int character_index = 0; character_index < external_node_states_matrix.getNumberOfCharacters(); ++character_index ) {
             getInternalStatesMatrix().setCharacter( character_index,
                                                     external_node_states_matrix.getCharacter( character_index ) );
         }
     }
 
+    private int getNumberOfThreads() {
+        return _number_of_threads;
+    }
+
     private boolean isReturnGainLossMatrix() {
         return _return_gain_loss;
     }
@@ -222,84 +292,6 @@ public class DolloParsimony {
         return _return_internal_states;
     }
 
-    private void postOrderTraversal( final Phylogeny p, final Map<PhylogenyNode, BinaryStates> states )
-            throws AssertionError {
-        for( final PhylogenyNodeIterator postorder = p.iteratorPostorder(); postorder.hasNext(); ) {
-            final PhylogenyNode node = postorder.next();
-            if ( !node.isExternal() ) {
-                final int present_unknown = getNumberOfChildNodesWithPresentOrUnknownState( states, node );
-                if ( present_unknown < 1 ) {
-                    states.put( node, ABSENT );
-                }
-                else if ( present_unknown == 1 ) {
-                    states.put( node, UNKNOWN );
-                }
-                else {
-                    states.put( node, PRESENT );
-                }
-            }
-        }
-    }
-
-    private void preOrderTraversal( final Phylogeny p,
-                                    final Map<PhylogenyNode, BinaryStates> states,
-                                    final int character_state_column ) throws AssertionError {
-        boolean gain = false;
-        for( final PhylogenyNodeIterator preorder = p.iteratorPreorder(); preorder.hasNext(); ) {
-            final PhylogenyNode node = preorder.next();
-            BinaryStates parent_state = null;
-            if ( !node.isRoot() ) {
-                parent_state = states.get( node.getParent() );
-            }
-            if ( !node.isExternal() ) {
-                if ( states.get( node ) == UNKNOWN ) {
-                    if ( parent_state == PRESENT ) {
-                        states.put( node, PRESENT );
-                    }
-                    else {
-                        if ( isCharacterPresentOrUnknownInAtLeastTwoChildNodes( states, node ) ) {
-                            states.put( node, PRESENT );
-                        }
-                        else {
-                            states.put( node, ABSENT );
-                        }
-                    }
-                }
-                if ( isReturnInternalStates() ) {
-                    setInternalNodeState( states, character_state_column, node );
-                }
-            }
-            final BinaryStates current_state = states.get( node );
-            if ( ( parent_state == PRESENT ) && ( current_state == ABSENT ) ) {
-                ++_total_losses;
-                if ( isReturnGainLossMatrix() ) {
-                    setGainLossState( character_state_column, node, LOSS );
-                }
-            }
-            else if ( ( ( parent_state == ABSENT ) ) && ( current_state == PRESENT ) ) {
-                if ( gain ) {
-                    throw new RuntimeException( "this should not have happened: dollo parsimony cannot have more than one gain" );
-                }
-                gain = true;
-                ++_total_gains;
-                if ( isReturnGainLossMatrix() ) {
-                    setGainLossState( character_state_column, node, GAIN );
-                }
-            }
-            else {
-                ++_total_unchanged;
-                if ( isReturnGainLossMatrix() ) {
-                    if ( current_state == PRESENT ) {
-                        setGainLossState( character_state_column, node, UNCHANGED_PRESENT );
-                    }
-                    else if ( current_state == ABSENT ) {
-                        setGainLossState( character_state_column, node, UNCHANGED_ABSENT );
-                    }
-                }
-            }
-        }
-    }
-
     private void reset() {
         setTotalLosses( 0 );
         setTotalGains( 0 );
@@ -310,27 +302,22 @@ public class DolloParsimony {
         _gain_loss_matrix = gain_loss_matrix;
     }
 
-    private void setGainLossState( final int character_state_column,
-                                   final PhylogenyNode node,
-                                   final GainLossStates state ) {
-        getGainLossMatrix().setState( ForesterUtil.isEmpty( node.getName() ) ? node.getId() + "" : node.getName(),
-                character_state_column,
-                state );
-    }
-
-    private void setInternalNodeState( final Map<PhylogenyNode, BinaryStates> states,
-                                       final int character_state_column,
-                                       final PhylogenyNode node ) {
-        getInternalStatesMatrix()
-        .setState( ForesterUtil.isEmpty( node.getName() ) ? node.getId() + "" : node.getName(),
-                character_state_column,
-                states.get( node ) );
-    }
-
     private void setInternalStatesMatrix( final CharacterStateMatrix<BinaryStates> internal_states_matrix ) {
         _internal_states_matrix = internal_states_matrix;
     }
 
+    /**
+     * Sets the number of threads among which the words of 64 characters are
+     * divided (default: one).
+     *
+     * @param number_of_threads
+     *            at least one
+     */
+    public void setNumberOfThreads( final int number_of_threads ) {
+        ParallelUtil.checkNumberOfThreads( number_of_threads );
+        _number_of_threads = number_of_threads;
+    }
+
     /* (non-Javadoc)
      * @see org.forester.phylogenyinference.Parsimony#setReturnGainLossMatrix(boolean)
      */
@@ -361,35 +348,29 @@ public class DolloParsimony {
         return new DolloParsimony();
     }
 
-    private static int getNumberOfChildNodesWithPresentOrUnknownState( final Map<PhylogenyNode, BinaryStates> states,
-                                                                       final PhylogenyNode node ) {
-        int presents = 0;
-        for( int i = 0; i < node.getNumberOfDescendants(); ++i ) {
-            final PhylogenyNode node_child = node.getChildNode( i );
-            if ( !states.containsKey( node_child ) ) {
-                throw new RuntimeException( "this should not have happened: node [" + node_child.getName()
-                                            + "] not found in node state map" );
-            }
-            if ( ( states.get( node_child ) == BinaryStates.PRESENT )
-                    || ( states.get( node_child ) == BinaryStates.UNKNOWN ) ) {
-                ++presents;
-            }
+    // Returns the characters of word word_index which are in state as bits.
+    private static long obtainWord( final CharacterStateMatrix<BinaryStates> matrix,
+                                    final int identifier_index,
+                                    final int word_index,
+                                    final BinaryStates state ) {
+        if ( matrix instanceof BinaryCharacterStateMatrix ) {
+            final BinaryCharacterStateMatrix m = ( BinaryCharacterStateMatrix ) matrix;
+            return state == PRESENT ? m.getPresentWord( identifier_index, word_index ) : m
+                    .getUnknownWord( identifier_index, word_index );
         }
-        return presents;
-    }
-
-    private static boolean isCharacterPresentOrUnknownInAtLeastTwoChildNodes( final Map<PhylogenyNode, BinaryStates> states,
-                                                                              final PhylogenyNode node ) {
-        int count = 0;
-        for( int i = 0; i < node.getNumberOfDescendants(); ++i ) {
-            final PhylogenyNode node_child = node.getChildNode( i );
-            if ( ( states.get( node_child ) == PRESENT ) || ( states.get( node_child ) == UNKNOWN ) ) {
-                ++count;
-                if ( count > 1 ) {
-                    return true;
-                }
+        long bits = 0;
+        final int first = word_index << 6;
+        final int last = Math.min( first + 64, matrix.getNumberOfCharacters() );
+        for( int character_index = first; character_index < last; ++character_index ) {
+            final BinaryStates s = matrix.getState( identifier_index, character_index );
+            if ( s == null ) {
+                throw new IllegalArgumentException( "value at [" + identifier_index + ", " + character_index
+                                                    + "] is null" );
+            }
+            if ( s == state ) {
+                bits |= 1L << character_index;
             }
         }
-        return false;
+        return bits;
     }
 }
@@ -28,6 +28,8 @@ package org.forester.evoinference.parsimony;
 
 import java.text.DecimalFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -37,21 +39,31 @@ import java.util.SortedSet;
 import java.util.TreeSet;
 
 import org.forester.evoinference.matrix.character.BasicCharacterStateMatrix;
+import org.forester.evoinference.matrix.character.BinaryCharacterStateMatrix;
 import org.forester.evoinference.matrix.character.CharacterStateMatrix;
 import org.forester.evoinference.matrix.character.CharacterStateMatrix.BinaryStates;
 import org.forester.evoinference.matrix.character.CharacterStateMatrix.GainLossStates;
+import org.forester.evoinference.matrix.character.GainLossCharacterStateMatrix;
 import org.forester.phylogeny.Phylogeny;
 import org.forester.phylogeny.PhylogenyNode;
 import org.forester.phylogeny.iterators.PhylogenyNodeIterator;
 import org.forester.util.FailedConditionCheckException;
 import org.forester.util.ForesterUtil;
+import org.forester.util.ParallelUtil;
 
 public class FitchParsimony<STATE_TYPE> {
 
     final static private BinaryStates              ABSENT                          = BinaryStates.ABSENT;
+    final static private List<BinaryStates>        ABSENT_ONLY                     = Collections.unmodifiableList( Arrays
+                                                                                           .asList( BinaryStates.ABSENT ) );
+    final static private List<BinaryStates>        ABSENT_OR_PRESENT               = Collections.unmodifiableList( Arrays
+                                                                                           .asList( BinaryStates.ABSENT,
+                                                                                                    BinaryStates.PRESENT ) );
     final static private GainLossStates            GAIN                            = GainLossStates.GAIN;
     final static private GainLossStates            LOSS                            = GainLossStates.LOSS;
     final static private BinaryStates              PRESENT                         = BinaryStates.PRESENT;
+    final static private List<BinaryStates>        PRESENT_ONLY                    = Collections.unmodifiableList( Arrays
+                                                                                           .asList( BinaryStates.PRESENT ) );
     private static final long                      RANDOM_NUMBER_SEED_DEFAULT      = 21;
     private static final boolean                   RANDOMIZE_DEFAULT               = false;
     private static final boolean                   RETURN_GAIN_LOSS_MATRIX_DEFAULT = false;
@@ -60,10 +72,10 @@ public class FitchParsimony<STATE_TYPE> {
     final static private GainLossStates            UNCHANGED_PRESENT               = GainLossStates.UNCHANGED_PRESENT;
     private static final boolean                   USE_LAST_DEFAULT                = false;
     private int                                    _cost;
+    private int                                    _number_of_threads              = 1;
     private CharacterStateMatrix<GainLossStates>   _gain_loss_matrix;
     private CharacterStateMatrix<STATE_TYPE>       _internal_states_matrix_after_traceback;
     private CharacterStateMatrix<List<STATE_TYPE>> _internal_states_matrix_prior_to_traceback;
-    private Random                                 _random_generator;
     private long                                   _random_number_seed;
     private boolean                                _randomize;
     private boolean                                _return_gain_loss               = false;
@@ -98,25 +110,54 @@ public class FitchParsimony<STATE_TYPE> {
         }
         setVerbose( verbose );
         reset();
-        if ( isReturnInternalStates() ) {
-            initializeInternalStates( p, external_node_states_matrix );
-        }
-        if ( isReturnGainLossMatrix() ) {
-            initializeGainLossMatrix( p, external_node_states_matrix );
-        }
         final DecimalFormat pf = new java.text.DecimalFormat( "000000" );
         if ( isVerbose() ) {
             System.out.println( "Number of characters: " + external_node_states_matrix.getNumberOfCharacters() );
         }
-        for( int character_index = 0; character_index < external_node_states_matrix.getNumberOfCharacters(); ++character_index ) {
-            if ( isVerbose() ) {
-                ForesterUtil.updateProgress( character_index, pf );
+        final ParsimonyNodeIndex index = ParsimonyNodeIndex.createInstance( p );
+        final int[] identifier_nodes = index.mapIdentifiers( p, external_node_states_matrix );
+        ParallelParsimony.RangeTask task = null;
+        int number_of_units = 0;
+        if ( ( external_node_states_matrix instanceof BinaryCharacterStateMatrix ) && !isRandomize()
+                && !( ( BinaryCharacterStateMatrix ) external_node_states_matrix ).containsUnknownStates() ) {
+            final BinaryCharacterStateMatrix binary_matrix = ( BinaryCharacterStateMatrix ) external_node_states_matrix;
+            initializeBitParallel( index, binary_matrix );
+            number_of_units = binary_matrix.getNumberOfWords();
+            task = new ParallelParsimony.RangeTask() {
+
+                @Override
+                public ParallelParsimony.Counts execute( final int first, final int last ) {
+                    return executeBitParallel( index, identifier_nodes, binary_matrix, first, last, pf );
+                }
+            };
+        }
+        else {
+            if ( isReturnInternalStates() ) {
+                initializeInternalStates( p, external_node_states_matrix );
             }
-            executeForOneCharacter( p,
-                                    getStatesForCharacter( p, external_node_states_matrix, character_index ),
-                                    getStatesForCharacterForTraceback( p, external_node_states_matrix, character_index ),
-                                    character_index );
+            if ( isReturnGainLossMatrix() ) {
+                initializeGainLossMatrix( p, external_node_states_matrix );
+            }
+            number_of_units = external_node_states_matrix.getNumberOfCharacters();
+            task = new ParallelParsimony.RangeTask() {
+
+                @Override
+                public ParallelParsimony.Counts execute( final int first, final int last ) {
+                    return executeForCharacters( p,
+                                                 index,
+                                                 identifier_nodes,
+                                                 external_node_states_matrix,
+                                                 first,
+                                                 last,
+                                                 pf );
+                }
+            };
         }
+        final ParallelParsimony.Counts counts = ParallelParsimony.execute( number_of_units, getNumberOfThreads(), task );
+        setCost( counts._cost );
+        setTotalGains( counts._gains );
+        setTotalLosses( counts._losses );
+        setTotalUnchanged( counts._unchanged );
         if ( isVerbose() ) {
             System.out.println();
         }
@@ -174,6 +215,25 @@ public class FitchParsimony<STATE_TYPE> {
         return _verbose;
     }
 
+    /**
+     * Sets the number of threads (default: one). Since each character uses
+     * its own random number stream, randomized results are the same for any
+     * number of threads.
+     *
+     * @param number_of_threads
+     */
+    public void setNumberOfThreads( final int number_of_threads ) {
+        ParallelUtil.checkNumberOfThreads( number_of_threads );
+        _number_of_threads = number_of_threads;
+    }
+
+    /**
+     * Sets whether to choose randomly among the possible states at the
+     * undecided nodes. Each character uses its own random number stream,
+     * seeded from the random number seed and the character index.
+     *
+     * @param randomize
+     */
     public void setRandomize( final boolean randomize ) {
         if ( randomize && isUseLast() ) {
             throw new IllegalArgumentException( "attempt to allways use last state (ordered) if more than one choices and randomization at the same time" );
@@ -220,9 +280,9 @@ public class FitchParsimony<STATE_TYPE> {
         _verbose = verbose;
     }
 
-    private int determineIndex( final SortedSet<STATE_TYPE> current_node_states, int i ) {
+    private int determineIndex( final SortedSet<STATE_TYPE> current_node_states, int i, final Random random ) {
         if ( isRandomize() ) {
-            i = getRandomGenerator().nextInt( current_node_states.size() );
+            i = random.nextInt( current_node_states.size() );
         }
         else if ( isUseLast() ) {
             i = current_node_states.size() - 1;
@@ -230,12 +290,145 @@ public class FitchParsimony<STATE_TYPE> {
         return i;
     }
 
+    // Binary characters without unknown states, 64 at a time as bits of a
+    // word: the state set of a node is two bits per character (absent is
+    // possible, present is possible), the state after traceback one bit
+    // (present). Ties are resolved towards absent, or towards present if use
+    // last is set (as in the general implementation, which has to be used for
+    // randomized tie resolution).
+    private ParallelParsimony.Counts executeBitParallel( final ParsimonyNodeIndex index,
+                                                         final int[] identifier_nodes,
+                                                         final BinaryCharacterStateMatrix external_node_states_matrix,
+                                                         final int first_word,
+                                                         final int last_word,
+                                                         final DecimalFormat pf ) {
+        final ParallelParsimony.Counts counts = new ParallelParsimony.Counts();
+        BinaryCharacterStateMatrix internal_states = null;
+        GainLossCharacterStateMatrix gain_loss = null;
+        if ( isReturnInternalStates() ) {
+            final CharacterStateMatrix<?> i = getInternalStatesMatrix();
+            internal_states = ( BinaryCharacterStateMatrix ) i;
+        }
+        if ( isReturnGainLossMatrix() ) {
+            gain_loss = ( GainLossCharacterStateMatrix ) getGainLossMatrix();
+        }
+        final int n = index.getNumberOfNodes();
+        final long[] can_be_absent = new long[ n ];
+        final long[] can_be_present = new long[ n ];
+        final long[] traceback = new long[ n ];
+        for( int word = first_word; word < last_word; ++word ) {
+            if ( isVerbose() && ( getNumberOfThreads() == 1 ) ) {
+                ForesterUtil.updateProgress( word << 6, pf );
+            }
+            final long mask = external_node_states_matrix.getWordMask( word );
+            Arrays.fill( can_be_absent, 0 );
+            Arrays.fill( can_be_present, 0 );
+            for( int identifier_index = 0; identifier_index < identifier_nodes.length; ++identifier_index ) {
+                final long present = external_node_states_matrix.getPresentWord( identifier_index, word );
+                can_be_present[ identifier_nodes[ identifier_index ] ] = present;
+                can_be_absent[ identifier_nodes[ identifier_index ] ] = ~present & mask;
+            }
+            // Post-order: intersection of the state sets of the child nodes, or
+            // their union if the intersection is empty.
+            for( int i = 0; i < n; ++i ) {
+                if ( !index.isExternal( i ) ) {
+                    long intersection_absent = mask;
+                    long intersection_present = mask;
+                    long union_absent = 0;
+                    long union_present = 0;
+                    for( final int child : index.getChildren( i ) ) {
+                        intersection_absent &= can_be_absent[ child ];
+                        intersection_present &= can_be_present[ child ];
+                        union_absent |= can_be_absent[ child ];
+                        union_present |= can_be_present[ child ];
+                    }
+                    final long empty = mask & ~( intersection_absent | intersection_present );
+                    can_be_absent[ i ] = intersection_absent | ( empty & union_absent );
+                    can_be_present[ i ] = intersection_present | ( empty & union_present );
+                }
+            }
+            // Pre-order traceback: the state of the parent node if possible,
+            // the preferred possible state otherwise.
+            for( int i = n - 1; i >= 0; --i ) {
+                final long preferred = isUseLast() ? can_be_present[ i ] : can_be_present[ i ] & ~can_be_absent[ i ];
+                final int parent = index.getParent( i );
+                long losses = 0;
+                long gains = 0;
+                if ( parent < 0 ) {
+                    traceback[ i ] = preferred;
+                }
+                else {
+                    final long parent_present = traceback[ parent ];
+                    final long contained = ( ( parent_present & can_be_present[ i ] ) | ( ~parent_present & can_be_absent[ i ] ) )
+                            & mask;
+                    traceback[ i ] = ( parent_present & contained ) | ( preferred & ~contained );
+                    counts._cost += Long.bitCount( mask & ~contained );
+                    losses = parent_present & ~traceback[ i ] & mask;
+                    gains = ~parent_present & traceback[ i ];
+                }
+                if ( isReturnInternalStates() && !index.isExternal( i ) ) {
+                    internal_states.setWords( index.getInternalNodeIndex( i ), word, traceback[ i ], 0 );
+                    setPriorToTracebackStates( index.getInternalNodeIndex( i ),
+                                               word,
+                                               can_be_absent[ i ],
+                                               can_be_present[ i ],
+                                               mask );
+                }
+                if ( isReturnGainLossMatrix() ) {
+                    final long unchanged = mask & ~losses & ~gains;
+                    counts._losses += Long.bitCount( losses );
+                    counts._gains += Long.bitCount( gains );
+                    counts._unchanged += Long.bitCount( unchanged );
+                    gain_loss.setStates( i, word, losses, LOSS );
+                    gain_loss.setStates( i, word, gains, GAIN );
+                    gain_loss.setStates( i, word, unchanged & traceback[ i ], UNCHANGED_PRESENT );
+                    gain_loss.setStates( i, word, unchanged & ~traceback[ i ], UNCHANGED_ABSENT );
+                }
+            }
+        }
+        return counts;
+    }
+
+    // Each character has its own random number stream (if randomized), thus
+    // the results do not depend on how characters are distributed over threads.
+    private ParallelParsimony.Counts executeForCharacters( final Phylogeny p,
+                                                           final ParsimonyNodeIndex index,
+                                                           final int[] identifier_nodes,
+                                                           final CharacterStateMatrix<STATE_TYPE> external_node_states_matrix,
+                                                           final int first_character,
+                                                           final int last_character,
+                                                           final DecimalFormat pf ) {
+        final ParallelParsimony.Counts counts = new ParallelParsimony.Counts();
+        for( int character_index = first_character; character_index < last_character; ++character_index ) {
+            if ( isVerbose() && ( getNumberOfThreads() == 1 ) ) {
+                ForesterUtil.updateProgress( character_index, pf );
+            }
+            final Random random = isRandomize() ? new Random( ParallelParsimony
+                    .calcRandomNumberSeed( getRandomNumberSeed(), character_index ) ) : null;
+            executeForOneCharacter( p,
+                                    getStatesForCharacter( index,
+                                                           identifier_nodes,
+                                                           external_node_states_matrix,
+                                                           character_index ),
+                                    getStatesForCharacterForTraceback( index,
+                                                                       identifier_nodes,
+                                                                       external_node_states_matrix,
+                                                                       character_index ),
+                                    character_index,
+                                    random,
+                                    counts );
+        }
+        return counts;
+    }
+
     private void executeForOneCharacter( final Phylogeny p,
                                          final Map<PhylogenyNode, SortedSet<STATE_TYPE>> states,
                                          final Map<PhylogenyNode, STATE_TYPE> traceback_states,
-                                         final int character_state_column ) {
+                                         final int character_state_column,
+                                         final Random random,
+                                         final ParallelParsimony.Counts counts ) {
         postOrderTraversal( p, states );
-        preOrderTraversal( p, states, traceback_states, character_state_column );
+        preOrderTraversal( p, states, traceback_states, character_state_column, random, counts );
     }
 
     private SortedSet<STATE_TYPE> getIntersectionOfStatesOfChildNodes( final Map<PhylogenyNode, SortedSet<STATE_TYPE>> states,
@@ -257,8 +450,8 @@ public class FitchParsimony<STATE_TYPE> {
         return states_in_child_nodes;
     }
 
-    private Random getRandomGenerator() {
-        return _random_generator;
+    private int getNumberOfThreads() {
+        return _number_of_threads;
     }
 
     private long getRandomNumberSeed() {
@@ -273,7 +466,8 @@ public class FitchParsimony<STATE_TYPE> {
         return it.next();
     }
 
-    private Map<PhylogenyNode, SortedSet<STATE_TYPE>> getStatesForCharacter( final Phylogeny p,
+    private Map<PhylogenyNode, SortedSet<STATE_TYPE>> getStatesForCharacter( final ParsimonyNodeIndex index,
+                                                                             final int[] identifier_nodes,
                                                                              final CharacterStateMatrix<STATE_TYPE> matrix,
                                                                              final int character_index ) {
         final Map<PhylogenyNode, SortedSet<STATE_TYPE>> states = new HashMap<PhylogenyNode, SortedSet<STATE_TYPE>>( matrix
@@ -286,12 +480,13 @@ public class FitchParsimony<STATE_TYPE> {
             }
             final SortedSet<STATE_TYPE> l = new TreeSet<STATE_TYPE>();
             l.add( state );
-            states.put( p.getNode( matrix.getIdentifier( indentifier_index ) ), l );
+            states.put( index.getNode( identifier_nodes[ indentifier_index ] ), l );
         }
         return states;
     }
 
-    private Map<PhylogenyNode, STATE_TYPE> getStatesForCharacterForTraceback( final Phylogeny p,
+    private Map<PhylogenyNode, STATE_TYPE> getStatesForCharacterForTraceback( final ParsimonyNodeIndex index,
+                                                                              final int[] identifier_nodes,
                                                                               final CharacterStateMatrix<STATE_TYPE> matrix,
                                                                               final int character_index ) {
         final Map<PhylogenyNode, STATE_TYPE> states = new HashMap<PhylogenyNode, STATE_TYPE>( matrix.getNumberOfIdentifiers() );
@@ -301,7 +496,7 @@ public class FitchParsimony<STATE_TYPE> {
                 throw new IllegalArgumentException( "value at [" + indentifier_index + ", " + character_index
                                                     + "] is null" );
             }
-            states.put( p.getNode( matrix.getIdentifier( indentifier_index ) ), state );
+            states.put( index.getNode( identifier_nodes[ indentifier_index ] ), state );
         }
         return states;
     }
@@ -320,10 +515,6 @@ public class FitchParsimony<STATE_TYPE> {
         return states_in_child_nodes;
     }
 
-    private void increaseCost() {
-        ++_cost;
-    }
-
     private void init() {
         setReturnInternalStates( RETURN_INTERNAL_STATES_DEFAULT );
         setReturnGainLossMatrix( RETURN_GAIN_LOSS_MATRIX_DEFAULT );
@@ -333,6 +524,45 @@ public class FitchParsimony<STATE_TYPE> {
         reset();
     }
 
+    @SuppressWarnings("unchecked")
+    private void initializeBitParallel( final ParsimonyNodeIndex index,
+                                        final BinaryCharacterStateMatrix external_node_states_matrix ) {
+        final int number_of_characters = external_node_states_matrix.getNumberOfCharacters();
+        if ( isReturnInternalStates() ) {
+            final BinaryCharacterStateMatrix internal_states = new BinaryCharacterStateMatrix( index
+                    .getNumberOfInternalNodes(), number_of_characters );
+            final CharacterStateMatrix<List<BinaryStates>> prior = new BasicCharacterStateMatrix<List<BinaryStates>>( index
+                    .getNumberOfInternalNodes(),
+                    number_of_characters );
+            for( int i = 0; i < index.getNumberOfNodes(); ++i ) {
+                if ( !index.isExternal( i ) ) {
+                    internal_states.setIdentifier( index.getInternalNodeIndex( i ), index.getNodeIdentifier( i ) );
+                    prior.setIdentifier( index.getInternalNodeIndex( i ), index.getNodeIdentifier( i ) );
+                }
+            }
+            for( int character_index = 0; character_index < number_of_characters; ++character_index ) {
+                internal_states.setCharacter( character_index,
+                                              external_node_states_matrix.getCharacter( character_index ) );
+                prior.setCharacter( character_index, external_node_states_matrix.getCharacter( character_index ) );
+            }
+            final CharacterStateMatrix<?> i = internal_states;
+            final CharacterStateMatrix<?> pr = prior;
+            setInternalStatesMatrixTraceback( ( CharacterStateMatrix<STATE_TYPE> ) i );
+            setInternalStatesMatrixPriorToTraceback( ( CharacterStateMatrix<List<STATE_TYPE>> ) pr );
+        }
+        if ( isReturnGainLossMatrix() ) {
+            final GainLossCharacterStateMatrix gain_loss = new GainLossCharacterStateMatrix( index.getNumberOfNodes(),
+                                                                                             number_of_characters );
+            for( int i = 0; i < index.getNumberOfNodes(); ++i ) {
+                gain_loss.setIdentifier( i, index.getNodeIdentifier( i ) );
+            }
+            for( int character_index = 0; character_index < number_of_characters; ++character_index ) {
+                gain_loss.setCharacter( character_index, external_node_states_matrix.getCharacter( character_index ) );
+            }
+            setGainLossMatrix( gain_loss );
+        }
+    }
+
     private void initializeGainLossMatrix( final Phylogeny p,
                                            final CharacterStateMatrix<STATE_TYPE> external_node_states_matrix ) {
         final List<PhylogenyNode> nodes = new ArrayList<PhylogenyNode>();
@@ -420,14 +650,16 @@ public class FitchParsimony<STATE_TYPE> {
     private void preOrderTraversal( final Phylogeny p,
                                     final Map<PhylogenyNode, SortedSet<STATE_TYPE>> states,
                                     final Map<PhylogenyNode, STATE_TYPE> traceback_states,
-                                    final int character_state_column ) {
+                                    final int character_state_column,
+                                    final Random random,
+                                    final ParallelParsimony.Counts counts ) {
         for( final PhylogenyNodeIterator preorder = p.iteratorPreorder(); preorder.hasNext(); ) {
             final PhylogenyNode current_node = preorder.next();
             final SortedSet<STATE_TYPE> current_node_states = states.get( current_node );
             STATE_TYPE parent_state = null;
             if ( current_node.isRoot() ) {
                 int i = 0;
-                i = determineIndex( current_node_states, i );
+                i = determineIndex( current_node_states, i, random );
                 traceback_states.put( current_node, getStateAt( i, current_node_states ) );
             }
             else {
@@ -436,9 +668,9 @@ public class FitchParsimony<STATE_TYPE> {
                     traceback_states.put( current_node, parent_state );
                 }
                 else {
-                    increaseCost();
+                    ++counts._cost;
                     int i = 0;
-                    i = determineIndex( current_node_states, i );
+                    i = determineIndex( current_node_states, i, random );
                     traceback_states.put( current_node, getStateAt( i, current_node_states ) );
                 }
             }
@@ -455,16 +687,16 @@ public class FitchParsimony<STATE_TYPE> {
                 final BinaryStates parent_binary_state = ( BinaryStates ) parent_state;
                 final BinaryStates current_binary_state = ( BinaryStates ) traceback_states.get( current_node );
                 if ( ( parent_binary_state == PRESENT ) && ( current_binary_state == ABSENT ) ) {
-                    ++_total_losses;
+                    ++counts._losses;
                     setGainLossState( character_state_column, current_node, LOSS );
                 }
                 else if ( ( ( parent_binary_state == ABSENT ) || ( parent_binary_state == null ) )
                         && ( current_binary_state == PRESENT ) ) {
-                    ++_total_gains;
+                    ++counts._gains;
                     setGainLossState( character_state_column, current_node, GAIN );
                 }
                 else {
-                    ++_total_unchanged;
+                    ++counts._unchanged;
                     if ( current_binary_state == PRESENT ) {
                         setGainLossState( character_state_column, current_node, UNCHANGED_PRESENT );
                     }
@@ -475,7 +707,7 @@ public class FitchParsimony<STATE_TYPE> {
             }
             else if ( isReturnGainLossMatrix() && current_node.isRoot() ) {
                 final BinaryStates current_binary_state = ( BinaryStates ) traceback_states.get( current_node );
-                ++_total_unchanged; //new
+                ++counts._unchanged; //new
                 if ( current_binary_state == PRESENT ) {//new
                     setGainLossState( character_state_column, current_node, UNCHANGED_PRESENT );//new
                 }//new
@@ -492,7 +724,6 @@ public class FitchParsimony<STATE_TYPE> {
         setTotalLosses( 0 );
         setTotalGains( 0 );
         setTotalUnchanged( 0 );
-        setRandomGenerator( new Random( getRandomNumberSeed() ) );
     }
 
     private void setCost( final int cost ) {
@@ -529,6 +760,30 @@ public class FitchParsimony<STATE_TYPE> {
                 toListSorted( states.get( node ) ) );
     }
 
+    // The state sets are shared (unmodifiable) lists.
+    @SuppressWarnings("unchecked")
+    private void setPriorToTracebackStates( final int internal_node_index,
+                                            final int word,
+                                            final long can_be_absent,
+                                            final long can_be_present,
+                                            final long mask ) {
+        final CharacterStateMatrix<?> pr = getInternalStatesMatrixPriorToTraceback();
+        final CharacterStateMatrix<List<BinaryStates>> prior = ( CharacterStateMatrix<List<BinaryStates>> ) pr;
+        for( long bits = mask; bits != 0; bits &= bits - 1 ) {
+            final long bit = Long.lowestOneBit( bits );
+            final int character_index = ( word << 6 ) + Long.numberOfTrailingZeros( bit );
+            if ( ( can_be_absent & bit ) == 0 ) {
+                prior.setState( internal_node_index, character_index, PRESENT_ONLY );
+            }
+            else if ( ( can_be_present & bit ) == 0 ) {
+                prior.setState( internal_node_index, character_index, ABSENT_ONLY );
+            }
+            else {
+                prior.setState( internal_node_index, character_index, ABSENT_OR_PRESENT );
+            }
+        }
+    }
+
     private void setInternalStatesMatrixPriorToTraceback( final CharacterStateMatrix<List<STATE_TYPE>> internal_states_matrix_prior_to_traceback ) {
         _internal_states_matrix_prior_to_traceback = internal_states_matrix_prior_to_traceback;
     }
@@ -537,10 +792,6 @@ public class FitchParsimony<STATE_TYPE> {
         _internal_states_matrix_after_traceback = internal_states_matrix_after_traceback;
     }
 
-    private void setRandomGenerator( final Random random_generator ) {
-        _random_generator = random_generator;
-    }
-
     private void setTotalGains( final int total_gains ) {
         _total_gains = total_gains;
     }
@@ -0,0 +1,569 @@
+// $Id:
+// FORESTER -- software libraries and applications
+// for evolutionary biology research and applications.
+//
+// Copyright (C) 2014 Christian M. Zmasek
+// Copyright (C) 2014 Sanford-Burnham Medical Research Institute
+// All rights reserved
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA
+//
+// Contact: phylosoft @ gmail . com
+// WWW: https://sites.google.com/site/cmzmasek/home/software/forester
+
+
+package org.forester.evoinference.parsimony;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.forester.evoinference.matrix.character.BasicCharacterStateMatrix;
+import org.forester.evoinference.matrix.character.CharacterStateMatrix;
+import org.forester.evoinference.matrix.character.CharacterStateMatrix.GainLossStates;
+import org.forester.phylogeny.Phylogeny;
+import org.forester.util.ParallelUtil;
+
+/**
+ * Sankoff (weighted) parsimony for characters whose states are coded as ints
+ * 0 to n - 1, given an n x n step matrix of the costs of changes from one
+ * state (row) to another (column).
+ * <p>
+ * The costs of all states at all nodes for one character are kept in one flat
+ * int array (nodes x states), which is reused for all characters; thus no
+ * objects are created per character or per node. State -1 denotes an unknown
+ * state (of an external node).
+ * <p>
+ * Results can be obtained as CharacterStateMatrix (of Integer, or of the
+ * original states, and, for two states, as gain-loss matrix).
+ *
+ */
+public final class IntSankoffParsimony {
+
+    public final static int         UNKNOWN                         = -1;
+    private final static int        INFINITE_COST                   = Integer.MAX_VALUE / 4;
+    private static final boolean    RANDOMIZE_DEFAULT               = false;
+    private static final long       RANDOM_NUMBER_SEED_DEFAULT      = 21;
+    private static final boolean    RETURN_INTERNAL_STATES_DEFAULT  = false;
+    private static final boolean    RETURN_GAIN_LOSS_MATRIX_DEFAULT = false;
+    private static final boolean    USE_LAST_DEFAULT                = false;
+    private String[]                _characters;
+    private int                     _cost;
+    private ParsimonyNodeIndex      _index;
+    private int[][]                 _node_states;
+    private final int               _number_of_states;
+    private int                     _number_of_threads              = 1;
+    private boolean                 _randomize;
+    private long                    _random_number_seed;
+    private boolean                 _return_gain_loss;
+    private boolean                 _return_internal_states;
+    private final int[]             _step_matrix;
+    private int                     _total_changes;
+    private int                     _total_unchanged;
+    private boolean                 _use_last;
+
+    private IntSankoffParsimony( final int[][] step_matrix ) {
+        if ( ( step_matrix == null ) || ( step_matrix.length < 1 ) ) {
+            throw new IllegalArgumentException( "step matrix is empty" );
+        }
+        _number_of_states = step_matrix.length;
+        _step_matrix = new int[ _number_of_states * _number_of_states ];
+        for( int from = 0; from < _number_of_states; ++from ) {
+            if ( step_matrix[ from ].length != _number_of_states ) {
+                throw new IllegalArgumentException( "step matrix is not square" );
+            }
+            for( int to = 0; to < _number_of_states; ++to ) {
+                final int step = step_matrix[ from ][ to ];
+                if ( ( step < 0 ) || ( step >= INFINITE_COST ) ) {
+                    throw new IllegalArgumentException( "illegal step cost [" + step + "] from state " + from
+                            + " to state " + to );
+                }
+                _step_matrix[ ( from * _number_of_states ) + to ] = step;
+            }
+        }
+        _randomize = RANDOMIZE_DEFAULT;
+        _random_number_seed = RANDOM_NUMBER_SEED_DEFAULT;
+        _return_internal_states = RETURN_INTERNAL_STATES_DEFAULT;
+        _return_gain_loss = RETURN_GAIN_LOSS_MATRIX_DEFAULT;
+        _use_last = USE_LAST_DEFAULT;
+        reset();
+    }
+
+    /**
+     * Executes Sankoff parsimony on int-coded states on phylogeny p.
+     *
+     * @param p
+     *            a rooted phylogeny
+     * @param identifiers
+     *            the names of the external nodes of p
+     * @param external_node_states
+     *            the states of the external nodes (in the order of
+     *            identifiers) for each character: [identifier][character],
+     *            each a state from 0 to the number of states - 1, or UNKNOWN
+     */
+    public void execute( final Phylogeny p, final String[] identifiers, final int[][] external_node_states ) {
+        if ( ( external_node_states.length < 1 ) || ( external_node_states[ 0 ].length < 1 ) ) {
+            throw new IllegalArgumentException( "character matrix is empty" );
+        }
+        final String[] characters = new String[ external_node_states[ 0 ].length ];
+        for( int c = 0; c < characters.length; ++c ) {
+            characters[ c ] = String.valueOf( c );
+        }
+        execute( p, identifiers, characters, external_node_states );
+    }
+
+    /**
+     * Executes Sankoff parsimony on phylogeny p, with each state of
+     * external_node_states_matrix coded as its index in states (null for
+     * unknown).
+     *
+     * @param p
+     *            a rooted phylogeny
+     * @param external_node_states_matrix
+     *            the states of the external nodes of p
+     * @param states
+     *            the states, in the order of the rows and columns of the step
+     *            matrix
+     */
+    public <S> void execute( final Phylogeny p,
+                             final CharacterStateMatrix<S> external_node_states_matrix,
+                             final List<S> states ) {
+        if ( external_node_states_matrix.isEmpty() ) {
+            throw new IllegalArgumentException( "character matrix is empty" );
+        }
+        if ( states.size() != getNumberOfStates() ) {
+            throw new IllegalArgumentException( "number of states [" + states.size()
+                    + "] is not equal to size of step matrix [" + getNumberOfStates() + "]" );
+        }
+        final Map<S, Integer> codes = new HashMap<S, Integer>();
+        for( int i = 0; i < states.size(); ++i ) {
+            codes.put( states.get( i ), i );
+        }
+        final String[] identifiers = new String[ external_node_states_matrix.getNumberOfIdentifiers() ];
+        final String[] characters = new String[ external_node_states_matrix.getNumberOfCharacters() ];
+        final int[][] coded = new int[ identifiers.length ][ characters.length ];
+        for( int c = 0; c < characters.length; ++c ) {
+            characters[ c ] = external_node_states_matrix.getCharacter( c );
+        }
+        for( int i = 0; i < identifiers.length; ++i ) {
+            identifiers[ i ] = external_node_states_matrix.getIdentifier( i );
+            for( int c = 0; c < characters.length; ++c ) {
+                final S state = external_node_states_matrix.getState( i, c );
+                if ( state == null ) {
+                    coded[ i ][ c ] = UNKNOWN;
+                }
+                else {
+                    final Integer code = codes.get( state );
+                    if ( code == null ) {
+                        throw new IllegalArgumentException( "state [" + state + "] at [" + i + ", " + c
+                                + "] is not one of the states of the step matrix" );
+                    }
+                    coded[ i ][ c ] = code;
+                }
+            }
+        }
+        execute( p, identifiers, characters, coded );
+    }
+
+    public int getCost() {
+        return _cost;
+    }
+
+    /**
+     * Returns the states of all nodes (after trace-back) as gain-loss matrix,
+     * with state 0 as absent and state 1 as present. Only for two states.
+     *
+     */
+    public CharacterStateMatrix<GainLossStates> getGainLossMatrix() {
+        if ( !isReturnGainLossMatrix() ) {
+            throw new RuntimeException( "creation of gain-loss matrix has not been enabled" );
+        }
+        if ( getNumberOfStates() != 2 ) {
+            throw new IllegalStateException( "attempt to create gain loss matrix for not binary states" );
+        }
+        final ParsimonyNodeIndex index = getIndex();
+        final CharacterStateMatrix<GainLossStates> m = new BasicCharacterStateMatrix<GainLossStates>( index
+                .getNumberOfNodes(), _characters.length );
+        for( int i = 0; i < index.getNumberOfNodes(); ++i ) {
+            m.setIdentifier( i, index.getNodeIdentifier( i ) );
+        }
+        for( int c = 0; c < _characters.length; ++c ) {
+            m.setCharacter( c, _characters[ c ] );
+            final int[] node_states = _node_states[ c ];
+            for( int i = 0; i < index.getNumberOfNodes(); ++i ) {
+                final int parent = index.getParent( i );
+                final int state = node_states[ i ];
+                if ( ( parent < 0 ) || ( node_states[ parent ] == state ) ) {
+                    m.setState( i, c, state == 1 ? GainLossStates.UNCHANGED_PRESENT : GainLossStates.UNCHANGED_ABSENT );
+                }
+                else {
+                    m.setState( i, c, state == 1 ? GainLossStates.GAIN : GainLossStates.LOSS );
+                }
+            }
+        }
+        return m;
+    }
+
+    /**
+     * Returns the (int-coded) states of the internal nodes (in postorder)
+     * after trace-back.
+     *
+     */
+    public CharacterStateMatrix<Integer> getInternalStatesMatrix() {
+        if ( !isReturnInternalStates() ) {
+            throw new RuntimeException( "creation of internal state matrix has not been enabled" );
+        }
+        final CharacterStateMatrix<Integer> m = createInternalStatesMatrix();
+        final ParsimonyNodeIndex index = getIndex();
+        for( int c = 0; c < _characters.length; ++c ) {
+            for( int i = 0; i < index.getNumberOfNodes(); ++i ) {
+                if ( !index.isExternal( i ) ) {
+                    m.setState( index.getInternalNodeIndex( i ), c, _node_states[ c ][ i ] );
+                }
+            }
+        }
+        return m;
+    }
+
+    /**
+     * Returns the states of the internal nodes (in postorder) after
+     * trace-back, decoded with states (in the order of the rows and columns of
+     * the step matrix).
+     *
+     */
+    public <S> CharacterStateMatrix<S> getInternalStatesMatrix( final List<S> states ) {
+        if ( !isReturnInternalStates() ) {
+            throw new RuntimeException( "creation of internal state matrix has not been enabled" );
+        }
+        if ( states.size() != getNumberOfStates() ) {
+            throw new IllegalArgumentException( "number of states [" + states.size()
+                    + "] is not equal to size of step matrix [" + getNumberOfStates() + "]" );
+        }
+        final CharacterStateMatrix<S> m = createInternalStatesMatrix();
+        final ParsimonyNodeIndex index = getIndex();
+        for( int c = 0; c < _characters.length; ++c ) {
+            for( int i = 0; i < index.getNumberOfNodes(); ++i ) {
+                if ( !index.isExternal( i ) ) {
+                    m.setState( index.getInternalNodeIndex( i ), c, states.get( _node_states[ c ][ i ] ) );
+                }
+            }
+        }
+        return m;
+    }
+
+    public int getNumberOfStates() {
+        return _number_of_states;
+    }
+
+    /**
+     * Returns the number of branches (summed over all characters) with
+     * different states (after trace-back) at both ends.
+     *
+     */
+    public int getTotalChanges() {
+        return _total_changes;
+    }
+
+    public int getTotalUnchanged() {
+        return _total_unchanged;
+    }
+
+    /**
+     * Sets the number of threads (default: one). Each thread uses its own
+     * cost array, for a contiguous range of characters.
+     *
+     */
+    public void setNumberOfThreads( final int number_of_threads ) {
+        ParallelUtil.checkNumberOfThreads( number_of_threads );
+        _number_of_threads = number_of_threads;
+    }
+
+    /**
+     * Sets whether to choose randomly among states of equal cost during
+     * trace-back (each character uses its own random number stream).
+     *
+     */
+    public void setRandomize( final boolean randomize ) {
+        if ( randomize && isUseLast() ) {
+            throw new IllegalArgumentException( "attempt to allways use last state (ordered) if more than one choices and randomization at the same time" );
+        }
+        _randomize = randomize;
+    }
+
+    public void setRandomNumberSeed( final long random_number_seed ) {
+        if ( !isRandomize() ) {
+            throw new IllegalArgumentException( "attempt to set random number generator seed without randomization enabled" );
+        }
+        _random_number_seed = random_number_seed;
+    }
+
+    public void setReturnGainLossMatrix( final boolean return_gain_loss ) {
+        _return_gain_loss = return_gain_loss;
+    }
+
+    public void setReturnInternalStates( final boolean return_internal_states ) {
+        _return_internal_states = return_internal_states;
+    }
+
+    /**
+     * This sets whether to use the first or last (highest) state among states
+     * of equal cost during trace-back. For randomized choices set randomize to
+     * true (and this to false).
+     *
+     * @param use_last
+     */
+    public void setUseLast( final boolean use_last ) {
+        if ( use_last && isRandomize() ) {
+            throw new IllegalArgumentException( "attempt to allways use last state (ordered) if more than one choices and randomization at the same time" );
+        }
+        _use_last = use_last;
+    }
+
+    // Returns the state with the lowest cost at node (plus the step cost from
+    // parent_state, unless negative), resolving ties as set.
+    private int chooseState( final int[] costs, final int node, final int parent_state, final Random random ) {
+        final int n = getNumberOfStates();
+        final int offset = node * n;
+        final int row = parent_state * n;
+        int chosen = 0;
+        int best = Integer.MAX_VALUE;
+        int ties = 0;
+        for( int s = 0; s < n; ++s ) {
+            final int cost = parent_state < 0 ? costs[ offset + s ] : costs[ offset + s ] + _step_matrix[ row + s ];
+            if ( cost < best ) {
+                best = cost;
+                chosen = s;
+                ties = 1;
+            }
+            else if ( cost == best ) {
+                ++ties;
+                if ( isUseLast() || ( ( random != null ) && ( random.nextInt( ties ) == 0 ) ) ) {
+                    chosen = s;
+                }
+            }
+        }
+        return chosen;
+    }
+
+    private <S> CharacterStateMatrix<S> createInternalStatesMatrix() {
+        final ParsimonyNodeIndex index = getIndex();
+        final CharacterStateMatrix<S> m = new BasicCharacterStateMatrix<S>( index.getNumberOfInternalNodes(),
+                                                                            _characters.length );
+        for( int i = 0; i < index.getNumberOfNodes(); ++i ) {
+            if ( !index.isExternal( i ) ) {
+                m.setIdentifier( index.getInternalNodeIndex( i ), index.getNodeIdentifier( i ) );
+            }
+        }
+        for( int c = 0; c < _characters.length; ++c ) {
+            m.setCharacter( c, _characters[ c ] );
+        }
+        return m;
+    }
+
+    private void execute( final Phylogeny p,
+                          final String[] identifiers,
+                          final String[] characters,
+                          final int[][] external_node_states ) {
+        if ( !p.isRooted() ) {
+            throw new IllegalArgumentException( "attempt to execute Sankoff parsimony on unroored phylogeny" );
+        }
+        if ( ( identifiers.length != p.getNumberOfExternalNodes() )
+                || ( external_node_states.length != identifiers.length ) ) {
+            throw new IllegalArgumentException( "number of external nodes in phylogeny ["
+                    + p.getNumberOfExternalNodes() + "] and number of indentifiers [" + identifiers.length
+                    + "] in matrix are not equal" );
+        }
+        for( int i = 0; i < external_node_states.length; ++i ) {
+            if ( external_node_states[ i ].length != characters.length ) {
+                throw new IllegalArgumentException( "number of characters for identifier [" + identifiers[ i ]
+                        + "] is not " + characters.length );
+            }
+            for( int c = 0; c < characters.length; ++c ) {
+                final int state = external_node_states[ i ][ c ];
+                if ( ( state < UNKNOWN ) || ( state >= getNumberOfStates() ) ) {
+                    throw new IllegalArgumentException( "illegal state [" + state + "] at [" + i + ", " + c + "]" );
+                }
+            }
+        }
+        reset();
+        final ParsimonyNodeIndex index = ParsimonyNodeIndex.createInstance( p );
+        final int[] identifier_nodes = index.mapIdentifiers( p, identifiers );
+        final int[][] node_states = isReturnInternalStates() || isReturnGainLossMatrix() ? new int[ characters.length ][]
+                : null;
+        final ParallelParsimony.RangeTask task = new ParallelParsimony.RangeTask() {
+
+            @Override
+            public ParallelParsimony.Counts execute( final int first, final int last ) {
+                return executeForCharacters( index, identifier_nodes, external_node_states, node_states, first, last );
+            }
+        };
+        final ParallelParsimony.Counts counts = ParallelParsimony.execute( characters.length,
+                                                                           getNumberOfThreads(),
+                                                                           task );
+        _index = index;
+        _characters = characters;
+        _node_states = node_states;
+        _cost = counts._cost;
+        _total_changes = counts._changes;
+        _total_unchanged = counts._unchanged;
+    }
+
+    // Each character has its own random number stream (if randomized), thus
+    // the results do not depend on how characters are distributed over threads.
+    private ParallelParsimony.Counts executeForCharacters( final ParsimonyNodeIndex index,
+                                                           final int[] identifier_nodes,
+                                                           final int[][] external_node_states,
+                                                           final int[][] node_states,
+                                                           final int first_character,
+                                                           final int last_character ) {
+        final ParallelParsimony.Counts counts = new ParallelParsimony.Counts();
+        final int n = getNumberOfStates();
+        final int[] costs = new int[ index.getNumberOfNodes() * n ];
+        final int[] states = new int[ index.getNumberOfNodes() ];
+        for( int c = first_character; c < last_character; ++c ) {
+            for( int identifier_index = 0; identifier_index < identifier_nodes.length; ++identifier_index ) {
+                final int offset = identifier_nodes[ identifier_index ] * n;
+                final int state = external_node_states[ identifier_index ][ c ];
+                for( int s = 0; s < n; ++s ) {
+                    costs[ offset + s ] = ( ( state == UNKNOWN ) || ( state == s ) ) ? 0 : INFINITE_COST;
+                }
+            }
+            final Random random = isRandomize() ? new Random( ParallelParsimony
+                    .calcRandomNumberSeed( getRandomNumberSeed(), c ) ) : null;
+            executeForOneCharacter( index, costs, states, random, counts );
+            if ( node_states != null ) {
+                node_states[ c ] = states.clone();
+            }
+        }
+        return counts;
+    }
+
+    private void executeForOneCharacter( final ParsimonyNodeIndex index,
+                                         final int[] costs,
+                                         final int[] states,
+                                         final Random random,
+                                         final ParallelParsimony.Counts counts ) {
+        final int n = getNumberOfStates();
+        final int number_of_nodes = index.getNumberOfNodes();
+        // Post-order: the lowest cost of the subtree of each node for each state
+        // of the node.
+        for( int i = 0; i < number_of_nodes; ++i ) {
+            if ( !index.isExternal( i ) ) {
+                final int offset = i * n;
+                for( int s = 0; s < n; ++s ) {
+                    costs[ offset + s ] = 0;
+                }
+                for( final int child : index.getChildren( i ) ) {
+                    final int child_offset = child * n;
+                    for( int s = 0; s < n; ++s ) {
+                        final int row = s * n;
+                        int best = INFINITE_COST;
+                        for( int t = 0; t < n; ++t ) {
+                            final int cost = _step_matrix[ row + t ] + costs[ child_offset + t ];
+                            if ( cost < best ) {
+                                best = cost;
+                            }
+                        }
+                        costs[ offset + s ] = Math.min( costs[ offset + s ] + best, INFINITE_COST );
+                    }
+                }
+            }
+        }
+        // Pre-order (trace-back): the best state of each node given the state
+        // of its parent.
+        final int root = number_of_nodes - 1;
+        states[ root ] = chooseState( costs, root, -1, random );
+        counts._cost += costs[ ( root * n ) + states[ root ] ];
+        ++counts._unchanged;
+        for( int i = root - 1; i >= 0; --i ) {
+            final int parent_state = states[ index.getParent( i ) ];
+            states[ i ] = chooseState( costs, i, parent_state, random );
+            if ( states[ i ] == parent_state ) {
+                ++counts._unchanged;
+            }
+            else {
+                ++counts._changes;
+            }
+        }
+    }
+
+    private ParsimonyNodeIndex getIndex() {
+        if ( _index == null ) {
+            throw new IllegalStateException( "Sankoff parsimony has not been executed" );
+        }
+        return _index;
+    }
+
+    private int getNumberOfThreads() {
+        return _number_of_threads;
+    }
+
+    private long getRandomNumberSeed() {
+        return _random_number_seed;
+    }
+
+    private boolean isRandomize() {
+        return _randomize;
+    }
+
+    private boolean isReturnGainLossMatrix() {
+        return _return_gain_loss;
+    }
+
+    private boolean isReturnInternalStates() {
+        return _return_internal_states;
+    }
+
+    private boolean isUseLast() {
+        return _use_last;
+    }
+
+    private void reset() {
+        _index = null;
+        _characters = null;
+        _node_states = null;
+        _cost = 0;
+        _total_changes = 0;
+        _total_unchanged = 0;
+    }
+
+    /**
+     * Creates an instance for the given step matrix: step_matrix[ i ][ j ] is
+     * the cost of a change from state i to state j (must not be negative).
+     *
+     */
+    public static IntSankoffParsimony createInstance( final int[][] step_matrix ) {
+        return new IntSankoffParsimony( step_matrix );
+    }
+
+    /**
+     * Returns the step matrix of unweighted (Fitch) parsimony: each change
+     * costs one.
+     *
+     */
+    public static int[][] createUnitStepMatrix( final int number_of_states ) {
+        if ( number_of_states < 1 ) {
+            throw new IllegalArgumentException( "number of states cannot be smaller than one" );
+        }
+        final int[][] step_matrix = new int[ number_of_states ][ number_of_states ];
+        for( int from = 0; from < number_of_states; ++from ) {
+            for( int to = 0; to < number_of_states; ++to ) {
+                step_matrix[ from ][ to ] = from == to ? 0 : 1;
+            }
+        }
+        return step_matrix;
+    }
+}
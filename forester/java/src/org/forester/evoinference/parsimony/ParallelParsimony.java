@@ -0,0 +1,94 @@
+// $Id:
+// FORESTER -- software libraries and applications
+// for evolutionary biology research and applications.
+//
+// Copyright (C) 2014 Christian M. Zmasek
+// Copyright (C) 2014 Sanford-Burnham Medical Research Institute
+// All rights reserved
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA
+//
+// Contact: phylosoft @ gmail . com
+// WWW: https://sites.google.com/site/cmzmasek/home/software/forester
+
+
+package org.forester.evoinference.parsimony;
+
+import org.forester.util.ParallelUtil;
+
+/*
+ * Runs a parsimony method on disjoint, contiguous ranges of characters (or of
+ * 64 character words), see ParallelUtil.executeRanges, and sums up the counts
+ * of the ranges. Since characters are independent, the results do not depend on the
+ * number of threads (as long as randomized tie resolution uses one random
+ * number stream per character, see calcRandomNumberSeed).
+ */
+final class ParallelParsimony {
+
+    private ParallelParsimony() {
+        // Hidden constructor.
+    }
+
+    /**
+     * Executes task on ranges covering 0 to number_of_units - 1 and returns
+     * the sum of their counts. With one thread, task is executed (once, on
+     * the whole range) in the calling thread.
+     */
+    static Counts execute( final int number_of_units, final int threads, final RangeTask task ) {
+        final Counts counts = new Counts();
+        for( final Counts range_counts : ParallelUtil.executeRanges( number_of_units, threads, task ) ) {
+            counts.add( range_counts );
+        }
+        return counts;
+    }
+
+    /**
+     * Returns the seed of the random number stream for character
+     * character_index (derived from random_number_seed).
+     */
+    static long calcRandomNumberSeed( final long random_number_seed, final int character_index ) {
+        long z = random_number_seed + ( ( character_index + 1L ) * 0x9E3779B97F4A7C15L );
+        z = ( z ^ ( z >>> 30 ) ) * 0xBF58476D1CE4E5B9L;
+        z = ( z ^ ( z >>> 27 ) ) * 0x94D049BB133111EBL;
+        return z ^ ( z >>> 31 );
+    }
+
+    static final class Counts {
+
+        int _changes;
+        int _cost;
+        int _gains;
+        int _losses;
+        int _unchanged;
+
+        void add( final Counts counts ) {
+            _changes += counts._changes;
+            _cost += counts._cost;
+            _gains += counts._gains;
+            _losses += counts._losses;
+            _unchanged += counts._unchanged;
+        }
+    }
+
+    interface RangeTask extends ParallelUtil.RangeTask<Counts> {
+
+        /**
+         * Executes the parsimony method for units first to last - 1 (the
+         * results for other units must not be written).
+         */
+        @Override
+        Counts execute( int first, int last );
+    }
+}
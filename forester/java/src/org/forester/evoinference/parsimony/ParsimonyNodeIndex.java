@@ -0,0 +1,149 @@
+// $Id:
+// FORESTER -- software libraries and applications
+// for evolutionary biology research and applications.
+//
+// Copyright (C) 2014 Christian M. Zmasek
+// Copyright (C) 2014 Sanford-Burnham Medical Research Institute
+// All rights reserved
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA
+//
+// Contact: phylosoft @ gmail . com
+// WWW: https://sites.google.com/site/cmzmasek/home/software/forester
+
+
+package org.forester.evoinference.parsimony;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.forester.evoinference.matrix.character.CharacterStateMatrix;
+import org.forester.phylogeny.Phylogeny;
+import org.forester.phylogeny.PhylogenyNode;
+import org.forester.phylogeny.iterators.PhylogenyNodeIterator;
+import org.forester.util.ForesterUtil;
+
+/*
+ * The nodes of a phylogeny in postorder, with parent and child node indices,
+ * for the array based parsimony implementations. Going through the indices in
+ * reverse order visits each parent before its children (as a preorder
+ * traversal does).
+ */
+final class ParsimonyNodeIndex {
+
+    private final int[][]                     _children;
+    private final int[]                       _internal_node_indices;
+    private final Map<PhylogenyNode, Integer> _node_indices;
+    private final PhylogenyNode[]             _nodes;
+    private final int                         _number_of_internal_nodes;
+    private final int[]                       _parents;
+
+    private ParsimonyNodeIndex( final Phylogeny p ) {
+        final int n = p.getNodeCount();
+        _nodes = new PhylogenyNode[ n ];
+        _parents = new int[ n ];
+        _children = new int[ n ][];
+        _internal_node_indices = new int[ n ];
+        _node_indices = new IdentityHashMap<PhylogenyNode, Integer>( n );
+        int i = 0;
+        int internal = 0;
+        for( final PhylogenyNodeIterator postorder = p.iteratorPostorder(); postorder.hasNext(); ) {
+            final PhylogenyNode node = postorder.next();
+            _nodes[ i ] = node;
+            _node_indices.put( node, i );
+            _children[ i ] = new int[ node.getNumberOfDescendants() ];
+            for( int c = 0; c < node.getNumberOfDescendants(); ++c ) {
+                final int child = _node_indices.get( node.getChildNode( c ) );
+                _children[ i ][ c ] = child;
+                _parents[ child ] = i;
+            }
+            _internal_node_indices[ i ] = node.isInternal() ? internal++ : -1;
+            ++i;
+        }
+        _parents[ n - 1 ] = -1;
+        _number_of_internal_nodes = internal;
+    }
+
+    int[] getChildren( final int i ) {
+        return _children[ i ];
+    }
+
+    /**
+     * Returns the index of node i among the internal nodes in postorder, or
+     * -1 if node i is external.
+     */
+    int getInternalNodeIndex( final int i ) {
+        return _internal_node_indices[ i ];
+    }
+
+    PhylogenyNode getNode( final int i ) {
+        return _nodes[ i ];
+    }
+
+    /**
+     * Returns the name of node i, or its id if it has no name (as used for the
+     * identifiers of gain-loss and internal states matrices).
+     */
+    String getNodeIdentifier( final int i ) {
+        final PhylogenyNode node = _nodes[ i ];
+        return ForesterUtil.isEmpty( node.getName() ) ? String.valueOf( node.getId() ) : node.getName();
+    }
+
+    int getNumberOfInternalNodes() {
+        return _number_of_internal_nodes;
+    }
+
+    int getNumberOfNodes() {
+        return _nodes.length;
+    }
+
+    /**
+     * Returns the index of the parent of node i, or -1 for the root.
+     */
+    int getParent( final int i ) {
+        return _parents[ i ];
+    }
+
+    boolean isExternal( final int i ) {
+        return _children[ i ].length == 0;
+    }
+
+    /**
+     * Returns, for each identifier of matrix, the index of the node with this
+     * name.
+     */
+    int[] mapIdentifiers( final Phylogeny p, final CharacterStateMatrix<?> matrix ) {
+        final int[] identifier_nodes = new int[ matrix.getNumberOfIdentifiers() ];
+        for( int identifier_index = 0; identifier_index < identifier_nodes.length; ++identifier_index ) {
+            identifier_nodes[ identifier_index ] = _node_indices.get( p.getNode( matrix.getIdentifier( identifier_index ) ) );
+        }
+        return identifier_nodes;
+    }
+
+    /**
+     * Returns, for each identifier, the index of the node with this name.
+     */
+    int[] mapIdentifiers( final Phylogeny p, final String[] identifiers ) {
+        final int[] identifier_nodes = new int[ identifiers.length ];
+        for( int identifier_index = 0; identifier_index < identifier_nodes.length; ++identifier_index ) {
+            identifier_nodes[ identifier_index ] = _node_indices.get( p.getNode( identifiers[ identifier_index ] ) );
+        }
+        return identifier_nodes;
+    }
+
+    static ParsimonyNodeIndex createInstance( final Phylogeny p ) {
+        return new ParsimonyNodeIndex( p );
+    }
+}
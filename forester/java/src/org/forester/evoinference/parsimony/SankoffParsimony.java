@@ -43,6 +43,7 @@ import org.forester.phylogeny.Phylogeny;
 import org.forester.phylogeny.PhylogenyNode;
 import org.forester.phylogeny.iterators.PhylogenyNodeIterator;
 import org.forester.util.ForesterUtil;
+import org.forester.util.ParallelUtil;
 
 /**
  *
@@ -76,16 +77,16 @@ public class SankoffParsimony<STATE_TYPE> {
     private boolean                                _randomize;
     private boolean                                _use_last;
     private int                                    _cost;
+    private int                                    _number_of_threads              = 1;
     private long                                   _random_number_seed;
-    private Random                                 _random_generator;
 
     public SankoffParsimony() {
         init();
     }
 
-    private int determineIndex( final SortedSet<STATE_TYPE> current_node_states, int i ) {
+    private int determineIndex( final SortedSet<STATE_TYPE> current_node_states, int i, final Random random ) {
         if ( isRandomize() ) {
-            i = getRandomGenerator().nextInt( current_node_states.size() );
+            i = random.nextInt( current_node_states.size() );
         }
         else if ( isUseLast() ) {
             i = current_node_states.size() - 1;
@@ -112,12 +113,21 @@ public class SankoffParsimony<STATE_TYPE> {
         if ( isReturnGainLossMatrix() ) {
             initializeGainLossMatrix( p, external_node_states_matrix );
         }
-        for( int character_index = 0; character_index < external_node_states_matrix.getNumberOfCharacters(); ++character_index ) {
-            executeForOneCharacter( p,
-                                    getStatesForCharacter( p, external_node_states_matrix, character_index ),
-                                    getStatesForCharacterForTraceback( p, external_node_states_matrix, character_index ),
-                                    character_index );
-        }
+        final ParsimonyNodeIndex index = ParsimonyNodeIndex.createInstance( p );
+        final int[] identifier_nodes = index.mapIdentifiers( p, external_node_states_matrix );
+        final ParallelParsimony.RangeTask task = new ParallelParsimony.RangeTask() {
+
+            @Override
+            public ParallelParsimony.Counts execute( final int first, final int last ) {
+                return executeForCharacters( p, index, identifier_nodes, external_node_states_matrix, first, last );
+            }
+        };
+        final ParallelParsimony.Counts counts = ParallelParsimony.execute( external_node_states_matrix
+                .getNumberOfCharacters(), getNumberOfThreads(), task );
+        setCost( counts._cost );
+        setTotalGains( counts._gains );
+        setTotalLosses( counts._losses );
+        setTotalUnchanged( counts._unchanged );
         if ( external_node_states_matrix.getState( 0, 0 ) instanceof BinaryStates ) {
             if ( ( external_node_states_matrix.getNumberOfCharacters() * p.getNumberOfBranches() ) != ( getTotalGains()
                     + getTotalLosses() + getTotalUnchanged() ) ) {
@@ -126,12 +136,42 @@ public class SankoffParsimony<STATE_TYPE> {
         }
     }
 
+    // Each character has its own random number stream (if randomized), thus
+    // the results do not depend on how characters are distributed over threads.
+    private ParallelParsimony.Counts executeForCharacters( final Phylogeny p,
+                                                           final ParsimonyNodeIndex index,
+                                                           final int[] identifier_nodes,
+                                                           final CharacterStateMatrix<STATE_TYPE> external_node_states_matrix,
+                                                           final int first_character,
+                                                           final int last_character ) {
+        final ParallelParsimony.Counts counts = new ParallelParsimony.Counts();
+        for( int character_index = first_character; character_index < last_character; ++character_index ) {
+            final Random random = isRandomize() ? new Random( ParallelParsimony
+                    .calcRandomNumberSeed( getRandomNumberSeed(), character_index ) ) : null;
+            executeForOneCharacter( p,
+                                    getStatesForCharacter( index,
+                                                           identifier_nodes,
+                                                           external_node_states_matrix,
+                                                           character_index ),
+                                    getStatesForCharacterForTraceback( index,
+                                                                       identifier_nodes,
+                                                                       external_node_states_matrix,
+                                                                       character_index ),
+                                    character_index,
+                                    random,
+                                    counts );
+        }
+        return counts;
+    }
+
     private void executeForOneCharacter( final Phylogeny p,
                                          final Map<PhylogenyNode, SortedSet<STATE_TYPE>> states,
                                          final Map<PhylogenyNode, STATE_TYPE> traceback_states,
-                                         final int character_state_column ) {
+                                         final int character_state_column,
+                                         final Random random,
+                                         final ParallelParsimony.Counts counts ) {
         postOrderTraversal( p, states );
-        preOrderTraversal( p, states, traceback_states, character_state_column );
+        preOrderTraversal( p, states, traceback_states, character_state_column, random, counts );
     }
 
     public int getCost() {
@@ -183,8 +223,8 @@ public class SankoffParsimony<STATE_TYPE> {
         return states_in_child_nodes;
     }
 
-    private Random getRandomGenerator() {
-        return _random_generator;
+    private int getNumberOfThreads() {
+        return _number_of_threads;
     }
 
     private long getRandomNumberSeed() {
@@ -199,7 +239,8 @@ public class SankoffParsimony<STATE_TYPE> {
         return it.next();
     }
 
-    private Map<PhylogenyNode, SortedSet<STATE_TYPE>> getStatesForCharacter( final Phylogeny p,
+    private Map<PhylogenyNode, SortedSet<STATE_TYPE>> getStatesForCharacter( final ParsimonyNodeIndex index,
+                                                                             final int[] identifier_nodes,
                                                                              final CharacterStateMatrix<STATE_TYPE> matrix,
                                                                              final int character_index ) {
         final Map<PhylogenyNode, SortedSet<STATE_TYPE>> states = new HashMap<PhylogenyNode, SortedSet<STATE_TYPE>>( matrix
@@ -212,12 +253,13 @@ public class SankoffParsimony<STATE_TYPE> {
             }
             final SortedSet<STATE_TYPE> l = new TreeSet<STATE_TYPE>();
             l.add( state );
-            states.put( p.getNode( matrix.getIdentifier( indentifier_index ) ), l );
+            states.put( index.getNode( identifier_nodes[ indentifier_index ] ), l );
         }
         return states;
     }
 
-    private Map<PhylogenyNode, STATE_TYPE> getStatesForCharacterForTraceback( final Phylogeny p,
+    private Map<PhylogenyNode, STATE_TYPE> getStatesForCharacterForTraceback( final ParsimonyNodeIndex index,
+                                                                              final int[] identifier_nodes,
                                                                               final CharacterStateMatrix<STATE_TYPE> matrix,
                                                                               final int character_index ) {
         final Map<PhylogenyNode, STATE_TYPE> states = new HashMap<PhylogenyNode, STATE_TYPE>( matrix.getNumberOfIdentifiers() );
@@ -227,7 +269,7 @@ public class SankoffParsimony<STATE_TYPE> {
                 throw new IllegalArgumentException( "value at [" + indentifier_index + ", " + character_index
                                                     + "] is null" );
             }
-            states.put( p.getNode( matrix.getIdentifier( indentifier_index ) ), state );
+            states.put( index.getNode( identifier_nodes[ indentifier_index ] ), state );
         }
         return states;
     }
@@ -258,10 +300,6 @@ public class SankoffParsimony<STATE_TYPE> {
         return states_in_child_nodes;
     }
 
-    private void increaseCost() {
-        ++_cost;
-    }
-
     private void init() {
         setReturnInternalStates( RETURN_INTERNAL_STATES_DEFAULT );
         setReturnGainLossMatrix( RETURN_GAIN_LOSS_MATRIX_DEFAULT );
@@ -359,14 +397,16 @@ public class SankoffParsimony<STATE_TYPE> {
     private void preOrderTraversal( final Phylogeny p,
                                     final Map<PhylogenyNode, SortedSet<STATE_TYPE>> states,
                                     final Map<PhylogenyNode, STATE_TYPE> traceback_states,
-                                    final int character_state_column ) throws AssertionError {
+                                    final int character_state_column,
+                                    final Random random,
+                                    final ParallelParsimony.Counts counts ) throws AssertionError {
         for( final PhylogenyNodeIterator preorder = p.iteratorPreorder(); preorder.hasNext(); ) {
             final PhylogenyNode current_node = preorder.next();
             final SortedSet<STATE_TYPE> current_node_states = states.get( current_node );
             STATE_TYPE parent_state = null;
             if ( current_node.isRoot() ) {
                 int i = 0;
-                i = determineIndex( current_node_states, i );
+                i = determineIndex( current_node_states, i, random );
                 traceback_states.put( current_node, getStateAt( i, current_node_states ) );
             }
             else {
@@ -375,9 +415,9 @@ public class SankoffParsimony<STATE_TYPE> {
                     traceback_states.put( current_node, parent_state );
                 }
                 else {
-                    increaseCost();
+                    ++counts._cost;
                     int i = 0;
-                    i = determineIndex( current_node_states, i );
+                    i = determineIndex( current_node_states, i, random );
                     traceback_states.put( current_node, getStateAt( i, current_node_states ) );
                 }
             }
@@ -394,16 +434,16 @@ public class SankoffParsimony<STATE_TYPE> {
                 final BinaryStates parent_binary_state = ( BinaryStates ) parent_state;
                 final BinaryStates current_binary_state = ( BinaryStates ) traceback_states.get( current_node );
                 if ( ( parent_binary_state == PRESENT ) && ( current_binary_state == ABSENT ) ) {
-                    ++_total_losses;
+                    ++counts._losses;
                     setGainLossState( character_state_column, current_node, LOSS );
                 }
                 else if ( ( ( parent_binary_state == ABSENT ) || ( parent_binary_state == null ) )
                         && ( current_binary_state == PRESENT ) ) {
-                    ++_total_gains;
+                    ++counts._gains;
                     setGainLossState( character_state_column, current_node, GAIN );
                 }
                 else {
-                    ++_total_unchanged;
+                    ++counts._unchanged;
                     if ( current_binary_state == PRESENT ) {
                         setGainLossState( character_state_column, current_node, UNCHANGED_PRESENT );
                     }
@@ -414,7 +454,7 @@ public class SankoffParsimony<STATE_TYPE> {
             }
             else if ( isReturnGainLossMatrix() && current_node.isRoot() ) {
                 final BinaryStates current_binary_state = ( BinaryStates ) traceback_states.get( current_node );
-                ++_total_unchanged; //new
+                ++counts._unchanged; //new
                 if ( current_binary_state == PRESENT ) {//new
                     setGainLossState( character_state_column, current_node, UNCHANGED_PRESENT );//new
                 }//new
@@ -431,7 +471,6 @@ public class SankoffParsimony<STATE_TYPE> {
         setTotalLosses( 0 );
         setTotalGains( 0 );
         setTotalUnchanged( 0 );
-        setRandomGenerator( new Random( getRandomNumberSeed() ) );
     }
 
     private void setCost( final int cost ) {
@@ -476,8 +515,14 @@ public class SankoffParsimony<STATE_TYPE> {
         _internal_states_matrix_after_traceback = internal_states_matrix_after_traceback;
     }
 
-    private void setRandomGenerator( final Random random_generator ) {
-        _random_generator = random_generator;
+    /**
+     * Sets the number of threads (default: one).
+     *
+     * @param number_of_threads
+     */
+    public void setNumberOfThreads( final int number_of_threads ) {
+        ParallelUtil.checkNumberOfThreads( number_of_threads );
+        _number_of_threads = number_of_threads;
     }
 
     public void setRandomize( final boolean randomize ) {
@@ -0,0 +1,281 @@
+// $Id:
+// FORESTER -- software libraries and applications
+// for evolutionary biology research and applications.
+//
+// Copyright (C) 2014 Christian M. Zmasek
+// Copyright (C) 2014 Sanford-Burnham Medical Research Institute
+// All rights reserved
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA
+//
+// WWW: https://sites.google.com/site/cmzmasek/home/software/forester
+
+package org.forester.evoinference.tools;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.forester.evoinference.distance.NeighborJoiningF;
+import org.forester.evoinference.distance.PairwiseDistanceCalculator;
+import org.forester.evoinference.distance.PairwiseDistanceCalculator.PWD_DISTANCE_METHOD;
+import org.forester.evoinference.matrix.distance.BasicSymmetricalDistanceMatrix;
+import org.forester.msa.Msa;
+import org.forester.phylogeny.Phylogeny;
+import org.forester.phylogeny.PhylogenyNode;
+import org.forester.phylogeny.data.Confidence;
+import org.forester.phylogeny.iterators.PhylogenyNodeIterator;
+import org.forester.util.ForesterUtil;
+import org.forester.util.ParallelUtil;
+
+/*
+ * Bootstrap support for distance based (pairwise distances + neighbor joining)
+ * trees.
+ *
+ * Each bootstrap replicate is represented as a vector of column weights
+ * (how often each column of the original msa is present in the resampled
+ * msa), thus no resampled msas are created. Replicates are processed on a
+ * thread pool and each replicate tree is immediately reduced to its splits,
+ * which are matched against the splits of the target tree; neither replicate
+ * distance matrices nor replicate trees are kept.
+ *
+ * For the same seed, the support values are identical to the ones obtained
+ * by inferring trees for the msas created with BootstrapResampler and
+ * evaluating them with ConfidenceAssessor (strict).
+ */
+public final class BootstrapNeighborJoining {
+
+    public final static String        DEFAULT_CONFIDENCE_TYPE = "bootstrap";
+    private final Msa                 _msa;
+    private final PWD_DISTANCE_METHOD _pwd_distance_method;
+    private final int                 _threads;
+
+    private BootstrapNeighborJoining( final Msa msa, final PWD_DISTANCE_METHOD pwd_distance_method, final int threads ) {
+        if ( msa.getNumberOfSequences() < 3 ) {
+            throw new IllegalArgumentException( "need at least three sequences for bootstrap analysis" );
+        }
+        ParallelUtil.checkNumberOfThreads( threads );
+        _msa = msa;
+        _pwd_distance_method = pwd_distance_method;
+        _threads = threads;
+    }
+
+    /**
+     * Infers a tree from the (not resampled) msa and adds bootstrap support
+     * values (counts) of type "bootstrap" to it.
+     *
+     * @param n
+     *            the number of bootstrap replicates
+     * @param seed
+     *            the seed for the random number generator
+     * @return the tree inferred from the original msa, with support values
+     * @throws InterruptedException
+     */
+    public final Phylogeny execute( final int n, final long seed ) throws InterruptedException {
+        final Phylogeny target = NeighborJoiningF.createInstance( false, 5 )
+                .execute( PairwiseDistanceCalculator.calcDistances( _msa, _pwd_distance_method, createUnitWeights() ) );
+        evaluate( DEFAULT_CONFIDENCE_TYPE, target, n, seed );
+        return target;
+    }
+
+    /**
+     * Adds bootstrap support values (counts) of the given type to the
+     * internal nodes of target. The names of the external nodes of target
+     * have to correspond to the identifiers of the msa.
+     *
+     * @param confidence_type
+     * @param target
+     * @param n
+     *            the number of bootstrap replicates
+     * @param seed
+     *            the seed for the random number generator
+     * @throws InterruptedException
+     */
+    public final void evaluate( final String confidence_type, final Phylogeny target, final int n, final long seed )
+            throws InterruptedException {
+        if ( ForesterUtil.isEmpty( confidence_type ) ) {
+            throw new IllegalArgumentException( "attempt to use empty confidence type" );
+        }
+        if ( n < 1 ) {
+            throw new IllegalArgumentException( "number of bootstrap resamples cannot be zero or negative" );
+        }
+        if ( _msa.getLength() < 2 ) {
+            throw new IllegalArgumentException( "Msa length cannot be smaller than two for bootstrap resampling" );
+        }
+        final Map<String, Integer> id_to_index = createIdToIndexMap();
+        final List<PhylogenyNode> target_nodes = new ArrayList<PhylogenyNode>();
+        final List<BitSet> target_splits = new ArrayList<BitSet>();
+        collectTargetSplits( confidence_type, target, id_to_index, target_nodes, target_splits );
+        final AtomicIntegerArray counts = new AtomicIntegerArray( target_splits.size() );
+        final ExecutorService executor = Executors.newFixedThreadPool( _threads );
+        // Bounds the number of weight vectors waiting to be processed.
+        final Semaphore in_flight = new Semaphore( 2 * _threads );
+        final List<Future<?>> futures = new ArrayList<Future<?>>( n );
+        try {
+            final Random random = new Random( seed );
+            for( int i = 0; i < n; ++i ) {
+                final int[] weights = BootstrapResampler.createResampledColumnWeights( _msa.getLength(), random );
+                in_flight.acquire();
+                futures.add( executor.submit( new Runnable() {
+
+                    @Override
+                    public void run() {
+                        try {
+                            countSplits( weights, id_to_index, target_splits, counts );
+                        }
+                        finally {
+                            in_flight.release();
+                        }
+                    }
+                } ) );
+            }
+            for( final Future<?> future : futures ) {
+                future.get();
+            }
+        }
+        catch ( final ExecutionException e ) {
+            throw ParallelUtil.propagateCause( e );
+        }
+        finally {
+            executor.shutdownNow();
+        }
+        for( int i = 0; i < target_nodes.size(); ++i ) {
+            target_nodes.get( i ).getBranchData().addConfidence( new Confidence( counts.get( i ), confidence_type ) );
+        }
+    }
+
+    private final void countSplits( final int[] weights,
+                                    final Map<String, Integer> id_to_index,
+                                    final List<BitSet> target_splits,
+                                    final AtomicIntegerArray counts ) {
+        final BasicSymmetricalDistanceMatrix m = PairwiseDistanceCalculator.calcDistances( _msa,
+                                                                                           _pwd_distance_method,
+                                                                                           weights );
+        final Phylogeny phy = NeighborJoiningF.createInstance().execute( m );
+        final Set<BitSet> splits = new HashSet<BitSet>();
+        final Map<Long, BitSet> node_splits = new HashMap<Long, BitSet>();
+        for( final PhylogenyNodeIterator it = phy.iteratorPostorder(); it.hasNext(); ) {
+            final PhylogenyNode node = it.next();
+            final BitSet split = calcSplit( node, id_to_index, node_splits );
+            if ( !node.isExternal() && !node.isRoot() ) {
+                splits.add( normalize( ( BitSet ) split.clone() ) );
+            }
+        }
+        for( int i = 0; i < target_splits.size(); ++i ) {
+            if ( splits.contains( target_splits.get( i ) ) ) {
+                counts.incrementAndGet( i );
+            }
+        }
+    }
+
+    private final void collectTargetSplits( final String confidence_type,
+                                            final Phylogeny target,
+                                            final Map<String, Integer> id_to_index,
+                                            final List<PhylogenyNode> target_nodes,
+                                            final List<BitSet> target_splits ) {
+        if ( target.getNumberOfExternalNodes() != _msa.getNumberOfSequences() ) {
+            throw new IllegalArgumentException( "target does not have the same number of external nodes ["
+                    + target.getNumberOfExternalNodes() + "] as the msa has sequences ["
+                    + _msa.getNumberOfSequences() + "]" );
+        }
+        final PhylogenyNode root = target.getRoot();
+        final boolean skip_root_children = ( root.getNumberOfDescendants() == 2 )
+                && ( root.getChildNode1().isExternal() || root.getChildNode2().isExternal() );
+        final Map<Long, BitSet> node_splits = new HashMap<Long, BitSet>();
+        for( final PhylogenyNodeIterator it = target.iteratorPostorder(); it.hasNext(); ) {
+            final PhylogenyNode node = it.next();
+            final BitSet split = calcSplit( node, id_to_index, node_splits );
+            if ( !node.isExternal() && !node.isRoot() && !( skip_root_children && node.getParent().isRoot() ) ) {
+                for( final Confidence confidence : node.getBranchData().getConfidences() ) {
+                    if ( confidence.getType().equals( confidence_type ) ) {
+                        throw new IllegalArgumentException( "confidence [" + confidence_type
+                                                            + "] is already present in target" );
+                    }
+                }
+                target_nodes.add( node );
+                target_splits.add( normalize( ( BitSet ) split.clone() ) );
+            }
+        }
+    }
+
+    private final BitSet calcSplit( final PhylogenyNode node,
+                                    final Map<String, Integer> id_to_index,
+                                    final Map<Long, BitSet> node_splits ) {
+        final BitSet split;
+        if ( node.isExternal() ) {
+            final Integer index = id_to_index.get( node.getName() );
+            if ( index == null ) {
+                throw new IllegalArgumentException( "external node [" + node.getName() + "] not found in msa" );
+            }
+            split = new BitSet( _msa.getNumberOfSequences() );
+            split.set( index );
+        }
+        else {
+            split = node_splits.remove( node.getChildNode( 0 ).getId() );
+            for( int i = 1; i < node.getNumberOfDescendants(); ++i ) {
+                split.or( node_splits.remove( node.getChildNode( i ).getId() ) );
+            }
+        }
+        node_splits.put( node.getId(), split );
+        return split;
+    }
+
+    private final Map<String, Integer> createIdToIndexMap() {
+        final Map<String, Integer> id_to_index = new HashMap<String, Integer>();
+        for( int i = 0; i < _msa.getNumberOfSequences(); ++i ) {
+            id_to_index.put( _msa.getIdentifier( i ), i );
+        }
+        return id_to_index;
+    }
+
+    private final int[] createUnitWeights() {
+        final int[] weights = new int[ _msa.getLength() ];
+        for( int i = 0; i < weights.length; ++i ) {
+            weights[ i ] = 1;
+        }
+        return weights;
+    }
+
+    // A split and its complement are the same bipartition; the representation
+    // not containing the first sequence is used.
+    private final BitSet normalize( final BitSet split ) {
+        if ( split.get( 0 ) ) {
+            split.flip( 0, _msa.getNumberOfSequences() );
+        }
+        return split;
+    }
+
+    public final static BootstrapNeighborJoining createInstance( final Msa msa,
+                                                                 final PWD_DISTANCE_METHOD pwd_distance_method ) {
+        return new BootstrapNeighborJoining( msa, pwd_distance_method, Runtime.getRuntime().availableProcessors() );
+    }
+
+    public final static BootstrapNeighborJoining createInstance( final Msa msa,
+                                                                 final PWD_DISTANCE_METHOD pwd_distance_method,
+                                                                 final int threads ) {
+        return new BootstrapNeighborJoining( msa, pwd_distance_method, threads );
+    }
+}
@@ -88,4 +88,34 @@ public class BootstrapResampler {
         }
         return columns;
     }
+
+    /**
+     * Returns, for each of the n resampled msas, how often each column of the
+     * original msa is present in it. The random number sequence is consumed in
+     * the same order as in createResampledColumnPositions, thus for the same
+     * seed, the i-th weight vector describes the same resampled msa as the
+     * i-th array of resampled column positions.
+     *
+     * @param length
+     * @param n
+     * @param seed
+     * @return
+     */
+    public static int[][] createResampledColumnWeights( final int length, final int n, final long seed ) {
+        preconditionCheck( length, n );
+        final Random random = new Random( seed );
+        final int[][] weights = new int[ n ][];
+        for( int i = 0; i < n; ++i ) {
+            weights[ i ] = createResampledColumnWeights( length, random );
+        }
+        return weights;
+    }
+
+    public static int[] createResampledColumnWeights( final int length, final Random random ) {
+        final int[] weights = new int[ length ];
+        for( int col = 0; col < length; ++col ) {
+            ++weights[ random.nextInt( length ) ];
+        }
+        return weights;
+    }
 }
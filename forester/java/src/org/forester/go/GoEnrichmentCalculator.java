@@ -0,0 +1,392 @@
+// $Id:
+// FORESTER -- software libraries and applications
+// for evolutionary biology research and applications.
+//
+// Copyright (C) 2014 Christian M. Zmasek
+// Copyright (C) 2014 Sanford-Burnham Medical Research Institute
+// All rights reserved
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA
+//
+// Contact: phylosoft @ gmail . com
+// WWW: https://sites.google.com/site/cmzmasek/home/software/forester
+
+
+package org.forester.go;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.forester.util.ParallelUtil;
+
+/*
+ * Counting of GO categories and GO term enrichment analysis (term-for-term,
+ * hypergeometric distribution) for many experiment or study sets at once, on
+ * a GoOntologyIndex. Counts are kept in int arrays indexed by the dense term
+ * indices of the ontology index; sets are processed in parallel (see
+ * setNumberOfThreads), the results do not depend on the number of threads.
+ */
+public final class GoEnrichmentCalculator {
+
+    private final GoOntologyIndex _go_index;
+    private int                   _number_of_threads;
+
+    private GoEnrichmentCalculator( final GoOntologyIndex go_index ) {
+        if ( go_index == null ) {
+            throw new IllegalArgumentException( "GO ontology index is null" );
+        }
+        _go_index = go_index;
+        _number_of_threads = 1;
+    }
+
+    /**
+     * Tests, for each study set, the GO terms for over-representation among
+     * the items of the study set, compared to all items of the population.
+     * An item is annotated with a GO term if one of its GO ids is the id of
+     * the term or of one of its (direct or indirect) sub terms.
+     *
+     * @param population
+     *            all items (for example, genes or domains) with their GO ids
+     *            (items without GO ids count towards the population size)
+     * @param study_sets
+     *            the study sets, each a collection of items of the population
+     * @param categories
+     *            the GO terms to be tested (for example, a GO slim), or null
+     *            to test all terms annotating at least one item of a study set
+     * @param correction
+     *            the correction for multiple testing (within each study set)
+     * @return for each study set, the results for the tested terms, sorted by
+     *         p-value
+     */
+    public List<List<GoEnrichmentResult>> calculateEnrichment( final Map<String, ? extends Collection<GoId>> population,
+                                                               final List<? extends Collection<String>> study_sets,
+                                                               final List<GoId> categories,
+                                                               final Correction correction ) {
+        if ( ( population == null ) || population.isEmpty() ) {
+            throw new IllegalArgumentException( "population is empty" );
+        }
+        if ( correction == null ) {
+            throw new IllegalArgumentException( "correction for multiple testing is null" );
+        }
+        final GoOntologyIndex go_index = getGoIndex();
+        final int number_of_terms = go_index.getNumberOfGoTerms();
+        // For each item of the population, the indices of all terms it is annotated with.
+        final Map<String, Integer> item_indices = new HashMap<String, Integer>();
+        final int[][] item_terms = new int[ population.size() ][];
+        final int[] pop_term_counts = new int[ number_of_terms ];
+        final int[] marks = new int[ number_of_terms ];
+        Arrays.fill( marks, -1 );
+        final int[] buffer = new int[ number_of_terms ];
+        int item = 0;
+        for( final Map.Entry<String, ? extends Collection<GoId>> e : population.entrySet() ) {
+            int c = 0;
+            for( final GoId go_id : e.getValue() ) {
+                final int t = go_index.getIndex( go_id );
+                if ( marks[ t ] != item ) {
+                    marks[ t ] = item;
+                    buffer[ c++ ] = t;
+                }
+                final int n = go_index.getNumberOfAncestors( t );
+                for( int a = 0; a < n; ++a ) {
+                    final int s = go_index.getAncestor( t, a );
+                    if ( marks[ s ] != item ) {
+                        marks[ s ] = item;
+                        buffer[ c++ ] = s;
+                    }
+                }
+            }
+            item_terms[ item ] = Arrays.copyOf( buffer, c );
+            for( int i = 0; i < c; ++i ) {
+                ++pop_term_counts[ buffer[ i ] ];
+            }
+            item_indices.put( e.getKey(), item );
+            ++item;
+        }
+        final int pop_total = population.size();
+        int[] category_terms = null;
+        if ( categories != null ) {
+            category_terms = new int[ categories.size() ];
+            for( int i = 0; i < categories.size(); ++i ) {
+                category_terms[ i ] = go_index.getIndex( categories.get( i ) );
+            }
+        }
+        final double[] log_factorials = calcLogFactorials( pop_total );
+        final List<List<GoEnrichmentResult>> results = new ArrayList<List<GoEnrichmentResult>>( study_sets.size() );
+        for( int i = 0; i < study_sets.size(); ++i ) {
+            results.add( null );
+        }
+        final int[] my_category_terms = category_terms;
+        ParallelUtil.executeRanges( study_sets.size(), getNumberOfThreads(), new ParallelUtil.RangeTask<Void>() {
+
+            @Override
+            public Void execute( final int first, final int last ) {
+                final int[] study_term_counts = new int[ number_of_terms ];
+                final int[] item_marks = new int[ pop_total ];
+                Arrays.fill( item_marks, -1 );
+                for( int s = first; s < last; ++s ) {
+                    Arrays.fill( study_term_counts, 0 );
+                    int study_total = 0;
+                    for( final String study_item : study_sets.get( s ) ) {
+                        final Integer i = item_indices.get( study_item );
+                        if ( i == null ) {
+                            throw new IllegalArgumentException( "study set item [" + study_item
+                                    + "] is not part of the population" );
+                        }
+                        if ( item_marks[ i ] != s ) {
+                            item_marks[ i ] = s;
+                            ++study_total;
+                            for( final int t : item_terms[ i ] ) {
+                                ++study_term_counts[ t ];
+                            }
+                        }
+                    }
+                    final List<GoEnrichmentResult> set_results = new ArrayList<GoEnrichmentResult>();
+                    if ( my_category_terms != null ) {
+                        for( final int t : my_category_terms ) {
+                            set_results.add( createResult( t,
+                                                           pop_total,
+                                                           pop_term_counts[ t ],
+                                                           study_total,
+                                                           study_term_counts[ t ],
+                                                           log_factorials ) );
+                        }
+                    }
+                    else {
+                        for( int t = 0; t < number_of_terms; ++t ) {
+                            if ( study_term_counts[ t ] > 0 ) {
+                                set_results.add( createResult( t,
+                                                               pop_total,
+                                                               pop_term_counts[ t ],
+                                                               study_total,
+                                                               study_term_counts[ t ],
+                                                               log_factorials ) );
+                            }
+                        }
+                    }
+                    Collections.sort( set_results, new Comparator<GoEnrichmentResult>() {
+
+                        @Override
+                        public int compare( final GoEnrichmentResult r1, final GoEnrichmentResult r2 ) {
+                            final int c = Double.compare( r1.getP(), r2.getP() );
+                            return c != 0 ? c : r1.getGoId().compareTo( r2.getGoId() );
+                        }
+                    } );
+                    adjust( set_results, correction );
+                    results.set( s, set_results );
+                }
+                return null;
+            }
+        } );
+        return results;
+    }
+
+    /**
+     * Counts, for each experiment set, how many times each GO id in
+     * 'categories' is the id of, or the id of a (direct or indirect) super
+     * term of, the GO ids in the experiment set (the same counts as
+     * GoUtils.countCategoriesId for each experiment set).
+     *
+     * @return the counts, [experiment set][category] (in the order of the
+     *         arguments)
+     */
+    public int[][] countCategories( final List<GoId> categories, final List<? extends List<GoId>> experiment_sets ) {
+        final GoOntologyIndex go_index = getGoIndex();
+        // Categories are counted once for each time they appear in 'categories'.
+        final Map<GoId, Integer> category_slots = new HashMap<GoId, Integer>();
+        final List<GoId> distinct_categories = new ArrayList<GoId>();
+        for( final GoId cat : categories ) {
+            if ( !category_slots.containsKey( cat ) ) {
+                category_slots.put( cat, distinct_categories.size() );
+                distinct_categories.add( cat );
+            }
+        }
+        final int number_of_slots = distinct_categories.size();
+        final int[] multiplicities = new int[ number_of_slots ];
+        final int[] columns = new int[ categories.size() ];
+        for( int j = 0; j < categories.size(); ++j ) {
+            columns[ j ] = category_slots.get( categories.get( j ) );
+            ++multiplicities[ columns[ j ] ];
+        }
+        // The category slot for each indexed term whose GO id is a category, -1 otherwise.
+        final int[] term_slots = new int[ go_index.getNumberOfGoTerms() ];
+        Arrays.fill( term_slots, -1 );
+        for( int slot = 0; slot < number_of_slots; ++slot ) {
+            final GoId cat = distinct_categories.get( slot );
+            if ( go_index.contains( cat ) ) {
+                final int i = go_index.getIndex( cat );
+                if ( go_index.getGoTerm( i ).getGoId().equals( cat ) ) {
+                    term_slots[ i ] = slot;
+                }
+            }
+        }
+        final int[][] counts = new int[ experiment_sets.size() ][];
+        ParallelUtil.executeRanges( experiment_sets.size(), getNumberOfThreads(), new ParallelUtil.RangeTask<Void>() {
+
+            @Override
+            public Void execute( final int first, final int last ) {
+                final int[] category_counts = new int[ number_of_slots ];
+                final int[] last_counted = new int[ number_of_slots ];
+                for( int s = first; s < last; ++s ) {
+                    Arrays.fill( category_counts, 0 );
+                    Arrays.fill( last_counted, -1 );
+                    final List<GoId> experiment_set = experiment_sets.get( s );
+                    for( int e = 0; e < experiment_set.size(); ++e ) {
+                        final GoId experiment_id = experiment_set.get( e );
+                        final int i = go_index.getIndex( experiment_id );
+                        final int n = go_index.getNumberOfAncestors( i );
+                        for( int a = 0; a < n; ++a ) {
+                            final int slot = term_slots[ go_index.getAncestor( i, a ) ];
+                            if ( ( slot >= 0 ) && ( last_counted[ slot ] != e ) ) {
+                                last_counted[ slot ] = e;
+                                category_counts[ slot ] += multiplicities[ slot ];
+                            }
+                        }
+                        final Integer slot = category_slots.get( experiment_id );
+                        if ( ( slot != null ) && ( last_counted[ slot ] != e ) ) {
+                            last_counted[ slot ] = e;
+                            category_counts[ slot ] += multiplicities[ slot ];
+                        }
+                    }
+                    final int[] row = new int[ columns.length ];
+                    for( int j = 0; j < columns.length; ++j ) {
+                        row[ j ] = category_counts[ columns[ j ] ];
+                    }
+                    counts[ s ] = row;
+                }
+                return null;
+            }
+        } );
+        return counts;
+    }
+
+    public GoOntologyIndex getGoIndex() {
+        return _go_index;
+    }
+
+    /**
+     * Sets the number of threads among which the experiment (or study) sets
+     * are divided (default: one).
+     *
+     */
+    public void setNumberOfThreads( final int number_of_threads ) {
+        ParallelUtil.checkNumberOfThreads( number_of_threads );
+        _number_of_threads = number_of_threads;
+    }
+
+    private GoEnrichmentResult createResult( final int term,
+                                             final int pop_total,
+                                             final int pop_term,
+                                             final int study_total,
+                                             final int study_term,
+                                             final double[] log_factorials ) {
+        return new GoEnrichmentResult( getGoIndex().getGoTerm( term ).getGoId(),
+                                       pop_total,
+                                       pop_term,
+                                       study_total,
+                                       study_term,
+                                       calcHypergeometricUpperTail( study_term,
+                                                                    pop_total,
+                                                                    pop_term,
+                                                                    study_total,
+                                                                    log_factorials ) );
+    }
+
+    private int getNumberOfThreads() {
+        return _number_of_threads;
+    }
+
+    public final static GoEnrichmentCalculator createInstance( final GoOntologyIndex go_index ) {
+        return new GoEnrichmentCalculator( go_index );
+    }
+
+    /**
+     * Returns the probability of at least k successes in n draws without
+     * replacement from a population of size pop_total containing pop_term
+     * successes (upper tail of the hypergeometric distribution).
+     *
+     */
+    static double calcHypergeometricUpperTail( final int k,
+                                               final int pop_total,
+                                               final int pop_term,
+                                               final int n,
+                                               final double[] log_factorials ) {
+        if ( ( pop_term > pop_total ) || ( n > pop_total ) || ( k < 0 ) ) {
+            throw new IllegalArgumentException( "illegal arguments for hypergeometric distribution: k=" + k
+                    + ", N=" + pop_total + ", K=" + pop_term + ", n=" + n );
+        }
+        if ( k <= Math.max( 0, ( n + pop_term ) - pop_total ) ) {
+            return 1.0;
+        }
+        final int max = Math.min( n, pop_term );
+        if ( k > max ) {
+            return 0.0;
+        }
+        final double log_denominator = logBinomial( pop_total, n, log_factorials );
+        double sum = 0.0;
+        for( int i = k; i <= max; ++i ) {
+            sum += Math.exp( ( logBinomial( pop_term, i, log_factorials ) + logBinomial( pop_total - pop_term,
+                                                                                          n - i,
+                                                                                          log_factorials ) )
+                    - log_denominator );
+        }
+        return Math.min( 1.0, sum );
+    }
+
+    static double[] calcLogFactorials( final int n ) {
+        final double[] log_factorials = new double[ n + 1 ];
+        for( int i = 2; i <= n; ++i ) {
+            log_factorials[ i ] = log_factorials[ i - 1 ] + Math.log( i );
+        }
+        return log_factorials;
+    }
+
+    // Sets the adjusted p-values of results (sorted by p-value).
+    private static void adjust( final List<GoEnrichmentResult> results, final Correction correction ) {
+        final int m = results.size();
+        switch ( correction ) {
+            case NONE:
+                break;
+            case BONFERRONI:
+                for( final GoEnrichmentResult r : results ) {
+                    r.setPAdjusted( Math.min( 1.0, r.getP() * m ) );
+                }
+                break;
+            case BENJAMINI_HOCHBERG:
+                double min = 1.0;
+                for( int i = m - 1; i >= 0; --i ) {
+                    final GoEnrichmentResult r = results.get( i );
+                    min = Math.min( min, ( r.getP() * m ) / ( i + 1 ) );
+                    r.setPAdjusted( min );
+                }
+                break;
+            default:
+                throw new IllegalArgumentException( "unknown correction: " + correction );
+        }
+    }
+
+    private static double logBinomial( final int n, final int k, final double[] log_factorials ) {
+        return log_factorials[ n ] - log_factorials[ k ] - log_factorials[ n - k ];
+    }
+
+    public static enum Correction {
+        BENJAMINI_HOCHBERG, BONFERRONI, NONE;
+    }
+}
@@ -0,0 +1,119 @@
+// $Id:
+// FORESTER -- software libraries and applications
+// for evolutionary biology research and applications.
+//
+// Copyright (C) 2014 Christian M. Zmasek
+// Copyright (C) 2014 Sanford-Burnham Medical Research Institute
+// All rights reserved
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA
+//
+// Contact: phylosoft @ gmail . com
+// WWW: https://sites.google.com/site/cmzmasek/home/software/forester
+
+
+package org.forester.go;
+
+/*
+ * The result of testing one GO term for over-representation in one study set
+ * (see GoEnrichmentCalculator), with the same quantities as reported by
+ * Ontologizer (term-for-term).
+ */
+public final class GoEnrichmentResult {
+
+    private final GoId   _go_id;
+    private final double _p;
+    private double       _p_adjusted;
+    private final int    _pop_term;
+    private final int    _pop_total;
+    private final int    _study_term;
+    private final int    _study_total;
+
+    GoEnrichmentResult( final GoId go_id,
+                        final int pop_total,
+                        final int pop_term,
+                        final int study_total,
+                        final int study_term,
+                        final double p ) {
+        _go_id = go_id;
+        _pop_total = pop_total;
+        _pop_term = pop_term;
+        _study_total = study_total;
+        _study_term = study_term;
+        _p = p;
+        _p_adjusted = p;
+    }
+
+    public GoId getGoId() {
+        return _go_id;
+    }
+
+    /**
+     * Returns the probability of at least getStudyTerm() items annotated
+     * with this term in a random study set of size getStudyTotal()
+     * (hypergeometric distribution, one-sided Fisher's exact test).
+     *
+     */
+    public double getP() {
+        return _p;
+    }
+
+    /**
+     * Returns the p-value corrected for multiple testing.
+     *
+     */
+    public double getPAdjusted() {
+        return _p_adjusted;
+    }
+
+    public int getPopTerm() {
+        return _pop_term;
+    }
+
+    public int getPopTotal() {
+        return _pop_total;
+    }
+
+    public int getStudyTerm() {
+        return _study_term;
+    }
+
+    public int getStudyTotal() {
+        return _study_total;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder();
+        sb.append( getGoId() );
+        sb.append( "\t" );
+        sb.append( getPopTotal() );
+        sb.append( "\t" );
+        sb.append( getPopTerm() );
+        sb.append( "\t" );
+        sb.append( getStudyTotal() );
+        sb.append( "\t" );
+        sb.append( getStudyTerm() );
+        sb.append( "\t" );
+        sb.append( getP() );
+        sb.append( "\t" );
+        sb.append( getPAdjusted() );
+        return sb.toString();
+    }
+
+    void setPAdjusted( final double p_adjusted ) {
+        _p_adjusted = p_adjusted;
+    }
+}
@@ -0,0 +1,314 @@
+// $Id:
+// FORESTER -- software libraries and applications
+// for evolutionary biology research and applications.
+//
+// Copyright (C) 2014 Christian M. Zmasek
+// Copyright (C) 2014 Sanford-Burnham Medical Research Institute
+// All rights reserved
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA
+//
+// Contact: phylosoft @ gmail . com
+// WWW: https://sites.google.com/site/cmzmasek/home/software/forester
+
+
+package org.forester.go;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/*
+ * Immutable index of a GO ontology (for example, as returned by OBOparser):
+ * the GO terms are numbered densely (in the order of their GO ids), and the
+ * transitive closure of the super term relation (as given by getSuperGoIds())
+ * is precomputed, for each term as sorted array of the indices of all its
+ * (direct and indirect) super terms. All ancestor arrays are stored
+ * consecutively in one int array.
+ *
+ * Terms referring to super GO ids not present in the ontology can be indexed,
+ * but asking for their super terms results in an IllegalArgumentException
+ * (as with GoUtils.getAllSuperGoTerms).
+ *
+ * Instances can be shared by any number of threads.
+ */
+public final class GoOntologyIndex {
+
+    private final int[]              _ancestors;
+    private final int[]              _ancestors_offsets;
+    private final String[]           _errors;
+    private final Map<GoId, Integer> _id_to_index;
+    private final GoTerm[]           _terms;
+    private final static int         DONE        = 2;
+    private final static int         IN_PROGRESS = 1;
+
+    private GoOntologyIndex( final Map<GoId, GoTerm> goid_to_term_map ) {
+        final Map<GoTerm, Integer> term_to_index = new IdentityHashMap<GoTerm, Integer>();
+        final List<GoTerm> terms = new ArrayList<GoTerm>();
+        for( final GoTerm term : goid_to_term_map.values() ) {
+            if ( term == null ) {
+                throw new IllegalArgumentException( "attempt to index null GO term" );
+            }
+            if ( !term_to_index.containsKey( term ) ) {
+                term_to_index.put( term, -1 );
+                terms.add( term );
+            }
+        }
+        Collections.sort( terms );
+        _terms = terms.toArray( new GoTerm[ terms.size() ] );
+        for( int i = 0; i < _terms.length; ++i ) {
+            term_to_index.put( _terms[ i ], i );
+        }
+        _id_to_index = new HashMap<GoId, Integer>();
+        for( final Map.Entry<GoId, GoTerm> e : goid_to_term_map.entrySet() ) {
+            _id_to_index.put( e.getKey(), term_to_index.get( e.getValue() ) );
+        }
+        final int n = _terms.length;
+        final int[][] parents = new int[ n ][];
+        _errors = new String[ n ];
+        for( int i = 0; i < n; ++i ) {
+            final List<GoId> super_ids = _terms[ i ].getSuperGoIds();
+            if ( ( super_ids == null ) || super_ids.isEmpty() ) {
+                parents[ i ] = new int[ 0 ];
+                continue;
+            }
+            parents[ i ] = new int[ super_ids.size() ];
+            for( int j = 0; j < super_ids.size(); ++j ) {
+                final Integer p = _id_to_index.get( super_ids.get( j ) );
+                if ( p == null ) {
+                    _errors[ i ] = "GO id [" + super_ids.get( j ) + "] not found in GO id to term map";
+                    parents[ i ] = new int[ 0 ];
+                    break;
+                }
+                parents[ i ][ j ] = p;
+            }
+        }
+        final int[][] ancestors = new int[ n ][];
+        final int[] states = new int[ n ];
+        final int[] marks = new int[ n ];
+        Arrays.fill( marks, -1 );
+        for( int i = 0; i < n; ++i ) {
+            calcAncestors( i, parents, ancestors, states, marks );
+        }
+        _ancestors_offsets = new int[ n + 1 ];
+        for( int i = 0; i < n; ++i ) {
+            _ancestors_offsets[ i + 1 ] = _ancestors_offsets[ i ] + ancestors[ i ].length;
+        }
+        _ancestors = new int[ _ancestors_offsets[ n ] ];
+        for( int i = 0; i < n; ++i ) {
+            System.arraycopy( ancestors[ i ], 0, _ancestors, _ancestors_offsets[ i ], ancestors[ i ].length );
+        }
+    }
+
+    public final boolean contains( final GoId go_id ) {
+        return _id_to_index.containsKey( go_id );
+    }
+
+    /**
+     * Returns the index of the i-th super term (in the order of GO ids) of
+     * the term with the given index.
+     *
+     */
+    public final int getAncestor( final int index, final int i ) {
+        checkAncestors( index );
+        if ( ( i < 0 ) || ( i >= ( _ancestors_offsets[ index + 1 ] - _ancestors_offsets[ index ] ) ) ) {
+            throw new IndexOutOfBoundsException( "super term index " + i + " out of range" );
+        }
+        return _ancestors[ _ancestors_offsets[ index ] + i ];
+    }
+
+    /**
+     * Returns the indices of all (direct and indirect) super terms of the
+     * term with the given index, in ascending order (a copy).
+     *
+     */
+    public final int[] getAncestors( final int index ) {
+        checkAncestors( index );
+        return Arrays.copyOfRange( _ancestors, _ancestors_offsets[ index ], _ancestors_offsets[ index + 1 ] );
+    }
+
+    public final SortedSet<GoId> getAllSuperGoIds( final GoId go_id ) {
+        final int index = getIndex( go_id );
+        checkAncestors( index );
+        final SortedSet<GoId> ids = new TreeSet<GoId>();
+        for( int i = _ancestors_offsets[ index ]; i < _ancestors_offsets[ index + 1 ]; ++i ) {
+            ids.add( _terms[ _ancestors[ i ] ].getGoId() );
+        }
+        return ids;
+    }
+
+    public final SortedSet<GoTerm> getAllSuperGoTerms( final GoId go_id ) {
+        final int index = getIndex( go_id );
+        checkAncestors( index );
+        final SortedSet<GoTerm> terms = new TreeSet<GoTerm>();
+        for( int i = _ancestors_offsets[ index ]; i < _ancestors_offsets[ index + 1 ]; ++i ) {
+            terms.add( _terms[ _ancestors[ i ] ] );
+        }
+        return terms;
+    }
+
+    public final GoTerm getGoTerm( final GoId go_id ) {
+        return _terms[ getIndex( go_id ) ];
+    }
+
+    public final GoTerm getGoTerm( final int index ) {
+        return _terms[ index ];
+    }
+
+    /**
+     * Returns the index of the GO term with the given (primary or
+     * alternative) GO id.
+     *
+     */
+    public final int getIndex( final GoId go_id ) {
+        final Integer index = _id_to_index.get( go_id );
+        if ( index == null ) {
+            throw new IllegalArgumentException( "GO id [" + go_id + "] not found in GO id to term map" );
+        }
+        return index;
+    }
+
+    public final int getNumberOfAncestors( final int index ) {
+        checkAncestors( index );
+        return _ancestors_offsets[ index + 1 ] - _ancestors_offsets[ index ];
+    }
+
+    public final int getNumberOfGoTerms() {
+        return _terms.length;
+    }
+
+    /**
+     * Returns true if the GO term with index 'ancestor' is a (direct or
+     * indirect) super term of the GO term with index 'descendant' (binary
+     * search among the super terms of 'descendant').
+     *
+     */
+    public final boolean isAncestor( final int ancestor, final int descendant ) {
+        checkAncestors( descendant );
+        return Arrays.binarySearch( _ancestors,
+                                    _ancestors_offsets[ descendant ],
+                                    _ancestors_offsets[ descendant + 1 ],
+                                    ancestor ) >= 0;
+    }
+
+    public final boolean isAncestor( final GoId ancestor, final GoId descendant ) {
+        return isAncestor( getIndex( ancestor ), getIndex( descendant ) );
+    }
+
+    /**
+     * Returns true if go_id is equal to descendant_go_id or if it is the
+     * (primary) GO id of a super term of the GO term with GO id
+     * descendant_go_id; the same as, but faster than, checking
+     * whether go_id is in GoUtils.getAllSuperGoIds( descendant_go_id, map )
+     * or equal to descendant_go_id.
+     *
+     */
+    public final boolean isSuperGoIdOrSelf( final GoId go_id, final GoId descendant_go_id ) {
+        final int descendant = getIndex( descendant_go_id );
+        checkAncestors( descendant );
+        if ( go_id.equals( descendant_go_id ) ) {
+            return true;
+        }
+        final Integer ancestor = _id_to_index.get( go_id );
+        if ( ( ancestor == null ) || !_terms[ ancestor ].getGoId().equals( go_id ) ) {
+            return false;
+        }
+        return isAncestor( ancestor, descendant );
+    }
+
+    private final void calcAncestors( final int i,
+                                      final int[][] parents,
+                                      final int[][] ancestors,
+                                      final int[] states,
+                                      final int[] marks ) {
+        if ( states[ i ] == DONE ) {
+            return;
+        }
+        if ( states[ i ] == IN_PROGRESS ) {
+            throw new IllegalArgumentException( "GO term [" + _terms[ i ].getGoId() + "] is its own super term" );
+        }
+        states[ i ] = IN_PROGRESS;
+        for( final int p : parents[ i ] ) {
+            calcAncestors( p, parents, ancestors, states, marks );
+        }
+        // marks (indexed by term) is shared scratch space, "i" marks
+        // the super terms of i found so far.
+        int count = 0;
+        for( final int p : parents[ i ] ) {
+            if ( ( _errors[ i ] == null ) && ( _errors[ p ] != null ) ) {
+                _errors[ i ] = _errors[ p ];
+            }
+            if ( marks[ p ] != i ) {
+                marks[ p ] = i;
+                ++count;
+            }
+            for( final int a : ancestors[ p ] ) {
+                if ( marks[ a ] != i ) {
+                    marks[ a ] = i;
+                    ++count;
+                }
+            }
+        }
+        final int[] my_ancestors = new int[ count ];
+        int c = 0;
+        for( int j = 0; j < parents[ i ].length; ++j ) {
+            final int p = parents[ i ][ j ];
+            if ( marks[ p ] == i ) {
+                marks[ p ] = -1;
+                my_ancestors[ c++ ] = p;
+            }
+            for( final int a : ancestors[ p ] ) {
+                if ( marks[ a ] == i ) {
+                    marks[ a ] = -1;
+                    my_ancestors[ c++ ] = a;
+                }
+            }
+        }
+        Arrays.sort( my_ancestors );
+        ancestors[ i ] = my_ancestors;
+        states[ i ] = DONE;
+    }
+
+    private final void checkAncestors( final int index ) {
+        if ( _errors[ index ] != null ) {
+            throw new IllegalArgumentException( _errors[ index ] );
+        }
+    }
+
+    /**
+     * Creates an index of the GO terms in go_terms (as returned by
+     * OBOparser); alternative GO ids are resolved as by
+     * GoUtils.createGoIdToGoTermMap.
+     *
+     */
+    public final static GoOntologyIndex createInstance( final List<GoTerm> go_terms ) {
+        return new GoOntologyIndex( GoUtils.createGoIdToGoTermMap( go_terms ) );
+    }
+
+    /**
+     * Creates an index of the GO terms in goid_to_term_map (as returned by
+     * GoUtils.createGoIdToGoTermMap).
+     *
+     */
+    public final static GoOntologyIndex createInstance( final Map<GoId, GoTerm> goid_to_term_map ) {
+        return new GoOntologyIndex( goid_to_term_map );
+    }
+}
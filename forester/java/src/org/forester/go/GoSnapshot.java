@@ -0,0 +1,288 @@
+// $Id:
+// FORESTER -- software libraries and applications
+// for evolutionary biology research and applications.
+//
+// Copyright (C) 2014 Christian M. Zmasek
+// Copyright (C) 2014 Sanford-Burnham Medical Research Institute
+// All rights reserved
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA
+//
+// Contact: phylosoft @ gmail . com
+// WWW: https://sites.google.com/site/cmzmasek/home/software/forester
+
+
+package org.forester.go;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.forester.util.CacheFileUtil;
+
+/*
+ * Binary snapshots of parsed OBO files (BASIC_GO_TERM) and pfam2go mapping
+ * files, as cache files (see CacheFileUtil).
+ *
+ * Layout (big-endian): header (see CacheFileUtil), kind, flags, then either
+ * the GO terms (id, name, namespace, obsolete flag, comment, definition, alt
+ * ids, super ids, xrefs, relationships, subsets) or the table of distinct
+ * Pfam ids followed by the mappings (Pfam id index, GO id). GO ids are stored as ints, types as enum
+ * ordinals (VERSION has to be increased if these enums change).
+ */
+final class GoSnapshot {
+
+    final static String         OBO_SUFFIX     = ".obo_snapshot";
+    final static String         PFAM2GO_SUFFIX = ".pfam2go_snapshot";
+    private final static int    KIND_GO_TERMS  = 1;
+    private final static int    KIND_PFAM2GO   = 2;
+    private final static long   MAGIC          = 0x464F52474F534E31L;
+    private final static int    VERSION        = 2;
+
+    private GoSnapshot() {
+    }
+
+    /**
+     * Returns the GO terms in snapshot_file, or null if it does not exist, is
+     * not up-to-date (for a source file with the given size and checksum), or
+     * cannot be read.
+     */
+    static List<GoTerm> readGoTerms( final File snapshot_file, final long source_size, final long source_checksum )
+            throws IOException {
+        if ( !snapshot_file.isFile() ) {
+            return null;
+        }
+        final RandomAccessFile raf = new RandomAccessFile( snapshot_file, "r" );
+        try {
+            final MappedByteBuffer b = CacheFileUtil.map( raf );
+            if ( !readHeader( b, KIND_GO_TERMS, source_size, source_checksum, 0 ) ) {
+                return null;
+            }
+            final GoNameSpace.GoNamespaceType[] namespace_types = GoNameSpace.GoNamespaceType.values();
+            final GoXRef.Type[] xref_types = GoXRef.Type.values();
+            final GoRelationship.Type[] relationship_types = GoRelationship.Type.values();
+            final GoSubset.Type[] subset_types = GoSubset.Type.values();
+            final int number_of_terms = b.getInt();
+            final List<GoTerm> go_terms = new ArrayList<GoTerm>( number_of_terms );
+            for( int i = 0; i < number_of_terms; ++i ) {
+                final GoId id = createGoId( b.getInt() );
+                final String name = CacheFileUtil.readString( b );
+                final GoNameSpace namespace = new GoNameSpace( namespace_types[ b.get() ] );
+                final BasicGoTerm gt = new BasicGoTerm( id, name, namespace, b.get() != 0 );
+                gt.setComment( CacheFileUtil.readString( b ) );
+                gt.setDefinition( CacheFileUtil.readString( b ) );
+                for( int j = b.getInt(); j > 0; --j ) {
+                    gt.getAltIds().add( createGoId( b.getInt() ) );
+                }
+                for( int j = b.getInt(); j > 0; --j ) {
+                    gt.getSuperGoIds().add( createGoId( b.getInt() ) );
+                }
+                for( int j = b.getInt(); j > 0; --j ) {
+                    final GoXRef.Type type = xref_types[ b.get() ];
+                    gt.getGoXRefs().add( new BasicGoXRef( type, CacheFileUtil.readString( b ) ) );
+                }
+                for( int j = b.getInt(); j > 0; --j ) {
+                    final GoRelationship.Type type = relationship_types[ b.get() ];
+                    gt.getGoRelationships().add( new BasicGoRelationship( type, createGoId( b.getInt() ) ) );
+                }
+                for( int j = b.getInt(); j > 0; --j ) {
+                    gt.getGoSubsets().add( new BasicGoSubset( subset_types[ b.get() ] ) );
+                }
+                go_terms.add( gt );
+            }
+            if ( b.hasRemaining() ) {
+                return null;
+            }
+            return go_terms;
+        }
+        catch ( final RuntimeException e ) {
+            // Truncated or otherwise corrupted snapshot file (buffer underflow,
+            // illegal values, index out of range).
+            return null;
+        }
+        finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Returns the Pfam to GO mappings in snapshot_file, or null if it does not
+     * exist, is not up-to-date (for a source file with the given size and
+     * checksum, parsed with the given setting for accessors), or cannot be
+     * read.
+     */
+    static List<PfamToGoMapping> readPfamToGoMappings( final File snapshot_file,
+                                                       final long source_size,
+                                                       final long source_checksum,
+                                                       final boolean use_accessors ) throws IOException {
+        if ( !snapshot_file.isFile() ) {
+            return null;
+        }
+        final RandomAccessFile raf = new RandomAccessFile( snapshot_file, "r" );
+        try {
+            final MappedByteBuffer b = CacheFileUtil.map( raf );
+            if ( !readHeader( b, KIND_PFAM2GO, source_size, source_checksum, use_accessors ? 1 : 0 ) ) {
+                return null;
+            }
+            final String[] pfam_ids = new String[ b.getInt() ];
+            for( int i = 0; i < pfam_ids.length; ++i ) {
+                pfam_ids[ i ] = CacheFileUtil.readString( b );
+            }
+            final int number_of_mappings = b.getInt();
+            final List<PfamToGoMapping> mappings = new ArrayList<PfamToGoMapping>( number_of_mappings );
+            for( int i = 0; i < number_of_mappings; ++i ) {
+                final String pfam_id = pfam_ids[ b.getInt() ];
+                mappings.add( new PfamToGoMapping( pfam_id, createGoId( b.getInt() ) ) );
+            }
+            if ( b.hasRemaining() ) {
+                return null;
+            }
+            return mappings;
+        }
+        catch ( final RuntimeException e ) {
+            return null;
+        }
+        finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Writes go_terms parsed from a source file with the given size and
+     * checksum to snapshot_file (via a temporary file, thus an existing
+     * snapshot file is replaced only by a complete one).
+     */
+    static void writeGoTerms( final File snapshot_file,
+                              final long source_size,
+                              final long source_checksum,
+                              final List<GoTerm> go_terms ) throws IOException {
+        CacheFileUtil.write( snapshot_file, new CacheFileUtil.ContentWriter() {
+
+            @Override
+            public void write( final DataOutputStream out ) throws IOException {
+                writeHeader( out, KIND_GO_TERMS, source_size, source_checksum, 0 );
+                out.writeInt( go_terms.size() );
+                for( final GoTerm gt : go_terms ) {
+                    out.writeInt( toInt( gt.getGoId() ) );
+                    CacheFileUtil.writeString( out, gt.getName() );
+                    out.writeByte( gt.getGoNameSpace().getType().ordinal() );
+                    out.writeByte( gt.isObsolete() ? 1 : 0 );
+                    CacheFileUtil.writeString( out, gt.getComment() );
+                    CacheFileUtil.writeString( out, gt.getDefinition() );
+                    out.writeInt( gt.getAltIds().size() );
+                    for( final GoId alt_id : gt.getAltIds() ) {
+                        out.writeInt( toInt( alt_id ) );
+                    }
+                    out.writeInt( gt.getSuperGoIds().size() );
+                    for( final GoId super_id : gt.getSuperGoIds() ) {
+                        out.writeInt( toInt( super_id ) );
+                    }
+                    out.writeInt( gt.getGoXRefs().size() );
+                    for( final GoXRef xref : gt.getGoXRefs() ) {
+                        out.writeByte( xref.getType().ordinal() );
+                        CacheFileUtil.writeString( out, xref.getXRef() );
+                    }
+                    out.writeInt( gt.getGoRelationships().size() );
+                    for( final GoRelationship rel : gt.getGoRelationships() ) {
+                        out.writeByte( rel.getType().ordinal() );
+                        out.writeInt( toInt( rel.getGoId() ) );
+                    }
+                    out.writeInt( gt.getGoSubsets().size() );
+                    for( final GoSubset subset : gt.getGoSubsets() ) {
+                        out.writeByte( subset.getType().ordinal() );
+                    }
+                }
+            }
+        } );
+    }
+
+    /**
+     * Writes mappings parsed from a source file with the given size and
+     * checksum (and setting for accessors) to snapshot_file.
+     */
+    static void writePfamToGoMappings( final File snapshot_file,
+                                       final long source_size,
+                                       final long source_checksum,
+                                       final boolean use_accessors,
+                                       final List<PfamToGoMapping> mappings ) throws IOException {
+        CacheFileUtil.write( snapshot_file, new CacheFileUtil.ContentWriter() {
+
+            @Override
+            public void write( final DataOutputStream out ) throws IOException {
+                writeHeader( out, KIND_PFAM2GO, source_size, source_checksum, use_accessors ? 1 : 0 );
+                final Map<String, Integer> pfam_id_indices = new HashMap<String, Integer>();
+                final List<String> pfam_ids = new ArrayList<String>();
+                for( final PfamToGoMapping m : mappings ) {
+                    if ( !pfam_id_indices.containsKey( m.getKey() ) ) {
+                        pfam_id_indices.put( m.getKey(), pfam_ids.size() );
+                        pfam_ids.add( m.getKey() );
+                    }
+                }
+                out.writeInt( pfam_ids.size() );
+                for( final String pfam_id : pfam_ids ) {
+                    CacheFileUtil.writeString( out, pfam_id );
+                }
+                out.writeInt( mappings.size() );
+                for( final PfamToGoMapping m : mappings ) {
+                    out.writeInt( pfam_id_indices.get( m.getKey() ) );
+                    out.writeInt( toInt( m.getValue() ) );
+                }
+            }
+        } );
+    }
+
+    private static GoId createGoId( final int id ) {
+        if ( ( id < 0 ) || ( id > 9999999 ) ) {
+            throw new IllegalArgumentException( "illegal GO id number: " + id );
+        }
+        final char[] c = { 'G', 'O', ':', '0', '0', '0', '0', '0', '0', '0' };
+        int n = id;
+        for( int i = c.length - 1; n > 0; --i ) {
+            c[ i ] = ( char ) ( '0' + ( n % 10 ) );
+            n /= 10;
+        }
+        return new GoId( new String( c ) );
+    }
+
+    private static boolean readHeader( final ByteBuffer b,
+                                       final int kind,
+                                       final long source_size,
+                                       final long source_checksum,
+                                       final int flags ) {
+        return CacheFileUtil.readHeader( b, MAGIC, VERSION, source_size, source_checksum ) && ( b.getInt() == kind )
+                && ( b.getInt() == flags );
+    }
+
+    private static int toInt( final GoId id ) {
+        return Integer.parseInt( id.getId().substring( 3 ) );
+    }
+
+    private static void writeHeader( final DataOutputStream out,
+                                     final int kind,
+                                     final long source_size,
+                                     final long source_checksum,
+                                     final int flags ) throws IOException {
+        CacheFileUtil.writeHeader( out, MAGIC, VERSION, source_size, source_checksum );
+        out.writeInt( kind );
+        out.writeInt( flags );
+    }
+}
@@ -28,6 +28,7 @@ package org.forester.go;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
@@ -77,6 +78,31 @@ public final class GoUtils {
         return counts;
     }
 
+    /**
+     * This is for counting the how many times each GO term in 'categories'
+     * is a (direct or indirect) super term of the GO terms in 'experiment_set'
+     * (using a precomputed index of the ontology).
+     *
+     *
+     * @param categories the set of super terms to be counted
+     * @param experiment_set the list of GO terms to be analyzed
+     * @param go_index index of all terms in the ontology
+     * @return
+     */
+    public static LinkedHashMap<GoId, Integer> countCategories( final List<GoTerm> categories,
+                                                                final List<GoTerm> experiment_set,
+                                                                final GoOntologyIndex go_index ) {
+        final List<GoId> category_ids = new ArrayList<GoId>( categories.size() );
+        for( final GoTerm cat : categories ) {
+            category_ids.add( cat.getGoId() );
+        }
+        final List<GoId> experiment_ids = new ArrayList<GoId>( experiment_set.size() );
+        for( final GoTerm experiment_term : experiment_set ) {
+            experiment_ids.add( experiment_term.getGoId() );
+        }
+        return countCategoriesId( category_ids, experiment_ids, go_index );
+    }
+
     public static LinkedHashMap<GoId, Integer> countCategoriesId( final List<GoId> categories,
                                                                   final List<GoId> experiment_set,
                                                                   final Map<GoId, GoTerm> all_go_terms ) {
@@ -99,6 +125,21 @@ public final class GoUtils {
         return counts;
     }
 
+    public static LinkedHashMap<GoId, Integer> countCategoriesId( final List<GoId> categories,
+                                                                  final List<GoId> experiment_set,
+                                                                  final GoOntologyIndex go_index ) {
+        final LinkedHashMap<GoId, Integer> counts = new LinkedHashMap<GoId, Integer>();
+        if ( experiment_set.isEmpty() ) {
+            return counts;
+        }
+        final int[] category_counts = GoEnrichmentCalculator.createInstance( go_index )
+                .countCategories( categories, Collections.singletonList( experiment_set ) )[ 0 ];
+        for( int j = 0; j < categories.size(); ++j ) {
+            counts.put( categories.get( j ), category_counts[ j ] );
+        }
+        return counts;
+    }
+
     public static Map<GoId, GoTerm> createGoIdToGoTermMap( final List<GoTerm> go_terms ) {
         final Map<GoId, GoTerm> go_id_to_term_map = new HashMap<GoId, GoTerm>();
         for( final GoTerm go_term : go_terms ) {
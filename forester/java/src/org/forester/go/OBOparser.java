@@ -34,6 +34,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
+import org.forester.util.CacheFileUtil;
 import org.forester.util.ForesterUtil;
 
 public class OBOparser {
@@ -41,6 +42,8 @@ public class OBOparser {
     private final File       _input_file;    ;
     private final ReturnType _return_type;
     private int              _go_term_count;
+    private File             _snapshot_directory;
+    private boolean          _loaded_from_snapshot;
 
     public OBOparser( final File input_file, final ReturnType return_type ) {
         switch ( return_type ) {
@@ -132,15 +135,56 @@ public class OBOparser {
         return _return_type;
     }
 
+    private File getSnapshotDirectory() {
+        return _snapshot_directory;
+    }
+
     private void init() {
         setGoTermCount( 0 );
     }
 
+    /**
+     * Returns true if the result of the last call of parse() has been read
+     * from a snapshot (see setSnapshotDirectory).
+     *
+     */
+    public boolean isLoadedFromSnapshot() {
+        return _loaded_from_snapshot;
+    }
+
     public List<GoTerm> parse() throws IOException {
         final String error = ForesterUtil.isReadableFile( getInputFile() );
         if ( !ForesterUtil.isEmpty( error ) ) {
             throw new IOException( error );
         }
+        _loaded_from_snapshot = false;
+        if ( getSnapshotDirectory() == null ) {
+            return parseInputFile();
+        }
+        final File snapshot_file = CacheFileUtil.obtainCacheFile( getSnapshotDirectory(),
+                                                                   getInputFile(),
+                                                                   GoSnapshot.OBO_SUFFIX );
+        final long size = getInputFile().length();
+        final long checksum = CacheFileUtil.calcChecksum( getInputFile() );
+        final List<GoTerm> snapshot = GoSnapshot.readGoTerms( snapshot_file, size, checksum );
+        if ( snapshot != null ) {
+            setGoTermCount( snapshot.size() );
+            _loaded_from_snapshot = true;
+            return snapshot;
+        }
+        final List<GoTerm> go_terms = parseInputFile();
+        try {
+            GoSnapshot.writeGoTerms( snapshot_file, size, checksum, go_terms );
+        }
+        catch ( final IOException e ) {
+            // Without a snapshot file the next parse just reads the input file again.
+            ForesterUtil.printWarningMessage( getClass().getName(), "could not write snapshot file ["
+                    + snapshot_file + "]: " + e.getMessage() );
+        }
+        return go_terms;
+    }
+
+    private List<GoTerm> parseInputFile() throws IOException {
         final BufferedReader br = new BufferedReader( new FileReader( getInputFile() ) );
         String line;
         final List<GoTerm> go_terms = new ArrayList<GoTerm>();
@@ -257,6 +301,22 @@ public class OBOparser {
         _go_term_count = go_term_count;
     }
 
+    /**
+     * Sets a directory for a binary snapshot of the parsed GO terms: parse()
+     * reads the GO terms from the snapshot if the OBO file has not changed
+     * (same size and checksum), and writes the snapshot otherwise. Null (the
+     * default) for no snapshot.
+     *
+     * @param snapshot_directory
+     *            an existing directory, or null
+     */
+    public void setSnapshotDirectory( final File snapshot_directory ) {
+        if ( ( snapshot_directory != null ) && !snapshot_directory.isDirectory() ) {
+            throw new IllegalArgumentException( "[" + snapshot_directory + "] is not a directory" );
+        }
+        _snapshot_directory = snapshot_directory;
+    }
+
     private String trimOffComment( String xref ) {
         final int i = xref.indexOf( '!' );
         if ( i > 0 ) {
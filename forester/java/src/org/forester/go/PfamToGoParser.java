@@ -10,6 +10,7 @@ import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import org.forester.util.CacheFileUtil;
 import org.forester.util.ForesterUtil;
 
 public class PfamToGoParser {
@@ -22,6 +23,8 @@ public class PfamToGoParser {
     private final File           _input_file;
     private int                  _mapping_count;
     private boolean              _use_acc;
+    private File                 _snapshot_directory;
+    private boolean              _loaded_from_snapshot;
 
     public PfamToGoParser( final File input_file ) {
         _input_file = input_file;
@@ -32,6 +35,10 @@ public class PfamToGoParser {
         return _input_file;
     }
 
+    private File getSnapshotDirectory() {
+        return _snapshot_directory;
+    }
+
     public int getMappingCount() {
         return _mapping_count;
     }
@@ -41,6 +48,15 @@ public class PfamToGoParser {
         setUseAccessors( false );
     }
 
+    /**
+     * Returns true if the result of the last call of parse() has been read
+     * from a snapshot (see setSnapshotDirectory).
+     *
+     */
+    public boolean isLoadedFromSnapshot() {
+        return _loaded_from_snapshot;
+    }
+
     public boolean isUseAccessors() {
         return _use_acc;
     }
@@ -50,6 +66,37 @@ public class PfamToGoParser {
         if ( !ForesterUtil.isEmpty( error ) ) {
             throw new IOException( error );
         }
+        _loaded_from_snapshot = false;
+        if ( getSnapshotDirectory() == null ) {
+            return parseInputFile();
+        }
+        final File snapshot_file = CacheFileUtil.obtainCacheFile( getSnapshotDirectory(),
+                                                                   getInputFile(),
+                                                                   GoSnapshot.PFAM2GO_SUFFIX );
+        final long size = getInputFile().length();
+        final long checksum = CacheFileUtil.calcChecksum( getInputFile() );
+        final List<PfamToGoMapping> snapshot = GoSnapshot.readPfamToGoMappings( snapshot_file,
+                                                                               size,
+                                                                               checksum,
+                                                                               isUseAccessors() );
+        if ( snapshot != null ) {
+            setMappingCount( snapshot.size() );
+            _loaded_from_snapshot = true;
+            return snapshot;
+        }
+        final List<PfamToGoMapping> mappings = parseInputFile();
+        try {
+            GoSnapshot.writePfamToGoMappings( snapshot_file, size, checksum, isUseAccessors(), mappings );
+        }
+        catch ( final IOException e ) {
+            // Without a snapshot file the next parse just reads the input file again.
+            ForesterUtil.printWarningMessage( getClass().getName(), "could not write snapshot file ["
+                    + snapshot_file + "]: " + e.getMessage() );
+        }
+        return mappings;
+    }
+
+    private List<PfamToGoMapping> parseInputFile() throws IOException {
         final BufferedReader br = new BufferedReader( new FileReader( getInputFile() ) );
         String line;
         final List<PfamToGoMapping> mappings = new ArrayList<PfamToGoMapping>();
@@ -93,6 +140,22 @@ public class PfamToGoParser {
         _mapping_count = mapping_count;
     }
 
+    /**
+     * Sets a directory for a binary snapshot of the parsed mappings: parse()
+     * reads the mappings from the snapshot if the mapping file has not
+     * changed (same size and checksum), and writes the snapshot otherwise.
+     * Null (the default) for no snapshot.
+     *
+     * @param snapshot_directory
+     *            an existing directory, or null
+     */
+    public void setSnapshotDirectory( final File snapshot_directory ) {
+        if ( ( snapshot_directory != null ) && !snapshot_directory.isDirectory() ) {
+            throw new IllegalArgumentException( "[" + snapshot_directory + "] is not a directory" );
+        }
+        _snapshot_directory = snapshot_directory;
+    }
+
     public void setUseAccessors( final boolean use_ids ) {
         _use_acc = use_ids;
     }
@@ -27,10 +27,13 @@ package org.forester.go;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.SortedSet;
 
+import org.forester.util.CacheFileUtil;
 import org.forester.util.ForesterUtil;
 
 public class TestGo {
@@ -78,6 +81,24 @@ public class TestGo {
             return false;
         }
         System.out.println( "OK." );
+        System.out.print( "  Binary snapshots: " );
+        if ( !testSnapshots( test_dir ) ) {
+            System.out.println( "failed." );
+            return false;
+        }
+        System.out.println( "OK." );
+        System.out.print( "  GO ontology index: " );
+        if ( !testGoOntologyIndex( test_dir ) ) {
+            System.out.println( "failed." );
+            return false;
+        }
+        System.out.println( "OK." );
+        System.out.print( "  GO enrichment: " );
+        if ( !testGoEnrichment() ) {
+            System.out.println( "failed." );
+            return false;
+        }
+        System.out.println( "OK." );
         System.out.print( "  Super terms: " );
         if ( !testSuperTermGetting( test_dir ) ) {
             System.out.println( "failed." );
@@ -93,6 +114,28 @@ public class TestGo {
         return true;
     }
 
+    // 1 <- 2 <- 3, 1 <- 4, {3, 4} <- 5, 6 (alt id 7) <- 8
+    private static List<GoTerm> createTestOntology() {
+        final List<GoTerm> terms = new ArrayList<GoTerm>();
+        for( int i = 1; i <= 8; ++i ) {
+            if ( i != 7 ) {
+                terms.add( new BasicGoTerm( new GoId( "GO:000000" + i ),
+                                            "t" + i,
+                                            GoNameSpace.createUnassigned(),
+                                            false ) );
+            }
+        }
+        final Map<GoId, GoTerm> t = GoUtils.createGoIdToGoTermMap( terms );
+        t.get( new GoId( "GO:0000002" ) ).getSuperGoIds().add( new GoId( "GO:0000001" ) );
+        t.get( new GoId( "GO:0000003" ) ).getSuperGoIds().add( new GoId( "GO:0000002" ) );
+        t.get( new GoId( "GO:0000004" ) ).getSuperGoIds().add( new GoId( "GO:0000001" ) );
+        t.get( new GoId( "GO:0000005" ) ).getSuperGoIds().add( new GoId( "GO:0000003" ) );
+        t.get( new GoId( "GO:0000005" ) ).getSuperGoIds().add( new GoId( "GO:0000004" ) );
+        t.get( new GoId( "GO:0000006" ) ).getAltIds().add( new GoId( "GO:0000007" ) );
+        t.get( new GoId( "GO:0000008" ) ).getSuperGoIds().add( new GoId( "GO:0000007" ) );
+        return terms;
+    }
+
     private static boolean testBasicGoTerm() {
         try {
             final GoTerm gt1 = new BasicGoTerm( "GO:0047579",
@@ -139,6 +182,138 @@ public class TestGo {
         return true;
     }
 
+    private static boolean testGoEnrichment() {
+        try {
+            if ( !isEqual( GoEnrichmentCalculator.calcHypergeometricUpperTail( 2,
+                                                                               10,
+                                                                               4,
+                                                                               3,
+                                                                               GoEnrichmentCalculator
+                                                                                       .calcLogFactorials( 10 ) ),
+                           1.0 / 3 ) ) {
+                return false;
+            }
+            final List<GoTerm> terms = createTestOntology();
+            final Map<GoId, GoTerm> map = GoUtils.createGoIdToGoTermMap( terms );
+            final GoEnrichmentCalculator calc = GoEnrichmentCalculator.createInstance( GoOntologyIndex
+                    .createInstance( terms ) );
+            final Map<String, List<GoId>> population = new HashMap<String, List<GoId>>();
+            population.put( "a", Arrays.asList( new GoId( "GO:0000005" ) ) );
+            population.put( "b", Arrays.asList( new GoId( "GO:0000003" ) ) );
+            population.put( "c", Arrays.asList( new GoId( "GO:0000004" ) ) );
+            population.put( "d", Arrays.asList( new GoId( "GO:0000008" ) ) );
+            population.put( "e", new ArrayList<GoId>() );
+            final List<List<String>> study_sets = new ArrayList<List<String>>();
+            study_sets.add( Arrays.asList( "a", "b", "a" ) );
+            List<GoEnrichmentResult> r = calc.calculateEnrichment( population,
+                                                                   study_sets,
+                                                                   null,
+                                                                   GoEnrichmentCalculator.Correction.BONFERRONI )
+                    .get( 0 );
+            final String[] ids = { "GO:0000002", "GO:0000003", "GO:0000001", "GO:0000005", "GO:0000004" };
+            final double[] p = { 0.1, 0.1, 0.3, 0.4, 0.7 };
+            final double[] bonferroni = { 0.5, 0.5, 1, 1, 1 };
+            final double[] bh = { 0.25, 0.25, 0.5, 0.5, 0.7 };
+            if ( r.size() != 5 ) {
+                return false;
+            }
+            for( int i = 0; i < 5; ++i ) {
+                if ( !r.get( i ).getGoId().equals( new GoId( ids[ i ] ) ) || !isEqual( r.get( i ).getP(), p[ i ] )
+                        || !isEqual( r.get( i ).getPAdjusted(), bonferroni[ i ] ) ) {
+                    return false;
+                }
+                if ( ( r.get( i ).getPopTotal() != 5 ) || ( r.get( i ).getStudyTotal() != 2 ) ) {
+                    return false;
+                }
+            }
+            if ( ( r.get( 2 ).getPopTerm() != 3 ) || ( r.get( 2 ).getStudyTerm() != 2 ) ) {
+                return false;
+            }
+            r = calc.calculateEnrichment( population,
+                                          study_sets,
+                                          null,
+                                          GoEnrichmentCalculator.Correction.BENJAMINI_HOCHBERG ).get( 0 );
+            for( int i = 0; i < 5; ++i ) {
+                if ( !isEqual( r.get( i ).getPAdjusted(), bh[ i ] ) ) {
+                    return false;
+                }
+            }
+            // Given categories, alt id as item annotation.
+            study_sets.clear();
+            study_sets.add( Arrays.asList( "d" ) );
+            r = calc.calculateEnrichment( population,
+                                          study_sets,
+                                          Arrays.asList( new GoId( "GO:0000001" ), new GoId( "GO:0000006" ) ),
+                                          GoEnrichmentCalculator.Correction.NONE ).get( 0 );
+            if ( ( r.size() != 2 ) || !r.get( 0 ).getGoId().equals( new GoId( "GO:0000006" ) )
+                    || !isEqual( r.get( 0 ).getP(), 0.2 ) || !isEqual( r.get( 1 ).getP(), 1 ) ) {
+                return false;
+            }
+            // Many sets: threads, batch counting.
+            final List<GoId> all_ids = new ArrayList<GoId>( map.keySet() );
+            final List<List<GoId>> experiment_sets = new ArrayList<List<GoId>>();
+            study_sets.clear();
+            final String[] items = { "a", "b", "c", "d", "e" };
+            for( int s = 0; s < 50; ++s ) {
+                final List<GoId> experiment_set = new ArrayList<GoId>();
+                final List<String> study_set = new ArrayList<String>();
+                for( int i = 0; i < ( s % 7 ); ++i ) {
+                    experiment_set.add( all_ids.get( ( ( s * 3 ) + ( i * 5 ) ) % all_ids.size() ) );
+                    study_set.add( items[ ( s + ( i * 2 ) ) % items.length ] );
+                }
+                experiment_sets.add( experiment_set );
+                study_sets.add( study_set );
+            }
+            final List<List<GoEnrichmentResult>> r1 = calc
+                    .calculateEnrichment( population,
+                                          study_sets,
+                                          null,
+                                          GoEnrichmentCalculator.Correction.BENJAMINI_HOCHBERG );
+            final int[][] c1 = calc.countCategories( all_ids, experiment_sets );
+            calc.setNumberOfThreads( 3 );
+            final List<List<GoEnrichmentResult>> r3 = calc
+                    .calculateEnrichment( population,
+                                          study_sets,
+                                          null,
+                                          GoEnrichmentCalculator.Correction.BENJAMINI_HOCHBERG );
+            final int[][] c3 = calc.countCategories( all_ids, experiment_sets );
+            if ( ( r1.size() != 50 ) || !Arrays.deepEquals( c1, c3 ) ) {
+                return false;
+            }
+            for( int s = 0; s < 50; ++s ) {
+                if ( !r1.get( s ).toString().equals( r3.get( s ).toString() ) ) {
+                    return false;
+                }
+                final Map<GoId, Integer> counts = GoUtils.countCategoriesId( all_ids, experiment_sets.get( s ), map );
+                for( int j = 0; j < all_ids.size(); ++j ) {
+                    if ( ( counts.isEmpty() ? 0 : counts.get( all_ids.get( j ) ) ) != c3[ s ][ j ] ) {
+                        return false;
+                    }
+                }
+            }
+            study_sets.add( Arrays.asList( "x" ) );
+            try {
+                calc.calculateEnrichment( population, study_sets, null, GoEnrichmentCalculator.Correction.NONE );
+                return false;
+            }
+            catch ( final IllegalArgumentException e ) {
+                // Expected.
+            }
+            try {
+                calc.setNumberOfThreads( 0 );
+                return false;
+            }
+            catch ( final IllegalArgumentException e ) {
+                // Expected.
+            }
+        }
+        catch ( final Exception e ) {
+            e.printStackTrace( System.out );
+            return false;
+        }
+        return true;
+    }
+
     private static boolean testGoId() {
         try {
             final GoId id1 = new GoId( "GO:0042617" );
@@ -167,6 +342,121 @@ public class TestGo {
         return true;
     }
 
+    private static boolean testGoOntologyIndex( final File test_dir ) {
+        try {
+            final List<GoTerm> terms = createTestOntology();
+            final Map<GoId, GoTerm> map = GoUtils.createGoIdToGoTermMap( terms );
+            final GoOntologyIndex index = GoOntologyIndex.createInstance( terms );
+            if ( index.getNumberOfGoTerms() != 7 ) {
+                return false;
+            }
+            if ( index.getIndex( new GoId( "GO:0000007" ) ) != index.getIndex( new GoId( "GO:0000006" ) ) ) {
+                return false;
+            }
+            for( final GoId id : map.keySet() ) {
+                if ( !index.getAllSuperGoTerms( id ).equals( GoUtils.getAllSuperGoTerms( id, map ) ) ) {
+                    return false;
+                }
+                if ( index.getNumberOfAncestors( index.getIndex( id ) ) != GoUtils.getAllSuperGoIds( id, map ).size() ) {
+                    return false;
+                }
+            }
+            final int i5 = index.getIndex( new GoId( "GO:0000005" ) );
+            if ( !Arrays.equals( index.getAncestors( i5 ), new int[] { 0, 1, 2, 3 } ) ) {
+                return false;
+            }
+            if ( !index.isAncestor( new GoId( "GO:0000001" ), new GoId( "GO:0000005" ) ) ) {
+                return false;
+            }
+            if ( index.isAncestor( new GoId( "GO:0000005" ), new GoId( "GO:0000001" ) ) ) {
+                return false;
+            }
+            if ( index.isAncestor( new GoId( "GO:0000002" ), new GoId( "GO:0000004" ) ) ) {
+                return false;
+            }
+            if ( !index.isSuperGoIdOrSelf( new GoId( "GO:0000006" ), new GoId( "GO:0000008" ) )
+                    || index.isSuperGoIdOrSelf( new GoId( "GO:0000007" ), new GoId( "GO:0000008" ) )
+                    || !index.isSuperGoIdOrSelf( new GoId( "GO:0000005" ), new GoId( "GO:0000005" ) )
+                    || index.isSuperGoIdOrSelf( new GoId( "GO:0000009" ), new GoId( "GO:0000005" ) ) ) {
+                return false;
+            }
+            final List<GoId> categories = new ArrayList<GoId>();
+            categories.add( new GoId( "GO:0000001" ) );
+            categories.add( new GoId( "GO:0000003" ) );
+            categories.add( new GoId( "GO:0000001" ) );
+            categories.add( new GoId( "GO:0000006" ) );
+            final List<GoId> experiment_set = new ArrayList<GoId>();
+            experiment_set.add( new GoId( "GO:0000005" ) );
+            experiment_set.add( new GoId( "GO:0000003" ) );
+            experiment_set.add( new GoId( "GO:0000004" ) );
+            experiment_set.add( new GoId( "GO:0000008" ) );
+            experiment_set.add( new GoId( "GO:0000001" ) );
+            final Map<GoId, Integer> counts = GoUtils.countCategoriesId( categories, experiment_set, index );
+            if ( counts.size() != 3 ) {
+                return false;
+            }
+            if ( counts.get( new GoId( "GO:0000001" ) ) != 8 ) {
+                return false;
+            }
+            if ( counts.get( new GoId( "GO:0000003" ) ) != 2 ) {
+                return false;
+            }
+            if ( counts.get( new GoId( "GO:0000006" ) ) != 1 ) {
+                return false;
+            }
+            if ( !counts.equals( GoUtils.countCategoriesId( categories, experiment_set, map ) ) ) {
+                return false;
+            }
+            // Missing super term: only fails when asked for.
+            map.get( new GoId( "GO:0000004" ) ).getSuperGoIds().add( new GoId( "GO:0000009" ) );
+            final GoOntologyIndex index2 = GoOntologyIndex.createInstance( terms );
+            if ( index2.getNumberOfAncestors( index2.getIndex( new GoId( "GO:0000003" ) ) ) != 2 ) {
+                return false;
+            }
+            try {
+                index2.getAllSuperGoTerms( new GoId( "GO:0000005" ) );
+                return false;
+            }
+            catch ( final IllegalArgumentException e ) {
+                // Expected.
+            }
+            // Against the OBO test file.
+            final OBOparser parser = new OBOparser( new File( test_dir + ForesterUtil.getFileSeparator() + "obo_test" ),
+                                                    OBOparser.ReturnType.BASIC_GO_TERM );
+            final List<GoTerm> obo_terms = parser.parse();
+            final Map<GoId, GoTerm> obo_map = GoUtils.createGoIdToGoTermMap( obo_terms );
+            final GoOntologyIndex obo_index = GoOntologyIndex.createInstance( obo_terms );
+            for( final GoTerm term : obo_terms ) {
+                SortedSet<GoTerm> expected = null;
+                try {
+                    expected = GoUtils.getAllSuperGoTerms( term.getGoId(), obo_map );
+                }
+                catch ( final IllegalArgumentException e ) {
+                    // Super terms not in test file.
+                }
+                if ( expected != null ) {
+                    if ( !obo_index.getAllSuperGoTerms( term.getGoId() ).equals( expected ) ) {
+                        return false;
+                    }
+                }
+                else {
+                    try {
+                        obo_index.getAllSuperGoTerms( term.getGoId() );
+                        return false;
+                    }
+                    catch ( final IllegalArgumentException e ) {
+                        // Expected.
+                    }
+                }
+            }
+        }
+        catch ( final Exception e ) {
+            e.printStackTrace( System.out );
+            return false;
+        }
+        return true;
+    }
+
     private static boolean testNamespace() {
         try {
             final GoNameSpace b = new GoNameSpace( "Biological_process" );
@@ -473,6 +763,114 @@ public class TestGo {
         return true;
     }
 
+    private static boolean testSnapshots( final File test_dir ) {
+        File snapshot_dir = null;
+        try {
+            snapshot_dir = File.createTempFile( "forester_go_snapshot", "" );
+            if ( !snapshot_dir.delete() || !snapshot_dir.mkdir() ) {
+                return false;
+            }
+            final File obo_file = new File( test_dir + ForesterUtil.getFileSeparator() + "obo_test" );
+            final List<GoTerm> terms0 = new OBOparser( obo_file, OBOparser.ReturnType.BASIC_GO_TERM ).parse();
+            final OBOparser parser1 = new OBOparser( obo_file, OBOparser.ReturnType.BASIC_GO_TERM );
+            parser1.setSnapshotDirectory( snapshot_dir );
+            parser1.parse();
+            if ( parser1.isLoadedFromSnapshot() ) {
+                return false;
+            }
+            final OBOparser parser2 = new OBOparser( obo_file, OBOparser.ReturnType.BASIC_GO_TERM );
+            parser2.setSnapshotDirectory( snapshot_dir );
+            final List<GoTerm> terms2 = parser2.parse();
+            if ( !parser2.isLoadedFromSnapshot() ) {
+                return false;
+            }
+            if ( ( terms0.size() != terms2.size() ) || ( parser2.getGoTermCount() != terms0.size() ) ) {
+                return false;
+            }
+            for( int i = 0; i < terms0.size(); ++i ) {
+                final GoTerm a = terms0.get( i );
+                final GoTerm b = terms2.get( i );
+                if ( !a.equals( b ) || !a.getName().equals( b.getName() ) || ( a.isObsolete() != b.isObsolete() )
+                        || !a.getComment().equals( b.getComment() ) || !a.getDefinition().equals( b.getDefinition() ) ) {
+                    return false;
+                }
+                if ( !a.getAltIds().equals( b.getAltIds() ) || !a.getSuperGoIds().equals( b.getSuperGoIds() )
+                        || !a.getGoXRefs().equals( b.getGoXRefs() )
+                        || !a.getGoRelationships().equals( b.getGoRelationships() )
+                        || !a.getGoSubsets().equals( b.getGoSubsets() ) ) {
+                    return false;
+                }
+            }
+            final File pfam2go_file = new File( test_dir + ForesterUtil.getFileSeparator() + "pfam_to_go_test" );
+            final List<PfamToGoMapping> mappings0 = new PfamToGoParser( pfam2go_file ).parse();
+            final PfamToGoParser pparser1 = new PfamToGoParser( pfam2go_file );
+            pparser1.setSnapshotDirectory( snapshot_dir );
+            pparser1.parse();
+            final PfamToGoParser pparser2 = new PfamToGoParser( pfam2go_file );
+            pparser2.setSnapshotDirectory( snapshot_dir );
+            final List<PfamToGoMapping> mappings2 = pparser2.parse();
+            if ( pparser1.isLoadedFromSnapshot() || !pparser2.isLoadedFromSnapshot() ) {
+                return false;
+            }
+            if ( !mappings0.equals( mappings2 ) || ( pparser2.getMappingCount() != 426 ) ) {
+                return false;
+            }
+            // Different setting, different result: snapshot not used.
+            final PfamToGoParser pparser3 = new PfamToGoParser( pfam2go_file );
+            pparser3.setSnapshotDirectory( snapshot_dir );
+            pparser3.setUseAccessors( true );
+            final List<PfamToGoMapping> mappings3 = pparser3.parse();
+            if ( pparser3.isLoadedFromSnapshot() || mappings3.get( 0 ).getKey().equals( mappings0.get( 0 ).getKey() ) ) {
+                return false;
+            }
+            // Failing to write the snapshot file must not fail the parse.
+            final File obo_snapshot = CacheFileUtil.obtainCacheFile( snapshot_dir, obo_file, GoSnapshot.OBO_SUFFIX );
+            final File pfam2go_snapshot = CacheFileUtil.obtainCacheFile( snapshot_dir,
+                                                                         pfam2go_file,
+                                                                         GoSnapshot.PFAM2GO_SUFFIX );
+            if ( !obo_snapshot.delete() || !pfam2go_snapshot.delete() ) {
+                return false;
+            }
+            final File obo_blocking_dir = new File( obo_snapshot.getPath() + ".tmp" );
+            final File pfam2go_blocking_dir = new File( pfam2go_snapshot.getPath() + ".tmp" );
+            if ( !obo_blocking_dir.mkdir() || !pfam2go_blocking_dir.mkdir() ) {
+                return false;
+            }
+            final OBOparser parser4 = new OBOparser( obo_file, OBOparser.ReturnType.BASIC_GO_TERM );
+            parser4.setSnapshotDirectory( snapshot_dir );
+            final List<GoTerm> terms4 = parser4.parse();
+            if ( parser4.isLoadedFromSnapshot() || !terms4.equals( terms0 ) ) {
+                return false;
+            }
+            final PfamToGoParser pparser4 = new PfamToGoParser( pfam2go_file );
+            pparser4.setSnapshotDirectory( snapshot_dir );
+            final List<PfamToGoMapping> mappings4 = pparser4.parse();
+            if ( pparser4.isLoadedFromSnapshot() || !mappings4.equals( mappings0 ) ) {
+                return false;
+            }
+            if ( !obo_blocking_dir.delete() || !pfam2go_blocking_dir.delete() || obo_snapshot.exists()
+                    || pfam2go_snapshot.exists() ) {
+                return false;
+            }
+        }
+        catch ( final Exception e ) {
+            e.printStackTrace( System.out );
+            return false;
+        }
+        finally {
+            if ( snapshot_dir != null ) {
+                final File[] files = snapshot_dir.listFiles();
+                if ( files != null ) {
+                    for( final File f : files ) {
+                        f.delete();
+                    }
+                }
+                snapshot_dir.delete();
+            }
+        }
+        return true;
+    }
+
     private static boolean testSuperTermCounting( final File test_dir ) {
         try {
             final OBOparser parser = new OBOparser( new File( test_dir + ForesterUtil.getFileSeparator()
@@ -47,6 +47,7 @@ import java.util.regex.Pattern;
 
 import org.forester.go.GoId;
 import org.forester.go.GoNameSpace;
+import org.forester.go.GoOntologyIndex;
 import org.forester.go.GoTerm;
 import org.forester.go.GoUtils;
 import org.forester.go.OBOparser;
@@ -85,20 +86,14 @@ public class MetaOntologizer {
 
     private static StringBuilder obtainDomainsForGoId( final List<PfamToGoMapping> pfam_to_go,
                                                        final SortedSet<String> domains_per_species,
-                                                       final Map<GoId, GoTerm> all_go_terms,
+                                                       final GoOntologyIndex go_index,
                                                        final GoId query_go_id,
                                                        final Set<String> found_domain_ids ) {
         final StringBuilder sb = new StringBuilder();
         D: for( final String domain_id : domains_per_species ) {
             for( final PfamToGoMapping ptg : pfam_to_go ) {
                 if ( ptg.getKey().equals( domain_id ) ) {
-                    final GoId go_id = ptg.getValue();
-                    final Set<GoId> super_ids = new HashSet<GoId>();
-                    for( final GoTerm term : GoUtils.getAllSuperGoTerms( go_id, all_go_terms ) ) {
-                        super_ids.add( term.getGoId() );
-                    }
-                    super_ids.add( go_id );
-                    if ( super_ids.contains( query_go_id ) ) {
+                    if ( go_index.isSuperGoIdOrSelf( query_go_id, ptg.getValue() ) ) {
                         sb.append( "[<a href=\"" + SurfacingConstants.PFAM_FAMILY_ID_LINK + domain_id + "\">"
                                 + domain_id + "</a>] " );
                         found_domain_ids.add( domain_id );
@@ -167,6 +162,7 @@ public class MetaOntologizer {
     }
 
     private static void processOneSpecies( final Map<GoId, GoTerm> go_id_to_terms,
+                                           final GoOntologyIndex go_index,
                                            final Writer b_html_writer,
                                            final Writer b_tab_writer,
                                            final Writer c_html_writer,
@@ -200,7 +196,7 @@ public class MetaOntologizer {
                                      current_html_writer,
                                      p_adjusted_upper_limit,
                                      species,
-                                     go_id_to_terms,
+                                     go_index,
                                      domains_per_species,
                                      pfam_to_go,
                                      domain_ids_with_go_annot );
@@ -215,6 +211,30 @@ public class MetaOntologizer {
                                  final double p_adjusted_upper_limit,
                                  final String comment,
                                  final List<PfamToGoMapping> pfam_to_go ) throws IOException {
+        reformat( ontologizer_outdir,
+                  result_file_prefix,
+                  domain_gain_loss_file,
+                  outfile_base,
+                  obo_file,
+                  p_adjusted_upper_limit,
+                  comment,
+                  pfam_to_go,
+                  null );
+    }
+
+    /**
+     * As above, with a directory for a snapshot of the parsed GO terms (see
+     * OBOparser.setSnapshotDirectory), or null.
+     */
+    public static void reformat( final File ontologizer_outdir,
+                                 final String result_file_prefix,
+                                 final File domain_gain_loss_file,
+                                 final String outfile_base,
+                                 final File obo_file,
+                                 final double p_adjusted_upper_limit,
+                                 final String comment,
+                                 final List<PfamToGoMapping> pfam_to_go,
+                                 final File snapshot_directory ) throws IOException {
         if ( !ontologizer_outdir.exists() ) {
             throw new IllegalArgumentException( "[" + ontologizer_outdir + "] does not exist" );
         }
@@ -256,11 +276,13 @@ public class MetaOntologizer {
                                          + " Ontologizer outfiles from [" + ontologizer_outdir + "]" );
         }
         final OBOparser parser = new OBOparser( obo_file, OBOparser.ReturnType.BASIC_GO_TERM );
+        parser.setSnapshotDirectory( snapshot_directory );
         final List<GoTerm> go_terms = parser.parse();
         if ( VERBOSE ) {
             ForesterUtil.programMessage( PRG_NAME, "parsed " + go_terms.size() + " GO terms from [" + obo_file + "]" );
         }
         final Map<GoId, GoTerm> go_id_to_terms = GoUtils.createGoIdToGoTermMap( go_terms );
+        final GoOntologyIndex go_index = GoOntologyIndex.createInstance( go_id_to_terms );
         //FIXME not needed? when doe sthis error arise?
         //   if ( go_id_to_terms.size() != go_terms.size() ) {
         //       throw new IllegalArgumentException( "GO terms with non-unique ids found" );
@@ -337,6 +359,7 @@ public class MetaOntologizer {
             }
             final Set<String> domain_ids_with_go_annot = new HashSet<String>();
             processOneSpecies( go_id_to_terms,
+                               go_index,
                                b_html_writer,
                                b_tab_writer,
                                c_html_writer,
@@ -552,7 +575,7 @@ public class MetaOntologizer {
                                                  final Writer writer,
                                                  final double p_adjusted_upper_limit,
                                                  final String species,
-                                                 final Map<GoId, GoTerm> go_id_to_terms,
+                                                 final GoOntologyIndex go_index,
                                                  final SortedSet<String> domains_per_species,
                                                  final List<PfamToGoMapping> pfam_to_go,
                                                  final Set<String> domain_ids_with_go_annot ) throws IOException {
@@ -594,7 +617,7 @@ public class MetaOntologizer {
         if ( domains_per_species != null ) {
             final StringBuilder sb = obtainDomainsForGoId( pfam_to_go,
                                                            domains_per_species,
-                                                           go_id_to_terms,
+                                                           go_index,
                                                            go_term.getGoId(),
                                                            domain_ids_with_go_annot );
             writer.write( sb.toString() );
@@ -0,0 +1,279 @@
+// $Id:
+// FORESTER -- software libraries and applications
+// for evolutionary biology research and applications.
+//
+// Copyright (C) 2014 Christian M. Zmasek
+// Copyright (C) 2014 Sanford-Burnham Medical Research Institute
+// All rights reserved
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA
+//
+// Contact: phylosoft @ gmail . com
+// WWW: https://sites.google.com/site/cmzmasek/home/software/forester
+
+
+package org.forester.io.parsers;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.forester.protein.BasicDomain;
+import org.forester.protein.BasicProtein;
+import org.forester.protein.Domain;
+import org.forester.protein.Protein;
+import org.forester.util.CacheFileUtil;
+
+/*
+ * Binary cache of the result of parsing one hmmscan per domain table: the
+ * proteins (with their domains) and the counts of the parser, as cache file
+ * (see CacheFileUtil). A cache file is only used if also the parser settings
+ * (as digest) are the same as when it was written.
+ *
+ * Layout (big-endian): header (see CacheFileUtil), settings digest, counts, domains stored, the two
+ * counting maps, the table of distinct domain ids, and the proteins (id,
+ * length, domains as id index, from, to, number, total count, E-value,
+ * score).
+ */
+final class HmmscanPerDomainTableCache {
+
+    private final static long          MAGIC   = 0x464F52484D4D4331L;
+    private final static String        SUFFIX  = ".hmmscan_cache";
+    private final static int           VERSION = 2;
+    private final int[]                _counts;
+    private final Map<String, Integer> _domains_ignored_due_to_negative_domain_filter_counts_map;
+    private final Map<String, Integer> _domains_ignored_due_to_virus_like_id_counts_map;
+    private final SortedSet<String>    _domains_stored_set;
+    private final List<Protein>        _proteins;
+
+    private HmmscanPerDomainTableCache( final int[] counts,
+                                        final SortedSet<String> domains_stored_set,
+                                        final Map<String, Integer> domains_ignored_due_to_virus_like_id_counts_map,
+                                        final Map<String, Integer> domains_ignored_due_to_negative_domain_filter_counts_map,
+                                        final List<Protein> proteins ) {
+        _counts = counts;
+        _domains_stored_set = domains_stored_set;
+        _domains_ignored_due_to_virus_like_id_counts_map = domains_ignored_due_to_virus_like_id_counts_map;
+        _domains_ignored_due_to_negative_domain_filter_counts_map = domains_ignored_due_to_negative_domain_filter_counts_map;
+        _proteins = proteins;
+    }
+
+    int[] getCounts() {
+        return _counts;
+    }
+
+    Map<String, Integer> getDomainsIgnoredDueToNegativeDomainFilterCountsMap() {
+        return _domains_ignored_due_to_negative_domain_filter_counts_map;
+    }
+
+    Map<String, Integer> getDomainsIgnoredDueToVirusLikeIdCountsMap() {
+        return _domains_ignored_due_to_virus_like_id_counts_map;
+    }
+
+    SortedSet<String> getDomainsStoredSet() {
+        return _domains_stored_set;
+    }
+
+    List<Protein> getProteins() {
+        return _proteins;
+    }
+
+    static byte[] calcDigest( final String settings ) {
+        try {
+            return MessageDigest.getInstance( "SHA-256" ).digest( settings.getBytes( StandardCharsets.UTF_8 ) );
+        }
+        catch ( final NoSuchAlgorithmException e ) {
+            throw new RuntimeException( e );
+        }
+    }
+
+    /**
+     * Returns the cache file for input_file in cache_dir.
+     */
+    static File obtainCacheFile( final File cache_dir, final File input_file ) throws IOException {
+        return CacheFileUtil.obtainCacheFile( cache_dir, input_file, SUFFIX );
+    }
+
+    /**
+     * Returns the content of cache_file, or null if it does not exist, is not
+     * up-to-date (for an input file with the given size and checksum, and for
+     * settings_digest), or cannot be read.
+     */
+    static HmmscanPerDomainTableCache read( final File cache_file,
+                                            final long input_size,
+                                            final long input_checksum,
+                                            final byte[] settings_digest,
+                                            final String species ) throws IOException {
+        if ( !cache_file.isFile() ) {
+            return null;
+        }
+        final RandomAccessFile raf = new RandomAccessFile( cache_file, "r" );
+        try {
+            final MappedByteBuffer b = CacheFileUtil.map( raf );
+            if ( !CacheFileUtil.readHeader( b, MAGIC, VERSION, input_size, input_checksum ) ) {
+                return null;
+            }
+            final byte[] digest = new byte[ b.getInt() ];
+            b.get( digest );
+            if ( !Arrays.equals( digest, settings_digest ) ) {
+                return null;
+            }
+            final int[] counts = new int[ b.getInt() ];
+            for( int i = 0; i < counts.length; ++i ) {
+                counts[ i ] = b.getInt();
+            }
+            final SortedSet<String> domains_stored_set = new TreeSet<String>();
+            final int number_of_domains_stored = b.getInt();
+            for( int i = 0; i < number_of_domains_stored; ++i ) {
+                domains_stored_set.add( CacheFileUtil.readString( b ) );
+            }
+            final Map<String, Integer> virus_like_id_counts = readCountingMap( b );
+            final Map<String, Integer> negative_domain_filter_counts = readCountingMap( b );
+            final String[] domain_ids = new String[ b.getInt() ];
+            for( int i = 0; i < domain_ids.length; ++i ) {
+                domain_ids[ i ] = CacheFileUtil.readString( b );
+            }
+            final int number_of_proteins = b.getInt();
+            final List<Protein> proteins = new ArrayList<Protein>( number_of_proteins );
+            for( int i = 0; i < number_of_proteins; ++i ) {
+                final Protein protein = new BasicProtein( CacheFileUtil.readString( b ), species, b.getInt() );
+                final int number_of_domains = b.getInt();
+                for( int j = 0; j < number_of_domains; ++j ) {
+                    final String id = domain_ids[ b.getInt() ];
+                    final int from = b.getInt();
+                    final int to = b.getInt();
+                    final short number = b.getShort();
+                    final short total_count = b.getShort();
+                    final double e_value = b.getDouble();
+                    final double score = b.getDouble();
+                    protein.addProteinDomain( new BasicDomain( id, from, to, number, total_count, e_value, score ) );
+                }
+                proteins.add( protein );
+            }
+            if ( b.hasRemaining() ) {
+                return null;
+            }
+            return new HmmscanPerDomainTableCache( counts,
+                                                   domains_stored_set,
+                                                   virus_like_id_counts,
+                                                   negative_domain_filter_counts,
+                                                   proteins );
+        }
+        catch ( final RuntimeException e ) {
+            // Truncated or otherwise corrupted cache file (buffer underflow,
+            // illegal values, index out of range).
+            return null;
+        }
+        finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Writes the proteins and counts parsed from an input file with the given
+     * size and checksum to cache_file.
+     */
+    static void write( final File cache_file,
+                       final long input_size,
+                       final long input_checksum,
+                       final byte[] settings_digest,
+                       final int[] counts,
+                       final SortedSet<String> domains_stored_set,
+                       final Map<String, Integer> domains_ignored_due_to_virus_like_id_counts_map,
+                       final Map<String, Integer> domains_ignored_due_to_negative_domain_filter_counts_map,
+                       final List<Protein> proteins ) throws IOException {
+        CacheFileUtil.write( cache_file, new CacheFileUtil.ContentWriter() {
+
+            @Override
+            public void write( final DataOutputStream out ) throws IOException {
+                CacheFileUtil.writeHeader( out, MAGIC, VERSION, input_size, input_checksum );
+                out.writeInt( settings_digest.length );
+                out.write( settings_digest );
+                out.writeInt( counts.length );
+                for( final int count : counts ) {
+                    out.writeInt( count );
+                }
+                out.writeInt( domains_stored_set.size() );
+                for( final String domain : domains_stored_set ) {
+                    CacheFileUtil.writeString( out, domain );
+                }
+                writeCountingMap( out, domains_ignored_due_to_virus_like_id_counts_map );
+                writeCountingMap( out, domains_ignored_due_to_negative_domain_filter_counts_map );
+                final Map<String, Integer> domain_id_indices = new HashMap<String, Integer>();
+                final List<String> domain_ids = new ArrayList<String>();
+                for( final Protein protein : proteins ) {
+                    for( final Domain d : protein.getProteinDomains() ) {
+                        if ( !domain_id_indices.containsKey( d.getDomainId() ) ) {
+                            domain_id_indices.put( d.getDomainId(), domain_ids.size() );
+                            domain_ids.add( d.getDomainId() );
+                        }
+                    }
+                }
+                out.writeInt( domain_ids.size() );
+                for( final String domain_id : domain_ids ) {
+                    CacheFileUtil.writeString( out, domain_id );
+                }
+                out.writeInt( proteins.size() );
+                for( final Protein protein : proteins ) {
+                    CacheFileUtil.writeString( out, protein.getProteinId().getId() );
+                    out.writeInt( protein.getLength() );
+                    out.writeInt( protein.getNumberOfProteinDomains() );
+                    for( final Domain d : protein.getProteinDomains() ) {
+                        out.writeInt( domain_id_indices.get( d.getDomainId() ) );
+                        out.writeInt( d.getFrom() );
+                        out.writeInt( d.getTo() );
+                        out.writeShort( d.getNumber() );
+                        out.writeShort( d.getTotalCount() );
+                        out.writeDouble( d.getPerDomainEvalue() );
+                        out.writeDouble( d.getPerDomainScore() );
+                    }
+                }
+            }
+        } );
+    }
+
+    private static Map<String, Integer> readCountingMap( final ByteBuffer b ) {
+        final Map<String, Integer> map = new TreeMap<String, Integer>();
+        final int size = b.getInt();
+        for( int i = 0; i < size; ++i ) {
+            final String key = CacheFileUtil.readString( b );
+            map.put( key, b.getInt() );
+        }
+        return map;
+    }
+
+    private static void writeCountingMap( final DataOutputStream out, final Map<String, Integer> map )
+            throws IOException {
+        out.writeInt( map.size() );
+        for( final Map.Entry<String, Integer> e : map.entrySet() ) {
+            CacheFileUtil.writeString( out, e.getKey() );
+            out.writeInt( e.getValue() );
+        }
+    }
+}
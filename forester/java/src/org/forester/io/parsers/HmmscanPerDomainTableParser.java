@@ -45,6 +45,7 @@ import org.forester.protein.BasicDomain;
 import org.forester.protein.BasicProtein;
 import org.forester.protein.Domain;
 import org.forester.protein.Protein;
+import org.forester.util.CacheFileUtil;
 import org.forester.util.ForesterUtil;
 
 public final class HmmscanPerDomainTableParser {
@@ -94,6 +95,8 @@ public final class HmmscanPerDomainTableParser {
     private Map<String, Integer>          _domains_ignored_due_to_virus_like_id_counts_map;
     private final INDIVIDUAL_SCORE_CUTOFF _ind_cutoff;
     private final boolean                 _allow_proteins_with_same_name;
+    private File                          _cache_directory;
+    private boolean                       _loaded_from_cache;
 
     public HmmscanPerDomainTableParser( final File input_file,
                                         final String species,
@@ -249,6 +252,19 @@ public final class HmmscanPerDomainTableParser {
         return _domains_stored_set;
     }
 
+    private File getCacheDirectory() {
+        return _cache_directory;
+    }
+
+    // In the order of setCounts.
+    private int[] getCounts() {
+        return new int[] { _proteins_encountered, _proteins_ignored_due_to_filter, _proteins_stored,
+                _domains_encountered, _domains_ignored_due_to_duf, _domains_ignored_due_to_overlap,
+                _domains_ignored_due_to_fs_e_value, _domains_ignored_due_to_i_e_value,
+                _domains_ignored_due_to_individual_score_cutoff, _domains_stored,
+                _domains_ignored_due_to_negative_domain_filter, _domains_ignored_due_to_virus_like_id };
+    }
+
     private double getFsEValueMaximum() {
         return _fs_e_value_maximum;
     }
@@ -297,6 +313,33 @@ public final class HmmscanPerDomainTableParser {
         return _return_type;
     }
 
+    // All settings which influence the result of parsing (except the
+    // species, which is not stored in the cache).
+    private String getSettings() {
+        final StringBuilder sb = new StringBuilder();
+        sb.append( getReturnType() ).append( '\t' );
+        sb.append( getFilterType() ).append( '\t' );
+        if ( getFilter() != null ) {
+            sb.append( new TreeSet<String>( getFilter() ) );
+        }
+        sb.append( '\t' );
+        sb.append( getIndividualCutoffAppliesTo() ).append( '\t' );
+        if ( getIndividualScoreCutoffs() != null ) {
+            sb.append( new TreeMap<String, Double>( getIndividualScoreCutoffs() ) );
+        }
+        sb.append( '\t' );
+        sb.append( getFsEValueMaximum() ).append( '\t' );
+        sb.append( getIEValueMaximum() ).append( '\t' );
+        sb.append( isIgnoreDufs() ).append( '\t' );
+        sb.append( isIgnoreVirusLikeIds() ).append( '\t' );
+        sb.append( getMaxAllowedOverlap() ).append( '\t' );
+        sb.append( isIgnoreEngulfedDomains() ).append( '\t' );
+        sb.append( isAllowProteinsWithSameName() ).append( '\t' );
+        sb.append( IGNORE_REPLACED_RRMS ).append( '\t' );
+        sb.append( IGNORE_hGDE_amylase );
+        return sb.toString();
+    }
+
     private String getSpecies() {
         return _species;
     }
@@ -336,6 +379,15 @@ public final class HmmscanPerDomainTableParser {
         setDomainsIgnoredDueToNegativeDomainFilterCountsMap( new TreeMap<String, Integer>() );
     }
 
+    /**
+     * Returns true if the result of the last call of parse() has been read
+     * from the cache (see setCacheDirectory).
+     *
+     */
+    public boolean isLoadedFromCache() {
+        return _loaded_from_cache;
+    }
+
     private boolean isIgnoreDufs() {
         return _ignore_dufs;
     }
@@ -354,11 +406,57 @@ public final class HmmscanPerDomainTableParser {
             throw new RuntimeException( "attempt to use individual cuttoffs with having set them" );
         }
         intitCounts();
-        final Set<String> prev_queries = new HashSet<String>();
+        _loaded_from_cache = false;
         final String error = ForesterUtil.isReadableFile( getInputFile() );
         if ( !ForesterUtil.isEmpty( error ) ) {
             throw new IOException( error );
         }
+        if ( getCacheDirectory() == null ) {
+            return parseInputFile();
+        }
+        final long start_time = new Date().getTime();
+        final File cache_file = HmmscanPerDomainTableCache.obtainCacheFile( getCacheDirectory(), getInputFile() );
+        final byte[] settings_digest = HmmscanPerDomainTableCache.calcDigest( getSettings() );
+        final long size = getInputFile().length();
+        final long checksum = CacheFileUtil.calcChecksum( getInputFile() );
+        final HmmscanPerDomainTableCache cache = HmmscanPerDomainTableCache.read( cache_file,
+                                                                                 size,
+                                                                                 checksum,
+                                                                                 settings_digest,
+                                                                                 getSpecies() );
+        // A cache with a different number of counts is treated as outdated.
+        if ( ( cache != null ) && ( cache.getCounts().length == getCounts().length ) ) {
+            setCounts( cache.getCounts() );
+            setDomainsStoredSet( cache.getDomainsStoredSet() );
+            setDomainsIgnoredDueToVirusLikeIdCountsMap( cache.getDomainsIgnoredDueToVirusLikeIdCountsMap() );
+            setDomainsIgnoredDueToNegativeDomainFilterCountsMap( cache
+                    .getDomainsIgnoredDueToNegativeDomainFilterCountsMap() );
+            setTime( new Date().getTime() - start_time );
+            _loaded_from_cache = true;
+            return cache.getProteins();
+        }
+        final List<Protein> proteins = parseInputFile();
+        try {
+            HmmscanPerDomainTableCache.write( cache_file,
+                                              size,
+                                              checksum,
+                                              settings_digest,
+                                              getCounts(),
+                                              getDomainsStoredSet(),
+                                              getDomainsIgnoredDueToVirusLikeIdCountsMap(),
+                                              getDomainsIgnoredDueToNegativeDomainFilterCountsMap(),
+                                              proteins );
+        }
+        catch ( final IOException e ) {
+            // Without a cache file the next parse just reads the input file again.
+            ForesterUtil.printWarningMessage( getClass().getName(), "could not write cache file [" + cache_file
+                    + "]: " + e.getMessage() );
+        }
+        return proteins;
+    }
+
+    private List<Protein> parseInputFile() throws IOException {
+        final Set<String> prev_queries = new HashSet<String>();
         final BufferedReader br = new BufferedReader( new FileReader( getInputFile() ) );
         String line;
         final List<Protein> proteins = new ArrayList<Protein>();
@@ -530,6 +628,41 @@ public final class HmmscanPerDomainTableParser {
         return i;
     }
 
+    /**
+     * Sets a directory for binary cache files of parse results (one per input
+     * file): parse() reads its result from the cache file if it is up-to-date
+     * (same path, size and modification time of the input file and same
+     * settings), and writes it otherwise. Null (the default) for no caching.
+     *
+     * @param cache_directory
+     *            an existing directory, or null
+     */
+    public void setCacheDirectory( final File cache_directory ) {
+        if ( ( cache_directory != null ) && !cache_directory.isDirectory() ) {
+            throw new IllegalArgumentException( "[" + cache_directory + "] is not a directory" );
+        }
+        _cache_directory = cache_directory;
+    }
+
+    // In the order of getCounts.
+    private void setCounts( final int[] counts ) {
+        if ( counts.length != 12 ) {
+            throw new IllegalArgumentException( "expected 12 counts, got " + counts.length );
+        }
+        setProteinsEncountered( counts[ 0 ] );
+        setProteinsIgnoredDueToFilter( counts[ 1 ] );
+        setProteinsStored( counts[ 2 ] );
+        setDomainsEncountered( counts[ 3 ] );
+        setDomainsIgnoredDueToDuf( counts[ 4 ] );
+        setDomainsIgnoredDueToOverlap( counts[ 5 ] );
+        setDomainsIgnoredDueToFsEval( counts[ 6 ] );
+        setDomainsIgnoredDueToIEval( counts[ 7 ] );
+        setDomainsIgnoredDueToIndividualScoreCutoff( counts[ 8 ] );
+        setDomainsStored( counts[ 9 ] );
+        setDomainsIgnoredDueToNegativeFilter( counts[ 10 ] );
+        setDomainsIgnoredDueToVirusLikeId( counts[ 11 ] );
+    }
+
     private void setDomainsEncountered( final int domains_encountered ) {
         _domains_encountered = domains_encountered;
     }
@@ -42,6 +42,20 @@ public class PhyloXmlNodeWriter {
         if ( ( indentation != null ) && ( indentation.length() > 0 ) ) {
             ind = indentation + PhylogenyWriter.PHYLO_XML_INTENDATION_BASE;
         }
+        toPhyloXml( w, node, level, indentation, ind );
+    }
+
+    /**
+     * As toPhyloXml(Writer, PhylogenyNode, int, String), with the
+     * indentation of the branch and node data given by the caller (to avoid
+     * creating it for each node).
+     *
+     */
+    public static void toPhyloXml( final Writer w,
+                                   final PhylogenyNode node,
+                                   final int level,
+                                   final String indentation,
+                                   final String ind ) throws IOException {
         if ( !ForesterUtil.isEmpty( node.getName() ) ) {
             PhylogenyDataUtil.appendElement( w, PhyloXmlMapping.NODE_NAME, node.getName(), indentation );
         }
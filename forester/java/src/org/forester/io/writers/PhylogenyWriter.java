@@ -29,13 +29,22 @@ import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.io.Writer;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Queue;
 import java.util.Stack;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.forester.io.parsers.nexus.NexusConstants;
 import org.forester.io.parsers.phyloxml.PhyloXmlMapping;
@@ -47,6 +56,7 @@ import org.forester.phylogeny.iterators.PhylogenyNodeIterator;
 import org.forester.phylogeny.iterators.PostOrderStackObject;
 import org.forester.util.ForesterConstants;
 import org.forester.util.ForesterUtil;
+import org.forester.util.ParallelUtil;
 
 public final class PhylogenyWriter {
 
@@ -67,7 +77,6 @@ public final class PhylogenyWriter {
             + "\">";
     public final static String          PHYLO_XML_END                   = "</phyloxml>";
     private boolean                     _saw_comma;
-    private StringBuffer                _buffer;
     private Writer                      _writer;
     private PhylogenyNode               _root;
     private boolean                     _has_next;
@@ -78,8 +87,13 @@ public final class PhylogenyWriter {
     private int                         _node_level;
     private int                         _phyloxml_level;
     private FORMAT                      _format;
+    private final List<String>          _indentations;
+    private int                         _threads;
 
     public PhylogenyWriter() {
+        _indentations = new ArrayList<String>();
+        _indentations.add( "" );
+        _threads = 1;
         setIndentPhyloxml( INDENT_PHYLOXML_DEAFULT );
         setNhConversionSupportStyle( NH_CONVERSION_SUPPORT_VALUE_STYLE.NONE );
     }
@@ -123,48 +137,47 @@ public final class PhylogenyWriter {
         }
     }
 
-    private StringBuffer createIndentation() {
+    private String createIndentation() {
         if ( !isIndentPhyloxml() ) {
             return null;
         }
-        final StringBuffer sb = new StringBuffer( getNodeLevel() * 2 );
-        for( int i = 0; i < getNodeLevel(); ++i ) {
-            sb.append( PhylogenyWriter.PHYLO_XML_INTENDATION_BASE );
+        return getIndentation( getNodeLevel() );
+    }
+
+    private Writer createWriter( final File out_file ) throws IOException {
+        if ( out_file.exists() ) {
+            throw new IOException( "attempt to overwrite existing file \"" + out_file.getAbsolutePath() + "\"" );
         }
-        return sb;
+        return new BufferedWriter( new FileWriter( out_file ) );
+    }
+
+    private PhylogenyWriter copySettings() {
+        final PhylogenyWriter w = new PhylogenyWriter();
+        w.setIndentPhyloxml( isIndentPhyloxml() );
+        w.setNhConversionSupportStyle( getNhConversionSupportStyle() );
+        w.setWriteDistanceToParentInNH( isWriteDistanceToParentInNH() );
+        w.setPhyloXmlLevel( getPhyloXmlLevel() );
+        w.setOutputFormt( getOutputFormt() );
+        return w;
     }
 
     private void decreaseNodeLevel() {
         --_node_level;
     }
 
-    private StringBuffer getBuffer() {
-        return _buffer;
+    // Indentation strings are created once per level, and then re-used.
+    private String getIndentation( final int level ) {
+        while ( _indentations.size() <= level ) {
+            _indentations.add( _indentations.get( _indentations.size() - 1 )
+                    + PhylogenyWriter.PHYLO_XML_INTENDATION_BASE );
+        }
+        return _indentations.get( level );
     }
 
     private int getNodeLevel() {
         return _node_level;
     }
 
-    private StringBuffer getOutput( final Phylogeny tree ) throws IOException {
-        if ( getOutputFormt() == FORMAT.PHYLO_XML ) {
-            throw new RuntimeException( "method inappropriately called" );
-        }
-        if ( tree != null ) {
-            reset( tree );
-            while ( isHasNext() ) {
-                next();
-            }
-            if ( getOutputFormt() == FORMAT.NH ) {
-                getBuffer().append( ';' );
-            }
-            return getBuffer();
-        }
-        else {
-            return new StringBuffer( 0 );
-        }
-    }
-
     private FORMAT getOutputFormt() {
         return _format;
     }
@@ -248,19 +261,7 @@ public final class PhylogenyWriter {
         }
     }
 
-    private void reset( final Phylogeny tree ) {
-        setBuffer( new StringBuffer() );
-        setWriter( null );
-        setSawComma( false );
-        setHasNext( true );
-        setRoot( tree.getRoot() );
-        setStack( new Stack<PostOrderStackObject>() );
-        getStack().push( new PostOrderStackObject( tree.getRoot(), 1 ) );
-        setNodeLevel( 1 );
-    }
-
     private void reset( final Writer writer, final Phylogeny tree ) {
-        setBuffer( null );
         setWriter( writer );
         setSawComma( false );
         setHasNext( true );
@@ -270,10 +271,6 @@ public final class PhylogenyWriter {
         setNodeLevel( 1 );
     }
 
-    private void setBuffer( final StringBuffer buffer ) {
-        _buffer = buffer;
-    }
-
     private void setHasNext( final boolean has_next ) {
         _has_next = has_next;
     }
@@ -282,6 +279,21 @@ public final class PhylogenyWriter {
         _indent_phyloxml = indent_phyloxml;
     }
 
+    /**
+     * Sets the number of threads used by the methods writing more than one
+     * phylogeny (default: 1). If larger than one, phylogenies are converted
+     * in parallel into one buffer each, and written in their original order;
+     * at most twice the number of threads of these buffers exist at the same
+     * time.
+     *
+     * @param threads
+     *            the number of threads
+     */
+    public void setNumberOfThreads( final int threads ) {
+        ParallelUtil.checkNumberOfThreads( threads );
+        _threads = threads;
+    }
+
     private void setNodeLevel( final int level ) {
         _node_level = level;
     }
@@ -318,108 +330,163 @@ public final class PhylogenyWriter {
                                 final boolean write_distance_to_parent,
                                 final File out_file,
                                 final String separator ) throws IOException {
-        final Iterator<Phylogeny> it = trees.iterator();
-        final StringBuffer sb = new StringBuffer();
-        while ( it.hasNext() ) {
-            sb.append( toNewHampshire( it.next(), write_distance_to_parent ) );
-            sb.append( separator );
+        final Writer writer = createWriter( out_file );
+        try {
+            setOutputFormt( FORMAT.NH );
+            setWriteDistanceToParentInNH( write_distance_to_parent );
+            writeTrees( writer, trees.iterator(), separator );
+            writer.flush();
+        }
+        finally {
+            writer.close();
         }
-        writeToFile( sb, out_file );
     }
 
     public StringBuffer toNewHampshire( final Phylogeny tree,
                                         final boolean nh_write_distance_to_parent,
                                         final NH_CONVERSION_SUPPORT_VALUE_STYLE svs ) throws IOException {
-        setOutputFormt( FORMAT.NH );
-        setNhConversionSupportStyle( svs );
-        setWriteDistanceToParentInNH( nh_write_distance_to_parent );
-        return getOutput( tree );
+        final StringWriter string_writer = new StringWriter();
+        toNewHampshire( string_writer, tree, nh_write_distance_to_parent, svs );
+        return string_writer.getBuffer();
     }
 
     public StringBuffer toNewHampshire( final Phylogeny tree, final boolean nh_write_distance_to_parent )
             throws IOException {
-        setOutputFormt( FORMAT.NH );
-        setWriteDistanceToParentInNH( nh_write_distance_to_parent );
-        return getOutput( tree );
+        final StringWriter string_writer = new StringWriter();
+        toNewHampshire( string_writer, tree, nh_write_distance_to_parent );
+        return string_writer.getBuffer();
     }
 
     public void toNewHampshire( final Phylogeny tree, final boolean write_distance_to_parent, final File out_file )
             throws IOException {
-        writeToFile( toNewHampshire( tree, write_distance_to_parent ), out_file );
+        final Writer writer = createWriter( out_file );
+        try {
+            toNewHampshire( writer, tree, write_distance_to_parent );
+            writer.flush();
+        }
+        finally {
+            writer.close();
+        }
     }
 
     public void toNewHampshire( final Phylogeny tree,
                                 final boolean write_distance_to_parent,
                                 final NH_CONVERSION_SUPPORT_VALUE_STYLE svs,
                                 final File out_file ) throws IOException {
-        writeToFile( toNewHampshire( tree, write_distance_to_parent, svs ), out_file );
+        final Writer writer = createWriter( out_file );
+        try {
+            toNewHampshire( writer, tree, write_distance_to_parent, svs );
+            writer.flush();
+        }
+        finally {
+            writer.close();
+        }
     }
 
     public void toNewHampshire( final Phylogeny[] trees,
                                 final boolean write_distance_to_parent,
                                 final File out_file,
                                 final String separator ) throws IOException {
-        final StringBuffer sb = new StringBuffer();
-        for( final Phylogeny element : trees ) {
-            sb.append( toNewHampshire( element, write_distance_to_parent ) );
-            sb.append( separator );
+        final Writer writer = createWriter( out_file );
+        try {
+            setOutputFormt( FORMAT.NH );
+            setWriteDistanceToParentInNH( write_distance_to_parent );
+            writeTrees( writer, Arrays.asList( trees ).iterator(), separator );
+            writer.flush();
         }
-        writeToFile( sb, out_file );
+        finally {
+            writer.close();
+        }
+    }
+
+    public void toNewHampshire( final Writer writer,
+                                final Phylogeny tree,
+                                final boolean nh_write_distance_to_parent,
+                                final NH_CONVERSION_SUPPORT_VALUE_STYLE svs ) throws IOException {
+        setNhConversionSupportStyle( svs );
+        toNewHampshire( writer, tree, nh_write_distance_to_parent );
+    }
+
+    public void toNewHampshire( final Writer writer, final Phylogeny tree, final boolean nh_write_distance_to_parent )
+            throws IOException {
+        setOutputFormt( FORMAT.NH );
+        setWriteDistanceToParentInNH( nh_write_distance_to_parent );
+        writeNhOutput( writer, tree );
     }
 
     public void toNewHampshireX( final List<Phylogeny> trees, final File out_file, final String separator )
             throws IOException {
-        final Iterator<Phylogeny> it = trees.iterator();
-        final StringBuffer sb = new StringBuffer();
-        while ( it.hasNext() ) {
-            sb.append( toNewHampshireX( it.next() ) );
-            sb.append( separator );
+        final Writer writer = createWriter( out_file );
+        try {
+            setOutputFormt( FORMAT.NHX );
+            writeTrees( writer, trees.iterator(), separator );
+            writer.flush();
+        }
+        finally {
+            writer.close();
         }
-        writeToFile( sb, out_file );
     }
 
     public StringBuffer toNewHampshireX( final Phylogeny tree ) throws IOException {
-        setOutputFormt( FORMAT.NHX );
-        return getOutput( tree );
+        final StringWriter string_writer = new StringWriter();
+        toNewHampshireX( string_writer, tree );
+        return string_writer.getBuffer();
     }
 
     public void toNewHampshireX( final Phylogeny tree, final File out_file ) throws IOException {
-        writeToFile( toNewHampshireX( tree ), out_file );
+        final Writer writer = createWriter( out_file );
+        try {
+            toNewHampshireX( writer, tree );
+            writer.flush();
+        }
+        finally {
+            writer.close();
+        }
     }
 
     public void toNewHampshireX( final Phylogeny[] trees, final File out_file, final String separator )
             throws IOException {
-        final StringBuffer sb = new StringBuffer();
-        for( final Phylogeny element : trees ) {
-            sb.append( toNewHampshireX( element ) );
-            sb.append( separator );
+        final Writer writer = createWriter( out_file );
+        try {
+            setOutputFormt( FORMAT.NHX );
+            writeTrees( writer, Arrays.asList( trees ).iterator(), separator );
+            writer.flush();
+        }
+        finally {
+            writer.close();
         }
-        writeToFile( sb, out_file );
+    }
+
+    public void toNewHampshireX( final Writer writer, final Phylogeny tree ) throws IOException {
+        setOutputFormt( FORMAT.NHX );
+        writeNhOutput( writer, tree );
     }
 
     public void toNexus( final File out_file, final Phylogeny tree, final NH_CONVERSION_SUPPORT_VALUE_STYLE svs )
             throws IOException {
         final Writer writer = new BufferedWriter( new PrintWriter( out_file ) );
-        final List<Phylogeny> trees = new ArrayList<Phylogeny>( 1 );
-        trees.add( tree );
-        writeNexusStart( writer );
-        writeNexusTaxaBlock( writer, tree );
-        writeNexusTreesBlock( writer, trees, svs );
-        writer.flush();
-        writer.close();
+        try {
+            toNexus( writer, tree, svs );
+            writer.flush();
+        }
+        finally {
+            writer.close();
+        }
     }
 
     public StringBuffer toNexus( final Phylogeny tree, final NH_CONVERSION_SUPPORT_VALUE_STYLE svs ) throws IOException {
         final StringWriter string_writer = new StringWriter();
-        final Writer writer = new BufferedWriter( string_writer );
+        toNexus( string_writer, tree, svs );
+        return string_writer.getBuffer();
+    }
+
+    public void toNexus( final Writer writer, final Phylogeny tree, final NH_CONVERSION_SUPPORT_VALUE_STYLE svs )
+            throws IOException {
         final List<Phylogeny> trees = new ArrayList<Phylogeny>( 1 );
         trees.add( tree );
         writeNexusStart( writer );
         writeNexusTaxaBlock( writer, tree );
         writeNexusTreesBlock( writer, trees, svs );
-        writer.flush();
-        writer.close();
-        return string_writer.getBuffer();
     }
 
     public void toPhyloXML( final File out_file,
@@ -427,30 +494,31 @@ public final class PhylogenyWriter {
                             final int phyloxml_level,
                             final String separator ) throws IOException {
         final Writer writer = new BufferedWriter( new PrintWriter( out_file ) );
-        toPhyloXML( writer, trees, phyloxml_level, separator );
-        writer.flush();
-        writer.close();
+        try {
+            toPhyloXML( writer, trees, phyloxml_level, separator );
+            writer.flush();
+        }
+        finally {
+            writer.close();
+        }
     }
 
     public void toPhyloXML( final File out_file, final Phylogeny tree, final int phyloxml_level ) throws IOException {
         final Writer writer = new BufferedWriter( new PrintWriter( out_file ) );
-        writePhyloXmlStart( writer );
-        toPhyloXMLNoPhyloXmlSource( writer, tree, phyloxml_level );
-        writePhyloXmlEnd( writer );
-        writer.flush();
-        writer.close();
+        try {
+            writePhyloXmlStart( writer );
+            toPhyloXMLNoPhyloXmlSource( writer, tree, phyloxml_level );
+            writePhyloXmlEnd( writer );
+            writer.flush();
+        }
+        finally {
+            writer.close();
+        }
     }
 
     public StringBuffer toPhyloXML( final Phylogeny tree, final int phyloxml_level ) throws IOException {
         final StringWriter string_writer = new StringWriter();
-        final Writer writer = new BufferedWriter( string_writer );
-        setPhyloXmlLevel( phyloxml_level );
-        setOutputFormt( FORMAT.PHYLO_XML );
-        writePhyloXmlStart( writer );
-        writeOutput( writer, tree );
-        writePhyloXmlEnd( writer );
-        writer.flush();
-        writer.close();
+        toPhyloXML( string_writer, tree, phyloxml_level );
         return string_writer.getBuffer();
     }
 
@@ -459,16 +527,24 @@ public final class PhylogenyWriter {
                             final File out_file,
                             final String separator ) throws IOException {
         final Writer writer = new BufferedWriter( new PrintWriter( out_file ) );
-        toPhyloXML( writer, trees, phyloxml_level, separator );
-        writer.flush();
-        writer.close();
+        try {
+            toPhyloXML( writer, trees, phyloxml_level, separator );
+            writer.flush();
+        }
+        finally {
+            writer.close();
+        }
     }
 
     public void toPhyloXML( final Phylogeny phy, final int phyloxml_level, final File out_file ) throws IOException {
         final Writer writer = new BufferedWriter( new PrintWriter( out_file ) );
-        toPhyloXML( writer, phy, phyloxml_level );
-        writer.flush();
-        writer.close();
+        try {
+            toPhyloXML( writer, phy, phyloxml_level );
+            writer.flush();
+        }
+        finally {
+            writer.close();
+        }
     }
 
     public void toPhyloXML( final Writer writer,
@@ -476,11 +552,9 @@ public final class PhylogenyWriter {
                             final int phyloxml_level,
                             final String separator ) throws IOException {
         writePhyloXmlStart( writer );
-        final Iterator<Phylogeny> it = trees.iterator();
-        while ( it.hasNext() ) {
-            toPhyloXMLNoPhyloXmlSource( writer, it.next(), phyloxml_level );
-            writer.write( separator );
-        }
+        setPhyloXmlLevel( phyloxml_level );
+        setOutputFormt( FORMAT.PHYLO_XML );
+        writeTrees( writer, trees.iterator(), separator );
         writePhyloXmlEnd( writer );
     }
 
@@ -497,10 +571,9 @@ public final class PhylogenyWriter {
                             final int phyloxml_level,
                             final String separator ) throws IOException {
         writePhyloXmlStart( writer );
-        for( final Phylogeny phylogeny : trees ) {
-            toPhyloXMLNoPhyloXmlSource( writer, phylogeny, phyloxml_level );
-            writer.write( separator );
-        }
+        setPhyloXmlLevel( phyloxml_level );
+        setOutputFormt( FORMAT.PHYLO_XML );
+        writeTrees( writer, Arrays.asList( trees ).iterator(), separator );
         writePhyloXmlEnd( writer );
     }
 
@@ -511,10 +584,10 @@ public final class PhylogenyWriter {
         writeOutput( writer, tree );
     }
 
-    private void writeCladeSeparator() {
+    private void writeCladeSeparator() throws IOException {
         setSawComma( true );
         if ( ( getOutputFormt() == FORMAT.NHX ) || ( getOutputFormt() == FORMAT.NH ) ) {
-            getBuffer().append( "," );
+            getWriter().write( ',' );
         }
     }
 
@@ -523,41 +596,42 @@ public final class PhylogenyWriter {
         if ( getOutputFormt() == FORMAT.PHYLO_XML ) {
             getWriter().write( ForesterUtil.LINE_SEPARATOR );
             if ( isIndentPhyloxml() ) {
-                getWriter().write( createIndentation().toString() );
+                getWriter().write( createIndentation() );
             }
             PhylogenyDataUtil.appendClose( getWriter(), PhyloXmlMapping.CLADE );
         }
         else if ( ( getOutputFormt() == FORMAT.NHX ) || ( getOutputFormt() == FORMAT.NH ) ) {
-            getBuffer().append( ")" );
+            getWriter().write( ')' );
         }
     }
 
-    private void writeNode( final PhylogenyNode node, final StringBuffer indentation ) throws IOException {
+    private void writeNode( final PhylogenyNode node, final String indentation ) throws IOException {
         if ( getOutputFormt() == FORMAT.PHYLO_XML ) {
             if ( node.isExternal() ) {
                 getWriter().write( ForesterUtil.LINE_SEPARATOR );
                 if ( indentation != null ) {
-                    getWriter().write( indentation.toString() );
+                    getWriter().write( indentation );
                 }
                 PhylogenyDataUtil.appendOpen( getWriter(), PhyloXmlMapping.CLADE );
             }
             PhyloXmlNodeWriter.toPhyloXml( getWriter(),
                                            node,
                                            getPhyloXmlLevel(),
-                                           indentation != null ? indentation.toString() : "" );
+                                           indentation != null ? indentation : "",
+                                           indentation != null ? getIndentation( getNodeLevel() + 1 ) : "" );
             if ( node.isExternal() ) {
                 getWriter().write( ForesterUtil.LINE_SEPARATOR );
                 if ( indentation != null ) {
-                    getWriter().write( indentation.toString() );
+                    getWriter().write( indentation );
                 }
                 PhylogenyDataUtil.appendClose( getWriter(), PhyloXmlMapping.CLADE );
             }
         }
         else if ( getOutputFormt() == FORMAT.NHX ) {
-            getBuffer().append( node.toNewHampshireX() );
+            getWriter().write( node.toNewHampshireX() );
         }
         else if ( getOutputFormt() == FORMAT.NH ) {
-            getBuffer().append( node.toNewHampshire( isWriteDistanceToParentInNH(), getNhConversionSupportStyle() ) );
+            getWriter().write( node.toNewHampshire( isWriteDistanceToParentInNH(), getNhConversionSupportStyle() ) );
         }
     }
 
@@ -577,7 +651,7 @@ public final class PhylogenyWriter {
             if ( getOutputFormt() == FORMAT.PHYLO_XML ) {
                 getWriter().write( ForesterUtil.LINE_SEPARATOR );
                 if ( isIndentPhyloxml() ) {
-                    getWriter().write( createIndentation().toString() );
+                    getWriter().write( createIndentation() );
                 }
                 if ( node.isCollapse() ) {
                     PhylogenyDataUtil.appendOpen( getWriter(),
@@ -590,12 +664,27 @@ public final class PhylogenyWriter {
                 }
             }
             else if ( ( getOutputFormt() == FORMAT.NHX ) || ( getOutputFormt() == FORMAT.NH ) ) {
-                getBuffer().append( "(" );
+                getWriter().write( '(' );
             }
         }
         setSawComma( false );
     }
 
+    private void writeNhOutput( final Writer writer, final Phylogeny tree ) throws IOException {
+        if ( getOutputFormt() == FORMAT.PHYLO_XML ) {
+            throw new RuntimeException( "method inappropriately called" );
+        }
+        if ( tree != null ) {
+            reset( writer, tree );
+            while ( isHasNext() ) {
+                next();
+            }
+            if ( getOutputFormt() == FORMAT.NH ) {
+                writer.write( ';' );
+            }
+        }
+    }
+
     private void writeOutput( final Writer writer, final Phylogeny tree ) throws IOException {
         if ( getOutputFormt() != FORMAT.PHYLO_XML ) {
             throw new RuntimeException( "method inappropriately called" );
@@ -629,24 +718,63 @@ public final class PhylogenyWriter {
         }
     }
 
-    private void writeToFile( final StringBuffer sb, final File out_file ) throws IOException {
-        if ( out_file.exists() ) {
-            throw new IOException( "attempt to overwrite existing file \"" + out_file.getAbsolutePath() + "\"" );
+    // Writes trees in the current format, each followed by separator.
+    private void writeTrees( final Writer writer, final Iterator<Phylogeny> trees, final String separator )
+            throws IOException {
+        if ( _threads < 2 ) {
+            while ( trees.hasNext() ) {
+                writeTree( writer, trees.next() );
+                writer.write( separator );
+            }
+            return;
         }
-        final PrintWriter out = new PrintWriter( new FileWriter( out_file ), true );
-        if ( getOutputFormt() == FORMAT.PHYLO_XML ) {
-            out.print( PHYLO_XML_VERSION_ENCODING_LINE );
-            out.print( ForesterUtil.LINE_SEPARATOR );
-            out.print( PHYLO_XML_NAMESPACE_LINE );
-            out.print( ForesterUtil.LINE_SEPARATOR );
+        final ExecutorService executor = Executors.newFixedThreadPool( _threads );
+        final Queue<Future<String>> in_flight = new ArrayDeque<Future<String>>();
+        try {
+            while ( trees.hasNext() ) {
+                if ( in_flight.size() >= ( 2 * _threads ) ) {
+                    writer.write( in_flight.poll().get() );
+                    writer.write( separator );
+                }
+                final Phylogeny tree = trees.next();
+                final PhylogenyWriter w = copySettings();
+                in_flight.add( executor.submit( new Callable<String>() {
+
+                    @Override
+                    public String call() throws IOException {
+                        final StringWriter sw = new StringWriter();
+                        w.writeTree( sw, tree );
+                        return sw.toString();
+                    }
+                } ) );
+            }
+            while ( !in_flight.isEmpty() ) {
+                writer.write( in_flight.poll().get() );
+                writer.write( separator );
+            }
         }
-        out.print( sb );
+        catch ( final InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException( "interrupted while writing phylogenies" );
+        }
+        catch ( final ExecutionException e ) {
+            if ( e.getCause() instanceof IOException ) {
+                throw ( IOException ) e.getCause();
+            }
+            throw ParallelUtil.propagateCause( e );
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void writeTree( final Writer writer, final Phylogeny tree ) throws IOException {
         if ( getOutputFormt() == FORMAT.PHYLO_XML ) {
-            out.print( ForesterUtil.LINE_SEPARATOR );
-            out.print( PHYLO_XML_END );
+            writeOutput( writer, tree );
+        }
+        else {
+            writeNhOutput( writer, tree );
         }
-        out.flush();
-        out.close();
     }
 
     public static PhylogenyWriter createPhylogenyWriter() {
@@ -713,6 +841,7 @@ public final class PhylogenyWriter {
                                              final NH_CONVERSION_SUPPORT_VALUE_STYLE svs ) throws IOException {
         writer.write( NexusConstants.BEGIN_TREES );
         writer.write( ForesterUtil.LINE_SEPARATOR );
+        final PhylogenyWriter w = new PhylogenyWriter();
         int i = 1;
         for( final Phylogeny phylogeny : trees ) {
             writer.write( " " );
@@ -734,7 +863,7 @@ public final class PhylogenyWriter {
             else {
                 writer.write( "[&U]" );
             }
-            writer.write( phylogeny.toNewHampshire( svs ) );
+            w.toNewHampshire( writer, phylogeny, true, svs );
             writer.write( ForesterUtil.LINE_SEPARATOR );
             i++;
         }
@@ -57,6 +57,17 @@ public class BasicMsa implements Msa {
         _type = type;
     }
 
+    // For subclasses storing the residues themselves.
+    BasicMsa( final int rows, final TYPE type ) {
+        if ( rows < 1 ) {
+            throw new IllegalArgumentException( "basic msa of size zero are illegal" );
+        }
+        _data = null;
+        _identifiers = new String[ rows ];
+        _identifiers_set = new HashSet<String>();
+        _type = type;
+    }
+
     BasicMsa( final BasicMsa msa ) {
         _data = msa._data;
         _identifiers = msa._identifiers;
@@ -0,0 +1,159 @@
+// $Id:
+// FORESTER -- software libraries and applications
+// for evolutionary biology research and applications.
+//
+// Copyright (C) 2014 Christian M. Zmasek
+// Copyright (C) 2014 Sanford-Burnham Medical Research Institute
+// All rights reserved
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA
+//
+// WWW: https://sites.google.com/site/cmzmasek/home/software/forester
+
+package org.forester.msa;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import org.forester.sequence.BasicSequence;
+import org.forester.sequence.MolecularSequence;
+import org.forester.sequence.MolecularSequence.TYPE;
+
+/*
+ * Msa storing its residues column by column, as (ASCII) bytes, together with
+ * one gap bitset per column.
+ *
+ * Column statistics (gap counts, residue counts) are obtained by one pass
+ * over a contiguous byte array, without boxing. MsaMethods uses these for
+ * instances of this class. As subclass of BasicMsa, it can be wrapped by
+ * DeleteableMsa and ResampleableMsa.
+ */
+public final class ColumnMajorMsa extends BasicMsa {
+
+    /**
+     * The length of the array needed by countResiduesAtColumn.
+     */
+    public final static int NUMBER_OF_CODES = 128;
+    private final byte[][]  _columns;
+    private final BitSet[]  _gaps;
+
+    private ColumnMajorMsa( final int rows, final int columns, final TYPE type ) {
+        super( rows, type );
+        if ( columns < 1 ) {
+            throw new IllegalArgumentException( "basic msa of size zero are illegal" );
+        }
+        _columns = new byte[ columns ][ rows ];
+        _gaps = new BitSet[ columns ];
+        for( int col = 0; col < columns; ++col ) {
+            _gaps[ col ] = new BitSet( rows );
+        }
+    }
+
+    /**
+     * Counts the occurrences of each residue in column col (gaps included).
+     * The array counts has to be of length NUMBER_OF_CODES and is indexed by
+     * residue; it is not reset by this method.
+     *
+     */
+    public final void countResiduesAtColumn( final int col, final int[] counts ) {
+        final byte[] column = _columns[ col ];
+        for( final byte element : column ) {
+            ++counts[ element ];
+        }
+    }
+
+    @Override
+    public final List<Character> getColumnAt( final int col ) {
+        final byte[] column = _columns[ col ];
+        final List<Character> l = new ArrayList<Character>( column.length );
+        for( final byte element : column ) {
+            l.add( ( char ) element );
+        }
+        return l;
+    }
+
+    public final int getGapCountAtColumn( final int col ) {
+        return _gaps[ col ].cardinality();
+    }
+
+    @Override
+    public final int getLength() {
+        return _columns.length;
+    }
+
+    @Override
+    public final char getResidueAt( final int row, final int col ) {
+        return ( char ) _columns[ col ][ row ];
+    }
+
+    @Override
+    public final MolecularSequence getSequence( final int row ) {
+        final char[] s = new char[ getLength() ];
+        for( int col = 0; col < s.length; ++col ) {
+            s[ col ] = ( char ) _columns[ col ][ row ];
+        }
+        return new BasicSequence( getIdentifier( row ), s, getType() );
+    }
+
+    @Override
+    public final boolean isGapAt( final int row, final int col ) {
+        return _gaps[ col ].get( row );
+    }
+
+    @Override
+    public final void setResidueAt( final int row, final int col, final char residue ) {
+        if ( residue >= NUMBER_OF_CODES ) {
+            throw new IllegalArgumentException( "illegal residue [" + residue + "] (only ASCII characters allowed)" );
+        }
+        _columns[ col ][ row ] = ( byte ) residue;
+        _gaps[ col ].set( row, residue == MolecularSequence.GAP );
+    }
+
+    public static ColumnMajorMsa createInstance( final List<MolecularSequence> seqs ) {
+        if ( seqs.size() < 1 ) {
+            throw new IllegalArgumentException( "cannot create msa from less than one sequence" );
+        }
+        final int length = seqs.get( 0 ).getLength();
+        final ColumnMajorMsa msa = new ColumnMajorMsa( seqs.size(), length, seqs.get( 0 ).getType() );
+        for( int row = 0; row < seqs.size(); ++row ) {
+            final MolecularSequence seq = seqs.get( row );
+            if ( seq.getLength() != length ) {
+                throw new IllegalArgumentException( "illegal attempt to build msa from sequences of unequal length ["
+                        + seq.getIdentifier() + "]" );
+            }
+            if ( seq.getType() != msa.getType() ) {
+                throw new IllegalArgumentException( "illegal attempt to build msa from sequences of different type ["
+                        + seq.getIdentifier() + "]" );
+            }
+            msa.setIdentifier( row, seq.getIdentifier() );
+            for( int col = 0; col < length; ++col ) {
+                msa.setResidueAt( row, col, seq.getResidueAt( col ) );
+            }
+        }
+        return msa;
+    }
+
+    public static ColumnMajorMsa createInstance( final Msa msa ) {
+        final ColumnMajorMsa cmsa = new ColumnMajorMsa( msa.getNumberOfSequences(), msa.getLength(), msa.getType() );
+        for( int row = 0; row < msa.getNumberOfSequences(); ++row ) {
+            cmsa.setIdentifier( row, msa.getIdentifier( row ) );
+            for( int col = 0; col < msa.getLength(); ++col ) {
+                cmsa.setResidueAt( row, col, msa.getResidueAt( row, col ) );
+            }
+        }
+        return cmsa;
+    }
+}
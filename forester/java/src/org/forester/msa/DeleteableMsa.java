@@ -24,20 +24,40 @@
 
 package org.forester.msa;
 
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.forester.sequence.BasicSequence;
 import org.forester.sequence.MolecularSequence;
 
+/*
+ * Gap statistics (gaps per column, gaps and gap runs per row, total gaps)
+ * are kept up to date when rows or columns are deleted (or residues are set),
+ * thus they can be obtained without scanning the msa.
+ *
+ * Arrays indexed by "physical" rows/columns refer to the positions in the
+ * underlying BasicMsa, and are not affected by deletions. Residues are
+ * accessed through the underlying msa, thus any BasicMsa (e.g. a
+ * ColumnMajorMsa) can be wrapped.
+ */
 public final class DeleteableMsa extends BasicMsa {
 
-    private int _length                 = 0;
-    private int _mapped_col_positions[] = null;
-    private int _mapped_row_positions[] = null;
-    private int _seqs                   = 0;
+    private int                        _length                 = 0;
+    private int                        _mapped_col_positions[] = null;
+    private int                        _mapped_row_positions[] = null;
+    private int                        _seqs                   = 0;
+    private final int                  _gaps_per_col[];
+    private final int                  _gaps_per_row[];
+    private final int                  _gap_runs_per_row[];
+    private long                       _total_gaps;
+    private final Map<String, Integer> _id_to_physical_row;
+    private final BasicMsa             _msa;
 
     private DeleteableMsa( final BasicMsa msa ) {
         super( msa );
+        _msa = msa;
         _mapped_col_positions = new int[ msa.getLength() ];
         _mapped_row_positions = new int[ msa.getNumberOfSequences() ];
         for( int i = 0; i < _mapped_col_positions.length; ++i ) {
@@ -48,27 +68,48 @@ public final class DeleteableMsa extends BasicMsa {
         }
         _length = msa.getLength();
         _seqs = msa.getNumberOfSequences();
+        _gaps_per_col = new int[ _length ];
+        _gaps_per_row = new int[ _seqs ];
+        _gap_runs_per_row = new int[ _seqs ];
+        _id_to_physical_row = new HashMap<String, Integer>();
+        _total_gaps = 0;
+        for( int row = 0; row < _seqs; ++row ) {
+            _id_to_physical_row.put( super.getIdentifier( row ), row );
+            boolean was_gap = false;
+            for( int col = 0; col < _length; ++col ) {
+                if ( msa.isGapAt( row, col ) ) {
+                    ++_gaps_per_col[ col ];
+                    ++_gaps_per_row[ row ];
+                    if ( !was_gap ) {
+                        ++_gap_runs_per_row[ row ];
+                    }
+                    was_gap = true;
+                }
+                else {
+                    was_gap = false;
+                }
+            }
+            _total_gaps += _gaps_per_row[ row ];
+        }
     }
 
+    /**
+     * Returns the gap ratio of each column (number of gaps divided
+     * by number of sequences).
+     *
+     */
     public final double[] calcGappiness() {
         final int length = getLength();
         final double gappiness[] = new double[ length ];
         final int seqs = getNumberOfSequences();
-        for( int row = 0; row < seqs; ++row ) {
-            for( int col = 0; col < length; ++col ) {
-            }
+        for( int col = 0; col < length; ++col ) {
+            gappiness[ col ] = ( double ) _gaps_per_col[ _mapped_col_positions[ col ] ] / seqs;
         }
         return gappiness;
     }
 
     public static int calcGapSumPerColumn( final Msa msa, final int col ) {
-        int gap_rows = 0;
-        for( int j = 0; j < msa.getNumberOfSequences(); ++j ) {
-            if ( msa.isGapAt( j, col ) ) {
-                gap_rows++;
-            }
-        }
-        return gap_rows;
+        return MsaMethods.calcGapSumPerColumn( msa, col );
     }
 
     public short determineMaxIdLength() {
@@ -87,7 +128,7 @@ public final class DeleteableMsa extends BasicMsa {
             throw new IllegalArgumentException( "max allowed gap ration is out of range: " + max_allowed_gap_ratio );
         }
         for( int col = getLength() - 1; col >= 0; --col ) {
-            final boolean delete = ( ( double ) MsaMethods.calcGapSumPerColumn( this, col ) / getNumberOfSequences() ) > max_allowed_gap_ratio;
+            final boolean delete = ( ( double ) getGapCountAtColumn( col ) / getNumberOfSequences() ) > max_allowed_gap_ratio;
             if ( delete ) {
                 deleteColumn( col );
             }
@@ -103,13 +144,7 @@ public final class DeleteableMsa extends BasicMsa {
     }
 
     final public MolecularSequence deleteRow( final String id, final boolean return_removed_seq ) {
-        int row = -1;
-        for( int r = 0; r < getNumberOfSequences(); ++r ) {
-            if ( getIdentifier( r ).equals( id ) ) {
-                row = r;
-                break;
-            }
-        }
+        final int row = getRowIndex( id );
         if ( row < 0 ) {
             throw new IllegalArgumentException( "id [" + id + "] not found" );
         }
@@ -134,6 +169,35 @@ public final class DeleteableMsa extends BasicMsa {
         }
     }
 
+    /**
+     * Returns the number of gaps in column col.
+     */
+    final public int getGapCountAtColumn( final int col ) {
+        checkColumn( col );
+        return _gaps_per_col[ _mapped_col_positions[ col ] ];
+    }
+
+    /**
+     * Returns the number of gaps in row row.
+     */
+    final public int getGapCountAtRow( final int row ) {
+        checkRow( row );
+        return _gaps_per_row[ _mapped_row_positions[ row ] ];
+    }
+
+    /**
+     * Returns the number of gap runs (consecutive gaps counting as one) in row
+     * row.
+     */
+    final public int getGapRunCountAtRow( final int row ) {
+        checkRow( row );
+        return _gap_runs_per_row[ _mapped_row_positions[ row ] ];
+    }
+
+    final public double getGapRatio() {
+        return ( double ) _total_gaps / ( ( long ) _length * _seqs );
+    }
+
     @Override
     final public String getIdentifier( final int row ) {
         checkRow( row );
@@ -154,7 +218,21 @@ public final class DeleteableMsa extends BasicMsa {
     final public char getResidueAt( final int row, final int col ) {
         checkRow( row );
         checkColumn( col );
-        return super.getResidueAt( _mapped_row_positions[ row ], _mapped_col_positions[ col ] );
+        return _msa.getResidueAt( _mapped_row_positions[ row ], _mapped_col_positions[ col ] );
+    }
+
+    /**
+     * Returns the (current) row index of the sequence with identifier id, or
+     * -1 if not present (anymore).
+     */
+    final public int getRowIndex( final String id ) {
+        final Integer physical_row = _id_to_physical_row.get( id );
+        if ( physical_row == null ) {
+            return -1;
+        }
+        // Deletions preserve the order of the remaining rows.
+        final int row = Arrays.binarySearch( _mapped_row_positions, 0, _seqs, physical_row );
+        return row >= 0 ? row : -1;
     }
 
     @Override
@@ -164,26 +242,45 @@ public final class DeleteableMsa extends BasicMsa {
     }
 
     final public boolean isAllGap( final int col ) {
-        final int m_col = _mapped_col_positions[ col ];
-        for( int j = 0; j < getNumberOfSequences(); ++j ) {
-            if ( super.getResidueAt( _mapped_row_positions[ j ], m_col ) != MolecularSequence.GAP ) {
-                return false;
-            }
-        }
-        return true;
+        return _gaps_per_col[ _mapped_col_positions[ col ] ] == _seqs;
     }
 
     @Override
     final public void setIdentifier( final int row, final String id ) {
         checkRow( row );
-        super.setIdentifier( _mapped_row_positions[ row ], id );
+        final int physical_row = _mapped_row_positions[ row ];
+        final String old_id = super.getIdentifier( physical_row );
+        super.setIdentifier( physical_row, id );
+        if ( old_id != null ) {
+            _id_to_physical_row.remove( old_id );
+        }
+        _id_to_physical_row.put( id, physical_row );
     }
 
     @Override
     final public void setResidueAt( final int row, final int col, final char residue ) {
         checkRow( row );
         checkColumn( col );
-        super.setResidueAt( _mapped_row_positions[ row ], _mapped_col_positions[ col ], residue );
+        final boolean was_gap = isGapAt( row, col );
+        final boolean is_gap = residue == MolecularSequence.GAP;
+        if ( was_gap != is_gap ) {
+            final int physical_row = _mapped_row_positions[ row ];
+            final int d = is_gap ? 1 : -1;
+            _gaps_per_col[ _mapped_col_positions[ col ] ] += d;
+            _gaps_per_row[ physical_row ] += d;
+            _total_gaps += d;
+            final boolean left = ( col > 0 ) && isGapAt( row, col - 1 );
+            final boolean right = ( col < ( _length - 1 ) ) && isGapAt( row, col + 1 );
+            if ( !left && !right ) {
+                // New singleton gap run, or singleton gap run removed.
+                _gap_runs_per_row[ physical_row ] += d;
+            }
+            else if ( left && right ) {
+                // Two runs merged into one, or one run split into two.
+                _gap_runs_per_row[ physical_row ] -= d;
+            }
+        }
+        _msa.setResidueAt( _mapped_row_positions[ row ], _mapped_col_positions[ col ], residue );
     }
 
     final private void checkColumn( final int col ) {
@@ -200,17 +297,48 @@ public final class DeleteableMsa extends BasicMsa {
 
     final private void deleteColumn( final int col ) {
         checkColumn( col );
-        for( int c = col; c < ( _length - 1 ); ++c ) {
-            _mapped_col_positions[ c ] = _mapped_col_positions[ c + 1 ];
+        final int physical_col = _mapped_col_positions[ col ];
+        if ( _gaps_per_col[ physical_col ] > 0 ) {
+            for( int row = 0; row < _seqs; ++row ) {
+                final int physical_row = _mapped_row_positions[ row ];
+                final boolean left = ( col > 0 ) && isGapAt( row, col - 1 );
+                final boolean right = ( col < ( _length - 1 ) ) && isGapAt( row, col + 1 );
+                if ( _msa.isGapAt( physical_row, physical_col ) ) {
+                    --_gaps_per_row[ physical_row ];
+                    if ( !left && !right ) {
+                        --_gap_runs_per_row[ physical_row ];
+                    }
+                }
+                else if ( left && right ) {
+                    --_gap_runs_per_row[ physical_row ];
+                }
+            }
+            _total_gaps -= _gaps_per_col[ physical_col ];
         }
+        else {
+            for( int row = 0; row < _seqs; ++row ) {
+                if ( ( col > 0 ) && ( col < ( _length - 1 ) ) && isGapAt( row, col - 1 ) && isGapAt( row, col + 1 ) ) {
+                    --_gap_runs_per_row[ _mapped_row_positions[ row ] ];
+                }
+            }
+        }
+        System.arraycopy( _mapped_col_positions, col + 1, _mapped_col_positions, col, _length - col - 1 );
         --_length;
     }
 
     final private void deleteRow( final int row ) {
         checkRow( row );
-        for( int r = row; r < ( _seqs - 1 ); ++r ) {
-            _mapped_row_positions[ r ] = _mapped_row_positions[ r + 1 ];
+        final int physical_row = _mapped_row_positions[ row ];
+        if ( _gaps_per_row[ physical_row ] > 0 ) {
+            for( int col = 0; col < _length; ++col ) {
+                final int physical_col = _mapped_col_positions[ col ];
+                if ( _msa.isGapAt( physical_row, physical_col ) ) {
+                    --_gaps_per_col[ physical_col ];
+                }
+            }
+            _total_gaps -= _gaps_per_row[ physical_row ];
         }
+        System.arraycopy( _mapped_row_positions, row + 1, _mapped_row_positions, row, _seqs - row - 1 );
         --_seqs;
     }
 
@@ -0,0 +1,84 @@
+// $Id:
+// FORESTER -- software libraries and applications
+// for evolutionary biology research and applications.
+//
+// Copyright (C) 2014 Christian M. Zmasek
+// Copyright (C) 2014 Sanford-Burnham Medical Research Institute
+// All rights reserved
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA
+//
+// WWW: https://sites.google.com/site/cmzmasek/home/software/forester
+
+package org.forester.msa;
+
+/*
+ * Per-column statistics of an msa, as calculated in one pass over each column
+ * by MsaMethods.calculateColumnStatistics.
+ */
+public final class MsaColumnStatistics {
+
+    private final int[]    _gap_counts;
+    private final double[] _identity_ratios;
+    private final int      _k;
+    private final double[] _normalized_shannons_entropies;
+
+    MsaColumnStatistics( final int k,
+                         final int[] gap_counts,
+                         final double[] identity_ratios,
+                         final double[] normalized_shannons_entropies ) {
+        _k = k;
+        _gap_counts = gap_counts;
+        _identity_ratios = identity_ratios;
+        _normalized_shannons_entropies = normalized_shannons_entropies;
+    }
+
+    /**
+     * Same as MsaMethods.calcGapSumPerColumn( msa, col ).
+     *
+     */
+    public int getGapCount( final int col ) {
+        return _gap_counts[ col ];
+    }
+
+    /**
+     * Same as MsaMethods.calculateIdentityRatio( msa, col ).
+     *
+     */
+    public double getIdentityRatio( final int col ) {
+        return _identity_ratios[ col ];
+    }
+
+    /**
+     * Returns the number of residue types used for the normalized Shannon's
+     * entropies.
+     *
+     */
+    public int getK() {
+        return _k;
+    }
+
+    public int getLength() {
+        return _gap_counts.length;
+    }
+
+    /**
+     * Same as MsaMethods.calcNormalizedShannonsEntropy( getK(), msa, col ).
+     *
+     */
+    public double getNormalizedShannonsEntropy( final int col ) {
+        return _normalized_shannons_entropies[ col ];
+    }
+}
@@ -26,6 +26,7 @@
 package org.forester.msa;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -119,6 +120,13 @@ public final class MsaMethods {
     public static final int[] calcNumberOfGapsInMsa( final Msa msa ) {
         final int seqs = msa.getNumberOfSequences();
         final int[]  gaps= new int[ seqs ];
+        if ( msa instanceof DeleteableMsa ) {
+            final DeleteableMsa dmsa = ( DeleteableMsa ) msa;
+            for( int i = 0; i < seqs; ++i ) {
+                gaps[ i ] = dmsa.getGapRunCountAtRow( i );
+            }
+            return gaps;
+        }
         for( int i = 0; i < seqs; ++i ) {
             gaps[ i ] =  calcNumberOfGaps( msa.getSequence( i ) );
         }
@@ -153,6 +161,16 @@ public final class MsaMethods {
     }
 
     public static double calcGapRatio( final Msa msa ) {
+        if ( msa instanceof DeleteableMsa ) {
+            return ( ( DeleteableMsa ) msa ).getGapRatio();
+        }
+        if ( msa instanceof ColumnMajorMsa ) {
+            long gaps = 0;
+            for( int col = 0; col < msa.getLength(); ++col ) {
+                gaps += ( ( ColumnMajorMsa ) msa ).getGapCountAtColumn( col );
+            }
+            return ( double ) gaps / ( ( long ) msa.getLength() * msa.getNumberOfSequences() );
+        }
         int gaps = 0;
         for( int seq = 0; seq < msa.getNumberOfSequences(); ++seq ) {
             for( int i = 0; i < msa.getLength(); ++i ) {
@@ -165,6 +183,12 @@ public final class MsaMethods {
     }
 
     public static int calcGapSumPerColumn( final Msa msa, final int col ) {
+        if ( msa instanceof DeleteableMsa ) {
+            return ( ( DeleteableMsa ) msa ).getGapCountAtColumn( col );
+        }
+        if ( msa instanceof ColumnMajorMsa ) {
+            return ( ( ColumnMajorMsa ) msa ).getGapCountAtColumn( col );
+        }
         int gap_rows = 0;
         for( int j = 0; j < msa.getNumberOfSequences(); ++j ) {
             if ( msa.isGapAt( j, col ) ) {
@@ -176,6 +200,15 @@ public final class MsaMethods {
 
     final public static double calcNormalizedShannonsEntropy( final int k, final Msa msa ) {
         double s = 0;
+        if ( msa instanceof ColumnMajorMsa ) {
+            final int[] counts = new int[ ColumnMajorMsa.NUMBER_OF_CODES ];
+            for( int col = 0; col < msa.getLength(); ++col ) {
+                Arrays.fill( counts, 0 );
+                ( ( ColumnMajorMsa ) msa ).countResiduesAtColumn( col, counts );
+                s += calcNormalizedShannonsEntropy( k, msa.getNumberOfSequences(), counts );
+            }
+            return s / msa.getLength();
+        }
         for( int col = 0; col < msa.getLength(); ++col ) {
             s += calcNormalizedShannonsEntropy( k, msa, col );
         }
@@ -189,6 +222,11 @@ public final class MsaMethods {
         // na: number of residues of type a
         // pa = na/n
         // S=-sum pa log2 pa
+        if ( msa instanceof ColumnMajorMsa ) {
+            final int[] counts = new int[ ColumnMajorMsa.NUMBER_OF_CODES ];
+            ( ( ColumnMajorMsa ) msa ).countResiduesAtColumn( col, counts );
+            return calcNormalizedShannonsEntropy( k, msa.getNumberOfSequences(), counts );
+        }
         double s = 0;
         final double n = msa.getNumberOfSequences();
         HashMap<Character, Integer> dist = null;
@@ -227,6 +265,13 @@ public final class MsaMethods {
 
     final public static DescriptiveStatistics calculateEffectiveLengthStatistics( final Msa msa ) {
         final DescriptiveStatistics stats = new BasicDescriptiveStatistics();
+        if ( msa instanceof DeleteableMsa ) {
+            final DeleteableMsa dmsa = ( DeleteableMsa ) msa;
+            for( int row = 0; row < msa.getNumberOfSequences(); ++row ) {
+                stats.addValue( msa.getLength() - dmsa.getGapCountAtRow( row ) );
+            }
+            return stats;
+        }
         for( int row = 0; row < msa.getNumberOfSequences(); ++row ) {
             final MolecularSequence s = msa.getSequence( row );
             stats.addValue( s.getLength() - s.getNumberOfGapResidues() );
@@ -243,6 +288,11 @@ public final class MsaMethods {
     }
 
     final public static double calculateIdentityRatio( final Msa msa, final int column ) {
+        if ( msa instanceof ColumnMajorMsa ) {
+            final int[] counts = new int[ ColumnMajorMsa.NUMBER_OF_CODES ];
+            ( ( ColumnMajorMsa ) msa ).countResiduesAtColumn( column, counts );
+            return ( double ) calcMajorityCount( counts ) / msa.getNumberOfSequences();
+        }
         final SortedMap<Character, Integer> dist = calculateResidueDestributionPerColumn( msa, column );
         int majority_count = 0;
         final Iterator<Map.Entry<Character, Integer>> it = dist.entrySet().iterator();
@@ -255,8 +305,43 @@ public final class MsaMethods {
         return ( double ) majority_count / msa.getNumberOfSequences();
     }
 
+    /**
+     * Calculates the gap counts, identity ratios and normalized Shannon's
+     * entropies (for k residue types) of all columns of msa, with a single
+     * pass over the residues of each column.
+     *
+     */
+    final public static MsaColumnStatistics calculateColumnStatistics( final int k, final ColumnMajorMsa msa ) {
+        if ( ( k != 6 ) && ( k != 7 ) && ( k != 20 ) && ( k != 21 ) ) {
+            throw new IllegalArgumentException( "illegal value for k: " + k );
+        }
+        final int n = msa.getNumberOfSequences();
+        final int[] gap_counts = new int[ msa.getLength() ];
+        final double[] identity_ratios = new double[ msa.getLength() ];
+        final double[] normalized_shannons_entropies = new double[ msa.getLength() ];
+        final int[] counts = new int[ ColumnMajorMsa.NUMBER_OF_CODES ];
+        for( int col = 0; col < msa.getLength(); ++col ) {
+            Arrays.fill( counts, 0 );
+            msa.countResiduesAtColumn( col, counts );
+            gap_counts[ col ] = counts[ MolecularSequence.GAP ];
+            identity_ratios[ col ] = ( double ) calcMajorityCount( counts ) / n;
+            normalized_shannons_entropies[ col ] = calcNormalizedShannonsEntropy( k, n, counts );
+        }
+        return new MsaColumnStatistics( k, gap_counts, identity_ratios, normalized_shannons_entropies );
+    }
+
     public static SortedMap<Character, Integer> calculateResidueDestributionPerColumn( final Msa msa, final int column ) {
         final SortedMap<Character, Integer> map = new TreeMap<Character, Integer>();
+        if ( msa instanceof ColumnMajorMsa ) {
+            final int[] counts = new int[ ColumnMajorMsa.NUMBER_OF_CODES ];
+            ( ( ColumnMajorMsa ) msa ).countResiduesAtColumn( column, counts );
+            for( int c = 0; c < counts.length; ++c ) {
+                if ( ( c != MolecularSequence.GAP ) && ( counts[ c ] > 0 ) ) {
+                    map.put( ( char ) c, counts[ c ] );
+                }
+            }
+            return map;
+        }
         for( final Character r : msa.getColumnAt( column ) ) {
             if ( r != MolecularSequence.GAP ) {
                 if ( !map.containsKey( r ) ) {
@@ -329,6 +414,105 @@ public final class MsaMethods {
         return BasicMsa.createInstance( seqs );
     }
 
+    // The count of the most frequent non-gap residue, based on the residue
+    // counts (indexed by residue) of one column.
+    final private static int calcMajorityCount( final int[] counts ) {
+        int majority_count = 0;
+        for( int c = 0; c < counts.length; ++c ) {
+            if ( ( c != MolecularSequence.GAP ) && ( counts[ c ] > majority_count ) ) {
+                majority_count = counts[ c ];
+            }
+        }
+        return majority_count;
+    }
+
+    // Same as calcNormalizedShannonsEntropy( k, msa, col ), but based on the
+    // residue counts (indexed by residue) of one column.
+    final private static double calcNormalizedShannonsEntropy( final int k, final int n, final int[] counts ) {
+        final int[] dist;
+        if ( ( k == 6 ) || ( k == 7 ) ) {
+            dist = new int[ 7 ];
+            for( int c = 0; c < counts.length; ++c ) {
+                if ( counts[ c ] > 0 ) {
+                    final int x = calcResidueClass( ( char ) c );
+                    if ( x >= 0 ) {
+                        dist[ x ] += counts[ c ];
+                    }
+                    else if ( k == 7 ) {
+                        dist[ 6 ] += counts[ c ];
+                    }
+                }
+            }
+        }
+        else if ( k == 20 ) {
+            dist = counts.clone();
+            dist[ MolecularSequence.GAP ] = 0;
+        }
+        else if ( k == 21 ) {
+            dist = counts;
+        }
+        else {
+            throw new IllegalArgumentException( "illegal value for k: " + k );
+        }
+        int size = 0;
+        for( final int na : dist ) {
+            if ( na > 0 ) {
+                ++size;
+            }
+        }
+        if ( size == 1 ) {
+            return 0;
+        }
+        double s = 0;
+        for( final int na : dist ) {
+            if ( na > 0 ) {
+                final double pa = ( double ) na / n;
+                s += pa * Math.log( pa );
+            }
+        }
+        if ( n < k ) {
+            return -( s / ( Math.log( n ) ) );
+        }
+        else {
+            return -( s / ( Math.log( k ) ) );
+        }
+    }
+
+    // Classes as in calcResidueDistribution6 and calcResidueDistribution7,
+    // -1 for others.
+    final private static int calcResidueClass( final char c ) {
+        switch ( c ) {
+            case 'A':
+            case 'V':
+            case 'L':
+            case 'I':
+            case 'M':
+            case 'C':
+                return 0;
+            case 'F':
+            case 'W':
+            case 'Y':
+            case 'H':
+                return 1;
+            case 'S':
+            case 'T':
+            case 'N':
+            case 'Q':
+                return 2;
+            case 'K':
+            case 'R':
+                return 3;
+            case 'D':
+            case 'E':
+                return 4;
+            case 'G':
+            case 'P':
+                return 5;
+            default:
+                return -1;
+        }
+    }
+
     final private static HashMap<Character, Integer> calcResidueDistribution20( final Msa msa, final int col ) {
         final HashMap<Character, Integer> counts = new HashMap<Character, Integer>();
         for( int row = 0; row < msa.getNumberOfSequences(); ++row ) {
@@ -30,18 +30,25 @@ import org.forester.sequence.MolecularSequence;
 
 public final class ResampleableMsa extends BasicMsa {
 
-    private int[] _resampled_column_positions = null;
+    private final BasicMsa _msa;
+    private int[]          _resampled_column_positions = null;
 
     public ResampleableMsa( final BasicMsa msa ) {
         super( msa );
+        _msa = msa;
+    }
+
+    @Override
+    final public int getLength() {
+        return _msa.getLength();
     }
 
     @Override
     final public char getResidueAt( final int row, final int col ) {
         if ( _resampled_column_positions != null ) {
-            return super.getResidueAt( row, _resampled_column_positions[ col ] );
+            return _msa.getResidueAt( row, _resampled_column_positions[ col ] );
         }
-        return super.getResidueAt( row, col );
+        return _msa.getResidueAt( row, col );
     }
 
     final public void resample( final int[] resampled_column_positions ) {
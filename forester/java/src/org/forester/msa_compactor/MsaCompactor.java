@@ -43,7 +43,7 @@ import org.forester.evoinference.distance.NeighborJoiningF;
 import org.forester.evoinference.distance.PairwiseDistanceCalculator;
 import org.forester.evoinference.distance.PairwiseDistanceCalculator.PWD_DISTANCE_METHOD;
 import org.forester.evoinference.matrix.distance.BasicSymmetricalDistanceMatrix;
-import org.forester.evoinference.tools.BootstrapResampler;
+import org.forester.evoinference.tools.BootstrapNeighborJoining;
 import org.forester.io.parsers.nhx.NHXParser.TAXONOMY_EXTRACTION;
 import org.forester.io.parsers.phyloxml.PhyloXmlDataFormatException;
 import org.forester.io.parsers.util.ParserUtils;
@@ -55,7 +55,6 @@ import org.forester.msa.Msa;
 import org.forester.msa.Msa.MSA_FORMAT;
 import org.forester.msa.MsaInferrer;
 import org.forester.msa.MsaMethods;
-import org.forester.msa.ResampleableMsa;
 import org.forester.phylogeny.Phylogeny;
 import org.forester.phylogeny.PhylogenyMethods;
 import org.forester.phylogeny.PhylogenyMethods.DESCENDANT_SORT_PRIORITY;
@@ -65,7 +64,6 @@ import org.forester.phylogeny.data.NodeVisualData.NodeFill;
 import org.forester.phylogeny.data.NodeVisualData.NodeShape;
 import org.forester.phylogeny.iterators.PhylogenyNodeIterator;
 import org.forester.sequence.MolecularSequence;
-import org.forester.tools.ConfidenceAssessor;
 import org.forester.util.BasicDescriptiveStatistics;
 import org.forester.util.DescriptiveStatistics;
 import org.forester.util.ForesterUtil;
@@ -75,6 +73,8 @@ public class MsaCompactor {
     final private static NumberFormat          NF_1                       = new DecimalFormat( "0.#" );
     final private static NumberFormat          NF_3                       = new DecimalFormat( "0.###" );
     final private static NumberFormat          NF_4                       = new DecimalFormat( "0.####" );
+    final private static long                  BOOTSTRAP_SEED             = 15;
+    private int                                _bootstrap_samples         = 0;
     private boolean                            _calculate_shannon_entropy = false;
     //
     private String                             _infile_name               = null;
@@ -89,6 +89,7 @@ public class MsaCompactor {
     private boolean                            _phylogentic_inference     = false;
     //
     private boolean                            _realign                   = false;
+    private boolean                            _recalculate_gap_contributions = false;
     private final SortedSet<String>            _removed_seq_ids;
     private final ArrayList<MolecularSequence> _removed_seqs;
     private File                               _removed_seqs_out_base     = null;
@@ -107,8 +108,12 @@ public class MsaCompactor {
         _removed_seqs = new ArrayList<MolecularSequence>();
     }
 
-    public final Phylogeny calcTree() {
+    public final Phylogeny calcTree() throws InterruptedException {
         final Phylogeny phy = inferNJphylogeny( PWD_DISTANCE_METHOD.KIMURA_DISTANCE, _msa, false, "" );
+        if ( _bootstrap_samples > 0 ) {
+            BootstrapNeighborJoining.createInstance( _msa, PWD_DISTANCE_METHOD.KIMURA_DISTANCE )
+            .evaluate( BootstrapNeighborJoining.DEFAULT_CONFIDENCE_TYPE, phy, _bootstrap_samples, BOOTSTRAP_SEED );
+        }
         PhylogenyMethods.midpointRoot( phy );
         PhylogenyMethods.orderAppearance( phy.getRoot(), true, true, DESCENDANT_SORT_PRIORITY.NODE_NAME );
         final boolean x = PhylogenyMethods.extractFastaInformation( phy );
@@ -138,6 +143,7 @@ public class MsaCompactor {
         for( final GapContribution gap_gontribution : stats ) {
             to_remove_ids.add( gap_gontribution.getId() );
         }
+        final WorstOffenderQueue queue = createWorstOffenderQueue( to_remove_ids, normalize_for_effective_seq_length );
         Phylogeny phy = null;
         if ( _phylogentic_inference ) {
             System.out.println( "calculating phylogentic tree..." );
@@ -159,7 +165,7 @@ public class MsaCompactor {
         System.out.println();
         int i = 0;
         while ( _msa.getNumberOfSequences() > x ) {
-            final String id = to_remove_ids.get( i );
+            final String id = queue == null ? to_remove_ids.get( i ) : queue.next( _msa );
             _msa.deleteRow( id, false );
             if ( realign && isPrintMsaStatsWriteOutfileAndRealign( i ) ) {
                 removeGapColumns();
@@ -311,6 +317,7 @@ public class MsaCompactor {
         for( final GapContribution gap_gontribution : stats ) {
             to_remove_ids.add( gap_gontribution.getId() );
         }
+        final WorstOffenderQueue queue = createWorstOffenderQueue( to_remove_ids, _normalize_for_effective_seq_length );
         Phylogeny phy = null;
         if ( _phylogentic_inference ) {
             System.out.println( "calculating phylogentic tree..." );
@@ -325,7 +332,7 @@ public class MsaCompactor {
         System.out.println();
         int i = 0;
         while ( MsaMethods.calcGapRatio( _msa ) > mean_gapiness ) {
-            final String id = to_remove_ids.get( i );
+            final String id = queue == null ? to_remove_ids.get( i ) : queue.next( _msa );
             _removed_seq_ids.add( id );
             final MolecularSequence deleted = _msa.deleteRow( id, true );
             _removed_seqs.add( deleted );
@@ -369,6 +376,7 @@ public class MsaCompactor {
         for( final GapContribution gap_gontribution : stats ) {
             to_remove_ids.add( gap_gontribution.getId() );
         }
+        final WorstOffenderQueue queue = createWorstOffenderQueue( to_remove_ids, _normalize_for_effective_seq_length );
         Phylogeny phy = null;
         if ( _phylogentic_inference ) {
             System.out.println( "calculating phylogentic tree..." );
@@ -383,7 +391,7 @@ public class MsaCompactor {
         System.out.println();
         int i = 0;
         while ( _msa.getLength() > length ) {
-            final String id = to_remove_ids.get( i );
+            final String id = queue == null ? to_remove_ids.get( i ) : queue.next( _msa );
             _removed_seq_ids.add( id );
             final MolecularSequence deleted = _msa.deleteRow( id, true );
             _removed_seqs.add( deleted );
@@ -427,6 +435,11 @@ public class MsaCompactor {
         for( int j = 0; j < to_remove; ++j ) {
             to_remove_ids.add( stats[ j ].getId() );
         }
+        final List<String> ids = new ArrayList<String>();
+        for( final GapContribution gap_gontribution : stats ) {
+            ids.add( gap_gontribution.getId() );
+        }
+        final WorstOffenderQueue queue = createWorstOffenderQueue( ids, _normalize_for_effective_seq_length );
         Phylogeny phy = null;
         if ( _phylogentic_inference ) {
             System.out.println( "calculating phylogentic tree..." );
@@ -440,7 +453,7 @@ public class MsaCompactor {
         printMsaProperties( msa_prop );
         System.out.println();
         for( int i = 0; i < to_remove_ids.size(); ++i ) {
-            final String id = to_remove_ids.get( i );
+            final String id = queue == null ? to_remove_ids.get( i ) : queue.next( _msa );
             _removed_seq_ids.add( id );
             final MolecularSequence deleted = _msa.deleteRow( id, true );
             _removed_seqs.add( deleted );
@@ -475,6 +488,10 @@ public class MsaCompactor {
         return msa_props;
     }
 
+    public final void setBootstrapSamples( final int bootstrap_samples ) {
+        _bootstrap_samples = bootstrap_samples;
+    }
+
     public final void setCalculateNormalizedShannonEntropy( final boolean calculate_shannon_entropy ) {
         _calculate_shannon_entropy = calculate_shannon_entropy;
     }
@@ -511,6 +528,16 @@ public class MsaCompactor {
         _realign = realign;
     }
 
+    /**
+     * If set to true, the gap contributions of the remaining sequences are
+     * updated after each removal (instead of ranking all sequences once, at
+     * the start).
+     *
+     */
+    public final void setRecalculateGapContributions( final boolean recalculate_gap_contributions ) {
+        _recalculate_gap_contributions = recalculate_gap_contributions;
+    }
+
     public final void setRemovedSeqsOutBase( final File removed_seqs_out_base ) {
         _removed_seqs_out_base = removed_seqs_out_base;
     }
@@ -565,7 +592,7 @@ public class MsaCompactor {
     }
 
     private final GapContribution[] calcGapContribtions( final boolean normalize_for_effective_seq_length ) {
-        final double gappiness[] = calcGappiness();
+        final double gappiness[] = _msa.calcGappiness();
         final GapContribution stats[] = new GapContribution[ _msa.getNumberOfSequences() ];
         for( int row = 0; row < _msa.getNumberOfSequences(); ++row ) {
             stats[ row ] = new GapContribution( _msa.getIdentifier( row ) );
@@ -590,14 +617,13 @@ public class MsaCompactor {
         return stats;
     }
 
-    private final double[] calcGappiness() {
-        final int l = _msa.getLength();
-        final double gappiness[] = new double[ l ];
-        final int seqs = _msa.getNumberOfSequences();
-        for( int i = 0; i < l; ++i ) {
-            gappiness[ i ] = ( double ) MsaMethods.calcGapSumPerColumn( _msa, i ) / seqs;
+    // Returns null if gap contributions are not to be recalculated.
+    private final WorstOffenderQueue createWorstOffenderQueue( final List<String> ids,
+                                                              final boolean normalize_for_effective_seq_length ) {
+        if ( !_recalculate_gap_contributions ) {
+            return null;
         }
-        return gappiness;
+        return new WorstOffenderQueue( _msa, ids, normalize_for_effective_seq_length );
     }
 
     private final Phylogeny collapse( final Msa msa, final int threshold ) {
@@ -673,20 +699,12 @@ public class MsaCompactor {
         return "";
     }
 
-    private final Phylogeny pi( final String matrix, final int boostrap ) {
+    private final Phylogeny pi( final String matrix, final int boostrap ) throws InterruptedException {
         final Phylogeny master_phy = inferNJphylogeny( PWD_DISTANCE_METHOD.KIMURA_DISTANCE, _msa, true, matrix );
         final int seed = 15;
         final int n = 100;
-        final ResampleableMsa resampleable_msa = new ResampleableMsa( _msa );
-        final int[][] resampled_column_positions = BootstrapResampler.createResampledColumnPositions( _msa.getLength(),
-                                                                                                      n,
-                                                                                                      seed );
-        final Phylogeny[] eval_phys = new Phylogeny[ n ];
-        for( int i = 0; i < n; ++i ) {
-            resampleable_msa.resample( resampled_column_positions[ i ] );
-            eval_phys[ i ] = inferNJphylogeny( PWD_DISTANCE_METHOD.KIMURA_DISTANCE, resampleable_msa, false, null );
-        }
-        ConfidenceAssessor.evaluate( "bootstrap", eval_phys, master_phy, true, 1 );
+        BootstrapNeighborJoining.createInstance( _msa, PWD_DISTANCE_METHOD.KIMURA_DISTANCE )
+        .evaluate( BootstrapNeighborJoining.DEFAULT_CONFIDENCE_TYPE, master_phy, n, seed );
         PhylogenyMethods.extractFastaInformation( master_phy );
         return master_phy;
     }
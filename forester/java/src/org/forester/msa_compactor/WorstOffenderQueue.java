@@ -0,0 +1,103 @@
+// $Id:
+// FORESTER -- software libraries and applications
+// for evolutionary biology research and applications.
+//
+// Copyright (C) 2014 Christian M. Zmasek
+// Copyright (C) 2014 Sanford-Burnham Medical Research Institute
+// All rights reserved
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA
+//
+// WWW: https://sites.google.com/site/cmzmasek/home/software/forester
+
+package org.forester.msa_compactor;
+
+import java.util.List;
+
+import org.forester.datastructures.IndexedMaxPriorityQueue;
+import org.forester.msa.DeleteableMsa;
+
+/*
+ * Returns the sequence with the currently largest gap contribution, taking
+ * into account all sequences removed so far.
+ *
+ * Priorities are gap contributions without the factors common to all
+ * sequences (1/number of sequences, and 1/msa length if not normalized for
+ * effective sequence length). Deleting sequences and gap-only columns can
+ * only lower these values, thus stored priorities are upper bounds, and only
+ * the sequences reaching the top of the queue need to be re-evaluated
+ * ("lazy" greedy selection).
+ */
+final class WorstOffenderQueue {
+
+    private final List<String>            _ids;
+    private final boolean                 _normalize_for_effective_seq_length;
+    private final IndexedMaxPriorityQueue _queue;
+    private DeleteableMsa                 _msa;
+
+    /**
+     * The order of ids is used to break ties (earlier first).
+     */
+    WorstOffenderQueue( final DeleteableMsa msa,
+                        final List<String> ids,
+                        final boolean normalize_for_effective_seq_length ) {
+        _ids = ids;
+        _normalize_for_effective_seq_length = normalize_for_effective_seq_length;
+        _queue = new IndexedMaxPriorityQueue( ids.size() );
+        _msa = msa;
+        for( int i = 0; i < ids.size(); ++i ) {
+            _queue.insert( i, calcPriority( ids.get( i ) ) );
+        }
+    }
+
+    final String next( final DeleteableMsa msa ) {
+        if ( msa != _msa ) {
+            // Msa has been realigned, gap contributions might have increased.
+            _msa = msa;
+            for( int i = 0; i < _ids.size(); ++i ) {
+                if ( _queue.contains( i ) ) {
+                    _queue.setPriority( i, calcPriority( _ids.get( i ) ) );
+                }
+            }
+        }
+        while ( true ) {
+            final int i = _queue.peek();
+            final double p = calcPriority( _ids.get( i ) );
+            if ( p >= _queue.getPriority( i ) ) {
+                _queue.remove( i );
+                return _ids.get( i );
+            }
+            _queue.setPriority( i, p );
+        }
+    }
+
+    private final double calcPriority( final String id ) {
+        final int row = _msa.getRowIndex( id );
+        if ( row < 0 ) {
+            throw new IllegalArgumentException( "id [" + id + "] not found" );
+        }
+        long sum = 0;
+        for( int col = 0; col < _msa.getLength(); ++col ) {
+            if ( !_msa.isGapAt( row, col ) ) {
+                sum += _msa.getGapCountAtColumn( col );
+            }
+        }
+        if ( _normalize_for_effective_seq_length ) {
+            final int non_gap_residues = _msa.getLength() - _msa.getGapCountAtRow( row );
+            return non_gap_residues > 0 ? ( double ) sum / non_gap_residues : 0;
+        }
+        return sum;
+    }
+}
@@ -28,60 +28,40 @@ package org.forester.pccx;
 
 import java.io.PrintStream;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashSet;
 import java.util.List;
+import java.util.PriorityQueue;
 import java.util.Set;
-import java.util.SortedMap;
-import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.forester.phylogeny.Phylogeny;
-import org.forester.phylogeny.PhylogenyNode;
 import org.forester.phylogeny.iterators.PhylogenyNodeIterator;
 import org.forester.util.ForesterUtil;
+import org.forester.util.ParallelUtil;
 
 /*
+ * Greedily finds the external nodes which extend the coverage the most.
+ *
+ * Since the gain of adding an external node can only decrease as more
+ * external nodes are covered, gains are calculated lazily ("CELF"): candidates
+ * are kept in a priority queue by their last calculated gain, and only the
+ * gain of the top candidate is recalculated, until a candidate with a gain
+ * calculated in the current round is on top. This yields the same names as
+ * calculating all gains in each round (ties are broken by the order of the
+ * external nodes of the first phylogeny; where names give the same coverage,
+ * rounding can decide differently).
+ *
  * @author Christian M. Zmasek
  */
 public class BasicExternalNodeBasedCoverageExtender implements CoverageExtender {
 
-    private String find( final CoverageCalculationOptions options,
-                         final BranchCountingBasedScoringMethod scoring_method,
-                         final List<SortedMap<PhylogenyNode, Double>> external_node_scores_list,
-                         final List<SortedMap<PhylogenyNode, Double>> external_node_scores_list_temp,
-                         final List<Phylogeny> phylogenies,
-                         final Set<String> already_covered,
-                         final PrintStream out,
-                         final int i,
-                         final double normalization_factor ) {
-        final Phylogeny p = phylogenies.get( 0 );
-        String best_name = null;
-        double best_score = -Double.MAX_VALUE;
-        for( final PhylogenyNodeIterator iter = p.iteratorExternalForward(); iter.hasNext(); ) {
-            final String name = iter.next().getName();
-            if ( !already_covered.contains( name ) ) {
-                final double score = BasicExternalNodeBasedCoverageExtender
-                        .calculateCoverage( phylogenies,
-                                            name,
-                                            options,
-                                            scoring_method,
-                                            external_node_scores_list_temp,
-                                            false );
-                if ( score > best_score ) {
-                    best_score = score;
-                    best_name = name;
-                }
-            }
-        }
-        BasicExternalNodeBasedCoverageExtender.calculateCoverage( phylogenies,
-                                                                  best_name,
-                                                                  options,
-                                                                  scoring_method,
-                                                                  external_node_scores_list_temp,
-                                                                  true );
-        if ( out != null ) {
-            out.println( i + "\t" + best_name + "\t" + ( best_score * normalization_factor ) );
-        }
-        return best_name;
+    private int _number_of_threads;
+
+    public BasicExternalNodeBasedCoverageExtender() {
+        _number_of_threads = 1;
     }
 
     /*
@@ -114,66 +94,165 @@ public class BasicExternalNodeBasedCoverageExtender implements CoverageExtender
         }
         final List<String> best_names = new ArrayList<String>();
         final Set<String> my_already_covered = new HashSet<String>();
-        final List<SortedMap<PhylogenyNode, Double>> external_node_scores_list = new ArrayList<SortedMap<PhylogenyNode, Double>>();
-        for( int i = 0; i < phylogenies.size(); ++i ) {
-            external_node_scores_list.add( ModelingUtils.setUpExternalCoverageHashMap( phylogenies.get( i ) ) );
+        final int number_of_phylogenies = phylogenies.size();
+        final ExternalNodeScores[] scores = new ExternalNodeScores[ number_of_phylogenies ];
+        for( int p = 0; p < number_of_phylogenies; ++p ) {
+            scores[ p ] = new ExternalNodeScores( phylogenies.get( p ), scoring_method );
         }
         if ( already_covered != null ) {
             for( final String name : already_covered ) {
                 my_already_covered.add( name );
-                BasicExternalNodeBasedCoverageExtender.calculateCoverage( phylogenies,
-                                                                          name,
-                                                                          options,
-                                                                          scoring_method,
-                                                                          external_node_scores_list,
-                                                                          true );
+                for( int p = 0; p < number_of_phylogenies; ++p ) {
+                    scores[ p ].add( scores[ p ].getExternalNodeIndex( name ) );
+                }
             }
         }
         if ( number_names_to_find < 1 ) {
             number_names_to_find = phylogenies.get( 0 ).getNumberOfExternalNodes() - my_already_covered.size();
         }
         final double normalization_factor = scoring_method.getNormalizationFactor( phylogenies.get( 0 ) );
-        for( int i = 0; i < number_names_to_find; ++i ) {
-            final String name = find( my_options,
-                                      scoring_method,
-                                      external_node_scores_list,
-                                      external_node_scores_list,
-                                      phylogenies,
-                                      my_already_covered,
-                                      out,
-                                      i,
-                                      normalization_factor );
-            my_already_covered.add( name );
-            best_names.add( name );
+        // The candidates, in the order of the external nodes of the first phylogeny,
+        // with their external node index in each phylogeny.
+        final List<String> names = new ArrayList<String>();
+        for( final PhylogenyNodeIterator iter = phylogenies.get( 0 ).iteratorExternalForward(); iter.hasNext(); ) {
+            final String name = iter.next().getName();
+            if ( !my_already_covered.contains( name ) ) {
+                names.add( name );
+            }
+        }
+        final int number_of_candidates = names.size();
+        final int[][] candidates = new int[ number_of_candidates ][ number_of_phylogenies ];
+        for( int c = 0; c < number_of_candidates; ++c ) {
+            for( int p = 0; p < number_of_phylogenies; ++p ) {
+                candidates[ c ][ p ] = scores[ p ].getExternalNodeIndex( names.get( c ) );
+            }
+        }
+        final ExecutorService executor = getNumberOfThreads() > 1 ? Executors
+                .newFixedThreadPool( getNumberOfThreads() ) : null;
+        try {
+            // The gain of each candidate and the round in which it was calculated;
+            // gains from earlier rounds are upper bounds.
+            final double[] gains = new double[ number_of_candidates ];
+            final int[] rounds = new int[ number_of_candidates ];
+            calculateGains( scores, candidates, gains, executor );
+            final Comparator<Integer> by_gain = new Comparator<Integer>() {
+
+                @Override
+                public int compare( final Integer c1, final Integer c2 ) {
+                    final int c = Double.compare( gains[ c2 ], gains[ c1 ] );
+                    return c != 0 ? c : c1.compareTo( c2 );
+                }
+            };
+            final PriorityQueue<Integer> queue = new PriorityQueue<Integer>( Math.max( 1, number_of_candidates ),
+                                                                             by_gain );
+            for( int c = 0; c < number_of_candidates; ++c ) {
+                queue.add( c );
+            }
+            double score_sum = 0.0;
+            for( final ExternalNodeScores s : scores ) {
+                score_sum += s.getScoreSum();
+            }
+            for( int round = 0; ( round < number_names_to_find ) && !queue.isEmpty(); ++round ) {
+                int best = queue.poll();
+                while ( rounds[ best ] != round ) {
+                    gains[ best ] = calculateGain( scores, candidates[ best ], executor );
+                    rounds[ best ] = round;
+                    queue.add( best );
+                    best = queue.poll();
+                }
+                for( int p = 0; p < number_of_phylogenies; ++p ) {
+                    scores[ p ].add( candidates[ best ][ p ] );
+                }
+                score_sum += gains[ best ];
+                final String best_name = names.get( best );
+                if ( out != null ) {
+                    out.println( round + "\t" + best_name + "\t"
+                            + ( ( score_sum / number_of_phylogenies ) * normalization_factor ) );
+                }
+                best_names.add( best_name );
+            }
+        }
+        finally {
+            if ( executor != null ) {
+                executor.shutdownNow();
+            }
         }
         return best_names;
     }
 
-    private static double calculateCoverage( final List<Phylogeny> phylogenies,
-                                             final String name,
-                                             final CoverageCalculationOptions options,
-                                             final BranchCountingBasedScoringMethod scoring_method,
-                                             final List<SortedMap<PhylogenyNode, Double>> external_node_scores_list,
-                                             final boolean update_external_node_scores_list ) {
-        int i = 0;
-        double score_sum = 0.0;
-        for( final Object element : phylogenies ) {
-            SortedMap<PhylogenyNode, Double> external_node_scores;
-            if ( update_external_node_scores_list ) {
-                external_node_scores = external_node_scores_list.get( i++ );
+    /**
+     * Sets the number of threads used to calculate the gains of the
+     * candidates (default: one). Equal gains are decided by the order of the
+     * external nodes of the first phylogeny, not by the order in which gains
+     * are calculated.
+     *
+     * @param number_of_threads
+     *            the number of threads, at least one
+     */
+    public void setNumberOfThreads( final int number_of_threads ) {
+        ParallelUtil.checkNumberOfThreads( number_of_threads );
+        _number_of_threads = number_of_threads;
+    }
+
+    private int getNumberOfThreads() {
+        return _number_of_threads;
+    }
+
+    // Gain of one candidate, summed over the phylogenies in their order (in
+    // parallel across phylogenies).
+    private static double calculateGain( final ExternalNodeScores[] scores,
+                                         final int[] candidate,
+                                         final ExecutorService executor ) {
+        final double[] gains = new double[ scores.length ];
+        if ( ( executor == null ) || ( scores.length < 2 ) ) {
+            for( int p = 0; p < scores.length; ++p ) {
+                gains[ p ] = scores[ p ].calculateGain( candidate[ p ] );
             }
-            else {
-                external_node_scores = new TreeMap<PhylogenyNode, Double>( external_node_scores_list.get( i++ ) );
+        }
+        else {
+            final List<Callable<Void>> tasks = new ArrayList<Callable<Void>>( scores.length );
+            for( int p = 0; p < scores.length; ++p ) {
+                final int my_p = p;
+                tasks.add( new Callable<Void>() {
+
+                    @Override
+                    public Void call() {
+                        gains[ my_p ] = scores[ my_p ].calculateGain( candidate[ my_p ] );
+                        return null;
+                    }
+                } );
             }
-            final Phylogeny phylogeny = ( Phylogeny ) element;
-            scoring_method.calculateScoreForExternalNode( external_node_scores,
-                                                          phylogeny,
-                                                          phylogeny.getNode( name ),
-                                                          options );
-            for( final Object element2 : external_node_scores.values() ) {
-                score_sum += ( ( Double ) element2 ).doubleValue();
+            ParallelUtil.invokeAll( executor, tasks );
+        }
+        double gain = 0.0;
+        for( final double g : gains ) {
+            gain += g;
+        }
+        return gain;
+    }
+
+    // Gains of all candidates (in parallel across ranges of candidates, if
+    // there is an executor).
+    private void calculateGains( final ExternalNodeScores[] scores,
+                                 final int[][] candidates,
+                                 final double[] gains,
+                                 final ExecutorService executor ) {
+        final ParallelUtil.RangeTask<Void> task = new ParallelUtil.RangeTask<Void>() {
+
+            @Override
+            public Void execute( final int first, final int last ) {
+                for( int c = first; c < last; ++c ) {
+                    gains[ c ] = calculateGain( scores, candidates[ c ], null );
+                }
+                return null;
             }
+        };
+        if ( executor == null ) {
+            task.execute( 0, candidates.length );
+        }
+        else {
+            ParallelUtil.invokeAll( executor,
+                                    ParallelUtil.createRangeTasks( candidates.length, getNumberOfThreads(), task ) );
         }
-        return score_sum / i;
     }
 }
@@ -38,16 +38,30 @@ import org.forester.phylogeny.PhylogenyNode;
  */
 public class BranchCountingBasedScoringMethod implements ScoringMethodForExternalNode {
 
+    /*
+     * Returns the score contribution of external_node to a node at the given
+     * distance (in branches and in branch length); self is true if the node is
+     * external_node itself.
+     */
+    double calculateScoreContribution( final PhylogenyNode external_node,
+                                       final boolean self,
+                                       final int branch_sum,
+                                       final double branch_length_sum ) {
+        if ( self ) {
+            return 1.0;
+        }
+        return 1.0 / branch_sum;
+    }
+
     double calculateScoreContributionPerExternalNode( final PhylogenyNode external_node,
                                                       final PhylogenyNode current_node ) {
-        double score_contribution = 0.0;
         if ( current_node == external_node ) {
-            score_contribution = 1.0;
-        }
-        else {
-            score_contribution = 1.0 / ModelingUtils.calculateBranchSum( external_node, current_node );
+            return calculateScoreContribution( external_node, true, 0, 0.0 );
         }
-        return score_contribution;
+        return calculateScoreContribution( external_node,
+                                           false,
+                                           ModelingUtils.calculateBranchSum( external_node, current_node ),
+                                           0.0 );
     }
 
     @Override
@@ -39,20 +39,34 @@ public class BranchLengthBasedScoringMethod extends BranchCountingBasedScoringMe
     public static final double MIN_ALLOWED_BL_VALUE = 0.001;
 
     @Override
-    double calculateScoreContributionPerExternalNode( final PhylogenyNode external_node,
-                                                      final PhylogenyNode current_node ) {
+    double calculateScoreContribution( final PhylogenyNode external_node,
+                                       final boolean self,
+                                       final int branch_sum,
+                                       final double branch_length_sum ) {
         double score_contribution = 0.0;
-        if ( current_node == external_node ) {
+        if ( self ) {
             score_contribution = external_node.getDistanceToParent();
             // This, of course, is completely /ad hoc/.
         }
         else {
-            score_contribution = ModelingUtils.calculateBranchLengthSum( external_node, current_node );
+            score_contribution = branch_length_sum;
         }
         return 1.0 / ( score_contribution > BranchLengthBasedScoringMethod.MIN_ALLOWED_BL_VALUE ? score_contribution
                 : BranchLengthBasedScoringMethod.MIN_ALLOWED_BL_VALUE );
     }
 
+    @Override
+    double calculateScoreContributionPerExternalNode( final PhylogenyNode external_node,
+                                                      final PhylogenyNode current_node ) {
+        if ( current_node == external_node ) {
+            return calculateScoreContribution( external_node, true, 0, 0.0 );
+        }
+        return calculateScoreContribution( external_node,
+                                           false,
+                                           0,
+                                           ModelingUtils.calculateBranchLengthSum( external_node, current_node ) );
+    }
+
     @Override
     public String getDesciption() {
         return "sum of 1/branch-length-sum [for self: 1/branch-length] [min branch length: "
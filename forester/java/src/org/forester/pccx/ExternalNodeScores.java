@@ -0,0 +1,201 @@
+// $Id:
+// FORESTER -- software libraries and applications
+// for evolutionary biology research and applications.
+//
+// Copyright (C) 2014 Christian M. Zmasek
+// Copyright (C) 2014 Sanford-Burnham Medical Research Institute
+// All rights reserved
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA
+//
+// Contact: phylosoft @ gmail . com
+// WWW: https://sites.google.com/site/cmzmasek/home/software/forester
+
+
+package org.forester.pccx;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.forester.phylogeny.Phylogeny;
+import org.forester.phylogeny.PhylogenyNode;
+import org.forester.phylogeny.iterators.PhylogenyNodeIterator;
+
+/*
+ * The coverage scores of the external nodes of one phylogeny, in an array,
+ * together with an array-based representation of the phylogeny (nodes in
+ * preorder, each with the range of its external nodes and its depth in
+ * branches and in branch length), so that the scores an additional covering
+ * external node would give all external nodes can be calculated in time
+ * linear in the number of external nodes.
+ *
+ * The gain calculation only reads and may be called by any number of threads
+ * concurrently, adding a covering external node must not overlap with it.
+ */
+final class ExternalNodeScores {
+
+    private final int[]                            _branch_depths;
+    private final double[]                         _branch_length_depths;
+    private final int[]                            _external_node_first;
+    private final int[]                            _external_node_last;
+    private final Map<String, Integer>             _external_node_indices;
+    private final int[]                            _external_nodes;
+    private final PhylogenyNode[]                  _nodes;
+    private final int[]                            _parents;
+    private final double[]                         _scores;
+    private final BranchCountingBasedScoringMethod _scoring_method;
+
+    ExternalNodeScores( final Phylogeny phylogeny, final BranchCountingBasedScoringMethod scoring_method ) {
+        _scoring_method = scoring_method;
+        final int n = phylogeny.getNodeCount();
+        _nodes = new PhylogenyNode[ n ];
+        _parents = new int[ n ];
+        _branch_depths = new int[ n ];
+        _branch_length_depths = new double[ n ];
+        _external_node_first = new int[ n ];
+        _external_node_last = new int[ n ];
+        _external_nodes = new int[ phylogeny.getNumberOfExternalNodes() ];
+        // Name to external node index (-1 for names which are not unique, or of internal nodes).
+        _external_node_indices = new HashMap<String, Integer>( _external_nodes.length );
+        final Map<PhylogenyNode, Integer> node_indices = new IdentityHashMap<PhylogenyNode, Integer>( n );
+        int i = 0;
+        int e = 0;
+        for( final PhylogenyNodeIterator it = phylogeny.iteratorPreorder(); it.hasNext(); ) {
+            final PhylogenyNode node = it.next();
+            _nodes[ i ] = node;
+            node_indices.put( node, i );
+            if ( node.isRoot() ) {
+                _parents[ i ] = -1;
+            }
+            else {
+                final int parent = node_indices.get( node.getParent() );
+                _parents[ i ] = parent;
+                _branch_depths[ i ] = _branch_depths[ parent ] + 1;
+                _branch_length_depths[ i ] = _branch_length_depths[ parent ]
+                        + ( node.getDistanceToParent() > 0.0 ? node.getDistanceToParent() : 0.0 );
+            }
+            _external_node_first[ i ] = e;
+            _external_node_last[ i ] = e;
+            final boolean unique = !_external_node_indices.containsKey( node.getName() );
+            if ( node.isExternal() ) {
+                _external_nodes[ e ] = i;
+                _external_node_indices.put( node.getName(), unique ? e : -1 );
+                _external_node_last[ i ] = ++e;
+            }
+            else {
+                _external_node_indices.put( node.getName(), -1 );
+            }
+            ++i;
+        }
+        // Children come after their parents in preorder.
+        for( int j = n - 1; j > 0; --j ) {
+            final int parent = _parents[ j ];
+            if ( _external_node_last[ j ] > _external_node_last[ parent ] ) {
+                _external_node_last[ parent ] = _external_node_last[ j ];
+            }
+        }
+        _scores = new double[ _external_nodes.length ];
+    }
+
+    /*
+     * Sets the score of each external node to the score contribution of the
+     * given (covering) external node, where larger.
+     */
+    void add( final int external_node ) {
+        final int c = _external_nodes[ external_node ];
+        final PhylogenyNode c_node = _nodes[ c ];
+        double s = _scoring_method.calculateScoreContribution( c_node, true, 0, 0.0 );
+        if ( s > _scores[ external_node ] ) {
+            _scores[ external_node ] = s;
+        }
+        for( int child = c, a = _parents[ c ]; a >= 0; child = a, a = _parents[ a ] ) {
+            for( int t = _external_node_first[ a ]; t < _external_node_last[ a ]; ++t ) {
+                if ( t == _external_node_first[ child ] ) {
+                    t = _external_node_last[ child ] - 1;
+                    continue;
+                }
+                s = calculateScoreContribution( c_node, c, a, t );
+                if ( s > _scores[ t ] ) {
+                    _scores[ t ] = s;
+                }
+            }
+        }
+    }
+
+    /*
+     * Returns by how much the sum of the scores would increase if the given
+     * external node were added.
+     */
+    double calculateGain( final int external_node ) {
+        final int c = _external_nodes[ external_node ];
+        final PhylogenyNode c_node = _nodes[ c ];
+        double gain = 0.0;
+        double s = _scoring_method.calculateScoreContribution( c_node, true, 0, 0.0 );
+        if ( s > _scores[ external_node ] ) {
+            gain += s - _scores[ external_node ];
+        }
+        for( int child = c, a = _parents[ c ]; a >= 0; child = a, a = _parents[ a ] ) {
+            for( int t = _external_node_first[ a ]; t < _external_node_last[ a ]; ++t ) {
+                if ( t == _external_node_first[ child ] ) {
+                    t = _external_node_last[ child ] - 1;
+                    continue;
+                }
+                s = calculateScoreContribution( c_node, c, a, t );
+                if ( s > _scores[ t ] ) {
+                    gain += s - _scores[ t ];
+                }
+            }
+        }
+        return gain;
+    }
+
+    /*
+     * Returns the index of the external node with the given name.
+     */
+    int getExternalNodeIndex( final String name ) {
+        final Integer i = _external_node_indices.get( name );
+        if ( i == null ) {
+            throw new IllegalArgumentException( "node named \"" + name + "\" not found" );
+        }
+        if ( i < 0 ) {
+            throw new IllegalArgumentException( "node named \"" + name + "\" not unique or not external" );
+        }
+        return i;
+    }
+
+    int getNumberOfExternalNodes() {
+        return _external_nodes.length;
+    }
+
+    double getScoreSum() {
+        double sum = 0.0;
+        for( final double s : _scores ) {
+            sum += s;
+        }
+        return sum;
+    }
+
+    // Score contribution of covering node c to external node t, with lowest common ancestor a.
+    private double calculateScoreContribution( final PhylogenyNode c_node, final int c, final int a, final int t ) {
+        final int n = _external_nodes[ t ];
+        return _scoring_method.calculateScoreContribution( c_node,
+                                                           false,
+                                                           ( _branch_depths[ c ] + _branch_depths[ n ] )
+                                                                   - ( 2 * _branch_depths[ a ] ),
+                                                           ( _branch_length_depths[ c ] + _branch_length_depths[ n ] )
+                                                                   - ( 2 * _branch_length_depths[ a ] ) );
+    }
+}
@@ -40,15 +40,17 @@ public class LogBranchLengthBasedScoringMethod extends BranchCountingBasedScorin
     public static final double MAX_ALLOWED_BL_VALUE = 1.0;
 
     @Override
-    double calculateScoreContributionPerExternalNode( final PhylogenyNode external_node,
-                                                      final PhylogenyNode current_node ) {
+    double calculateScoreContribution( final PhylogenyNode external_node,
+                                       final boolean self,
+                                       final int branch_sum,
+                                       final double branch_length_sum ) {
         double score_contribution = 0.0;
-        if ( current_node == external_node ) {
+        if ( self ) {
             score_contribution = external_node.getDistanceToParent();
             // This, of course, is completely /ad hoc/.
         }
         else {
-            score_contribution = ModelingUtils.calculateBranchLengthSum( external_node, current_node );
+            score_contribution = branch_length_sum;
         }
         if ( score_contribution > LogBranchLengthBasedScoringMethod.MAX_ALLOWED_BL_VALUE ) {
             score_contribution = LogBranchLengthBasedScoringMethod.MAX_ALLOWED_BL_VALUE;
@@ -59,6 +61,18 @@ public class LogBranchLengthBasedScoringMethod extends BranchCountingBasedScorin
         return ( -Math.log( score_contribution ) );
     }
 
+    @Override
+    double calculateScoreContributionPerExternalNode( final PhylogenyNode external_node,
+                                                      final PhylogenyNode current_node ) {
+        if ( current_node == external_node ) {
+            return calculateScoreContribution( external_node, true, 0, 0.0 );
+        }
+        return calculateScoreContribution( external_node,
+                                           false,
+                                           0,
+                                           ModelingUtils.calculateBranchLengthSum( external_node, current_node ) );
+    }
+
     @Override
     public String getDesciption() {
         return "sum of -ln(branch-length-sum) [for self: -ln(branch-length)] [min branch length: "
@@ -32,6 +32,7 @@ import org.forester.io.parsers.nhx.NHXParser;
 import org.forester.phylogeny.Phylogeny;
 import org.forester.phylogeny.factories.ParserBasedPhylogenyFactory;
 import org.forester.phylogeny.factories.PhylogenyFactory;
+import org.forester.phylogeny.iterators.PhylogenyNodeIterator;
 
 /*
  * @author Christian M. Zmasek
@@ -48,9 +49,65 @@ public class TestPccx {
         if ( !TestPccx.testExternalNodeBasedCoverage() ) {
             return false;
         }
+        if ( !TestPccx.testExternalNodeBasedCoverageExtender() ) {
+            return false;
+        }
         return true;
     }
 
+    // Whether names1 and names2 (which may differ where names give equal
+    // coverage) give the same coverage after each name.
+    private static boolean isEqualCoverage( final List<Phylogeny> phylogenies,
+                                            final List<String> already_covered,
+                                            final List<String> names1,
+                                            final List<String> names2,
+                                            final CoverageCalculationOptions options ) {
+        if ( names1.size() != names2.size() ) {
+            return false;
+        }
+        final CoverageCalculator cc = CoverageCalculator.getInstance( new ExternalNodeBasedCoverageMethod(), options );
+        for( int i = 1; i <= names1.size(); ++i ) {
+            final List<String> n1 = new ArrayList<String>( already_covered );
+            n1.addAll( names1.subList( 0, i ) );
+            final List<String> n2 = new ArrayList<String>( already_covered );
+            n2.addAll( names2.subList( 0, i ) );
+            if ( !isEqual( cc.calculateCoverage( phylogenies, n1, false ).getScore(),
+                           cc.calculateCoverage( phylogenies, n2, false ).getScore() ) ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Names found by adding the name giving the highest coverage, one at a time.
+    private static List<String> findNaively( final List<Phylogeny> phylogenies,
+                                             final List<String> already_covered,
+                                             final int number_names_to_find,
+                                             final CoverageCalculationOptions options ) {
+        final CoverageCalculator cc = CoverageCalculator.getInstance( new ExternalNodeBasedCoverageMethod(), options );
+        final List<String> names = new ArrayList<String>( already_covered );
+        final List<String> found = new ArrayList<String>();
+        for( int i = 0; i < number_names_to_find; ++i ) {
+            String best_name = null;
+            double best_score = -Double.MAX_VALUE;
+            for( final PhylogenyNodeIterator it = phylogenies.get( 0 ).iteratorExternalForward(); it.hasNext(); ) {
+                final String name = it.next().getName();
+                if ( !names.contains( name ) ) {
+                    names.add( name );
+                    final double score = cc.calculateCoverage( phylogenies, names, false ).getScore();
+                    names.remove( names.size() - 1 );
+                    if ( score > best_score ) {
+                        best_score = score;
+                        best_name = name;
+                    }
+                }
+            }
+            names.add( best_name );
+            found.add( best_name );
+        }
+        return found;
+    }
+
     private static boolean testExternalNodeBasedCoverage() {
         try {
             final PhylogenyFactory factory = ParserBasedPhylogenyFactory.getInstance();
@@ -246,4 +303,56 @@ public class TestPccx {
         }
         return true;
     }
+
+    private static boolean testExternalNodeBasedCoverageExtender() {
+        try {
+            final PhylogenyFactory factory = ParserBasedPhylogenyFactory.getInstance();
+            final List<Phylogeny> phylogenies = new ArrayList<Phylogeny>();
+            phylogenies.add( factory.create( "((((A:0.1,B:0.7):0.2,C:1.0):2.0,D:1.7):1.3,((E:0.3,F:0.4):1.1,(G:0.5,H:0.6):1.2):1.4,((((I:0.1,J:0.7):0.2,K:1.0):2.0,L:1.7):1.3,((M:0.3,N:0.4,O:0.1,P:0.2):1.1,(Q:0.5,R:0.6):1.2):1.4,S:2.0):2.0)",
+                                             new NHXParser() )[ 0 ] );
+            phylogenies.add( factory.create( "((((A:0.2,B:0.1):0.3,C:1.1):1.0,(D:1.2,S:0.3):0.7):1.5,((E:0.1,F:0.9):0.1,(G:0.4,(H:0.6,I:0.2):0.3):0.2):1.0,(((J:0.7,K:1.0):0.2,L:1.1):1.3,(M:0.3,(N:0.4,O:0.8):0.6,(P:0.2,Q:0.5):0.1):1.4,R:2.5):2.0)",
+                                             new NHXParser() )[ 0 ] );
+            final List<String> already_covered = new ArrayList<String>();
+            already_covered.add( "K" );
+            already_covered.add( "E" );
+            final String[] scoring_methods = { "org.forester.pccx.BranchCountingBasedScoringMethod",
+                    "org.forester.pccx.BranchLengthBasedScoringMethod",
+                    "org.forester.pccx.LogBranchLengthBasedScoringMethod" };
+            for( final String scoring_method : scoring_methods ) {
+                final CoverageCalculationOptions options = new ExternalNodeBasedCoverageMethodOptions( scoring_method );
+                final List<String> naive = findNaively( phylogenies, new ArrayList<String>(), 19, options );
+                final List<String> naive_ac = findNaively( phylogenies.subList( 1, 2 ), already_covered, 10, options );
+                for( int t = 1; t <= 3; t += 2 ) {
+                    final BasicExternalNodeBasedCoverageExtender ce = new BasicExternalNodeBasedCoverageExtender();
+                    ce.setNumberOfThreads( t );
+                    if ( !isEqualCoverage( phylogenies,
+                                           new ArrayList<String>(),
+                                           ce.find( phylogenies, null, 0, options, null ),
+                                           naive,
+                                           options ) ) {
+                        return false;
+                    }
+                    if ( !isEqualCoverage( phylogenies.subList( 1, 2 ),
+                                           already_covered,
+                                           ce.find( phylogenies.subList( 1, 2 ), already_covered, 10, options, null ),
+                                           naive_ac,
+                                           options ) ) {
+                        return false;
+                    }
+                }
+            }
+            try {
+                new BasicExternalNodeBasedCoverageExtender().setNumberOfThreads( 0 );
+                return false;
+            }
+            catch ( final IllegalArgumentException e ) {
+                // Expected.
+            }
+        }
+        catch ( final Exception e ) {
+            e.printStackTrace( System.out );
+            return false;
+        }
+        return true;
+    }
 }
@@ -872,11 +872,11 @@ public class PhylogenyMethods {
             return;
         }
         phy.setIdToNodeMap( null );
-        long i = PhylogenyNode.getNodeCount();
+        // Ids are reserved in one step, so that trees can be re-ided concurrently.
+        long i = PhylogenyNode.obtainNewIds( phy.getNodeCount() );
         for( final PhylogenyNodeIterator it = phy.iteratorPreorder(); it.hasNext(); ) {
-            it.next().setId( i++ );
+            it.next().setIdDirectly( i++ );
         }
-        PhylogenyNode.setNodeCount( i );
     }
 
     public final static Phylogeny[] readPhylogenies( final PhylogenyParser parser, final File file ) throws IOException {
@@ -1073,8 +1073,8 @@ public class PhylogenyMethods {
                     && ( node.getNodeData().getSequence().getDomainArchitecture() != null ) ) {
                 final DomainArchitecture da = node.getNodeData().getSequence().getDomainArchitecture();
                 I: for( int i = 0; i < da.getNumberOfDomains(); ++i ) {
-                    if ( ( da.getDomain( i ).getConfidence() <= domains_confidence_threshold )
-                            && ( match( da.getDomain( i ).getName(), my_query, case_sensitive, partial, regex ) ) ) {
+                    if ( ( da.getDomainConfidence( i ) <= domains_confidence_threshold )
+                            && ( match( da.getDomainName( i ), my_query, case_sensitive, partial, regex ) ) ) {
                         match = true;
                         break I;
                     }
@@ -1255,8 +1255,8 @@ public class PhylogenyMethods {
                         && ( node.getNodeData().getSequence().getDomainArchitecture() != null ) ) {
                     final DomainArchitecture da = node.getNodeData().getSequence().getDomainArchitecture();
                     I: for( int i = 0; i < da.getNumberOfDomains(); ++i ) {
-                        if ( ( da.getDomain( i ).getConfidence() <= domains_confidence_threshold )
-                                && match( da.getDomain( i ).getName(), query, case_sensitive, partial, false ) ) {
+                        if ( ( da.getDomainConfidence( i ) <= domains_confidence_threshold )
+                                && match( da.getDomainName( i ), query, case_sensitive, partial, false ) ) {
                             match = true;
                             break I;
                         }
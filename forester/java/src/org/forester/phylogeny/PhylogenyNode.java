@@ -33,7 +33,6 @@ import java.util.List;
 import org.forester.io.parsers.nhx.NHXFormatException;
 import org.forester.io.parsers.nhx.NHXParser;
 import org.forester.io.parsers.phyloxml.PhyloXmlDataFormatException;
-import org.forester.io.parsers.phyloxml.PhyloXmlUtil;
 import org.forester.phylogeny.data.BranchData;
 import org.forester.phylogeny.data.Confidence;
 import org.forester.phylogeny.data.NodeData;
@@ -69,26 +68,28 @@ public final class PhylogenyNode implements Comparable<PhylogenyNode> {
      * Default constructor for PhylogenyNode.
      */
     public PhylogenyNode() {
-        setId( PhylogenyNode.getNodeCount() );
-        PhylogenyNode.increaseNodeCount();
+        _id = PhylogenyNode.obtainNewId();
         setSumExtNodes( 1 ); // For ext node, this number is 1 (not 0!!)
     }
 
     public PhylogenyNode( final String node_name ) {
-        setId( PhylogenyNode.getNodeCount() );
-        PhylogenyNode.increaseNodeCount();
+        _id = PhylogenyNode.obtainNewId();
         setSumExtNodes( 1 ); // For ext node, this number is 1 (not 0!!)
         if ( node_name != null ) {
             getNodeData().setNodeName( node_name );
         }
     }
 
+    private PhylogenyNode( final long id ) {
+        _id = id;
+        setSumExtNodes( 1 ); // For ext node, this number is 1 (not 0!!)
+    }
+
     private PhylogenyNode( final String nhx,
                            final NHXParser.TAXONOMY_EXTRACTION taxonomy_extraction,
                            final boolean replace_underscores ) throws NHXFormatException, PhyloXmlDataFormatException {
         NHXParser.parseNHX( nhx, this, taxonomy_extraction, replace_underscores, false, false );
-        setId( PhylogenyNode.getNodeCount() );
-        PhylogenyNode.increaseNodeCount();
+        _id = PhylogenyNode.obtainNewId();
         setSumExtNodes( 1 ); // For ext node, this number is 1 (not 0!!).
     }
 
@@ -145,9 +146,7 @@ public final class PhylogenyNode implements Comparable<PhylogenyNode> {
      * @see #getLink()
      */
     final public PhylogenyNode copyNodeData() {
-        final PhylogenyNode node = new PhylogenyNode();
-        PhylogenyNode.decreaseNodeCount();
-        node._id = _id;
+        final PhylogenyNode node = new PhylogenyNode( _id );
         node._sum_ext_nodes = _sum_ext_nodes;
         node._indicator = _indicator;
         node._x = _x;
@@ -172,9 +171,7 @@ public final class PhylogenyNode implements Comparable<PhylogenyNode> {
      * @see #getLink()
      */
     final public PhylogenyNode copyNodeDataShallow() {
-        final PhylogenyNode node = new PhylogenyNode();
-        PhylogenyNode.decreaseNodeCount();
-        node._id = _id;
+        final PhylogenyNode node = new PhylogenyNode( _id );
         node._sum_ext_nodes = _sum_ext_nodes;
         node._indicator = _indicator;
         node._x = _x;
@@ -893,9 +890,7 @@ public final class PhylogenyNode implements Comparable<PhylogenyNode> {
         if ( ( svs == NH_CONVERSION_SUPPORT_VALUE_STYLE.AS_INTERNAL_NODE_NAMES ) && !isExternal() ) {
             if ( getBranchData().isHasConfidences()
                     && ( getBranchData().getConfidence( 0 ).getValue() != Confidence.CONFIDENCE_DEFAULT_VALUE ) ) {
-                data = Confidence.FORMATTER.format( ForesterUtil
-                                                    .round( getBranchData().getConfidence( 0 ).getValue(),
-                                                            PhyloXmlUtil.ROUNDING_DIGITS_FOR_PHYLOXML_DOUBLE_OUTPUT ) );
+                data = Confidence.format( getBranchData().getConfidence( 0 ).getValue() );
             }
         }
         else if ( !ForesterUtil.isEmpty( getName() ) ) {
@@ -932,9 +927,7 @@ public final class PhylogenyNode implements Comparable<PhylogenyNode> {
                 && getBranchData().isHasConfidences()
                 && ( getBranchData().getConfidence( 0 ).getValue() != Confidence.CONFIDENCE_DEFAULT_VALUE ) ) {
             sb.append( "[" );
-            sb.append( Confidence.FORMATTER.format( ForesterUtil
-                                                    .round( getBranchData().getConfidence( 0 ).getValue(),
-                                                            PhyloXmlUtil.ROUNDING_DIGITS_FOR_PHYLOXML_DOUBLE_OUTPUT ) ) );
+            sb.append( Confidence.format( getBranchData().getConfidence( 0 ).getValue() ) );
             sb.append( "]" );
         }
         return sb.toString();
@@ -1048,6 +1041,14 @@ public final class PhylogenyNode implements Comparable<PhylogenyNode> {
         }
     }
 
+    /**
+     * Sets the Id of this PhylogenyNode to i, which has to be obtained by
+     * obtainNewIds.
+     */
+    final void setIdDirectly( final long i ) {
+        _id = i;
+    }
+
     /**
      * Sets the indicators of all the children of this PhylogenyNode to zero.
      */
@@ -1097,24 +1098,28 @@ public final class PhylogenyNode implements Comparable<PhylogenyNode> {
     }
 
     /**
-     * Decreases the total number of all Nodes created so far by one.
+     * Sets the total number of all Nodes created so far to i.
      */
-    final static synchronized void decreaseNodeCount() {
-        --NODE_COUNT;
+    synchronized final static void setNodeCount( final long i ) {
+        PhylogenyNode.NODE_COUNT = i;
     }
 
     /**
-     * Sets the total number of all Nodes created so far to i.
+     * Returns the current node count as new (unique) id and increases the
+     * total number of all Nodes created so far by one, in one step (so that
+     * nodes can be created concurrently).
      */
-    synchronized final static void setNodeCount( final long i ) {
-        PhylogenyNode.NODE_COUNT = i;
+    synchronized final private static long obtainNewId() {
+        return NODE_COUNT++;
     }
 
     /**
-     * Increases the total number of all Nodes created so far by one.
+     * Reserves n new (unique) ids, in one step, and returns the first one.
      */
-    synchronized final private static void increaseNodeCount() {
-        ++NODE_COUNT;
+    synchronized final static long obtainNewIds( final long n ) {
+        final long first = NODE_COUNT;
+        NODE_COUNT += n;
+        return first;
     }
 
     public enum NH_CONVERSION_SUPPORT_VALUE_STYLE {
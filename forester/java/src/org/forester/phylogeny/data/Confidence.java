@@ -43,11 +43,16 @@ public class Confidence implements PhylogenyData, Comparable<Confidence> {
     private double                   _sd;
     private String                   _type;
     public final static NumberFormat FORMATTER;
+    // NumberFormat is not thread-safe, phylogenies might be written in parallel.
+    private final static ThreadLocal<NumberFormat> THREAD_FORMATTER = new ThreadLocal<NumberFormat>() {
+
+        @Override
+        protected NumberFormat initialValue() {
+            return createFormatter();
+        }
+    };
     static {
-        final DecimalFormatSymbols dfs = new DecimalFormatSymbols();
-        dfs.setDecimalSeparator( '.' );
-        FORMATTER = new DecimalFormat( "#.#########", dfs );
-        FORMATTER.setMaximumFractionDigits( PhyloXmlUtil.ROUNDING_DIGITS_FOR_PHYLOXML_DOUBLE_OUTPUT );
+        FORMATTER = createFormatter();
     }
 
     public Confidence() {
@@ -153,8 +158,7 @@ public class Confidence implements PhylogenyData, Comparable<Confidence> {
     public StringBuffer toNHX() {
         final StringBuffer sb = new StringBuffer();
         sb.append( NHXtags.SUPPORT );
-        sb.append( FORMATTER.format( ForesterUtil.round( getValue(),
-                                                         PhyloXmlUtil.ROUNDING_DIGITS_FOR_PHYLOXML_DOUBLE_OUTPUT ) ) );
+        sb.append( format( getValue() ) );
         return sb;
     }
 
@@ -169,8 +173,7 @@ public class Confidence implements PhylogenyData, Comparable<Confidence> {
             PhylogenyDataUtil
             .appendElement( writer,
                             PhyloXmlMapping.CONFIDENCE,
-                            FORMATTER.format( ForesterUtil
-                                              .round( getValue(), PhyloXmlUtil.ROUNDING_DIGITS_FOR_PHYLOXML_DOUBLE_OUTPUT ) ),
+                            format( getValue() ),
                                               PhyloXmlMapping.CONFIDENCE_TYPE_ATTR,
                                               ForesterUtil.isEmpty( getType() ) ? "unknown" : getType(),
                                                       PhyloXmlMapping.CONFIDENCE_SD_ATTR,
@@ -182,8 +185,7 @@ public class Confidence implements PhylogenyData, Comparable<Confidence> {
             PhylogenyDataUtil
             .appendElement( writer,
                             PhyloXmlMapping.CONFIDENCE,
-                            FORMATTER.format( ForesterUtil
-                                              .round( getValue(), PhyloXmlUtil.ROUNDING_DIGITS_FOR_PHYLOXML_DOUBLE_OUTPUT ) ),
+                            format( getValue() ),
                                               PhyloXmlMapping.CONFIDENCE_TYPE_ATTR,
                                               ForesterUtil.isEmpty( getType() ) ? "unknown" : getType() );
         }
@@ -193,4 +195,23 @@ public class Confidence implements PhylogenyData, Comparable<Confidence> {
     public String toString() {
         return asText().toString();
     }
+
+    /**
+     * Formats a confidence value (rounded to
+     * PhyloXmlUtil.ROUNDING_DIGITS_FOR_PHYLOXML_DOUBLE_OUTPUT digits) for
+     * output; can be called from different threads.
+     *
+     */
+    public static String format( final double value ) {
+        return THREAD_FORMATTER.get().format( ForesterUtil.round( value,
+                                                                  PhyloXmlUtil.ROUNDING_DIGITS_FOR_PHYLOXML_DOUBLE_OUTPUT ) );
+    }
+
+    private static NumberFormat createFormatter() {
+        final DecimalFormatSymbols dfs = new DecimalFormatSymbols();
+        dfs.setDecimalSeparator( '.' );
+        final NumberFormat f = new DecimalFormat( "#.#########", dfs );
+        f.setMaximumFractionDigits( PhyloXmlUtil.ROUNDING_DIGITS_FOR_PHYLOXML_DOUBLE_OUTPUT );
+        return f;
+    }
 }
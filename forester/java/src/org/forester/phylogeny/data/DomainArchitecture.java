@@ -28,10 +28,9 @@ package org.forester.phylogeny.data;
 import java.io.IOException;
 import java.io.Writer;
 import java.math.BigDecimal;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.SortedMap;
-import java.util.StringTokenizer;
 import java.util.TreeMap;
 
 import org.forester.io.parsers.nhx.NHXtags;
@@ -39,72 +38,125 @@ import org.forester.io.parsers.phyloxml.PhyloXmlMapping;
 import org.forester.io.writers.PhylogenyWriter;
 import org.forester.util.ForesterUtil;
 
+/*
+ * The domains are stored in parallel arrays (from, to, confidence, name, id),
+ * sorted by start position (domains with the same start position are kept in
+ * the order in which they were added). ProteinDomain objects are only created
+ * on request (getDomain).
+ */
 public class DomainArchitecture implements PhylogenyData {
 
-    public final static String                   NHX_SEPARATOR = ">";
-    private static final BigDecimal              INCREASE_KEY  = new BigDecimal( "0.00001" );
-    private SortedMap<BigDecimal, ProteinDomain> _domains;
-    private int                                  _total_length;
+    public final static String      NHX_SEPARATOR    = ">";
+    private static final BigDecimal INCREASE_KEY     = new BigDecimal( "0.00001" );
+    private static final int        INITIAL_CAPACITY = 4;
+    private double[]                _confidences;
+    private int[]                   _froms;
+    private String[]                _ids;
+    private String[]                _names;
+    private int                     _number_of_domains;
+    private int[]                   _tos;
+    private int                     _total_length;
 
     public DomainArchitecture() {
-        init();
+        init( INITIAL_CAPACITY );
     }
 
     public DomainArchitecture( final List<PhylogenyData> domains, final int total_length ) {
-        init();
+        init( Math.max( domains.size(), INITIAL_CAPACITY ) );
         for( final PhylogenyData phylogenyData : domains ) {
             final ProteinDomain pd = ( ProteinDomain ) phylogenyData;
-            addDomain( pd );
+            append( pd.getName(), pd.getFrom(), pd.getTo(), pd.getId(), pd.getConfidence() );
         }
+        sort();
         _total_length = total_length;
     }
 
     public DomainArchitecture( final String da_str ) {
-        init();
+        // Tokens are separated by one or more separators (as with a
+        // StringTokenizer).
+        final String[] tokens = da_str.split( DomainArchitecture.NHX_SEPARATOR );
+        int number_of_tokens = 0;
+        for( final String token : tokens ) {
+            if ( token.length() > 0 ) {
+                tokens[ number_of_tokens++ ] = token;
+            }
+        }
+        if ( ( number_of_tokens < 1 ) || ( ( ( number_of_tokens - 1 ) % 4 ) != 0 ) ) {
+            throw new IllegalArgumentException( "malformed format for domain structure \"" + da_str + "\"" );
+        }
+        init( Math.max( ( number_of_tokens - 1 ) / 4, INITIAL_CAPACITY ) );
         int total_length = 0;
         int to = -1;
         try {
-            final StringTokenizer st = new StringTokenizer( da_str, DomainArchitecture.NHX_SEPARATOR );
-            final String length_str = ( String ) st.nextElement();
-            total_length = new Integer( length_str ).intValue();
-            while ( st.hasMoreElements() ) {
-                final String from_str = ( String ) st.nextElement();
-                final String to_str = ( String ) st.nextElement();
-                final String support_str = ( String ) st.nextElement();
-                final String name = ( String ) st.nextElement();
-                to = new Integer( to_str ).intValue();
-                final int from = new Integer( from_str ).intValue();
-                final double support = new Double( support_str ).doubleValue();
-                final ProteinDomain pd = new ProteinDomain( name, from, to, support );
-                addDomain( pd );
+            total_length = Integer.parseInt( tokens[ 0 ] );
+            for( int i = 1; i < number_of_tokens; i += 4 ) {
+                final int from = Integer.parseInt( tokens[ i ] );
+                to = Integer.parseInt( tokens[ i + 1 ] );
+                final double support = Double.parseDouble( tokens[ i + 2 ] );
+                checkRange( from, to );
+                append( tokens[ i + 3 ], from, to, ProteinDomain.IDENTIFIER_DEFAULT, support );
             }
         }
         catch ( final Exception e ) {
             throw new IllegalArgumentException( "malformed format for domain structure \"" + da_str + "\": "
                     + e.getMessage() );
         }
+        sort();
         if ( to > total_length ) {
             throw new IllegalArgumentException( "total length of domain structure is too short" );
         }
         _total_length = total_length;
     }
 
+    private DomainArchitecture( final DomainArchitecture da ) {
+        _number_of_domains = da._number_of_domains;
+        _froms = Arrays.copyOf( da._froms, _number_of_domains );
+        _tos = Arrays.copyOf( da._tos, _number_of_domains );
+        _confidences = Arrays.copyOf( da._confidences, _number_of_domains );
+        _names = Arrays.copyOf( da._names, _number_of_domains );
+        _ids = Arrays.copyOf( da._ids, _number_of_domains );
+        _total_length = da._total_length;
+    }
+
     public void addDomain( final ProteinDomain pd ) {
-        BigDecimal key = new BigDecimal( "" + pd.getFrom() );
-        while ( _domains.containsKey( key ) ) {
-            key = new BigDecimal( "" + ( key.doubleValue() + DomainArchitecture.INCREASE_KEY.doubleValue() ) );
+        addDomain( pd.getName(), pd.getFrom(), pd.getTo(), pd.getId(), pd.getConfidence() );
+    }
+
+    /**
+     * Adds a domain (after all domains with the same or a lower start
+     * position), without creating a ProteinDomain.
+     *
+     */
+    public void addDomain( final String name, final int from, final int to, final String id, final double confidence ) {
+        checkRange( from, to );
+        int i = _number_of_domains;
+        while ( ( i > 0 ) && ( _froms[ i - 1 ] > from ) ) {
+            --i;
+        }
+        append( name, from, to, id, confidence );
+        if ( i < ( _number_of_domains - 1 ) ) {
+            final int n = _number_of_domains - 1 - i;
+            System.arraycopy( _froms, i, _froms, i + 1, n );
+            System.arraycopy( _tos, i, _tos, i + 1, n );
+            System.arraycopy( _confidences, i, _confidences, i + 1, n );
+            System.arraycopy( _names, i, _names, i + 1, n );
+            System.arraycopy( _ids, i, _ids, i + 1, n );
+            _froms[ i ] = from;
+            _tos[ i ] = to;
+            _confidences[ i ] = confidence;
+            _names[ i ] = name;
+            _ids[ i ] = id;
         }
-        _domains.put( key, pd );
     }
 
     @Override
     public StringBuffer asSimpleText() {
         final StringBuffer sb = new StringBuffer();
-        for( int i = 0; i < getDomains().size(); ++i ) {
+        for( int i = 0; i < getNumberOfDomains(); ++i ) {
             if ( i > 0 ) {
                 sb.append( "~" );
             }
-            sb.append( getDomain( i ).asSimpleText() );
+            sb.append( getDomainName( i ) );
         }
         return sb;
     }
@@ -112,7 +164,7 @@ public class DomainArchitecture implements PhylogenyData {
     @Override
     public StringBuffer asText() {
         final StringBuffer sb = new StringBuffer();
-        for( int i = 0; i < getDomains().size(); ++i ) {
+        for( int i = 0; i < getNumberOfDomains(); ++i ) {
             if ( i > 0 ) {
                 sb.append( "~" );
             }
@@ -123,34 +175,61 @@ public class DomainArchitecture implements PhylogenyData {
 
     @Override
     public PhylogenyData copy() {
-        final List<PhylogenyData> domains = new ArrayList<PhylogenyData>( getDomains().size() );
-        for( int i = 0; i < getDomains().size(); ++i ) {
-            domains.add( getDomain( i ).copy() );
-        }
-        return new DomainArchitecture( domains, getTotalLength() );
+        return new DomainArchitecture( this );
     }
 
     public ProteinDomain getDomain( final int i ) {
-        return ( ProteinDomain ) _domains.values().toArray()[ i ];
+        checkIndex( i );
+        return new ProteinDomain( _names[ i ], _froms[ i ], _tos[ i ], _ids[ i ], _confidences[ i ] );
+    }
+
+    public double getDomainConfidence( final int i ) {
+        checkIndex( i );
+        return _confidences[ i ];
+    }
+
+    public int getDomainFrom( final int i ) {
+        checkIndex( i );
+        return _froms[ i ];
     }
 
+    public String getDomainName( final int i ) {
+        checkIndex( i );
+        return _names[ i ];
+    }
+
+    /**
+     * Returns a map of the start positions (increased by small amounts to make
+     * them unique) to the domains, created on each call. Use
+     * getNumberOfDomains() and getDomain(int) (or getDomainFrom(int) etc.)
+     * instead.
+     *
+     */
     public SortedMap<BigDecimal, ProteinDomain> getDomains() {
-        return _domains;
+        final SortedMap<BigDecimal, ProteinDomain> domains = new TreeMap<BigDecimal, ProteinDomain>();
+        for( int i = 0; i < getNumberOfDomains(); ++i ) {
+            BigDecimal key = new BigDecimal( "" + getDomainFrom( i ) );
+            while ( domains.containsKey( key ) ) {
+                key = new BigDecimal( "" + ( key.doubleValue() + DomainArchitecture.INCREASE_KEY.doubleValue() ) );
+            }
+            domains.put( key, getDomain( i ) );
+        }
+        return domains;
+    }
+
+    public int getDomainTo( final int i ) {
+        checkIndex( i );
+        return _tos[ i ];
     }
 
     public int getNumberOfDomains() {
-        return _domains.size();
+        return _number_of_domains;
     }
 
     public int getTotalLength() {
         return _total_length;
     }
 
-    private void init() {
-        _domains = new TreeMap<BigDecimal, ProteinDomain>();
-        _total_length = 0;
-    }
-
     /**
      * Returns true if the names and the order of the domains match (domain and
      * linker lengths are ignored).
@@ -166,11 +245,11 @@ public class DomainArchitecture implements PhylogenyData {
             return false;
         }
         final DomainArchitecture d = ( DomainArchitecture ) domain_architecture;
-        if ( getDomains().size() != d.getDomains().size() ) {
+        if ( getNumberOfDomains() != d.getNumberOfDomains() ) {
             return false;
         }
-        for( int i = 0; i < getDomains().size(); ++i ) {
-            if ( !getDomain( i ).getName().equals( d.getDomain( i ).getName() ) ) {
+        for( int i = 0; i < getNumberOfDomains(); ++i ) {
+            if ( !getDomainName( i ).equals( d.getDomainName( i ) ) ) {
                 return false;
             }
         }
@@ -187,17 +266,15 @@ public class DomainArchitecture implements PhylogenyData {
         sb.append( ":" );
         sb.append( NHXtags.DOMAIN_STRUCTURE );
         sb.append( getTotalLength() );
-        if ( getDomains() != null ) {
-            for( int i = 0; i < getDomains().size(); ++i ) {
-                sb.append( DomainArchitecture.NHX_SEPARATOR );
-                sb.append( getDomain( i ).getFrom() );
-                sb.append( DomainArchitecture.NHX_SEPARATOR );
-                sb.append( getDomain( i ).getTo() );
-                sb.append( DomainArchitecture.NHX_SEPARATOR );
-                sb.append( getDomain( i ).getConfidence() );
-                sb.append( DomainArchitecture.NHX_SEPARATOR );
-                sb.append( ForesterUtil.replaceIllegalNhxCharacters( getDomain( i ).getName() ) );
-            }
+        for( int i = 0; i < getNumberOfDomains(); ++i ) {
+            sb.append( DomainArchitecture.NHX_SEPARATOR );
+            sb.append( getDomainFrom( i ) );
+            sb.append( DomainArchitecture.NHX_SEPARATOR );
+            sb.append( getDomainTo( i ) );
+            sb.append( DomainArchitecture.NHX_SEPARATOR );
+            sb.append( getDomainConfidence( i ) );
+            sb.append( DomainArchitecture.NHX_SEPARATOR );
+            sb.append( ForesterUtil.replaceIllegalNhxCharacters( getDomainName( i ) ) );
         }
         return sb;
     }
@@ -210,11 +287,15 @@ public class DomainArchitecture implements PhylogenyData {
                                       PhyloXmlMapping.SEQUENCE_DOMAIN_ARCHITECURE,
                                       PhyloXmlMapping.SEQUENCE_DOMAIN_ARCHITECTURE_LENGTH,
                                       getTotalLength() + "" );
-        if ( getDomains() != null ) {
-            final String ind = indentation + PhylogenyWriter.PHYLO_XML_INTENDATION_BASE;
-            for( int i = 0; i < getDomains().size(); ++i ) {
-                getDomain( i ).toPhyloXML( writer, level, ind );
-            }
+        final String ind = indentation + PhylogenyWriter.PHYLO_XML_INTENDATION_BASE;
+        for( int i = 0; i < getNumberOfDomains(); ++i ) {
+            ProteinDomain.toPhyloXML( writer,
+                                      ind,
+                                      getDomainName( i ),
+                                      getDomainFrom( i ),
+                                      getDomainTo( i ),
+                                      getDomainId( i ),
+                                      getDomainConfidence( i ) );
         }
         writer.write( ForesterUtil.LINE_SEPARATOR );
         writer.write( indentation );
@@ -225,4 +306,89 @@ public class DomainArchitecture implements PhylogenyData {
     public String toString() {
         return asText().toString();
     }
+
+    String getDomainId( final int i ) {
+        checkIndex( i );
+        return _ids[ i ];
+    }
+
+    private void append( final String name, final int from, final int to, final String id, final double confidence ) {
+        if ( _number_of_domains == _froms.length ) {
+            final int capacity = Math.max( 2 * _froms.length, INITIAL_CAPACITY );
+            _froms = Arrays.copyOf( _froms, capacity );
+            _tos = Arrays.copyOf( _tos, capacity );
+            _confidences = Arrays.copyOf( _confidences, capacity );
+            _names = Arrays.copyOf( _names, capacity );
+            _ids = Arrays.copyOf( _ids, capacity );
+        }
+        _froms[ _number_of_domains ] = from;
+        _tos[ _number_of_domains ] = to;
+        _confidences[ _number_of_domains ] = confidence;
+        _names[ _number_of_domains ] = name;
+        _ids[ _number_of_domains ] = id;
+        ++_number_of_domains;
+    }
+
+    private void checkIndex( final int i ) {
+        if ( ( i < 0 ) || ( i >= _number_of_domains ) ) {
+            throw new IndexOutOfBoundsException( "domain index " + i + " out of range [0, " + _number_of_domains
+                    + ")" );
+        }
+    }
+
+    private void init( final int capacity ) {
+        _froms = new int[ capacity ];
+        _tos = new int[ capacity ];
+        _confidences = new double[ capacity ];
+        _names = new String[ capacity ];
+        _ids = new String[ capacity ];
+        _number_of_domains = 0;
+        _total_length = 0;
+    }
+
+    // Sorts the appended domains by start position, keeping the order of
+    // domains with the same start position: the start position is in the
+    // upper, the index in the lower half of the sort keys.
+    private void sort() {
+        final int n = _number_of_domains;
+        boolean sorted = true;
+        for( int i = 1; i < n; ++i ) {
+            if ( _froms[ i - 1 ] > _froms[ i ] ) {
+                sorted = false;
+                break;
+            }
+        }
+        if ( sorted ) {
+            return;
+        }
+        final long[] keys = new long[ n ];
+        for( int i = 0; i < n; ++i ) {
+            keys[ i ] = ( ( long ) _froms[ i ] << 32 ) | i;
+        }
+        Arrays.sort( keys );
+        final int[] froms = new int[ _froms.length ];
+        final int[] tos = new int[ _froms.length ];
+        final double[] confidences = new double[ _froms.length ];
+        final String[] names = new String[ _froms.length ];
+        final String[] ids = new String[ _froms.length ];
+        for( int i = 0; i < n; ++i ) {
+            final int j = ( int ) keys[ i ];
+            froms[ i ] = _froms[ j ];
+            tos[ i ] = _tos[ j ];
+            confidences[ i ] = _confidences[ j ];
+            names[ i ] = _names[ j ];
+            ids[ i ] = _ids[ j ];
+        }
+        _froms = froms;
+        _tos = tos;
+        _confidences = confidences;
+        _names = names;
+        _ids = ids;
+    }
+
+    private static void checkRange( final int from, final int to ) {
+        if ( ( from >= to ) || ( to < 0 ) ) {
+            throw new IllegalArgumentException( "attempt to create protein domain from " + from + " to " + to );
+        }
+    }
 }
@@ -142,36 +142,48 @@ public class ProteinDomain implements PhylogenyData {
 
     @Override
     public void toPhyloXML( final Writer writer, final int level, final String indentation ) throws IOException {
+        toPhyloXML( writer, indentation, getName(), getFrom(), getTo(), getId(), getConfidence() );
+    }
+
+    @Override
+    public String toString() {
+        return asText().toString();
+    }
+
+    // Also used by DomainArchitecture (which does not keep ProteinDomain
+    // objects).
+    static void toPhyloXML( final Writer writer,
+                            final String indentation,
+                            final String name,
+                            final int from,
+                            final int to,
+                            final String id,
+                            final double confidence ) throws IOException {
         writer.write( ForesterUtil.LINE_SEPARATOR );
         writer.write( indentation );
-        if ( getId() != null ) {
+        if ( id != null ) {
             PhylogenyDataUtil.appendOpen( writer,
                                           PhyloXmlMapping.SEQUENCE_DOMAIN_ARCHITECTURE_DOMAIN,
                                           PhyloXmlMapping.SEQUENCE_DOMAIN_ARCHITECTURE_PROT_DOMAIN_FROM,
-                                          getFrom() + "",
+                                          String.valueOf( from ),
                                           PhyloXmlMapping.SEQUENCE_DOMAIN_ARCHITECTURE_PROT_DOMAIN_TO,
-                                          getTo() + "",
+                                          String.valueOf( to ),
                                           PhyloXmlMapping.SEQUENCE_DOMAIN_ARCHITECTURE_PROT_DOMAIN_CONFIDENCE,
-                                          getConfidence() + "",
+                                          String.valueOf( confidence ),
                                           PhyloXmlMapping.IDENTIFIER,
-                                          getId() );
+                                          id );
         }
         else {
             PhylogenyDataUtil.appendOpen( writer,
                                           PhyloXmlMapping.SEQUENCE_DOMAIN_ARCHITECTURE_DOMAIN,
                                           PhyloXmlMapping.SEQUENCE_DOMAIN_ARCHITECTURE_PROT_DOMAIN_FROM,
-                                          getFrom() + "",
+                                          String.valueOf( from ),
                                           PhyloXmlMapping.SEQUENCE_DOMAIN_ARCHITECTURE_PROT_DOMAIN_TO,
-                                          getTo() + "",
+                                          String.valueOf( to ),
                                           PhyloXmlMapping.SEQUENCE_DOMAIN_ARCHITECTURE_PROT_DOMAIN_CONFIDENCE,
-                                          getConfidence() + "" );
+                                          String.valueOf( confidence ) );
         }
-        writer.write( getName() );
+        writer.write( name );
         PhylogenyDataUtil.appendClose( writer, PhyloXmlMapping.SEQUENCE_DOMAIN_ARCHITECTURE_DOMAIN );
     }
-
-    @Override
-    public String toString() {
-        return asText().toString();
-    }
 }
@@ -26,29 +26,23 @@
 
 package org.forester.protein;
 
-import java.util.HashMap;
-import java.util.Map;
-
 import org.forester.util.ForesterUtil;
 
 public class BasicDomain implements Domain {
 
-    private static short                    COUNT        = 0;
-    private final static Map<Short, String> ID_TO_STRING = new HashMap<Short, String>();
-    private final static Map<String, Short> STRING_TO_ID = new HashMap<String, Short>();
-    final private int                       _from;
-    final private short                     _id;
-    final private short                     _number;
-    final private double                    _per_domain_evalue;
-    final private double                    _per_domain_score;
-    final private int                       _to;
-    final private short                     _total_count;
+    final private int    _from;
+    final private int    _id;
+    final private short  _number;
+    final private double _per_domain_evalue;
+    final private double _per_domain_score;
+    final private int    _to;
+    final private short  _total_count;
 
     public BasicDomain( final String id ) {
         if ( ForesterUtil.isEmpty( id ) ) {
             throw new IllegalArgumentException( "attempt to create protein domain with null or empty id" );
         }
-        _id = obtainIdAsShort( id );
+        _id = DomainIdSymbolTable.obtainCode( id );
         _from = -1;
         _to = -1;
         _number = -1;
@@ -77,7 +71,7 @@ public class BasicDomain implements Domain {
         if ( per_domain_evalue < 0.0 ) {
             throw new IllegalArgumentException( "attempt to create protein domain with negative E-value" );
         }
-        _id = obtainIdAsShort( id );
+        _id = DomainIdSymbolTable.obtainCode( id );
         _from = from;
         _to = to;
         _number = number;
@@ -121,13 +115,13 @@ public class BasicDomain implements Domain {
                     + o.getClass() + "]" );
         }
         else {
-            return getDomainId().equals( ( ( Domain ) o ).getDomainId() );
+            return _id == ( ( BasicDomain ) o )._id;
         }
     }
 
     @Override
     public String getDomainId() {
-        return obtainIdFromShort( _id );
+        return DomainIdSymbolTable.obtainId( _id );
     }
 
     @Override
@@ -178,20 +172,4 @@ public class BasicDomain implements Domain {
     public StringBuffer toStringBuffer() {
         return new StringBuffer( getDomainId() );
     }
-
-    public final static short obtainIdAsShort( final String id ) {
-        if ( !STRING_TO_ID.containsKey( id ) ) {
-            if ( COUNT >= ( Short.MAX_VALUE - 2 ) ) {
-                throw new RuntimeException( "too many domain ids!" );
-            }
-            ID_TO_STRING.put( COUNT, id );
-            STRING_TO_ID.put( id, COUNT );
-            ++COUNT;
-        }
-        return STRING_TO_ID.get( id );
-    }
-
-    public final static String obtainIdFromShort( final short id ) {
-        return ID_TO_STRING.get( id );
-    }
 }
@@ -33,9 +33,16 @@ public interface BinaryDomainCombination extends Comparable<BinaryDomainCombinat
 
     public String getId1();
 
-    short getId0Code();
+    /**
+     * Returns the code of this combination: the code of the first domain
+     * (in the upper 32 bits) combined with the code of the second domain (see
+     * DomainIdSymbolTable).
+     */
+    public long getCode();
 
-    short getId1Code();
+    public int getId0Code();
+
+    public int getId1Code();
 
     public StringBuffer toGraphDescribingLanguage( final OutputFormat format,
                                                    final String node_attribute,
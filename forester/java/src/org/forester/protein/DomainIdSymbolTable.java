@@ -0,0 +1,103 @@
+// $Id:
+// FORESTER -- software libraries and applications
+// for evolutionary biology research and applications.
+//
+// Copyright (C) 2014 Christian M. Zmasek
+// Copyright (C) 2014 Sanford-Burnham Medical Research Institute
+// All rights reserved
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA
+//
+// Contact: phylosoft @ gmail . com
+// WWW: https://sites.google.com/site/cmzmasek/home/software/forester
+
+
+package org.forester.protein;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * Symbol table of domain identifiers: each distinct domain identifier is
+ * assigned a non-negative int code (in order of first use), by which domains
+ * and binary domain combinations refer to it.
+ *
+ * Thread-safe. Look-ups of known identifiers (and of codes) do not lock.
+ */
+public final class DomainIdSymbolTable {
+
+    private final static Object                             LOCK           = new Object();
+    private final static ConcurrentHashMap<String, Integer> STRING_TO_CODE = new ConcurrentHashMap<String, Integer>();
+    private static volatile String[]                        CODE_TO_STRING = new String[ 1024 ];
+    private static int                                      COUNT          = 0;
+
+    private DomainIdSymbolTable() {
+        // Hidden constructor.
+    }
+
+    /**
+     * Returns the code of domain identifier id, assigning a new code to
+     * identifiers not seen before.
+     *
+     */
+    public final static int obtainCode( final String id ) {
+        if ( id == null ) {
+            throw new IllegalArgumentException( "attempt to obtain code for null domain identifier" );
+        }
+        final Integer code = STRING_TO_CODE.get( id );
+        if ( code != null ) {
+            return code;
+        }
+        synchronized ( LOCK ) {
+            final Integer c = STRING_TO_CODE.get( id );
+            if ( c != null ) {
+                return c;
+            }
+            if ( COUNT == Integer.MAX_VALUE ) {
+                throw new IllegalStateException( "too many domain identifiers" );
+            }
+            String[] ids = CODE_TO_STRING;
+            if ( COUNT == ids.length ) {
+                final String[] grown = new String[ ( int ) Math.min( 2L * ids.length, Integer.MAX_VALUE ) ];
+                System.arraycopy( ids, 0, grown, 0, COUNT );
+                ids = grown;
+                CODE_TO_STRING = grown;
+            }
+            // The identifier is stored before its code is published in the map.
+            ids[ COUNT ] = id;
+            STRING_TO_CODE.put( id, COUNT );
+            return COUNT++;
+        }
+    }
+
+    /**
+     * Returns the domain identifier for code (as returned by obtainCode).
+     *
+     */
+    public final static String obtainId( final int code ) {
+        final String[] ids = CODE_TO_STRING;
+        if ( ( code < 0 ) || ( code >= ids.length ) || ( ids[ code ] == null ) ) {
+            throw new IllegalArgumentException( "unknown domain identifier code: " + code );
+        }
+        return ids[ code ];
+    }
+
+    /**
+     * Returns the number of distinct domain identifiers seen so far.
+     *
+     */
+    public final static int size() {
+        return STRING_TO_CODE.size();
+    }
+}
@@ -0,0 +1,49 @@
+// $Id:
+// FORESTER -- software libraries and applications
+// for evolutionary biology research and applications.
+//
+// Copyright (C) 2014 Christian M. Zmasek
+// Copyright (C) 2014 Sanford-Burnham Medical Research Institute
+// All rights reserved
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA
+//
+// Contact: phylosoft @ gmail . com
+// WWW: https://sites.google.com/site/cmzmasek/home/software/forester
+
+package org.forester.rio;
+
+import java.io.IOException;
+
+import org.forester.phylogeny.Phylogeny;
+
+/*
+ * Receives the gene trees analyzed by RIO (rooted, with duplications and
+ * speciations assigned), one at a time, in the order of the input gene trees.
+ * RIO does not keep the trees passed to a sink (except for one minimal
+ * duplications gene tree).
+ */
+public interface AnalyzedGeneTreeSink {
+
+    /**
+     * @param analyzed_gene_tree
+     *            the analyzed gene tree
+     * @param index
+     *            the 0-based index of the gene tree among the gene trees
+     *            analyzed
+     * @throws IOException
+     */
+    public void accept( Phylogeny analyzed_gene_tree, int index ) throws IOException;
+}
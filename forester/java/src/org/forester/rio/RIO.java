@@ -31,14 +31,23 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.text.DecimalFormat;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Queue;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.forester.datastructures.IntMatrix;
 import org.forester.io.parsers.IteratingPhylogenyParser;
@@ -53,6 +62,7 @@ import org.forester.phylogeny.PhylogenyNode;
 import org.forester.phylogeny.data.Taxonomy;
 import org.forester.phylogeny.factories.ParserBasedPhylogenyFactory;
 import org.forester.phylogeny.factories.PhylogenyFactory;
+import org.forester.phylogeny.iterators.PhylogenyNodeIterator;
 import org.forester.sdi.GSDI;
 import org.forester.sdi.GSDIR;
 import org.forester.sdi.SDIException;
@@ -60,14 +70,16 @@ import org.forester.sdi.SDIR;
 import org.forester.sdi.SDIutil;
 import org.forester.sdi.SDIutil.ALGORITHM;
 import org.forester.sdi.SDIutil.TaxonomyComparisonBase;
+import org.forester.sdi.SpeciesTreeIndex;
 import org.forester.util.BasicDescriptiveStatistics;
 import org.forester.util.ForesterUtil;
+import org.forester.util.ParallelUtil;
 
 public final class RIO {
 
     public static final int                  DEFAULT_RANGE = -1;
     private static final int                 END_OF_GT     = Integer.MAX_VALUE;
-    private static IntMatrix                 _m;
+    private IntMatrix                        _m;
     private Phylogeny[]                      _analyzed_gene_trees;
     private List<PhylogenyNode>              _removed_gene_tree_nodes;
     private int                              _ext_nodes;
@@ -80,6 +92,8 @@ public final class RIO {
     private final REROOTING                  _rerooting;
     private final Phylogeny                  _species_tree;
     private Phylogeny                        _min_dub_gene_tree;
+    private final int                        _threads;
+    private final AnalyzedGeneTreeSink       _sink;
 
     private RIO( final IteratingPhylogenyParser p,
                  final Phylogeny species_tree,
@@ -90,7 +104,10 @@ public final class RIO {
                  int last,
                  final boolean produce_log,
                  final boolean verbose,
-                 final boolean transfer_taxonomy ) throws IOException, SDIException, RIOException {
+                 final boolean transfer_taxonomy,
+                 final int threads,
+                 final AnalyzedGeneTreeSink sink ) throws IOException, SDIException, RIOException {
+        ParallelUtil.checkNumberOfThreads( threads );
         if ( ( last == DEFAULT_RANGE ) && ( first >= 0 ) ) {
             last = END_OF_GT;
         }
@@ -110,6 +127,8 @@ public final class RIO {
         _analyzed_gene_trees = null;
         _removed_gene_tree_nodes = null;
         _duplications_stats = new BasicDescriptiveStatistics();
+        _threads = threads;
+        _sink = sink;
         p.reset();
         inferOrthologs( p, species_tree, algorithm, outgroup, first, last, transfer_taxonomy );
         _species_tree = species_tree;
@@ -124,7 +143,10 @@ public final class RIO {
                  int last,
                  final boolean produce_log,
                  final boolean verbose,
-                 final boolean transfer_taxonomy ) throws IOException, SDIException, RIOException {
+                 final boolean transfer_taxonomy,
+                 final int threads,
+                 final AnalyzedGeneTreeSink sink ) throws IOException, SDIException, RIOException {
+        ParallelUtil.checkNumberOfThreads( threads );
         if ( ( last == DEFAULT_RANGE ) && ( first >= 0 ) ) {
             last = gene_trees.length - 1;
         }
@@ -143,10 +165,19 @@ public final class RIO {
         _analyzed_gene_trees = null;
         _removed_gene_tree_nodes = null;
         _duplications_stats = new BasicDescriptiveStatistics();
+        _threads = threads;
+        _sink = sink;
         inferOrthologs( gene_trees, species_tree, algorithm, outgroup, first, last, transfer_taxonomy );
         _species_tree = species_tree;
     }
 
+    /**
+     * Returns the analyzed gene trees, or null if these have been passed to
+     * an AnalyzedGeneTreeSink (or if gene trees have been read by an
+     * IteratingPhylogenyParser).
+     *
+     * @return the analyzed gene trees
+     */
     public final Phylogeny[] getAnalyzedGeneTrees() {
         return _analyzed_gene_trees;
     }
@@ -187,6 +218,13 @@ public final class RIO {
         return _min_dub_gene_tree;
     }
 
+    /**
+     * Returns the ortholog table, if gene trees have been read by an
+     * IteratingPhylogenyParser or passed to an AnalyzedGeneTreeSink (otherwise
+     * use calculateOrthologTable( getAnalyzedGeneTrees(), true )).
+     *
+     * @return the ortholog table
+     */
     public final IntMatrix getOrthologTable() {
         return _m;
     }
@@ -221,50 +259,74 @@ public final class RIO {
         int i = 0;
         int counter = 0;
         final boolean no_range = ( first < 0 ) || ( last < first );
-        while ( parser.hasNext() ) {
-            final Phylogeny gt = parser.next();
-            if ( no_range || ( ( i >= first ) && ( i <= last ) ) ) {
-                if ( gt.isEmpty() ) {
-                    throw new RIOException( "gene tree #" + i + " is empty" );
-                }
-                if ( gt.getNumberOfExternalNodes() == 1 ) {
-                    throw new RIOException( "gene tree #" + i + " has only one external node" );
-                }
-                if ( _verbose ) {
-                    ForesterUtil.updateProgress( i, pf );
-                }
-                if ( counter == 0 ) {
-                    if ( algorithm == ALGORITHM.SDIR ) {
-                        // Removes from species_tree all species not found in gene_tree.
-                        PhylogenyMethods.taxonomyBasedDeletionOfExternalNodes( gt, species_tree );
-                        if ( species_tree.isEmpty() ) {
-                            throw new RIOException( "failed to establish species based mapping between gene and species trees" );
+        SpeciesTreeIndex species_tree_index = null;
+        ParallelInference parallel_inference = null;
+        try {
+            while ( parser.hasNext() ) {
+                final Phylogeny gt = parser.next();
+                if ( no_range || ( ( i >= first ) && ( i <= last ) ) ) {
+                    if ( gt.isEmpty() ) {
+                        throw new RIOException( "gene tree #" + i + " is empty" );
+                    }
+                    if ( gt.getNumberOfExternalNodes() == 1 ) {
+                        throw new RIOException( "gene tree #" + i + " has only one external node" );
+                    }
+                    if ( _verbose ) {
+                        ForesterUtil.updateProgress( i, pf );
+                    }
+                    if ( counter == 0 ) {
+                        if ( algorithm == ALGORITHM.SDIR ) {
+                            // Removes from species_tree all species not found in gene_tree.
+                            PhylogenyMethods.taxonomyBasedDeletionOfExternalNodes( gt, species_tree );
+                            if ( species_tree.isEmpty() ) {
+                                throw new RIOException( "failed to establish species based mapping between gene and species trees" );
+                            }
                         }
+                        gene_tree_ext_nodes = gt.getNumberOfExternalNodes();
                     }
-                    gene_tree_ext_nodes = gt.getNumberOfExternalNodes();
-                }
-                else if ( gene_tree_ext_nodes != gt.getNumberOfExternalNodes() ) {
-                    throw new RIOException( "gene tree #" + i + " has a different number of external nodes ("
-                            + gt.getNumberOfExternalNodes() + ") than the preceding gene tree(s) ("
-                            + gene_tree_ext_nodes + ")" );
-                }
-                if ( algorithm == ALGORITHM.SDIR ) {
-                    // Removes from gene_tree all species not found in species_tree.
-                    PhylogenyMethods.taxonomyBasedDeletionOfExternalNodes( species_tree, gt );
-                    if ( gt.isEmpty() ) {
-                        throw new RIOException( "failed to establish species based mapping between gene and species trees" );
+                    else if ( gene_tree_ext_nodes != gt.getNumberOfExternalNodes() ) {
+                        throw new RIOException( "gene tree #" + i + " has a different number of external nodes ("
+                                + gt.getNumberOfExternalNodes() + ") than the preceding gene tree(s) ("
+                                + gene_tree_ext_nodes + ")" );
                     }
-                }
-                final Phylogeny analyzed_gt = performOrthologInference( gt,
-                                                                        species_tree,
+                    if ( ( counter == 0 ) || ( _threads < 2 ) ) {
+                        final InferenceResult result = performOrthologInference( gt,
+                                                                                 species_tree,
+                                                                                 species_tree_index,
+                                                                                 algorithm,
+                                                                                 outgroup,
+                                                                                 counter,
+                                                                                 transfer_taxonomy );
+                        addResult( result, counter );
+                        calculateOrthologTable( result.getAssignedTree(), true, counter );
+                        if ( ( counter == 0 ) && ( algorithm == ALGORITHM.GSDIR ) ) {
+                            species_tree_index = SpeciesTreeIndex.createInstance( species_tree );
+                        }
+                    }
+                    else {
+                        if ( parallel_inference == null ) {
+                            parallel_inference = new ParallelInference( species_tree,
+                                                                        species_tree_index,
                                                                         algorithm,
                                                                         outgroup,
-                                                                        counter,
-                                                                        transfer_taxonomy );
-                RIO.calculateOrthologTable( analyzed_gt, true, counter );
-                ++counter;
+                                                                        transfer_taxonomy,
+                                                                        _m,
+                                                                        null );
+                        }
+                        parallel_inference.submit( gt, counter );
+                    }
+                    ++counter;
+                }
+                ++i;
+            }
+            if ( parallel_inference != null ) {
+                parallel_inference.finish();
+            }
+        }
+        finally {
+            if ( parallel_inference != null ) {
+                parallel_inference.shutdown();
             }
-            ++i;
         }
         if ( ( first >= 0 ) && ( counter == 0 ) && ( i > 0 ) ) {
             throw new RIOException( "attempt to analyze first gene tree #" + first + " in a set of " + i );
@@ -313,40 +375,72 @@ public final class RIO {
         if ( _verbose && ( my_gene_trees.length >= 4 ) ) {
             System.out.println();
         }
-        _analyzed_gene_trees = new Phylogeny[ my_gene_trees.length ];
+        if ( _sink == null ) {
+            _analyzed_gene_trees = new Phylogeny[ my_gene_trees.length ];
+        }
         int gene_tree_ext_nodes = 0;
-        for( int i = 0; i < my_gene_trees.length; ++i ) {
-            final Phylogeny gt = my_gene_trees[ i ];
-            if ( gt.isEmpty() ) {
-                throw new RIOException( "gene tree #" + i + " is empty" );
-            }
-            if ( gt.getNumberOfExternalNodes() == 1 ) {
-                throw new RIOException( "gene tree #" + i + " has only one external node" );
-            }
-            if ( _verbose && ( my_gene_trees.length > 4 ) ) {
-                ForesterUtil.updateProgress( ( ( double ) i ) / my_gene_trees.length );
-            }
-            if ( i == 0 ) {
-                gene_tree_ext_nodes = gt.getNumberOfExternalNodes();
-            }
-            else if ( gene_tree_ext_nodes != gt.getNumberOfExternalNodes() ) {
-                throw new RIOException( "gene tree #" + i + " has a different number of external nodes ("
-                        + gt.getNumberOfExternalNodes() + ") than the preceding gene tree(s) (" + gene_tree_ext_nodes
-                        + ")" );
-            }
-            if ( algorithm == ALGORITHM.SDIR ) {
-                // Removes from gene_tree all species not found in species_tree.
-                PhylogenyMethods.taxonomyBasedDeletionOfExternalNodes( species_tree, gt );
+        SpeciesTreeIndex species_tree_index = null;
+        ParallelInference parallel_inference = null;
+        try {
+            for( int i = 0; i < my_gene_trees.length; ++i ) {
+                final Phylogeny gt = my_gene_trees[ i ];
                 if ( gt.isEmpty() ) {
-                    throw new RIOException( "failed to establish species based mapping between gene and species trees" );
+                    throw new RIOException( "gene tree #" + i + " is empty" );
+                }
+                if ( gt.getNumberOfExternalNodes() == 1 ) {
+                    throw new RIOException( "gene tree #" + i + " has only one external node" );
+                }
+                if ( _verbose && ( my_gene_trees.length > 4 ) ) {
+                    ForesterUtil.updateProgress( ( ( double ) i ) / my_gene_trees.length );
+                }
+                if ( i == 0 ) {
+                    gene_tree_ext_nodes = gt.getNumberOfExternalNodes();
+                }
+                else if ( gene_tree_ext_nodes != gt.getNumberOfExternalNodes() ) {
+                    throw new RIOException( "gene tree #" + i + " has a different number of external nodes ("
+                            + gt.getNumberOfExternalNodes() + ") than the preceding gene tree(s) ("
+                            + gene_tree_ext_nodes + ")" );
+                }
+                if ( ( i == 0 ) || ( _threads < 2 ) ) {
+                    final InferenceResult result = performOrthologInference( gt,
+                                                                             species_tree,
+                                                                             species_tree_index,
+                                                                             algorithm,
+                                                                             outgroup,
+                                                                             i,
+                                                                             transfer_taxonomy );
+                    addResult( result, i );
+                    if ( _analyzed_gene_trees != null ) {
+                        _analyzed_gene_trees[ i ] = result.getAssignedTree();
+                    }
+                    else {
+                        calculateOrthologTable( result.getAssignedTree(), true, i );
+                    }
+                    if ( ( i == 0 ) && ( algorithm == ALGORITHM.GSDIR ) ) {
+                        species_tree_index = SpeciesTreeIndex.createInstance( species_tree );
+                    }
+                }
+                else {
+                    if ( parallel_inference == null ) {
+                        parallel_inference = new ParallelInference( species_tree,
+                                                                    species_tree_index,
+                                                                    algorithm,
+                                                                    outgroup,
+                                                                    transfer_taxonomy,
+                                                                    _analyzed_gene_trees == null ? _m : null,
+                                                                    _analyzed_gene_trees );
+                    }
+                    parallel_inference.submit( gt, i );
                 }
             }
-            _analyzed_gene_trees[ i ] = performOrthologInference( gt,
-                                                                  species_tree,
-                                                                  algorithm,
-                                                                  outgroup,
-                                                                  i,
-                                                                  transfer_taxonomy );
+            if ( parallel_inference != null ) {
+                parallel_inference.finish();
+            }
+        }
+        finally {
+            if ( parallel_inference != null ) {
+                parallel_inference.shutdown();
+            }
         }
         if ( log() ) {
             postLog( species_tree, first, last );
@@ -392,27 +486,8 @@ public final class RIO {
         log( "" );
     }
 
-    private final Phylogeny performOrthologInference( final Phylogeny gene_tree,
-                                                      final Phylogeny species_tree,
-                                                      final ALGORITHM algorithm,
-                                                      final String outgroup,
-                                                      final int i,
-                                                      final boolean transfer_taxonomy ) throws SDIException,
-                                                      RIOException {
-        final Phylogeny assigned_tree;
-        switch ( algorithm ) {
-            case SDIR: {
-                assigned_tree = performOrthologInferenceBySDI( gene_tree, species_tree );
-                break;
-            }
-            case GSDIR: {
-                assigned_tree = performOrthologInferenceByGSDI( gene_tree, species_tree, outgroup, i, transfer_taxonomy );
-                break;
-            }
-            default: {
-                throw new IllegalArgumentException( "illegal algorithm: " + algorithm );
-            }
-        }
+    private final void addResult( final InferenceResult result, final int i ) throws RIOException, IOException {
+        final Phylogeny assigned_tree = result.getAssignedTree();
         if ( i == 0 ) {
             _ext_nodes = assigned_tree.getNumberOfExternalNodes();
             _int_nodes = assigned_tree.getNumberOfInternalNodes();
@@ -422,61 +497,106 @@ public final class RIO {
                     + assigned_tree.getNumberOfExternalNodes() + ") than the preceding gene tree(s) (" + _ext_nodes
                     + ")" );
         }
-        return assigned_tree;
+        if ( result.getRemovedGeneTreeNodes() != null ) {
+            _removed_gene_tree_nodes = result.getRemovedGeneTreeNodes();
+        }
+        if ( i == 0 ) {
+            _gsdir_tax_comp_base = result.getTaxCompBase();
+        }
+        if ( result.getDuplications() >= 0 ) {
+            if ( ( i == 0 ) || ( result.getDuplications() < _duplications_stats.getMin() ) ) {
+                _min_dub_gene_tree = assigned_tree;
+            }
+            _duplications_stats.addValue( result.getDuplications() );
+        }
+        if ( _sink != null ) {
+            _sink.accept( assigned_tree, i );
+        }
     }
 
-    private final Phylogeny performOrthologInferenceByGSDI( final Phylogeny gene_tree,
+    /**
+     * Does not change the state of this RIO, thus can be called for different
+     * gene trees (and species tree copies) at the same time. The returned
+     * result is to be applied, in the order of the gene trees, by addResult.
+     * For GSDIR, species_tree_index is null for the first gene tree only
+     * (which strips the species tree); all others are mapped onto the index,
+     * without changing the species tree.
+     */
+    private final InferenceResult performOrthologInference( final Phylogeny gene_tree,
                                                             final Phylogeny species_tree,
+                                                            final SpeciesTreeIndex species_tree_index,
+                                                            final ALGORITHM algorithm,
                                                             final String outgroup,
                                                             final int i,
                                                             final boolean transfer_taxonomy ) throws SDIException,
                                                             RIOException {
-        final Phylogeny assigned_tree;
-        final int dups;
-        if ( _rerooting == REROOTING.BY_ALGORITHM ) {
-            final GSDIR gsdir = new GSDIR( gene_tree, species_tree, true, i == 0, transfer_taxonomy );
-            assigned_tree = gsdir.getMinDuplicationsSumGeneTree();
-            if ( i == 0 ) {
-                _removed_gene_tree_nodes = gsdir.getStrippedExternalGeneTreeNodes();
-                for( final PhylogenyNode r : _removed_gene_tree_nodes ) {
-                    if ( !r.getNodeData().isHasTaxonomy() ) {
-                        throw new RIOException( "node with no (appropriate) taxonomic information found in gene tree #"
-                                + i + ": " + r.toString() );
-                    }
+        switch ( algorithm ) {
+            case SDIR: {
+                // Removes from gene_tree all species not found in species_tree.
+                PhylogenyMethods.taxonomyBasedDeletionOfExternalNodes( species_tree, gene_tree );
+                if ( gene_tree.isEmpty() ) {
+                    throw new RIOException( "failed to establish species based mapping between gene and species trees" );
                 }
+                return new InferenceResult( performOrthologInferenceBySDI( gene_tree, species_tree ), -1, null, null );
             }
-            if ( i == 0 ) {
-                _gsdir_tax_comp_base = gsdir.getTaxCompBase();
+            case GSDIR: {
+                return performOrthologInferenceByGSDI( gene_tree,
+                                                       species_tree,
+                                                       species_tree_index,
+                                                       outgroup,
+                                                       i,
+                                                       transfer_taxonomy );
+            }
+            default: {
+                throw new IllegalArgumentException( "illegal algorithm: " + algorithm );
             }
-            dups = gsdir.getMinDuplicationsSum();
         }
-        else {
-            if ( _rerooting == REROOTING.MIDPOINT ) {
-                PhylogenyMethods.midpointRoot( gene_tree );
-            }
-            else if ( _rerooting == REROOTING.OUTGROUP ) {
-                final PhylogenyNode n = gene_tree.getNode( outgroup );
-                gene_tree.reRoot( n );
-            }
-            final GSDI gsdi = new GSDI( gene_tree, species_tree, true, true, true, transfer_taxonomy );
-            _removed_gene_tree_nodes = gsdi.getStrippedExternalGeneTreeNodes();
-            for( final PhylogenyNode r : _removed_gene_tree_nodes ) {
-                if ( !r.getNodeData().isHasTaxonomy() ) {
-                    throw new RIOException( "node with no (appropriate) taxonomic information found in gene tree #" + i
-                                            + ": " + r.toString() );
-                }
+    }
+
+    private final InferenceResult performOrthologInferenceByGSDI( final Phylogeny gene_tree,
+                                                                  final Phylogeny species_tree,
+                                                                  final SpeciesTreeIndex species_tree_index,
+                                                                  final String outgroup,
+                                                                  final int i,
+                                                                  final boolean transfer_taxonomy )
+            throws SDIException, RIOException {
+        if ( _rerooting == REROOTING.BY_ALGORITHM ) {
+            final GSDIR gsdir;
+            if ( species_tree_index == null ) {
+                gsdir = new GSDIR( gene_tree, species_tree, true, true, transfer_taxonomy );
+            }
+            else {
+                gsdir = new GSDIR( gene_tree, species_tree_index, true, transfer_taxonomy );
             }
-            assigned_tree = gene_tree;
+            List<PhylogenyNode> removed_gene_tree_nodes = null;
             if ( i == 0 ) {
-                _gsdir_tax_comp_base = gsdi.getTaxCompBase();
+                removed_gene_tree_nodes = gsdir.getStrippedExternalGeneTreeNodes();
+                checkRemovedGeneTreeNodes( removed_gene_tree_nodes, i );
             }
-            dups = gsdi.getDuplicationsSum();
+            return new InferenceResult( gsdir.getMinDuplicationsSumGeneTree(),
+                                        gsdir.getMinDuplicationsSum(),
+                                        removed_gene_tree_nodes,
+                                        gsdir.getTaxCompBase() );
+        }
+        if ( _rerooting == REROOTING.MIDPOINT ) {
+            PhylogenyMethods.midpointRoot( gene_tree );
         }
-        if ( ( i == 0 ) || ( dups < _duplications_stats.getMin() ) ) {
-            _min_dub_gene_tree = assigned_tree;
+        else if ( _rerooting == REROOTING.OUTGROUP ) {
+            final PhylogenyNode n = gene_tree.getNode( outgroup );
+            gene_tree.reRoot( n );
+        }
+        final GSDI gsdi;
+        if ( species_tree_index == null ) {
+            gsdi = new GSDI( gene_tree, species_tree, true, true, true, transfer_taxonomy );
+        }
+        else {
+            gsdi = new GSDI( gene_tree, species_tree_index, true, true, transfer_taxonomy );
         }
-        _duplications_stats.addValue( dups );
-        return assigned_tree;
+        checkRemovedGeneTreeNodes( gsdi.getStrippedExternalGeneTreeNodes(), i );
+        return new InferenceResult( gene_tree,
+                                    gsdi.getDuplicationsSum(),
+                                    gsdi.getStrippedExternalGeneTreeNodes(),
+                                    gsdi.getTaxCompBase() );
     }
 
     private final Phylogeny performOrthologInferenceBySDI( final Phylogeny gene_tree, final Phylogeny species_tree )
@@ -581,7 +701,85 @@ public final class RIO {
                                              final boolean verbose,
                                              final boolean transfer_taxonomy ) throws IOException, SDIException,
                                              RIOException {
-        final Phylogeny[] gene_trees = parseGeneTrees( gene_trees_file );
+        return executeAnalysis( gene_trees_file,
+                                species_tree_file,
+                                algorithm,
+                                rerooting,
+                                outgroup,
+                                first,
+                                last,
+                                produce_log,
+                                verbose,
+                                transfer_taxonomy,
+                                1,
+                                null );
+    }
+
+    public final static RIO executeAnalysis( final File gene_trees_file,
+                                             final File species_tree_file,
+                                             final ALGORITHM algorithm,
+                                             final REROOTING rerooting,
+                                             final String outgroup,
+                                             final int first,
+                                             final int last,
+                                             final boolean produce_log,
+                                             final boolean verbose,
+                                             final boolean transfer_taxonomy,
+                                             final int threads ) throws IOException, SDIException,
+                                             RIOException {
+        return executeAnalysis( gene_trees_file,
+                                species_tree_file,
+                                algorithm,
+                                rerooting,
+                                outgroup,
+                                first,
+                                last,
+                                produce_log,
+                                verbose,
+                                transfer_taxonomy,
+                                threads,
+                                null );
+    }
+
+    /**
+     * Analyzed gene trees are passed to sink as they are produced and are not
+     * kept, thus getAnalyzedGeneTrees() returns null; use getOrthologTable()
+     * instead. If sink is not null and gene_trees_file is in a format which
+     * can be read one gene tree at a time (New Hampshire, Nexus), gene trees
+     * are read as they are analyzed.
+     *
+     */
+    public final static RIO executeAnalysis( final File gene_trees_file,
+                                             final File species_tree_file,
+                                             final ALGORITHM algorithm,
+                                             final REROOTING rerooting,
+                                             final String outgroup,
+                                             final int first,
+                                             final int last,
+                                             final boolean produce_log,
+                                             final boolean verbose,
+                                             final boolean transfer_taxonomy,
+                                             final int threads,
+                                             final AnalyzedGeneTreeSink sink ) throws IOException, SDIException,
+                                             RIOException {
+        final PhylogenyParser p = createGeneTreesParser( gene_trees_file );
+        if ( ( sink != null ) && ( p instanceof IteratingPhylogenyParser ) ) {
+            final IteratingPhylogenyParser ip = ( IteratingPhylogenyParser ) p;
+            ip.setSource( gene_trees_file );
+            return executeAnalysis( ip,
+                                    species_tree_file,
+                                    algorithm,
+                                    rerooting,
+                                    outgroup,
+                                    first,
+                                    last,
+                                    produce_log,
+                                    verbose,
+                                    transfer_taxonomy,
+                                    threads,
+                                    sink );
+        }
+        final Phylogeny[] gene_trees = ParserBasedPhylogenyFactory.getInstance().create( gene_trees_file, p );
         if ( gene_trees.length < 1 ) {
             throw new RIOException( "\"" + gene_trees_file + "\" is devoid of appropriate gene trees" );
         }
@@ -599,7 +797,9 @@ public final class RIO {
                         last,
                         produce_log,
                         verbose,
-                        transfer_taxonomy );
+                        transfer_taxonomy,
+                        threads,
+                        sink );
     }
 
     public final static RIO executeAnalysis( final File gene_trees_file,
@@ -611,16 +811,17 @@ public final class RIO {
                                              final boolean verbose,
                                              final boolean transfer_taxonomy ) throws IOException, SDIException,
                                              RIOException {
-        return new RIO( parseGeneTrees( gene_trees_file ),
-                        species_tree,
-                        algorithm,
-                        rerooting,
-                        outgroup,
-                        DEFAULT_RANGE,
-                        DEFAULT_RANGE,
-                        produce_log,
-                        verbose,
-                        transfer_taxonomy );
+        return executeAnalysis( gene_trees_file,
+                                species_tree,
+                                algorithm,
+                                rerooting,
+                                outgroup,
+                                DEFAULT_RANGE,
+                                DEFAULT_RANGE,
+                                produce_log,
+                                verbose,
+                                transfer_taxonomy,
+                                1 );
     }
 
     public final static RIO executeAnalysis( final File gene_trees_file,
@@ -634,6 +835,31 @@ public final class RIO {
                                              final boolean verbose,
                                              final boolean transfer_taxonomy ) throws IOException, SDIException,
                                              RIOException {
+        return executeAnalysis( gene_trees_file,
+                                species_tree,
+                                algorithm,
+                                rerooting,
+                                outgroup,
+                                first,
+                                last,
+                                produce_log,
+                                verbose,
+                                transfer_taxonomy,
+                                1 );
+    }
+
+    public final static RIO executeAnalysis( final File gene_trees_file,
+                                             final Phylogeny species_tree,
+                                             final ALGORITHM algorithm,
+                                             final REROOTING rerooting,
+                                             final String outgroup,
+                                             final int first,
+                                             final int last,
+                                             final boolean produce_log,
+                                             final boolean verbose,
+                                             final boolean transfer_taxonomy,
+                                             final int threads ) throws IOException, SDIException,
+                                             RIOException {
         return new RIO( parseGeneTrees( gene_trees_file ),
                         species_tree,
                         algorithm,
@@ -643,7 +869,9 @@ public final class RIO {
                         last,
                         produce_log,
                         verbose,
-                        transfer_taxonomy );
+                        transfer_taxonomy,
+                        threads,
+                        null );
     }
 
     public final static RIO executeAnalysis( final IteratingPhylogenyParser p,
@@ -657,6 +885,65 @@ public final class RIO {
                                              final boolean verbose,
                                              final boolean transfer_taxonomy ) throws IOException, SDIException,
                                              RIOException {
+        return executeAnalysis( p,
+                                species_tree_file,
+                                algorithm,
+                                rerooting,
+                                outgroup,
+                                first,
+                                last,
+                                produce_log,
+                                verbose,
+                                transfer_taxonomy,
+                                1,
+                                null );
+    }
+
+    public final static RIO executeAnalysis( final IteratingPhylogenyParser p,
+                                             final File species_tree_file,
+                                             final ALGORITHM algorithm,
+                                             final REROOTING rerooting,
+                                             final String outgroup,
+                                             final int first,
+                                             final int last,
+                                             final boolean produce_log,
+                                             final boolean verbose,
+                                             final boolean transfer_taxonomy,
+                                             final int threads ) throws IOException, SDIException,
+                                             RIOException {
+        return executeAnalysis( p,
+                                species_tree_file,
+                                algorithm,
+                                rerooting,
+                                outgroup,
+                                first,
+                                last,
+                                produce_log,
+                                verbose,
+                                transfer_taxonomy,
+                                threads,
+                                null );
+    }
+
+    /**
+     * Analyzed gene trees are passed to sink as they are produced and are not
+     * kept, thus getAnalyzedGeneTrees() returns null; use getOrthologTable()
+     * instead.
+     *
+     */
+    public final static RIO executeAnalysis( final IteratingPhylogenyParser p,
+                                             final File species_tree_file,
+                                             final ALGORITHM algorithm,
+                                             final REROOTING rerooting,
+                                             final String outgroup,
+                                             final int first,
+                                             final int last,
+                                             final boolean produce_log,
+                                             final boolean verbose,
+                                             final boolean transfer_taxonomy,
+                                             final int threads,
+                                             final AnalyzedGeneTreeSink sink ) throws IOException, SDIException,
+                                             RIOException {
         final Phylogeny g0 = p.next();
         if ( ( g0 == null ) || g0.isEmpty() || ( g0.getNumberOfExternalNodes() < 2 ) ) {
             throw new RIOException( "input file does not seem to contain any gene trees" );
@@ -676,7 +963,9 @@ public final class RIO {
                         last,
                         produce_log,
                         verbose,
-                        transfer_taxonomy );
+                        transfer_taxonomy,
+                        threads,
+                        sink );
     }
 
     public final static RIO executeAnalysis( final IteratingPhylogenyParser p,
@@ -697,7 +986,9 @@ public final class RIO {
                         DEFAULT_RANGE,
                         produce_log,
                         verbose,
-                        transfer_taxonomy );
+                        transfer_taxonomy,
+                        1,
+                        null );
     }
 
     public final static RIO executeAnalysis( final IteratingPhylogenyParser p,
@@ -720,7 +1011,68 @@ public final class RIO {
                         last,
                         produce_log,
                         verbose,
-                        transfer_taxonomy );
+                        transfer_taxonomy,
+                        1,
+                        null );
+    }
+
+    public final static RIO executeAnalysis( final IteratingPhylogenyParser p,
+                                             final Phylogeny species_tree,
+                                             final ALGORITHM algorithm,
+                                             final REROOTING rerooting,
+                                             final String outgroup,
+                                             final int first,
+                                             final int last,
+                                             final boolean produce_log,
+                                             final boolean verbose,
+                                             final boolean transfer_taxonomy,
+                                             final int threads ) throws IOException, SDIException,
+                                             RIOException {
+        return new RIO( p,
+                        species_tree,
+                        algorithm,
+                        rerooting,
+                        outgroup,
+                        first,
+                        last,
+                        produce_log,
+                        verbose,
+                        transfer_taxonomy,
+                        threads,
+                        null );
+    }
+
+    /**
+     * Analyzed gene trees are passed to sink as they are produced and are not
+     * kept, thus getAnalyzedGeneTrees() returns null; use getOrthologTable()
+     * instead.
+     *
+     */
+    public final static RIO executeAnalysis( final IteratingPhylogenyParser p,
+                                             final Phylogeny species_tree,
+                                             final ALGORITHM algorithm,
+                                             final REROOTING rerooting,
+                                             final String outgroup,
+                                             final int first,
+                                             final int last,
+                                             final boolean produce_log,
+                                             final boolean verbose,
+                                             final boolean transfer_taxonomy,
+                                             final int threads,
+                                             final AnalyzedGeneTreeSink sink ) throws IOException, SDIException,
+                                             RIOException {
+        return new RIO( p,
+                        species_tree,
+                        algorithm,
+                        rerooting,
+                        outgroup,
+                        first,
+                        last,
+                        produce_log,
+                        verbose,
+                        transfer_taxonomy,
+                        threads,
+                        sink );
     }
 
     public final static RIO executeAnalysis( final Phylogeny[] gene_trees, final Phylogeny species_tree )
@@ -734,7 +1086,9 @@ public final class RIO {
                         DEFAULT_RANGE,
                         false,
                         false,
-                        false );
+                        false,
+                        1,
+                        null );
     }
 
     public final static RIO executeAnalysis( final Phylogeny[] gene_trees,
@@ -755,7 +1109,9 @@ public final class RIO {
                         DEFAULT_RANGE,
                         produce_log,
                         verbose,
-                        transfer_taxonomy );
+                        transfer_taxonomy,
+                        1,
+                        null );
     }
 
     public final static RIO executeAnalysis( final Phylogeny[] gene_trees,
@@ -778,10 +1134,71 @@ public final class RIO {
                         last,
                         produce_log,
                         verbose,
-                        transfer_taxonomy );
+                        transfer_taxonomy,
+                        1,
+                        null );
+    }
+
+    public final static RIO executeAnalysis( final Phylogeny[] gene_trees,
+                                             final Phylogeny species_tree,
+                                             final ALGORITHM algorithm,
+                                             final REROOTING rerooting,
+                                             final String outgroup,
+                                             final int first,
+                                             final int last,
+                                             final boolean produce_log,
+                                             final boolean verbose,
+                                             final boolean transfer_taxonomy,
+                                             final int threads ) throws IOException, SDIException,
+                                             RIOException {
+        return new RIO( gene_trees,
+                        species_tree,
+                        algorithm,
+                        rerooting,
+                        outgroup,
+                        first,
+                        last,
+                        produce_log,
+                        verbose,
+                        transfer_taxonomy,
+                        threads,
+                        null );
+    }
+
+    /**
+     * Analyzed gene trees are passed to sink as they are produced and are not
+     * kept, thus getAnalyzedGeneTrees() returns null; use getOrthologTable()
+     * instead.
+     *
+     */
+    public final static RIO executeAnalysis( final Phylogeny[] gene_trees,
+                                             final Phylogeny species_tree,
+                                             final ALGORITHM algorithm,
+                                             final REROOTING rerooting,
+                                             final String outgroup,
+                                             final int first,
+                                             final int last,
+                                             final boolean produce_log,
+                                             final boolean verbose,
+                                             final boolean transfer_taxonomy,
+                                             final int threads,
+                                             final AnalyzedGeneTreeSink sink ) throws IOException, SDIException,
+                                             RIOException {
+        return new RIO( gene_trees,
+                        species_tree,
+                        algorithm,
+                        rerooting,
+                        outgroup,
+                        first,
+                        last,
+                        produce_log,
+                        verbose,
+                        transfer_taxonomy,
+                        threads,
+                        sink );
     }
 
-    private final static void calculateOrthologTable( final Phylogeny g, final boolean sort, final int counter )
+    private final void calculateOrthologTable( final Phylogeny g, final boolean sort, final int counter )
             throws RIOException {
         if ( counter == 0 ) {
             final List<String> labels = new ArrayList<String>();
@@ -799,6 +1216,16 @@ public final class RIO {
         updateCounts( _m, counter, g );
     }
 
+    private final static void checkRemovedGeneTreeNodes( final List<PhylogenyNode> removed_gene_tree_nodes,
+                                                         final int i ) throws RIOException {
+        for( final PhylogenyNode r : removed_gene_tree_nodes ) {
+            if ( !r.getNodeData().isHasTaxonomy() ) {
+                throw new RIOException( "node with no (appropriate) taxonomic information found in gene tree #" + i
+                        + ": " + r.toString() );
+            }
+        }
+    }
+
     private final static void checkPreconditions( final IteratingPhylogenyParser p,
                                                   final Phylogeny species_tree,
                                                   final REROOTING rerooting,
@@ -897,9 +1324,8 @@ public final class RIO {
         return label;
     }
 
-    private final static Phylogeny[] parseGeneTrees( final File gene_trees_file ) throws FileNotFoundException,
-    IOException {
-        final PhylogenyFactory factory = ParserBasedPhylogenyFactory.getInstance();
+    private final static PhylogenyParser createGeneTreesParser( final File gene_trees_file )
+            throws FileNotFoundException, IOException {
         final PhylogenyParser p = ParserUtils.createParserDependingOnFileType( gene_trees_file, true );
         if ( p instanceof NHXParser ) {
             final NHXParser nhx = ( NHXParser ) p;
@@ -913,7 +1339,13 @@ public final class RIO {
             nex.setIgnoreQuotes( true );
             nex.setTaxonomyExtraction( TAXONOMY_EXTRACTION.AGGRESSIVE );
         }
-        return factory.create( gene_trees_file, p );
+        return p;
+    }
+
+    private final static Phylogeny[] parseGeneTrees( final File gene_trees_file ) throws FileNotFoundException,
+    IOException {
+        final PhylogenyFactory factory = ParserBasedPhylogenyFactory.getInstance();
+        return factory.create( gene_trees_file, createGeneTreesParser( gene_trees_file ) );
     }
 
     private final static void removeSingleDescendentsNodes( final Phylogeny species_tree, final boolean verbose ) {
@@ -927,29 +1359,246 @@ public final class RIO {
         }
     }
 
+    /**
+     * Increases the counts of all pairs of (labeled) external nodes of g whose
+     * lowest common ancestor is not a duplication. In one post-order traversal,
+     * external nodes are arranged such that each subtree corresponds to a
+     * contiguous range; at each speciation node the pairs between the ranges
+     * of its children are counted, so each pair is visited once.
+     */
     private final static void updateCounts( final IntMatrix m, final int counter, final Phylogeny g )
             throws RIOException {
-        PhylogenyMethods.preOrderReId( g );
-        final HashMap<String, PhylogenyNode> map = PhylogenyMethods.createNameToExtNodeMap( g );
+        final int[] leaves = new int[ m.size() ];
+        final boolean[] found = new boolean[ m.size() ];
+        int[] starts = new int[ 16 ];
+        int starts_size = 0;
+        int leaves_size = 0;
+        for( final PhylogenyNodeIterator it = g.iteratorPostorder(); it.hasNext(); ) {
+            final PhylogenyNode n = it.next();
+            if ( starts_size == starts.length ) {
+                starts = Arrays.copyOf( starts, 2 * starts.length );
+            }
+            if ( n.isExternal() ) {
+                starts[ starts_size++ ] = leaves_size;
+                final int x = m.getIndex( n.getName() );
+                if ( x >= 0 ) {
+                    if ( found[ x ] ) {
+                        throw new RIOException( "node \"" + n.getName() + "\" is not unique in gene tree #" + counter );
+                    }
+                    found[ x ] = true;
+                    leaves[ leaves_size++ ] = x;
+                    m.inreaseByOne( x, x );
+                }
+            }
+            else {
+                final int first = starts_size - n.getNumberOfDescendants();
+                if ( !n.isDuplication() ) {
+                    for( int c = first; c < ( starts_size - 1 ); ++c ) {
+                        final int c_end = starts[ c + 1 ];
+                        for( int i = starts[ c ]; i < c_end; ++i ) {
+                            final int x = leaves[ i ];
+                            for( int j = c_end; j < leaves_size; ++j ) {
+                                m.inreaseByOne( x, leaves[ j ] );
+                            }
+                        }
+                    }
+                }
+                starts_size = first + 1;
+            }
+        }
         for( int x = 0; x < m.size(); ++x ) {
-            final String mx = m.getLabel( x );
-            final PhylogenyNode nx = map.get( mx );
-            if ( nx == null ) {
-                throw new RIOException( "node \"" + mx + "\" not present in gene tree #" + counter );
-            }
-            String my;
-            PhylogenyNode ny;
-            for( int y = 0; y < m.size(); ++y ) {
-                my = m.getLabel( y );
-                ny = map.get( my );
-                if ( ny == null ) {
-                    throw new RIOException( "node \"" + my + "\" not present in gene tree #" + counter );
+            if ( !found[ x ] ) {
+                throw new RIOException( "node \"" + m.getLabel( x ) + "\" not present in gene tree #" + counter );
+            }
+        }
+    }
+
+    private final static class InferenceResult {
+
+        private final Phylogeny              _assigned_tree;
+        private final int                    _duplications;
+        private final List<PhylogenyNode>    _removed_gene_tree_nodes;
+        private final TaxonomyComparisonBase _tax_comp_base;
+
+        InferenceResult( final Phylogeny assigned_tree,
+                         final int duplications,
+                         final List<PhylogenyNode> removed_gene_tree_nodes,
+                         final TaxonomyComparisonBase tax_comp_base ) {
+            _assigned_tree = assigned_tree;
+            _duplications = duplications;
+            _removed_gene_tree_nodes = removed_gene_tree_nodes;
+            _tax_comp_base = tax_comp_base;
+        }
+
+        final Phylogeny getAssignedTree() {
+            return _assigned_tree;
+        }
+
+        /**
+         * Returns -1 if no duplications have been counted (SDIR).
+         */
+        final int getDuplications() {
+            return _duplications;
+        }
+
+        final List<PhylogenyNode> getRemovedGeneTreeNodes() {
+            return _removed_gene_tree_nodes;
+        }
+
+        final TaxonomyComparisonBase getTaxCompBase() {
+            return _tax_comp_base;
+        }
+    }
+
+    /*
+     * Analyzes gene trees (except the first one, which is analyzed before
+     * and strips the species tree) with a fixed number of threads. All threads
+     * share the (unchanging) species tree index; for SDIR, which does change
+     * the species tree, each thread uses its own copy of the species tree.
+     * If ortholog counts are requested, each thread uses its own count matrix;
+     * these are added up by finish().
+     * Results are applied in the order in which the gene trees have been
+     * submitted, thus all results are the same as for a serial analysis. At
+     * most twice the number of threads gene trees are pending at any time.
+     */
+    private final class ParallelInference {
+
+        private final List<Worker>                   _all_workers;
+        private final ALGORITHM                      _algorithm;
+        private final Phylogeny[]                    _analyzed;
+        private final ExecutorService                _executor;
+        private final SpeciesTreeIndex               _index;
+        private final IntMatrix                      _matrix;
+        private final String                         _outgroup;
+        private final Queue<Future<InferenceResult>> _pending;
+        private final Queue<Integer>                 _pending_indices;
+        private final boolean                        _transfer_taxonomy;
+        private final BlockingQueue<Worker>          _workers;
+
+        ParallelInference( final Phylogeny species_tree,
+                           final SpeciesTreeIndex species_tree_index,
+                           final ALGORITHM algorithm,
+                           final String outgroup,
+                           final boolean transfer_taxonomy,
+                           final IntMatrix matrix,
+                           final Phylogeny[] analyzed ) {
+            _index = species_tree_index;
+            _algorithm = algorithm;
+            _outgroup = outgroup;
+            _transfer_taxonomy = transfer_taxonomy;
+            _matrix = matrix;
+            _analyzed = analyzed;
+            _pending = new ArrayDeque<Future<InferenceResult>>();
+            _pending_indices = new ArrayDeque<Integer>();
+            _workers = new ArrayBlockingQueue<Worker>( _threads );
+            _all_workers = new ArrayList<Worker>( _threads );
+            for( int t = 0; t < _threads; ++t ) {
+                final List<String> labels = new ArrayList<String>();
+                if ( matrix != null ) {
+                    for( int x = 0; x < matrix.size(); ++x ) {
+                        labels.add( matrix.getLabel( x ) );
+                    }
                 }
-                if ( !PhylogenyMethods.calculateLCAonTreeWithIdsInPreOrder( nx, ny ).isDuplication() ) {
-                    m.inreaseByOne( x, y );
+                final Worker w = new Worker( species_tree_index == null ? species_tree.copy() : species_tree,
+                                             matrix != null ? new IntMatrix( labels ) : null );
+                _workers.add( w );
+                _all_workers.add( w );
+            }
+            _executor = Executors.newFixedThreadPool( _threads );
+        }
+
+        final void finish() throws RIOException, SDIException, IOException {
+            while ( !_pending.isEmpty() ) {
+                consume();
+            }
+            if ( _matrix != null ) {
+                for( final Worker w : _all_workers ) {
+                    _matrix.add( w.getMatrix() );
                 }
             }
         }
+
+        final void shutdown() {
+            _executor.shutdownNow();
+        }
+
+        final void submit( final Phylogeny gene_tree, final int i ) throws RIOException, SDIException, IOException {
+            if ( _pending.size() >= ( 2 * _threads ) ) {
+                consume();
+            }
+            _pending.add( _executor.submit( new Callable<InferenceResult>() {
+
+                @Override
+                public InferenceResult call() throws Exception {
+                    final Worker w = _workers.take();
+                    try {
+                        final InferenceResult result = performOrthologInference( gene_tree,
+                                                                                 w.getSpeciesTree(),
+                                                                                 _index,
+                                                                                 _algorithm,
+                                                                                 _outgroup,
+                                                                                 i,
+                                                                                 _transfer_taxonomy );
+                        if ( w.getMatrix() != null ) {
+                            updateCounts( w.getMatrix(), i, result.getAssignedTree() );
+                        }
+                        return result;
+                    }
+                    finally {
+                        _workers.put( w );
+                    }
+                }
+            } ) );
+            _pending_indices.add( i );
+        }
+
+        private final void consume() throws RIOException, SDIException, IOException {
+            final int i = _pending_indices.poll();
+            final InferenceResult result;
+            try {
+                result = _pending.poll().get();
+            }
+            catch ( final InterruptedException e ) {
+                Thread.currentThread().interrupt();
+                throw new RIOException( "interrupted while analyzing gene tree #" + i );
+            }
+            catch ( final ExecutionException e ) {
+                final Throwable cause = e.getCause();
+                if ( cause instanceof RIOException ) {
+                    throw ( RIOException ) cause;
+                }
+                else if ( cause instanceof SDIException ) {
+                    throw ( SDIException ) cause;
+                }
+                else if ( cause instanceof IOException ) {
+                    throw ( IOException ) cause;
+                }
+                throw ParallelUtil.propagateCause( e );
+            }
+            addResult( result, i );
+            if ( _analyzed != null ) {
+                _analyzed[ i ] = result.getAssignedTree();
+            }
+        }
+    }
+
+    private final static class Worker {
+
+        private final IntMatrix _matrix;
+        private final Phylogeny _species_tree;
+
+        Worker( final Phylogeny species_tree, final IntMatrix matrix ) {
+            _species_tree = species_tree;
+            _matrix = matrix;
+        }
+
+        final IntMatrix getMatrix() {
+            return _matrix;
+        }
+
+        final Phylogeny getSpeciesTree() {
+            return _species_tree;
+        }
     }
 
     public enum REROOTING {
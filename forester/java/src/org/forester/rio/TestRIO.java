@@ -2,6 +2,8 @@
 package org.forester.rio;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.forester.datastructures.IntMatrix;
 import org.forester.io.parsers.nhx.NHXParser;
@@ -21,13 +23,24 @@ public final class TestRIO {
             + "test_data" + ForesterUtil.getFileSeparator();
 
     public static void main( final String[] args ) {
+        boolean ok = true;
         if ( !testRIO_GSDIR() ) {
             System.out.println( "testRIO GSDIR failed" );
+            ok = false;
         }
         if ( !testRIO_GSDIR_Iterating() ) {
             System.out.println( "testRIO GSDIR iterating failed" );
+            ok = false;
         }
-        else {
+        if ( !testRIO_GSDIR_Parallel() ) {
+            System.out.println( "testRIO GSDIR parallel failed" );
+            ok = false;
+        }
+        if ( !testRIO_GSDIR_Sink() ) {
+            System.out.println( "testRIO GSDIR sink failed" );
+            ok = false;
+        }
+        if ( ok ) {
             System.out.println( "OK" );
         }
     }
@@ -39,6 +52,12 @@ public final class TestRIO {
         if ( !testRIO_GSDIR_Iterating() ) {
             return false;
         }
+        if ( !testRIO_GSDIR_Parallel() ) {
+            return false;
+        }
+        if ( !testRIO_GSDIR_Sink() ) {
+            return false;
+        }
         return true;
     }
 
@@ -824,4 +843,300 @@ public final class TestRIO {
         }
         return true;
     }
-}
\ No newline at end of file
+
+    private static boolean isEqual( final RIO rio_1, final RIO rio_2, final IntMatrix m_1, final IntMatrix m_2 ) {
+        if ( m_1.size() != m_2.size() ) {
+            return false;
+        }
+        for( int i = 0; i < m_1.size(); ++i ) {
+            if ( !m_1.getRowAsString( i, ',' ).equals( m_2.getRowAsString( i, ',' ) ) ) {
+                System.out.println( m_1.toString() );
+                System.out.println( m_2.toString() );
+                return false;
+            }
+        }
+        if ( rio_1.getDuplicationsStatistics().getN() != rio_2.getDuplicationsStatistics().getN() ) {
+            return false;
+        }
+        if ( rio_1.getDuplicationsStatistics().getSum() != rio_2.getDuplicationsStatistics().getSum() ) {
+            return false;
+        }
+        if ( rio_1.getDuplicationsStatistics().getMin() != rio_2.getDuplicationsStatistics().getMin() ) {
+            return false;
+        }
+        if ( rio_1.getDuplicationsStatistics().getMax() != rio_2.getDuplicationsStatistics().getMax() ) {
+            return false;
+        }
+        if ( rio_1.getExtNodesOfAnalyzedGeneTrees() != rio_2.getExtNodesOfAnalyzedGeneTrees() ) {
+            return false;
+        }
+        if ( rio_1.getIntNodesOfAnalyzedGeneTrees() != rio_2.getIntNodesOfAnalyzedGeneTrees() ) {
+            return false;
+        }
+        if ( rio_1.getGSDIRtaxCompBase() != rio_2.getGSDIRtaxCompBase() ) {
+            return false;
+        }
+        if ( !rio_1.getMinDuplicationsGeneTree().toNewHampshire()
+                .equals( rio_2.getMinDuplicationsGeneTree().toNewHampshire() ) ) {
+            return false;
+        }
+        if ( !rio_1.getLog().toString().equals( rio_2.getLog().toString() ) ) {
+            return false;
+        }
+        return true;
+    }
+
+    private static boolean testRIO_GSDIR_Parallel() {
+        try {
+            final PhylogenyFactory factory = ParserBasedPhylogenyFactory.getInstance();
+            final NHXParser nhx = new NHXParser();
+            nhx.setReplaceUnderscores( false );
+            nhx.setIgnoreQuotes( true );
+            nhx.setTaxonomyExtraction( NHXParser.TAXONOMY_EXTRACTION.AGGRESSIVE );
+            final StringBuilder sb = new StringBuilder();
+            for( int i = 0; i < 8; ++i ) {
+                sb.append( "(((((MOUSE,RAT),HUMAN),CAEEL),YEAST),ARATH);" );
+                sb.append( "((((MOUSE,RAT),HUMAN),(ARATH,YEAST)),CAEEL);" );
+                sb.append( "((MOUSE,RAT),(((ARATH,YEAST),CAEEL),HUMAN));" );
+                sb.append( "(((((MOUSE,HUMAN),RAT),CAEEL),YEAST),ARATH);" );
+                sb.append( "((((HUMAN,MOUSE),RAT),(ARATH,YEAST)),CAEEL);" );
+                sb.append( "((((ARATH,RAT),HUMAN),(MOUSE,YEAST)),CAEEL);" );
+                sb.append( "(((CAEEL,RAT),HUMAN),((ARATH,MOUSE),YEAST));" );
+            }
+            final String gene_trees_str = sb.toString();
+            final String species_tree_str = "((((MOUSE,RAT,HUMAN),CAEEL),YEAST),ARATH);";
+            final Phylogeny species_tree_1 = factory.create( species_tree_str, new NHXParser() )[ 0 ];
+            species_tree_1.setRooted( true );
+            PhylogenyMethods.transferNodeNameToField( species_tree_1, PhylogenyNodeField.TAXONOMY_CODE, true );
+            final Phylogeny species_tree_2 = species_tree_1.copy();
+            nhx.setSource( gene_trees_str );
+            final RIO rio_1 = RIO.executeAnalysis( nhx,
+                                                   species_tree_1,
+                                                   ALGORITHM.GSDIR,
+                                                   REROOTING.BY_ALGORITHM,
+                                                   "",
+                                                   RIO.DEFAULT_RANGE,
+                                                   RIO.DEFAULT_RANGE,
+                                                   true,
+                                                   false,
+                                                   true,
+                                                   1 );
+            nhx.setSource( gene_trees_str );
+            final RIO rio_2 = RIO.executeAnalysis( nhx,
+                                                   species_tree_2,
+                                                   ALGORITHM.GSDIR,
+                                                   REROOTING.BY_ALGORITHM,
+                                                   "",
+                                                   RIO.DEFAULT_RANGE,
+                                                   RIO.DEFAULT_RANGE,
+                                                   true,
+                                                   false,
+                                                   true,
+                                                   3 );
+            if ( rio_1.getDuplicationsStatistics().getN() != 56 ) {
+                return false;
+            }
+            if ( !isEqual( rio_1, rio_2, rio_1.getOrthologTable(), rio_2.getOrthologTable() ) ) {
+                return false;
+            }
+            //
+            final Phylogeny species_tree_3 = factory.create( species_tree_str, new NHXParser() )[ 0 ];
+            species_tree_3.setRooted( true );
+            PhylogenyMethods.transferNodeNameToField( species_tree_3, PhylogenyNodeField.TAXONOMY_CODE, true );
+            final Phylogeny species_tree_4 = species_tree_3.copy();
+            final RIO rio_3 = RIO.executeAnalysis( factory.create( gene_trees_str, nhx ),
+                                                   species_tree_3,
+                                                   ALGORITHM.GSDIR,
+                                                   REROOTING.BY_ALGORITHM,
+                                                   "",
+                                                   2,
+                                                   50,
+                                                   true,
+                                                   false,
+                                                   true,
+                                                   1 );
+            final RIO rio_4 = RIO.executeAnalysis( factory.create( gene_trees_str, nhx ),
+                                                   species_tree_4,
+                                                   ALGORITHM.GSDIR,
+                                                   REROOTING.BY_ALGORITHM,
+                                                   "",
+                                                   2,
+                                                   50,
+                                                   true,
+                                                   false,
+                                                   true,
+                                                   4 );
+            if ( rio_4.getAnalyzedGeneTrees().length != 49 ) {
+                return false;
+            }
+            if ( !isEqual( rio_3,
+                           rio_4,
+                           RIO.calculateOrthologTable( rio_3.getAnalyzedGeneTrees(), true ),
+                           RIO.calculateOrthologTable( rio_4.getAnalyzedGeneTrees(), true ) ) ) {
+                return false;
+            }
+        }
+        catch ( final Exception e ) {
+            e.printStackTrace( System.out );
+            return false;
+        }
+        return true;
+    }
+
+    private static boolean testRIO_GSDIR_Sink() {
+        try {
+            final PhylogenyFactory factory = ParserBasedPhylogenyFactory.getInstance();
+            final NHXParser nhx = new NHXParser();
+            nhx.setReplaceUnderscores( false );
+            nhx.setIgnoreQuotes( true );
+            nhx.setTaxonomyExtraction( NHXParser.TAXONOMY_EXTRACTION.AGGRESSIVE );
+            final StringBuilder sb = new StringBuilder();
+            for( int i = 0; i < 6; ++i ) {
+                sb.append( "(((((MOUSE,RAT),HUMAN),CAEEL),YEAST),ARATH);" );
+                sb.append( "((((MOUSE,RAT),HUMAN),(ARATH,YEAST)),CAEEL);" );
+                sb.append( "((MOUSE,RAT),(((ARATH,YEAST),CAEEL),HUMAN));" );
+                sb.append( "(((((MOUSE,HUMAN),RAT),CAEEL),YEAST),ARATH);" );
+                sb.append( "((((ARATH,RAT),HUMAN),(MOUSE,YEAST)),CAEEL);" );
+            }
+            final String gene_trees_str = sb.toString();
+            final String species_tree_str = "((((MOUSE,RAT,HUMAN),CAEEL),YEAST),ARATH);";
+            final Phylogeny species_tree_1 = factory.create( species_tree_str, new NHXParser() )[ 0 ];
+            species_tree_1.setRooted( true );
+            PhylogenyMethods.transferNodeNameToField( species_tree_1, PhylogenyNodeField.TAXONOMY_CODE, true );
+            final RIO rio_1 = RIO.executeAnalysis( factory.create( gene_trees_str, nhx ),
+                                                   species_tree_1.copy(),
+                                                   ALGORITHM.GSDIR,
+                                                   REROOTING.BY_ALGORITHM,
+                                                   "",
+                                                   1,
+                                                   28,
+                                                   true,
+                                                   false,
+                                                   true,
+                                                   1 );
+            final IntMatrix m_1 = RIO.calculateOrthologTable( rio_1.getAnalyzedGeneTrees(), true );
+            for( final int threads : new int[] { 1, 3 } ) {
+                final List<String> trees = new ArrayList<String>();
+                final AnalyzedGeneTreeSink sink = new AnalyzedGeneTreeSink() {
+
+                    @Override
+                    public void accept( final Phylogeny analyzed_gene_tree, final int index ) {
+                        if ( index == trees.size() ) {
+                            trees.add( analyzed_gene_tree.toNewHampshire() );
+                        }
+                    }
+                };
+                final RIO rio_2 = RIO.executeAnalysis( factory.create( gene_trees_str, nhx ),
+                                                       species_tree_1.copy(),
+                                                       ALGORITHM.GSDIR,
+                                                       REROOTING.BY_ALGORITHM,
+                                                       "",
+                                                       1,
+                                                       28,
+                                                       true,
+                                                       false,
+                                                       true,
+                                                       threads,
+                                                       sink );
+                if ( rio_2.getAnalyzedGeneTrees() != null ) {
+                    return false;
+                }
+                if ( trees.size() != 28 ) {
+                    return false;
+                }
+                for( int i = 0; i < trees.size(); ++i ) {
+                    if ( !trees.get( i ).equals( rio_1.getAnalyzedGeneTrees()[ i ].toNewHampshire() ) ) {
+                        return false;
+                    }
+                }
+                if ( !isEqual( rio_1, rio_2, m_1, rio_2.getOrthologTable() ) ) {
+                    return false;
+                }
+                trees.clear();
+                nhx.setSource( gene_trees_str );
+                final RIO rio_3 = RIO.executeAnalysis( nhx,
+                                                       species_tree_1.copy(),
+                                                       ALGORITHM.GSDIR,
+                                                       REROOTING.BY_ALGORITHM,
+                                                       "",
+                                                       1,
+                                                       28,
+                                                       true,
+                                                       false,
+                                                       true,
+                                                       threads,
+                                                       sink );
+                if ( trees.size() != 28 ) {
+                    return false;
+                }
+                for( int i = 0; i < trees.size(); ++i ) {
+                    if ( !trees.get( i ).equals( rio_1.getAnalyzedGeneTrees()[ i ].toNewHampshire() ) ) {
+                        return false;
+                    }
+                }
+                for( int i = 0; i < m_1.size(); ++i ) {
+                    if ( !m_1.getRowAsString( i, ',' ).equals( rio_3.getOrthologTable().getRowAsString( i, ',' ) ) ) {
+                        return false;
+                    }
+                }
+                if ( rio_3.getDuplicationsStatistics().getSum() != rio_1.getDuplicationsStatistics().getSum() ) {
+                    return false;
+                }
+            }
+            // Gene trees read one at a time from file.
+            final File gene_trees_file = new File( PATH_TO_TEST_DATA + "rio_mb_taxcode.run1.t" );
+            final File species_tree_file = new File( PATH_TO_TEST_DATA + "rio_tol_1.xml" );
+            final RIO rio_4 = RIO.executeAnalysis( gene_trees_file,
+                                                   species_tree_file,
+                                                   ALGORITHM.GSDIR,
+                                                   REROOTING.BY_ALGORITHM,
+                                                   "",
+                                                   -1,
+                                                   -1,
+                                                   true,
+                                                   false,
+                                                   true );
+            final IntMatrix m_4 = RIO.calculateOrthologTable( rio_4.getAnalyzedGeneTrees(), true );
+            final int[] count = new int[ 1 ];
+            final RIO rio_5 = RIO.executeAnalysis( gene_trees_file,
+                                                   species_tree_file,
+                                                   ALGORITHM.GSDIR,
+                                                   REROOTING.BY_ALGORITHM,
+                                                   "",
+                                                   -1,
+                                                   -1,
+                                                   true,
+                                                   false,
+                                                   true,
+                                                   2,
+                                                   new AnalyzedGeneTreeSink() {
+
+                                                       @Override
+                                                       public void accept( final Phylogeny analyzed_gene_tree,
+                                                                           final int index ) {
+                                                           ++count[ 0 ];
+                                                       }
+                                                   } );
+            if ( ( rio_5.getAnalyzedGeneTrees() != null ) || ( count[ 0 ] != 201 ) ) {
+                return false;
+            }
+            for( int i = 0; i < m_4.size(); ++i ) {
+                if ( !m_4.getRowAsString( i, ',' ).equals( rio_5.getOrthologTable().getRowAsString( i, ',' ) ) ) {
+                    return false;
+                }
+            }
+            if ( rio_5.getDuplicationsStatistics().getSum() != rio_4.getDuplicationsStatistics().getSum() ) {
+                return false;
+            }
+            if ( !rio_5.getMinDuplicationsGeneTree().toNewHampshire()
+                    .equals( rio_4.getMinDuplicationsGeneTree().toNewHampshire() ) ) {
+                return false;
+            }
+        }
+        catch ( final Exception e ) {
+            e.printStackTrace( System.out );
+            return false;
+        }
+        return true;
+    }
+}
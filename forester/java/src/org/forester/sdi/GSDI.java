@@ -26,7 +26,6 @@
 package org.forester.sdi;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -34,7 +33,6 @@ import java.util.Set;
 import java.util.SortedSet;
 
 import org.forester.phylogeny.Phylogeny;
-import org.forester.phylogeny.PhylogenyMethods;
 import org.forester.phylogeny.PhylogenyNode;
 import org.forester.phylogeny.data.Event;
 import org.forester.phylogeny.iterators.PhylogenyNodeIterator;
@@ -81,8 +79,40 @@ public final class GSDI implements GSDII {
         _scientific_names_mapped_to_reduced_specificity = nodes_linking_result
                 .getScientificNamesMappedToReducedSpecificity();
         _tax_comp_base = nodes_linking_result.getTaxCompBase();
-        PhylogenyMethods.preOrderReId( species_tree );
         final GSDIsummaryResult gsdi_summary_result = geneTreePostOrderTraversal( gene_tree,
+                                                                                  SpeciesTreeIndex
+                                                                                          .createInstance( species_tree ),
+                                                                                  _most_parsimonious_duplication_model,
+                                                                                  transfer_taxonomy );
+        _speciation_or_duplication_events_sum = gsdi_summary_result.getSpeciationOrDuplicationEventsSum();
+        _speciations_sum = gsdi_summary_result.getSpeciationsSum();
+        _duplications_sum = gsdi_summary_result.getDuplicationsSum();
+    }
+
+    /**
+     * For analyzing many gene trees with the same (already stripped) species
+     * tree: the species tree is neither stripped nor otherwise changed, thus
+     * species_tree_index can be used by several threads at the same time.
+     *
+     */
+    public GSDI( final Phylogeny gene_tree,
+                 final SpeciesTreeIndex species_tree_index,
+                 final boolean most_parsimonious_duplication_model,
+                 final boolean strip_gene_tree,
+                 final boolean transfer_taxonomy ) throws SDIException {
+        _most_parsimonious_duplication_model = most_parsimonious_duplication_model;
+        if ( gene_tree.getRoot().getNumberOfDescendants() == 3 ) {
+            gene_tree.reRoot( gene_tree.getRoot().getChildNode( 2 ) );
+        }
+        final NodesLinkingResult nodes_linking_result = linkNodesOfG( gene_tree, species_tree_index, strip_gene_tree );
+        _stripped_gene_tree_nodes = nodes_linking_result.getStrippedGeneTreeNodes();
+        _stripped_species_tree_nodes = nodes_linking_result.getStrippedSpeciesTreeNodes();
+        _mapped_species_tree_nodes = nodes_linking_result.getMappedSpeciesTreeNodes();
+        _scientific_names_mapped_to_reduced_specificity = nodes_linking_result
+                .getScientificNamesMappedToReducedSpecificity();
+        _tax_comp_base = nodes_linking_result.getTaxCompBase();
+        final GSDIsummaryResult gsdi_summary_result = geneTreePostOrderTraversal( gene_tree,
+                                                                                  species_tree_index,
                                                                                   _most_parsimonious_duplication_model,
                                                                                   transfer_taxonomy );
         _speciation_or_duplication_events_sum = gsdi_summary_result.getSpeciationOrDuplicationEventsSum();
@@ -149,8 +179,7 @@ public final class GSDI implements GSDII {
      * mapping function M, and determines which nodes represent speciation
      * events and which ones duplication events.
      * <p>
-     * Preconditions: Mapping M for external nodes must have been calculated and
-     * the species tree must be labeled in preorder.
+     * Preconditions: Mapping M for external nodes must have been calculated.
      * <p>
      * @param transfer_taxonomy
      * @return
@@ -158,6 +187,7 @@ public final class GSDI implements GSDII {
      *
      */
     final static GSDIsummaryResult geneTreePostOrderTraversal( final Phylogeny gene_tree,
+                                                               final SpeciesTreeIndex species_tree_index,
                                                                final boolean most_parsimonious_duplication_model,
                                                                final boolean transfer_taxonomy ) throws SDIException {
         final GSDIsummaryResult res = new GSDIsummaryResult();
@@ -168,18 +198,10 @@ public final class GSDI implements GSDII {
                     throw new SDIException( "gene tree contains internal node with " + g.getNumberOfDescendants()
                                             + " descendents" );
                 }
-                PhylogenyNode s1 = g.getChildNode1().getLink();
-                PhylogenyNode s2 = g.getChildNode2().getLink();
-                while ( s1 != s2 ) {
-                    if ( s1.getId() > s2.getId() ) {
-                        s1 = s1.getParent();
-                    }
-                    else {
-                        s2 = s2.getParent();
-                    }
-                }
-                g.setLink( s1 );
-                determineEvent( s1, g, most_parsimonious_duplication_model, res );
+                final PhylogenyNode s = species_tree_index.calculateLCA( g.getChildNode1().getLink(), g
+                        .getChildNode2().getLink() );
+                g.setLink( s );
+                determineEvent( s, g, most_parsimonious_duplication_model, res );
             }
             if ( transfer_taxonomy ) {
                 transferTaxonomy( g );
@@ -188,37 +210,6 @@ public final class GSDI implements GSDII {
         return res;
     }
 
-    final static GSDIsummaryResult geneTreePostOrderTraversal( final Phylogeny gene_tree,
-                                                               final boolean most_parsimonious_duplication_model,
-                                                               final int min_duplications ) throws SDIException {
-        final GSDIsummaryResult res = new GSDIsummaryResult();
-        for( final PhylogenyNodeIterator it = gene_tree.iteratorPostorder(); it.hasNext(); ) {
-            final PhylogenyNode g = it.next();
-            if ( g.isInternal() ) {
-                if ( g.getNumberOfDescendants() != 2 ) {
-                    throw new SDIException( "gene tree contains internal node with " + g.getNumberOfDescendants()
-                                            + " descendents" );
-                }
-                PhylogenyNode s1 = g.getChildNode1().getLink();
-                PhylogenyNode s2 = g.getChildNode2().getLink();
-                while ( s1 != s2 ) {
-                    if ( s1.getId() > s2.getId() ) {
-                        s1 = s1.getParent();
-                    }
-                    else {
-                        s2 = s2.getParent();
-                    }
-                }
-                g.setLink( s1 );
-                determineEvent( s1, g, most_parsimonious_duplication_model, res );
-                if ( res.getDuplicationsSum() > min_duplications ) {
-                    return null;
-                }
-            }
-        }
-        return res;
-    }
-
     final static NodesLinkingResult linkNodesOfG( final Phylogeny gene_tree,
                                                   final Phylogeny species_tree,
                                                   final boolean strip_gene_tree,
@@ -245,25 +236,44 @@ public final class GSDI implements GSDII {
         if ( tax_comp_base == null ) {
             throw new IllegalArgumentException( "taxonomy linking base is null" );
         }
-        final Map<String, PhylogenyNode> species_to_node_map = new HashMap<String, PhylogenyNode>();
-        final List<PhylogenyNode> species_tree_ext_nodes = new ArrayList<PhylogenyNode>();
         final NodesLinkingResult res = new NodesLinkingResult();
         res.setTaxCompBase( tax_comp_base );
-        // Stringyfied taxonomy is the key, node is the value.
-        for( final PhylogenyNodeIterator iter = species_tree.iteratorExternalForward(); iter.hasNext(); ) {
-            final PhylogenyNode s = iter.next();
-            species_tree_ext_nodes.add( s );
-            if ( s.getNodeData().isHasTaxonomy() ) {
-                final String tax_str = SDIutil.taxonomyToString( s, res.getTaxCompBase() );
-                if ( !ForesterUtil.isEmpty( tax_str ) ) {
-                    if ( species_to_node_map.containsKey( tax_str ) ) {
-                        throw new SDIException( "taxonomy \"" + tax_str + "\" is not unique in species tree (using "
-                                + res.getTaxCompBase() + " for linking to gene tree)" );
-                    }
-                    species_to_node_map.put( tax_str, s );
-                }
+        final Map<String, PhylogenyNode> species_to_node_map = SpeciesTreeIndex.createTaxonomyToNodeMap( species_tree,
+                                                                                                         tax_comp_base );
+        linkNodesOfG( gene_tree, species_to_node_map, strip_gene_tree, res );
+        if ( strip_species_tree ) {
+            final List<PhylogenyNode> species_tree_ext_nodes = new ArrayList<PhylogenyNode>();
+            for( final PhylogenyNodeIterator iter = species_tree.iteratorExternalForward(); iter.hasNext(); ) {
+                species_tree_ext_nodes.add( iter.next() );
             }
+            stripSpeciesTree( species_tree, species_tree_ext_nodes, res );
         }
+        return res;
+    }
+
+    /**
+     * Links (and strips, if strip_gene_tree is true) the gene tree only, the
+     * indexed species tree is not changed.
+     * @throws SDIException
+     *
+     */
+    final static NodesLinkingResult linkNodesOfG( final Phylogeny gene_tree,
+                                                  final SpeciesTreeIndex species_tree_index,
+                                                  final boolean strip_gene_tree ) throws SDIException {
+        final TaxonomyComparisonBase tax_comp_base = SDIutil.determineTaxonomyComparisonBase( gene_tree );
+        if ( tax_comp_base == null ) {
+            throw new RuntimeException( "failed to establish taxonomy linking base (taxonomy linking base is null)" );
+        }
+        final NodesLinkingResult res = new NodesLinkingResult();
+        res.setTaxCompBase( tax_comp_base );
+        linkNodesOfG( gene_tree, species_tree_index.getTaxonomyToNodeMap( tax_comp_base ), strip_gene_tree, res );
+        return res;
+    }
+
+    private final static void linkNodesOfG( final Phylogeny gene_tree,
+                                            final Map<String, PhylogenyNode> species_to_node_map,
+                                            final boolean strip_gene_tree,
+                                            final NodesLinkingResult res ) throws SDIException {
         // Retrieve the reference to the node with a matching stringyfied taxonomy.
         for( final PhylogenyNodeIterator iter = gene_tree.iteratorExternalForward(); iter.hasNext(); ) {
             final PhylogenyNode g = iter.next();
@@ -316,10 +326,6 @@ public final class GSDI implements GSDII {
                         + res.getTaxCompBase() + ")" );
             }
         }
-        if ( strip_species_tree ) {
-            stripSpeciesTree( species_tree, species_tree_ext_nodes, res );
-        }
-        return res;
     }
 
     static final void transferTaxonomy( final PhylogenyNode g ) {
@@ -25,7 +25,10 @@
 package org.forester.sdi;
 
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.SortedSet;
 
@@ -54,10 +57,34 @@ public class GSDIR implements GSDII {
                   final boolean strip_gene_tree,
                   final boolean strip_species_tree,
                   final boolean transfer_taxonomy ) throws SDIException {
-        final NodesLinkingResult nodes_linking_result = GSDI.linkNodesOfG( gene_tree,
-                                                                           species_tree,
-                                                                           strip_gene_tree,
-                                                                           strip_species_tree );
+        // The species tree is indexed after (possibly) having been stripped
+        // (arguments are evaluated from left to right).
+        this( gene_tree,
+              GSDI.linkNodesOfG( gene_tree, species_tree, strip_gene_tree, strip_species_tree ),
+              SpeciesTreeIndex.createInstance( species_tree ),
+              transfer_taxonomy );
+    }
+
+    /**
+     * For analyzing many gene trees with the same (already stripped) species
+     * tree: the species tree is neither stripped nor otherwise changed, thus
+     * species_tree_index can be used by several threads at the same time.
+     *
+     */
+    public GSDIR( final Phylogeny gene_tree,
+                  final SpeciesTreeIndex species_tree_index,
+                  final boolean strip_gene_tree,
+                  final boolean transfer_taxonomy ) throws SDIException {
+        this( gene_tree,
+              GSDI.linkNodesOfG( gene_tree, species_tree_index, strip_gene_tree ),
+              species_tree_index,
+              transfer_taxonomy );
+    }
+
+    private GSDIR( final Phylogeny gene_tree,
+                   final NodesLinkingResult nodes_linking_result,
+                   final SpeciesTreeIndex species_tree_index,
+                   final boolean transfer_taxonomy ) throws SDIException {
         _stripped_gene_tree_nodes = nodes_linking_result.getStrippedGeneTreeNodes();
         _stripped_species_tree_nodes = nodes_linking_result.getStrippedSpeciesTreeNodes();
         _mapped_species_tree_nodes = nodes_linking_result.getMappedSpeciesTreeNodes();
@@ -75,39 +102,48 @@ public class GSDIR implements GSDII {
             gene_tree_branches_post_order.add( new PhylogenyBranch( gene_tree.getRoot().getChildNode1(), gene_tree
                                                                     .getRoot().getChildNode2() ) );
         }
+        final int[] duplications = calculateDuplicationsForAllRootings( gene_tree,
+                                                                        gene_tree_branches_post_order,
+                                                                        species_tree_index );
         int min_duplications_sum = Integer.MAX_VALUE;
-        int speciations_sum = 0;
         _duplications_sum_stats = new BasicDescriptiveStatistics();
-        for( final PhylogenyBranch branch : gene_tree_branches_post_order ) {
-            reRoot( branch, gene_tree );
-            PhylogenyMethods.preOrderReId( species_tree );
-            final GSDIsummaryResult gsdi_result = GSDI.geneTreePostOrderTraversal( gene_tree,
-                                                                                   true,
-                                                                                   min_duplications_sum );
-            if ( gsdi_result == null ) {
-                continue;
-            }
-            if ( gsdi_result.getDuplicationsSum() < min_duplications_sum ) {
-                min_duplications_sum = gsdi_result.getDuplicationsSum();
-                speciations_sum = gsdi_result.getSpeciationsSum();
-                _min_duplications_sum_gene_tree = gene_tree.copy();
-                if ( transfer_taxonomy ) {
-                    transferTaxonomy( _min_duplications_sum_gene_tree );
+        final List<PhylogenyBranch> min_duplications_sum_branches = new ArrayList<PhylogenyBranch>();
+        for( int i = 0; i < duplications.length; ++i ) {
+            if ( duplications[ i ] <= min_duplications_sum ) {
+                if ( duplications[ i ] < min_duplications_sum ) {
+                    min_duplications_sum = duplications[ i ];
+                    min_duplications_sum_branches.clear();
                 }
+                min_duplications_sum_branches.add( gene_tree_branches_post_order.get( i ) );
+                _duplications_sum_stats.addValue( duplications[ i ] );
             }
-            else if ( gsdi_result.getDuplicationsSum() == min_duplications_sum ) {
-                final List<Phylogeny> l = new ArrayList<Phylogeny>();
-                l.add( _min_duplications_sum_gene_tree );
-                l.add( gene_tree );
-                final int index = getIndexesOfShortestTree( l ).get( 0 );
-                if ( index == 1 ) {
-                    _min_duplications_sum_gene_tree = gene_tree.copy();
-                    if ( transfer_taxonomy ) {
-                        transferTaxonomy( _min_duplications_sum_gene_tree );
-                    }
+        }
+        // Of several rootings with the minimal duplications sum, the first one
+        // resulting in the shortest tree is used.
+        PhylogenyBranch best = min_duplications_sum_branches.get( 0 );
+        if ( min_duplications_sum_branches.size() > 1 ) {
+            reRootIfNotRootedOn( best, gene_tree );
+            final boolean depth = !( PhylogenyMethods.calculateMaxDistanceToRoot( gene_tree ) > 0 );
+            double best_length = calculateLength( gene_tree, depth );
+            for( int i = 1; i < min_duplications_sum_branches.size(); ++i ) {
+                final PhylogenyBranch branch = min_duplications_sum_branches.get( i );
+                reRootIfNotRootedOn( branch, gene_tree );
+                final double length = calculateLength( gene_tree, depth );
+                if ( length < best_length ) {
+                    best_length = length;
+                    best = branch;
                 }
             }
-            _duplications_sum_stats.addValue( gsdi_result.getDuplicationsSum() );
+        }
+        reRootIfNotRootedOn( best, gene_tree );
+        final GSDIsummaryResult gsdi_result = GSDI.geneTreePostOrderTraversal( gene_tree,
+                                                                               species_tree_index,
+                                                                               true,
+                                                                               false );
+        final int speciations_sum = gsdi_result.getSpeciationsSum();
+        _min_duplications_sum_gene_tree = gene_tree.copy();
+        if ( transfer_taxonomy ) {
+            transferTaxonomy( _min_duplications_sum_gene_tree );
         }
         _min_duplications_sum = min_duplications_sum;
         _speciations_sum = speciations_sum;
@@ -215,9 +251,194 @@ public class GSDIR implements GSDII {
         }
     }
 
+    /**
+     * Calculates the duplications sum of the gene tree rooted on each of
+     * branches by rerooting dynamic programming: one post-order traversal
+     * maps the subtrees below each node, one pre-order traversal maps the
+     * complementary subtrees above each node; each rooting is then given by
+     * the pair of subtrees on either side of its branch. The gene tree is not
+     * changed.
+     *
+     * Preconditions: the external nodes of the gene tree must be linked to
+     * the indexed species tree.
+     */
+    private final static int[] calculateDuplicationsForAllRootings( final Phylogeny gene_tree,
+                                                                    final List<PhylogenyBranch> branches,
+                                                                    final SpeciesTreeIndex species_tree_index )
+            throws SDIException {
+        final PhylogenyNode root = gene_tree.getRoot();
+        final List<PhylogenyNode> nodes = new ArrayList<PhylogenyNode>();
+        final Map<PhylogenyNode, Integer> indices = new IdentityHashMap<PhylogenyNode, Integer>();
+        for( final PhylogenyNodeIterator it = gene_tree.iteratorPostorder(); it.hasNext(); ) {
+            final PhylogenyNode n = it.next();
+            if ( n.isInternal() ) {
+                final int d = n.getNumberOfDescendants();
+                if ( ( d != 2 ) && ( !n.isRoot() || ( d != 3 ) ) ) {
+                    throw new SDIException( "gene tree contains internal node with " + d + " descendents" );
+                }
+            }
+            indices.put( n, nodes.size() );
+            nodes.add( n );
+        }
+        final MappedSubtree[] below = new MappedSubtree[ nodes.size() ];
+        for( int i = 0; i < nodes.size(); ++i ) {
+            final PhylogenyNode n = nodes.get( i );
+            if ( n.isExternal() ) {
+                below[ i ] = MappedSubtree.createInstance( n.getLink() );
+            }
+            else if ( !n.isRoot() ) {
+                below[ i ] = MappedSubtree.combine( below[ indices.get( n.getChildNode1() ) ],
+                                                    below[ indices.get( n.getChildNode2() ) ],
+                                                    species_tree_index );
+            }
+        }
+        final MappedSubtree[] above = new MappedSubtree[ nodes.size() ];
+        for( int i = nodes.size() - 1; i >= 0; --i ) {
+            final PhylogenyNode n = nodes.get( i );
+            if ( n.isRoot() ) {
+                continue;
+            }
+            final PhylogenyNode p = n.getParent();
+            if ( p.isRoot() ) {
+                final List<MappedSubtree> others = new ArrayList<MappedSubtree>( 2 );
+                for( final PhylogenyNode c : p.getDescendants() ) {
+                    if ( c != n ) {
+                        others.add( below[ indices.get( c ) ] );
+                    }
+                }
+                above[ i ] = others.size() == 1 ? others.get( 0 ) : MappedSubtree.combine( others.get( 0 ),
+                                                                                             others.get( 1 ),
+                                                                                             species_tree_index );
+            }
+            else {
+                final PhylogenyNode sibling = p.getChildNode1() == n ? p.getChildNode2() : p.getChildNode1();
+                above[ i ] = MappedSubtree.combine( below[ indices.get( sibling ) ],
+                                                    above[ indices.get( p ) ],
+                                                    species_tree_index );
+            }
+        }
+        final int[] duplications = new int[ branches.size() ];
+        for( int i = 0; i < branches.size(); ++i ) {
+            final PhylogenyBranch b = branches.get( i );
+            if ( b.getSecondNode() == b.getFirstNode().getParent() ) {
+                final int n = indices.get( b.getFirstNode() );
+                duplications[ i ] = MappedSubtree.combine( below[ n ], above[ n ], species_tree_index )
+                        .getDuplications();
+            }
+            else {
+                // The branch connecting the two children of a bifurcating root.
+                duplications[ i ] = MappedSubtree.combine( below[ indices.get( root.getChildNode1() ) ],
+                                                           below[ indices.get( root.getChildNode2() ) ],
+                                                           species_tree_index ).getDuplications();
+            }
+        }
+        return duplications;
+    }
+
+    private final static double calculateLength( final Phylogeny phy, final boolean depth ) {
+        if ( depth ) {
+            return PhylogenyMethods.calculateMaxDepth( phy );
+        }
+        return PhylogenyMethods.calculateMaxDistanceToRoot( phy );
+    }
+
+    /**
+     * Places the root of phy on branch b, unless phy is already rooted on b.
+     */
+    private final static void reRootIfNotRootedOn( final PhylogenyBranch b, final Phylogeny phy ) {
+        final PhylogenyNode n1 = b.getFirstNode();
+        final PhylogenyNode n2 = b.getSecondNode();
+        if ( n1.getParent() == n2 ) {
+            phy.reRoot( n1 );
+        }
+        else if ( n2.getParent() == n1 ) {
+            phy.reRoot( n2 );
+        }
+        else if ( ( n1.getParent() == null ) || ( n1.getParent() != n2.getParent() ) || !n1.getParent().isRoot()
+                || ( n1.getParent().getNumberOfDescendants() != 2 ) ) {
+            throw new IllegalArgumentException( "reRoot( Branch b ): b is not a branch." );
+        }
+    }
+
     private final static void transferTaxonomy( final Phylogeny gt ) {
         for( final PhylogenyNodeIterator it = gt.iteratorPostorder(); it.hasNext(); ) {
             GSDI.transferTaxonomy( it.next() );
         }
     }
+
+    /*
+     * A (directed) subtree of the gene tree: its mapping onto the species
+     * tree, the number of duplications within it, and -- if the mapping is not
+     * a bifurcation -- which children of the mapping (index = number of
+     * children: the mapping itself) its external nodes map to. This is what is
+     * needed to determine the event at a gene tree node from its two child
+     * subtrees, in the same way as GSDI does (most parsimonious duplication
+     * model).
+     */
+    private final static class MappedSubtree {
+
+        private final BitSet        _covered_children;
+        private final int           _duplications;
+        private final PhylogenyNode _mapping;
+
+        private MappedSubtree( final PhylogenyNode mapping, final int duplications, final BitSet covered_children ) {
+            _mapping = mapping;
+            _duplications = duplications;
+            _covered_children = covered_children;
+        }
+
+        final int getDuplications() {
+            return _duplications;
+        }
+
+        private final BitSet getCoveredChildren( final PhylogenyNode s ) {
+            if ( _mapping == s ) {
+                return _covered_children;
+            }
+            // Same as in GSDI: move up to the child of s.
+            PhylogenyNode n = _mapping;
+            while ( ( n.getParent() != s ) && ( n.getParent() != null ) ) {
+                n = n.getParent();
+                if ( n.isRoot() ) {
+                    break;
+                }
+            }
+            final BitSet b = new BitSet();
+            b.set( n.getParent() == s ? n.getChildNodeIndex() : s.getNumberOfDescendants() );
+            return b;
+        }
+
+        final static MappedSubtree combine( final MappedSubtree x,
+                                            final MappedSubtree y,
+                                            final SpeciesTreeIndex species_tree_index ) {
+            final PhylogenyNode s = species_tree_index.calculateLCA( x._mapping, y._mapping );
+            final boolean oyako = ( x._mapping == s ) || ( y._mapping == s );
+            int duplications = x._duplications + y._duplications;
+            BitSet covered_children = null;
+            if ( s.getNumberOfDescendants() == 2 ) {
+                if ( oyako ) {
+                    ++duplications;
+                }
+            }
+            else {
+                final BitSet cx = x.getCoveredChildren( s );
+                final BitSet cy = y.getCoveredChildren( s );
+                if ( oyako && cx.intersects( cy ) ) {
+                    ++duplications;
+                }
+                covered_children = ( BitSet ) cx.clone();
+                covered_children.or( cy );
+            }
+            return new MappedSubtree( s, duplications, covered_children );
+        }
+
+        final static MappedSubtree createInstance( final PhylogenyNode mapping ) {
+            BitSet covered_children = null;
+            if ( mapping.getNumberOfDescendants() != 2 ) {
+                covered_children = new BitSet();
+                covered_children.set( mapping.getNumberOfDescendants() );
+            }
+            return new MappedSubtree( mapping, 0, covered_children );
+        }
+    }
 }
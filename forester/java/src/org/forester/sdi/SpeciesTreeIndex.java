@@ -0,0 +1,208 @@
+// $Id:
+// FORESTER -- software libraries and applications
+// for evolutionary biology research and applications.
+//
+// Copyright (C) 2014 Christian M. Zmasek
+// Copyright (C) 2014 Sanford-Burnham Medical Research Institute
+// All rights reserved
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA
+//
+// Contact: phylosoft @ gmail . com
+// WWW: https://sites.google.com/site/cmzmasek/home/software/forester
+
+package org.forester.sdi;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.forester.phylogeny.Phylogeny;
+import org.forester.phylogeny.PhylogenyNode;
+import org.forester.phylogeny.iterators.PhylogenyNodeIterator;
+import org.forester.sdi.SDIutil.TaxonomyComparisonBase;
+import org.forester.util.ForesterUtil;
+
+/*
+ * Index of a species tree for mapping many gene trees onto it: the external
+ * nodes by stringyfied taxonomy (for each taxonomy comparison base), and the
+ * lowest common ancestor of any two nodes in constant time (range minimum
+ * queries on the preorder indices along an Euler tour of the tree).
+ *
+ * Built once, for a species tree which must not be changed afterwards (in
+ * particular, it has to be stripped before). The species tree itself is never
+ * changed by this class (node ids are not used), thus an instance can be
+ * shared by any number of threads.
+ */
+public final class SpeciesTreeIndex {
+
+    private final int[]                                                   _euler_first;
+    private final int[][]                                                 _euler_min;
+    private final PhylogenyNode[]                                         _nodes;
+    private final Map<PhylogenyNode, Integer>                             _preorder_indices;
+    private final Phylogeny                                               _species_tree;
+    private final Map<TaxonomyComparisonBase, String>                     _taxonomy_map_errors;
+    private final Map<TaxonomyComparisonBase, Map<String, PhylogenyNode>> _taxonomy_maps;
+
+    private SpeciesTreeIndex( final Phylogeny species_tree ) {
+        if ( ( species_tree == null ) || species_tree.isEmpty() ) {
+            throw new IllegalArgumentException( "attempt to index empty species tree" );
+        }
+        _species_tree = species_tree;
+        final int n = species_tree.getNodeCount();
+        _nodes = new PhylogenyNode[ n ];
+        _preorder_indices = new IdentityHashMap<PhylogenyNode, Integer>( n );
+        int c = 0;
+        for( final PhylogenyNodeIterator it = species_tree.iteratorPreorder(); it.hasNext(); ) {
+            final PhylogenyNode node = it.next();
+            _nodes[ c ] = node;
+            _preorder_indices.put( node, c );
+            ++c;
+        }
+        // Euler tour (iterative, species trees can be deep).
+        final int m = ( 2 * n ) - 1;
+        final int[] euler = new int[ m ];
+        _euler_first = new int[ n ];
+        final int[] stack = new int[ n ];
+        final int[] next_child = new int[ n ];
+        int top = 0;
+        int pos = 0;
+        stack[ 0 ] = 0;
+        next_child[ 0 ] = 0;
+        _euler_first[ 0 ] = pos;
+        euler[ pos++ ] = 0;
+        while ( top >= 0 ) {
+            final PhylogenyNode node = _nodes[ stack[ top ] ];
+            if ( next_child[ top ] < node.getNumberOfDescendants() ) {
+                final int child = _preorder_indices.get( node.getChildNode( next_child[ top ]++ ) );
+                ++top;
+                stack[ top ] = child;
+                next_child[ top ] = 0;
+                _euler_first[ child ] = pos;
+                euler[ pos++ ] = child;
+            }
+            else {
+                --top;
+                if ( top >= 0 ) {
+                    euler[ pos++ ] = stack[ top ];
+                }
+            }
+        }
+        // Sparse table: _euler_min[ k ][ j ] is the minimum of euler[ j .. j + 2^k - 1 ].
+        final int levels = 32 - Integer.numberOfLeadingZeros( m );
+        _euler_min = new int[ levels ][];
+        _euler_min[ 0 ] = euler;
+        for( int k = 1; k < levels; ++k ) {
+            final int half = 1 << ( k - 1 );
+            final int[] prev = _euler_min[ k - 1 ];
+            final int[] cur = new int[ ( m - ( 1 << k ) ) + 1 ];
+            for( int j = 0; j < cur.length; ++j ) {
+                cur[ j ] = Math.min( prev[ j ], prev[ j + half ] );
+            }
+            _euler_min[ k ] = cur;
+        }
+        _taxonomy_maps = new EnumMap<TaxonomyComparisonBase, Map<String, PhylogenyNode>>( TaxonomyComparisonBase.class );
+        _taxonomy_map_errors = new EnumMap<TaxonomyComparisonBase, String>( TaxonomyComparisonBase.class );
+        for( final TaxonomyComparisonBase base : TaxonomyComparisonBase.values() ) {
+            try {
+                _taxonomy_maps.put( base, Collections.unmodifiableMap( createTaxonomyToNodeMap( species_tree, base ) ) );
+            }
+            catch ( final SDIException e ) {
+                _taxonomy_map_errors.put( base, e.getMessage() );
+            }
+        }
+    }
+
+    /**
+     * Returns the lowest common ancestor of species tree nodes a and b.
+     *
+     */
+    public final PhylogenyNode calculateLCA( final PhylogenyNode a, final PhylogenyNode b ) {
+        if ( a == b ) {
+            return a;
+        }
+        int l = _euler_first[ getPreorderIndex( a ) ];
+        int r = _euler_first[ getPreorderIndex( b ) ];
+        if ( l > r ) {
+            final int t = l;
+            l = r;
+            r = t;
+        }
+        final int k = 31 - Integer.numberOfLeadingZeros( ( r - l ) + 1 );
+        final int[] mins = _euler_min[ k ];
+        return _nodes[ Math.min( mins[ l ], mins[ ( r - ( 1 << k ) ) + 1 ] ) ];
+    }
+
+    /**
+     * Returns the index of species tree node n in preorder (the root is 0).
+     *
+     */
+    public final int getPreorderIndex( final PhylogenyNode n ) {
+        final Integer i = _preorder_indices.get( n );
+        if ( i == null ) {
+            throw new IllegalArgumentException( "node \"" + n + "\" is not part of the indexed species tree" );
+        }
+        return i;
+    }
+
+    public final Phylogeny getSpeciesTree() {
+        return _species_tree;
+    }
+
+    /**
+     * Returns an (unmodifiable) map of the stringyfied taxonomies of the
+     * external nodes of the species tree to these nodes.
+     *
+     * @throws SDIException
+     *             if taxonomies are not unique in the species tree (for base)
+     */
+    public final Map<String, PhylogenyNode> getTaxonomyToNodeMap( final TaxonomyComparisonBase base )
+            throws SDIException {
+        if ( base == null ) {
+            throw new IllegalArgumentException( "taxonomy linking base is null" );
+        }
+        if ( _taxonomy_map_errors.containsKey( base ) ) {
+            throw new SDIException( _taxonomy_map_errors.get( base ) );
+        }
+        return _taxonomy_maps.get( base );
+    }
+
+    public final static SpeciesTreeIndex createInstance( final Phylogeny species_tree ) {
+        return new SpeciesTreeIndex( species_tree );
+    }
+
+    // Stringyfied taxonomy is the key, node is the value.
+    final static Map<String, PhylogenyNode> createTaxonomyToNodeMap( final Phylogeny species_tree,
+                                                                     final TaxonomyComparisonBase base )
+            throws SDIException {
+        final Map<String, PhylogenyNode> species_to_node_map = new HashMap<String, PhylogenyNode>();
+        for( final PhylogenyNodeIterator iter = species_tree.iteratorExternalForward(); iter.hasNext(); ) {
+            final PhylogenyNode s = iter.next();
+            if ( s.getNodeData().isHasTaxonomy() ) {
+                final String tax_str = SDIutil.taxonomyToString( s, base );
+                if ( !ForesterUtil.isEmpty( tax_str ) ) {
+                    if ( species_to_node_map.containsKey( tax_str ) ) {
+                        throw new SDIException( "taxonomy \"" + tax_str + "\" is not unique in species tree (using "
+                                + base + " for linking to gene tree)" );
+                    }
+                    species_to_node_map.put( tax_str, s );
+                }
+            }
+        }
+        return species_to_node_map;
+    }
+}
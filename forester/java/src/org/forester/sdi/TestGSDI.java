@@ -26,15 +26,20 @@
 package org.forester.sdi;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.forester.development.DevelopmentTools;
 import org.forester.io.parsers.nhx.NHXParser;
 import org.forester.io.parsers.util.ParserUtils;
 import org.forester.phylogeny.Phylogeny;
+import org.forester.phylogeny.PhylogenyBranch;
 import org.forester.phylogeny.PhylogenyMethods;
+import org.forester.phylogeny.PhylogenyNode;
 import org.forester.phylogeny.data.Event;
 import org.forester.phylogeny.factories.ParserBasedPhylogenyFactory;
 import org.forester.phylogeny.factories.PhylogenyFactory;
+import org.forester.phylogeny.iterators.PhylogenyNodeIterator;
 import org.forester.sdi.SDIutil.TaxonomyComparisonBase;
 import org.forester.util.ForesterUtil;
 
@@ -44,16 +49,28 @@ public final class TestGSDI {
             + "test_data" + ForesterUtil.getFileSeparator();
 
     public static void main( final String[] args ) {
+        boolean ok = true;
         if ( !TestGSDI.testGSDI_against_binary_gene_tree() ) {
             System.out.println( "binary failed" );
+            ok = false;
         }
         if ( !TestGSDI.testGSDI_general() ) {
             System.out.println( "general failed" );
+            ok = false;
         }
         if ( !TestGSDI.testGSDIR_general() ) {
             System.out.println( "general re-rooting failed" );
+            ok = false;
         }
-        else {
+        if ( !TestGSDI.testGSDIR_against_GSDI_per_rooting() ) {
+            System.out.println( "re-rooting against per-rooting GSDI failed" );
+            ok = false;
+        }
+        if ( !TestGSDI.testSpeciesTreeIndex() ) {
+            System.out.println( "species tree index failed" );
+            ok = false;
+        }
+        if ( ok ) {
             System.out.println( "OK" );
         }
     }
@@ -68,6 +85,12 @@ public final class TestGSDI {
         if ( !TestGSDI.testGSDIR_general() ) {
             return false;
         }
+        if ( !TestGSDI.testGSDIR_against_GSDI_per_rooting() ) {
+            return false;
+        }
+        if ( !TestGSDI.testSpeciesTreeIndex() ) {
+            return false;
+        }
         return true;
     }
 
@@ -77,6 +100,57 @@ public final class TestGSDI {
         return p;
     }
 
+    /*
+     * The way GSDIR used to work: re-root the gene tree on each branch (in the
+     * same order as GSDIR) and run GSDI on each rooting, keeping the shortest
+     * of the first rootings with the minimal duplications sum.
+     * Returns { minimal duplications sum, speciations sum of the chosen
+     * rooting, number of rootings counted in the duplications sum statistics }.
+     */
+    private final static int[] calculateGSDIRPerRooting( final Phylogeny gene_tree, final Phylogeny species_tree )
+            throws SDIException {
+        GSDI.linkNodesOfG( gene_tree, species_tree, false, false );
+        final SpeciesTreeIndex index = SpeciesTreeIndex.createInstance( species_tree );
+        final List<PhylogenyBranch> branches = new ArrayList<PhylogenyBranch>();
+        for( final PhylogenyNodeIterator it = gene_tree.iteratorPostorder(); it.hasNext(); ) {
+            final PhylogenyNode n = it.next();
+            if ( !n.isRoot() && !( n.getParent().isRoot() && ( gene_tree.getRoot().getNumberOfDescendants() == 2 ) ) ) {
+                branches.add( new PhylogenyBranch( n, n.getParent() ) );
+            }
+        }
+        if ( gene_tree.getRoot().getNumberOfDescendants() == 2 ) {
+            branches.add( new PhylogenyBranch( gene_tree.getRoot().getChildNode1(), gene_tree.getRoot()
+                    .getChildNode2() ) );
+        }
+        int min_duplications_sum = Integer.MAX_VALUE;
+        int speciations_sum = 0;
+        int n = 0;
+        Phylogeny min_duplications_sum_gene_tree = null;
+        for( final PhylogenyBranch branch : branches ) {
+            GSDIR.reRoot( branch, gene_tree );
+            final GSDIsummaryResult r = GSDI.geneTreePostOrderTraversal( gene_tree, index, true, false );
+            if ( r.getDuplicationsSum() > min_duplications_sum ) {
+                continue;
+            }
+            if ( r.getDuplicationsSum() < min_duplications_sum ) {
+                min_duplications_sum = r.getDuplicationsSum();
+                speciations_sum = r.getSpeciationsSum();
+                min_duplications_sum_gene_tree = gene_tree.copy();
+            }
+            else {
+                final List<Phylogeny> l = new ArrayList<Phylogeny>();
+                l.add( min_duplications_sum_gene_tree );
+                l.add( gene_tree );
+                if ( GSDIR.getIndexesOfShortestTree( l ).get( 0 ) == 1 ) {
+                    speciations_sum = r.getSpeciationsSum();
+                    min_duplications_sum_gene_tree = gene_tree.copy();
+                }
+            }
+            ++n;
+        }
+        return new int[] { min_duplications_sum, speciations_sum, n };
+    }
+
     private final static Event getEvent( final Phylogeny p, final String n1, final String n2 ) {
         return PhylogenyMethods.calculateLCA( p.getNode( n1 ), p.getNode( n2 ) ).getNodeData().getEvent();
     }
@@ -1534,4 +1608,132 @@ public final class TestGSDI {
         }
         return true;
     }
+
+    private static boolean testGSDIR_against_GSDI_per_rooting() {
+        try {
+            final String[] species_trees = {
+                    "(((([&&NHX:S=HUMAN],([&&NHX:S=MOUSE],[&&NHX:S=RAT])),([&&NHX:S=CAEEL],[&&NHX:S=CAEBR])),[&&NHX:S=YEAST]),([&&NHX:S=ARATH],[&&NHX:S=SOYBN]))",
+                    "((([&&NHX:S=HUMAN],[&&NHX:S=MOUSE],[&&NHX:S=RAT]),([&&NHX:S=CAEEL],[&&NHX:S=CAEBR])),[&&NHX:S=YEAST],([&&NHX:S=ARATH],[&&NHX:S=SOYBN]))" };
+            final String[] gene_trees = {
+                    "(((HUMAN[&&NHX:S=HUMAN],RAT[&&NHX:S=RAT]),CAEEL[&&NHX:S=CAEEL]),YEAST[&&NHX:S=YEAST])",
+                    "(RAT[&&NHX:S=RAT],HUMAN[&&NHX:S=HUMAN],(YEAST[&&NHX:S=YEAST],CAEEL[&&NHX:S=CAEEL]))",
+                    "((((MOUSE[&&NHX:S=MOUSE],RAT[&&NHX:S=RAT]),HUMAN[&&NHX:S=HUMAN]),(ARATH[&&NHX:S=ARATH],YEAST[&&NHX:S=YEAST])),(CAEEL[&&NHX:S=CAEEL],CAEBR[&&NHX:S=CAEBR]))",
+                    "(((CAEEL1[&&NHX:S=CAEEL],CAEBR1[&&NHX:S=CAEBR]),(CAEEL2[&&NHX:S=CAEEL],HUMAN2[&&NHX:S=HUMAN])),((HUMAN[&&NHX:S=HUMAN],SOYBN[&&NHX:S=SOYBN]),ARATH[&&NHX:S=ARATH]))",
+                    "((HUMAN1:0.1[&&NHX:S=HUMAN],HUMAN2:0.2[&&NHX:S=HUMAN]):0.3,(MOUSE1:0.4[&&NHX:S=MOUSE],(RAT1:0.2[&&NHX:S=RAT],MOUSE2:0.1[&&NHX:S=MOUSE]):0.5):0.1,((RAT2:0.3[&&NHX:S=RAT],YEAST:0.6[&&NHX:S=YEAST]):0.2,ARATH:0.1[&&NHX:S=ARATH]):0.4)",
+                    "((((HUMAN1[&&NHX:S=HUMAN],MOUSE1[&&NHX:S=MOUSE]),(HUMAN2[&&NHX:S=HUMAN],RAT2[&&NHX:S=RAT])),(MOUSE3[&&NHX:S=MOUSE],CAEBR3[&&NHX:S=CAEBR])),((SOYBN4[&&NHX:S=SOYBN],YEAST4[&&NHX:S=YEAST]),(ARATH5[&&NHX:S=ARATH],CAEEL5[&&NHX:S=CAEEL])))" };
+            for( final String species_tree : species_trees ) {
+                for( final String gene_tree : gene_trees ) {
+                    final Phylogeny s = TestGSDI.createPhylogeny( species_tree );
+                    final Phylogeny g = TestGSDI.createPhylogeny( gene_tree );
+                    final int[] per_rooting = TestGSDI.calculateGSDIRPerRooting( g.copy(), s.copy() );
+                    final GSDIR gsdir = new GSDIR( g.copy(), s.copy(), false, false, true );
+                    if ( gsdir.getMinDuplicationsSum() != per_rooting[ 0 ] ) {
+                        return false;
+                    }
+                    if ( gsdir.getSpeciationsSum() != per_rooting[ 1 ] ) {
+                        return false;
+                    }
+                    if ( gsdir.getDuplicationsSumStats().getN() != per_rooting[ 2 ] ) {
+                        return false;
+                    }
+                    if ( gsdir.getDuplicationsSumStats().getMin() != per_rooting[ 0 ] ) {
+                        return false;
+                    }
+                    // The duplications recorded in the chosen rooting add up
+                    // to the minimal duplications sum.
+                    int duplications = 0;
+                    for( final PhylogenyNodeIterator it = gsdir.getMinDuplicationsSumGeneTree().iteratorPostorder(); it
+                            .hasNext(); ) {
+                        final PhylogenyNode n = it.next();
+                        if ( n.isInternal() && n.getNodeData().getEvent().isDuplication() ) {
+                            ++duplications;
+                        }
+                    }
+                    if ( duplications != per_rooting[ 0 ] ) {
+                        return false;
+                    }
+                }
+            }
+        }
+        catch ( final Exception e ) {
+            e.printStackTrace( System.out );
+            return false;
+        }
+        return true;
+    }
+
+    private static boolean testSpeciesTreeIndex() {
+        try {
+            final String s1str = "(((([&&NHX:S=HUMAN],([&&NHX:S=MOUSE],[&&NHX:S=RAT])),([&&NHX:S=CAEEL],[&&NHX:S=CAEBR],[&&NHX:S=CAEJA])),[&&NHX:S=YEAST]),([&&NHX:S=ARATH],[&&NHX:S=SOYBN]))";
+            final Phylogeny s1 = TestGSDI.createPhylogeny( s1str );
+            final SpeciesTreeIndex index = SpeciesTreeIndex.createInstance( s1 );
+            final List<PhylogenyNode> nodes = new ArrayList<PhylogenyNode>();
+            for( final PhylogenyNodeIterator it = s1.iteratorPreorder(); it.hasNext(); ) {
+                nodes.add( it.next() );
+            }
+            for( final PhylogenyNode a : nodes ) {
+                for( final PhylogenyNode b : nodes ) {
+                    if ( index.calculateLCA( a, b ) != PhylogenyMethods.calculateLCA( a, b ) ) {
+                        return false;
+                    }
+                }
+            }
+            if ( index.getPreorderIndex( s1.getRoot() ) != 0 ) {
+                return false;
+            }
+            if ( index.getTaxonomyToNodeMap( TaxonomyComparisonBase.SCIENTIFIC_NAME ).size() != 9 ) {
+                return false;
+            }
+            if ( !index.getTaxonomyToNodeMap( TaxonomyComparisonBase.SCIENTIFIC_NAME ).get( "CAEJA" ).isExternal() ) {
+                return false;
+            }
+            final String[] gene_trees = {
+                    "(((HUMAN[&&NHX:S=HUMAN],RAT[&&NHX:S=RAT]),CAEEL[&&NHX:S=CAEEL]),YEAST[&&NHX:S=YEAST])",
+                    "((((MOUSE[&&NHX:S=MOUSE],RAT[&&NHX:S=RAT]),HUMAN[&&NHX:S=HUMAN]),(ARATH[&&NHX:S=ARATH],YEAST[&&NHX:S=YEAST])),(CAEEL[&&NHX:S=CAEEL],CAEBR[&&NHX:S=CAEBR]))",
+                    "(((CAEEL1[&&NHX:S=CAEEL],CAEBR1[&&NHX:S=CAEBR]),(CAEEL2[&&NHX:S=CAEEL],CAEJA2[&&NHX:S=CAEJA])),((HUMAN[&&NHX:S=HUMAN],SOYBN[&&NHX:S=SOYBN]),ARATH[&&NHX:S=ARATH]))",
+                    "((HUMAN1[&&NHX:S=HUMAN],HUMAN2[&&NHX:S=HUMAN]),(DROME[&&NHX:S=DROME],(MOUSE[&&NHX:S=MOUSE],CAEJA[&&NHX:S=CAEJA])))" };
+            for( final String gene_tree : gene_trees ) {
+                final Phylogeny g = TestGSDI.createPhylogeny( gene_tree );
+                final GSDI gsdi = new GSDI( g.copy(), s1.copy(), false, true, false );
+                final GSDI gsdi_index = new GSDI( g.copy(), index, false, true, true );
+                if ( ( gsdi.getDuplicationsSum() != gsdi_index.getDuplicationsSum() )
+                        || ( gsdi.getSpeciationsSum() != gsdi_index.getSpeciationsSum() )
+                        || ( gsdi.getSpeciationOrDuplicationEventsSum() != gsdi_index
+                                .getSpeciationOrDuplicationEventsSum() )
+                        || ( gsdi.getStrippedExternalGeneTreeNodes().size() != gsdi_index
+                                .getStrippedExternalGeneTreeNodes().size() ) ) {
+                    return false;
+                }
+                final GSDIR gsdir = new GSDIR( g.copy(), s1.copy(), true, false, true );
+                final GSDIR gsdir_index = new GSDIR( g.copy(), index, true, true );
+                if ( ( gsdir.getMinDuplicationsSum() != gsdir_index.getMinDuplicationsSum() )
+                        || ( gsdir.getSpeciationsSum() != gsdir_index.getSpeciationsSum() )
+                        || ( gsdir.getDuplicationsSumStats().getN() != gsdir_index.getDuplicationsSumStats().getN() ) ) {
+                    return false;
+                }
+            }
+            // The indexed species tree is not changed.
+            if ( !s1.toNewHampshireX().equals( TestGSDI.createPhylogeny( s1str ).toNewHampshireX() ) ) {
+                return false;
+            }
+            final Phylogeny s2 = TestGSDI
+                    .createPhylogeny( "(([&&NHX:S=HUMAN],[&&NHX:S=MOUSE]),([&&NHX:S=HUMAN],[&&NHX:S=RAT]))" );
+            final SpeciesTreeIndex index2 = SpeciesTreeIndex.createInstance( s2 );
+            try {
+                index2.getTaxonomyToNodeMap( TaxonomyComparisonBase.SCIENTIFIC_NAME );
+                return false;
+            }
+            catch ( final SDIException e ) {
+                // Expected.
+            }
+            if ( !index2.getTaxonomyToNodeMap( TaxonomyComparisonBase.CODE ).isEmpty() ) {
+                return false;
+            }
+        }
+        catch ( final Exception e ) {
+            e.printStackTrace( System.out );
+            return false;
+        }
+        return true;
+    }
 }
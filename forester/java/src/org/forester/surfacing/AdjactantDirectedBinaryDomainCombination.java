@@ -26,23 +26,21 @@
 
 package org.forester.surfacing;
 
-import java.util.HashMap;
-import java.util.Map;
-
-import org.forester.protein.BasicDomain;
 import org.forester.protein.BinaryDomainCombination;
+import org.forester.protein.DomainIdSymbolTable;
+import org.forester.util.LongObjectHashMap;
 
 public class AdjactantDirectedBinaryDomainCombination extends BasicBinaryDomainCombination {
 
-    final private static Map<Integer, AdjactantDirectedBinaryDomainCombination> ADDC_POOL = new HashMap<Integer, AdjactantDirectedBinaryDomainCombination>();
+    final private static LongObjectHashMap<AdjactantDirectedBinaryDomainCombination> ADDC_POOL = new LongObjectHashMap<AdjactantDirectedBinaryDomainCombination>();
 
     private AdjactantDirectedBinaryDomainCombination( final String n_terminal, final String c_terminal ) {
         super();
         if ( ( n_terminal == null ) || ( c_terminal == null ) ) {
             throw new IllegalArgumentException( "attempt to create binary domain combination using null" );
         }
-        _id0 = BasicDomain.obtainIdAsShort( n_terminal );
-        _id1 = BasicDomain.obtainIdAsShort( c_terminal );
+        _id0 = DomainIdSymbolTable.obtainCode( n_terminal );
+        _id1 = DomainIdSymbolTable.obtainCode( c_terminal );
     }
 
     public final static AdjactantDirectedBinaryDomainCombination obtainInstance( final String ids ) {
@@ -58,16 +56,16 @@ public class AdjactantDirectedBinaryDomainCombination extends BasicBinaryDomainC
 
     public final static AdjactantDirectedBinaryDomainCombination obtainInstance( final String n_terminal,
                                                                                  final String c_terminal ) {
-        final int code = calcCode( BasicDomain.obtainIdAsShort( n_terminal ), BasicDomain.obtainIdAsShort( c_terminal ) );
-        if ( ADDC_POOL.containsKey( code ) ) {
-            return ADDC_POOL.get( code );
-        }
-        else {
-            final AdjactantDirectedBinaryDomainCombination dc = new AdjactantDirectedBinaryDomainCombination( n_terminal,
-                                                                                                              c_terminal );
-            ADDC_POOL.put( code, dc );
-            if ( VERBOSE && ( ( ADDC_POOL.size() % 100 ) == 0 ) ) {
-                System.out.println( " addc pool size: " + ADDC_POOL.size() );
+        final long code = calcCode( DomainIdSymbolTable.obtainCode( n_terminal ),
+                                    DomainIdSymbolTable.obtainCode( c_terminal ) );
+        synchronized ( ADDC_POOL ) {
+            AdjactantDirectedBinaryDomainCombination dc = ADDC_POOL.get( code );
+            if ( dc == null ) {
+                dc = new AdjactantDirectedBinaryDomainCombination( n_terminal, c_terminal );
+                ADDC_POOL.put( code, dc );
+                if ( VERBOSE && ( ( ADDC_POOL.size() % 100 ) == 0 ) ) {
+                    System.out.println( " addc pool size: " + ADDC_POOL.size() );
+                }
             }
             return dc;
         }
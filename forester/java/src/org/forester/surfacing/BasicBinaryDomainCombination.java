@@ -26,20 +26,18 @@
 
 package org.forester.surfacing;
 
-import java.util.HashMap;
-import java.util.Map;
-
-import org.forester.protein.BasicDomain;
 import org.forester.protein.BinaryDomainCombination;
+import org.forester.protein.DomainIdSymbolTable;
 import org.forester.util.ForesterUtil;
+import org.forester.util.LongObjectHashMap;
 
 public class BasicBinaryDomainCombination implements BinaryDomainCombination {
 
-    final static boolean                                            VERBOSE = false;
-    final private static Map<Integer, BasicBinaryDomainCombination> DC_POOL = new HashMap<Integer, BasicBinaryDomainCombination>();
-    final private static Map<Integer, String>                       S_POOL  = new HashMap<Integer, String>();
-    short                                                           _id0;
-    short                                                           _id1;
+    final static boolean                                                 VERBOSE = false;
+    final private static LongObjectHashMap<BasicBinaryDomainCombination> DC_POOL = new LongObjectHashMap<BasicBinaryDomainCombination>();
+    final private static LongObjectHashMap<String>                       S_POOL  = new LongObjectHashMap<String>();
+    int                                                                  _id0;
+    int                                                                  _id1;
 
     BasicBinaryDomainCombination() {
         _id0 = -1;
@@ -54,12 +52,12 @@ public class BasicBinaryDomainCombination implements BinaryDomainCombination {
             throw new IllegalArgumentException( "ill formatted domain id: " + id0 + ", " + id1 );
         }
         if ( id0.toLowerCase().compareTo( id1.toLowerCase() ) < 0 ) {
-            _id0 = BasicDomain.obtainIdAsShort( id0 );
-            _id1 = BasicDomain.obtainIdAsShort( id1 );
+            _id0 = DomainIdSymbolTable.obtainCode( id0 );
+            _id1 = DomainIdSymbolTable.obtainCode( id1 );
         }
         else {
-            _id0 = BasicDomain.obtainIdAsShort( id1 );
-            _id1 = BasicDomain.obtainIdAsShort( id0 );
+            _id0 = DomainIdSymbolTable.obtainCode( id1 );
+            _id1 = DomainIdSymbolTable.obtainCode( id0 );
         }
     }
 
@@ -94,34 +92,38 @@ public class BasicBinaryDomainCombination implements BinaryDomainCombination {
                     + o.getClass() + "]" );
         }
         else {
-            return ( getId0Code() == ( ( BinaryDomainCombination ) o ).getId0Code() )
-                    && ( getId1Code() == ( ( BinaryDomainCombination ) o ).getId1Code() );
+            return getCode() == ( ( BinaryDomainCombination ) o ).getCode();
         }
     }
 
+    @Override
+    final public long getCode() {
+        return calcCode( _id0, _id1 );
+    }
+
     @Override
     final public String getId0() {
-        return BasicDomain.obtainIdFromShort( _id0 );
+        return DomainIdSymbolTable.obtainId( _id0 );
     }
 
     @Override
-    final public short getId0Code() {
+    final public int getId0Code() {
         return _id0;
     }
 
     @Override
     final public String getId1() {
-        return BasicDomain.obtainIdFromShort( _id1 );
+        return DomainIdSymbolTable.obtainId( _id1 );
     }
 
     @Override
-    final public short getId1Code() {
+    final public int getId1Code() {
         return _id1;
     }
 
     @Override
     final public int hashCode() {
-        return calcCode( _id0, _id1 );
+        return ( _id0 << 15 ) + _id1;
     }
 
     @Override
@@ -170,15 +172,18 @@ public class BasicBinaryDomainCombination implements BinaryDomainCombination {
 
     @Override
     final public String toString() {
-        final int code = calcCode( _id0, _id1 );
-        if ( S_POOL.containsKey( code ) ) {
-            return S_POOL.get( code );
+        final long code = calcCode( _id0, _id1 );
+        synchronized ( S_POOL ) {
+            final String s = S_POOL.get( code );
+            if ( s != null ) {
+                return s;
+            }
         }
-        else {
-            final String s = getId0() + SEPARATOR + getId1();
+        final String s = getId0() + SEPARATOR + getId1();
+        synchronized ( S_POOL ) {
             S_POOL.put( code, s );
-            return s;
         }
+        return s;
     }
 
     public static BinaryDomainCombination obtainInstance( final String ids ) {
@@ -193,27 +198,32 @@ public class BasicBinaryDomainCombination implements BinaryDomainCombination {
     }
 
     public static BasicBinaryDomainCombination obtainInstance( final String id0, final String id1 ) {
-        int code;
+        long code;
         if ( id0.toLowerCase().compareTo( id1.toLowerCase() ) < 0 ) {
-            code = calcCode( BasicDomain.obtainIdAsShort( id0 ), BasicDomain.obtainIdAsShort( id1 ) );
-        }
-        else {
-            code = calcCode( BasicDomain.obtainIdAsShort( id1 ), BasicDomain.obtainIdAsShort( id0 ) );
-        }
-        if ( DC_POOL.containsKey( code ) ) {
-            return DC_POOL.get( code );
+            code = calcCode( DomainIdSymbolTable.obtainCode( id0 ), DomainIdSymbolTable.obtainCode( id1 ) );
         }
         else {
-            final BasicBinaryDomainCombination dc = new BasicBinaryDomainCombination( id0, id1 );
-            DC_POOL.put( code, dc );
-            if ( VERBOSE && ( ( DC_POOL.size() % 100 ) == 0 ) ) {
-                System.out.println( " dc pool size: " + DC_POOL.size() );
+            code = calcCode( DomainIdSymbolTable.obtainCode( id1 ), DomainIdSymbolTable.obtainCode( id0 ) );
+        }
+        synchronized ( DC_POOL ) {
+            BasicBinaryDomainCombination dc = DC_POOL.get( code );
+            if ( dc == null ) {
+                dc = new BasicBinaryDomainCombination( id0, id1 );
+                DC_POOL.put( code, dc );
+                if ( VERBOSE && ( ( DC_POOL.size() % 100 ) == 0 ) ) {
+                    System.out.println( " dc pool size: " + DC_POOL.size() );
+                }
             }
             return dc;
         }
     }
 
-    final static int calcCode( final int id0, final int id1 ) {
-        return ( id0 * ( Short.MAX_VALUE + 1 ) ) + id1;
+    /**
+     * Returns the code of the combination of the domains with codes id0 and id1
+     * (in this order): id0 in the upper, id1 in the lower 32 bits.
+     *
+     */
+    public final static long calcCode( final int id0, final int id1 ) {
+        return ( ( long ) id0 << 32 ) | ( id1 & 0xFFFFFFFFL );
     }
 }
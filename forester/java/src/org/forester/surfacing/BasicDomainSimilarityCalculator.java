@@ -34,11 +34,13 @@ import java.util.SortedMap;
 import java.util.SortedSet;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.forester.species.Species;
 import org.forester.util.BasicDescriptiveStatistics;
 import org.forester.util.DescriptiveStatistics;
 import org.forester.util.ForesterUtil;
+import org.forester.util.ParallelUtil;
 
 public class BasicDomainSimilarityCalculator implements DomainSimilarityCalculator {
 
@@ -47,6 +49,7 @@ public class BasicDomainSimilarityCalculator implements DomainSimilarityCalculat
     private final boolean                            _sort_by_species_count_first;
     private final boolean                            _treat_as_binary_comparison;
     private final boolean                            _verbose;
+    private int                                      _number_of_threads;
 
     public BasicDomainSimilarityCalculator( final DomainSimilarity.DomainSimilaritySortField sort,
                                             final boolean sort_by_species_count_first,
@@ -58,6 +61,7 @@ public class BasicDomainSimilarityCalculator implements DomainSimilarityCalculat
         _treat_as_binary_comparison = treat_as_binary_comparison;
         _calc_similarity_score = calc_similarity_score;
         _verbose = verbose;
+        _number_of_threads = 1;
     }
 
     public BasicDomainSimilarityCalculator( final DomainSimilarity.DomainSimilaritySortField sort,
@@ -69,6 +73,7 @@ public class BasicDomainSimilarityCalculator implements DomainSimilarityCalculat
         _treat_as_binary_comparison = treat_as_binary_comparison;
         _calc_similarity_score = calc_similarity_score;
         _verbose = false;
+        _number_of_threads = 1;
     }
 
     @Override
@@ -79,27 +84,87 @@ public class BasicDomainSimilarityCalculator implements DomainSimilarityCalculat
         if ( cdc_list.size() < 2 ) {
             throw new IllegalArgumentException( "attempt to calculate multiple combinable domains similarity for less than two combinale domains collections" );
         }
-        final SortedSet<DomainSimilarity> similarities = new TreeSet<DomainSimilarity>();
         final SortedSet<String> keys = new TreeSet<String>();
         for( final GenomeWideCombinableDomains cdc : cdc_list ) {
             keys.addAll( ( cdc ).getAllCombinableDomainsIds().keySet() );
         }
+        final String[] keys_array = keys.toArray( new String[ keys.size() ] );
+        // Null for ignored domains.
+        final DomainSimilarity[] results = new DomainSimilarity[ keys_array.length ];
         final DecimalFormat pf = new java.text.DecimalFormat( "000000" );
-        int counter = 1;
+        final AtomicInteger counter = new AtomicInteger( 1 );
         if ( _verbose ) {
             System.out.println( keys.size() );
         }
-        for( final String key : keys ) {
+        ParallelUtil.executeRanges( keys_array.length, getNumberOfThreads(), new ParallelUtil.RangeTask<Void>() {
+
+            @Override
+            public Void execute( final int first, final int last ) {
+                calculateSimilarities( pairwise_calculator,
+                                       cdc_list,
+                                       ignore_domains_without_combinations_in_any_genome,
+                                       ignore_domains_specific_to_one_genome,
+                                       keys_array,
+                                       results,
+                                       first,
+                                       last,
+                                       counter,
+                                       pf );
+                return null;
+            }
+        } );
+        if ( _verbose ) {
+            System.out.println();
+        }
+        final SortedSet<DomainSimilarity> similarities = new TreeSet<DomainSimilarity>();
+        for( final DomainSimilarity s : results ) {
+            if ( s != null ) {
+                similarities.add( s );
+            }
+        }
+        return similarities;
+    }
+
+    public boolean isCalcSimilarityScore() {
+        return _calc_similarity_score;
+    }
+
+    /**
+     * Sets the number of threads (default: one); the similarities of
+     * different domains are calculated independently of each other.
+     *
+     * @param number_of_threads
+     *            the number of threads, at least one
+     */
+    public void setNumberOfThreads( final int number_of_threads ) {
+        ParallelUtil.checkNumberOfThreads( number_of_threads );
+        _number_of_threads = number_of_threads;
+    }
+
+    // Calculates results[ from ] to results[ to - 1 ] (null for ignored
+    // domains). Different ranges can be calculated concurrently.
+    private void calculateSimilarities( final PairwiseDomainSimilarityCalculator pairwise_calculator,
+                                        final List<GenomeWideCombinableDomains> cdc_list,
+                                        final boolean ignore_domains_without_combinations_in_any_genome,
+                                        final boolean ignore_domains_specific_to_one_genome,
+                                        final String[] keys,
+                                        final DomainSimilarity[] results,
+                                        final int from,
+                                        final int to,
+                                        final AtomicInteger counter,
+                                        final DecimalFormat pf ) {
+        for( int k = from; k < to; ++k ) {
+            final String key = keys[ k ];
+            final int c = counter.getAndIncrement();
             if ( _verbose ) {
-                ForesterUtil.updateProgress( counter, pf );
+                synchronized ( pf ) {
+                    ForesterUtil.updateProgress( c, pf );
+                }
             }
-            counter++;
             final List<CombinableDomains> same_id_cd_list = new ArrayList<CombinableDomains>( cdc_list.size() );
-            final List<Species> species_with_key_id_domain = new ArrayList<Species>();
             for( final GenomeWideCombinableDomains cdc : cdc_list ) {
                 if ( cdc.contains( key ) ) {
                     same_id_cd_list.add( cdc.get( key ) );
-                    species_with_key_id_domain.add( cdc.getSpecies() );
                 }
             }
             if ( ignore_domains_without_combinations_in_any_genome ) { //TODO: test me..........................................<<<<<<<<<<<<<
@@ -118,7 +183,7 @@ public class BasicDomainSimilarityCalculator implements DomainSimilarityCalculat
                 if ( !ignore_domains_specific_to_one_genome || ( same_id_cd_list.size() > 1 ) ) {
                     final DomainSimilarity s = calculateSimilarity( pairwise_calculator, same_id_cd_list );
                     if ( s != null ) {
-                        similarities.add( s );
+                        results[ k ] = s;
                     }
                     else {
                         throw new RuntimeException( "similarity is null: this should not have happened" );
@@ -129,14 +194,6 @@ public class BasicDomainSimilarityCalculator implements DomainSimilarityCalculat
                 throw new RuntimeException( "this should not have happened" );
             }
         }
-        if ( _verbose ) {
-            System.out.println();
-        }
-        return similarities;
-    }
-
-    public boolean isCalcSimilarityScore() {
-        return _calc_similarity_score;
     }
 
     private DomainSimilarity calculateSimilarity( final PairwiseDomainSimilarityCalculator pairwise_calculator,
@@ -261,6 +318,10 @@ public class BasicDomainSimilarityCalculator implements DomainSimilarityCalculat
         return similarity;
     }
 
+    private int getNumberOfThreads() {
+        return _number_of_threads;
+    }
+
     private boolean isSortBySpeciesCountFirst() {
         return _sort_by_species_count_first;
     }
@@ -18,11 +18,13 @@ import org.forester.go.GoId;
 import org.forester.protein.BinaryDomainCombination;
 import org.forester.protein.BinaryDomainCombination.DomainCombinationType;
 import org.forester.protein.Domain;
+import org.forester.protein.DomainIdSymbolTable;
 import org.forester.protein.Protein;
 import org.forester.species.Species;
 import org.forester.util.BasicDescriptiveStatistics;
 import org.forester.util.DescriptiveStatistics;
 import org.forester.util.ForesterUtil;
+import org.forester.util.LongHashSet;
 
 public class BasicGenomeWideCombinableDomains implements GenomeWideCombinableDomains {
 
@@ -130,6 +132,18 @@ public class BasicGenomeWideCombinableDomains implements GenomeWideCombinableDom
         return domains;
     }
 
+    @Override
+    public LongHashSet getAllDomainIdCodes() {
+        final LongHashSet domains = new LongHashSet( getSize() );
+        for( final CombinableDomains cb : getAllCombinableDomainsIds().values() ) {
+            domains.add( DomainIdSymbolTable.obtainCode( cb.getKeyDomain() ) );
+            for( final String d : cb.getCombinableDomains() ) {
+                domains.add( DomainIdSymbolTable.obtainCode( d ) );
+            }
+        }
+        return domains;
+    }
+
     @Override
     public DomainCombinationType getDomainCombinationType() {
         return _dc_type;
@@ -180,6 +194,17 @@ public class BasicGenomeWideCombinableDomains implements GenomeWideCombinableDom
         return binary_combinations;
     }
 
+    @Override
+    public LongHashSet toBinaryDomainCombinationCodes() {
+        final LongHashSet binary_combinations = new LongHashSet();
+        for( final CombinableDomains cb : getAllCombinableDomainsIds().values() ) {
+            for( final BinaryDomainCombination b : cb.toBinaryDomainCombinations() ) {
+                binary_combinations.add( b.getCode() );
+            }
+        }
+        return binary_combinations;
+    }
+
     @Override
     public String toString() {
         return toStringBuilder( GenomeWideCombinableDomainsSortOrder.ALPHABETICAL_KEY_ID ).toString();
@@ -26,23 +26,21 @@
 
 package org.forester.surfacing;
 
-import java.util.HashMap;
-import java.util.Map;
-
-import org.forester.protein.BasicDomain;
 import org.forester.protein.BinaryDomainCombination;
+import org.forester.protein.DomainIdSymbolTable;
+import org.forester.util.LongObjectHashMap;
 
 public class DirectedBinaryDomainCombination extends BasicBinaryDomainCombination {
 
-    final private static Map<Integer, DirectedBinaryDomainCombination> DDC_POOL = new HashMap<Integer, DirectedBinaryDomainCombination>();
+    final private static LongObjectHashMap<DirectedBinaryDomainCombination> DDC_POOL = new LongObjectHashMap<DirectedBinaryDomainCombination>();
 
     private DirectedBinaryDomainCombination( final String n_terminal, final String c_terminal ) {
         super();
         if ( ( n_terminal == null ) || ( c_terminal == null ) ) {
             throw new IllegalArgumentException( "attempt to create binary domain combination using null" );
         }
-        _id0 = BasicDomain.obtainIdAsShort( n_terminal );
-        _id1 = BasicDomain.obtainIdAsShort( c_terminal );
+        _id0 = DomainIdSymbolTable.obtainCode( n_terminal );
+        _id1 = DomainIdSymbolTable.obtainCode( c_terminal );
     }
 
     public final static BinaryDomainCombination obtainInstance( final String ids ) {
@@ -57,15 +55,16 @@ public class DirectedBinaryDomainCombination extends BasicBinaryDomainCombinatio
     }
 
     public final static DirectedBinaryDomainCombination obtainInstance( final String n_terminal, final String c_terminal ) {
-        final int code = calcCode( BasicDomain.obtainIdAsShort( n_terminal ), BasicDomain.obtainIdAsShort( c_terminal ) );
-        if ( DDC_POOL.containsKey( code ) ) {
-            return DDC_POOL.get( code );
-        }
-        else {
-            final DirectedBinaryDomainCombination dc = new DirectedBinaryDomainCombination( n_terminal, c_terminal );
-            DDC_POOL.put( code, dc );
-            if ( VERBOSE && ( ( DDC_POOL.size() % 100 ) == 0 ) ) {
-                System.out.println( " ddc pool size: " + DDC_POOL.size() );
+        final long code = calcCode( DomainIdSymbolTable.obtainCode( n_terminal ),
+                                    DomainIdSymbolTable.obtainCode( c_terminal ) );
+        synchronized ( DDC_POOL ) {
+            DirectedBinaryDomainCombination dc = DDC_POOL.get( code );
+            if ( dc == null ) {
+                dc = new DirectedBinaryDomainCombination( n_terminal, c_terminal );
+                DDC_POOL.put( code, dc );
+                if ( VERBOSE && ( ( DDC_POOL.size() % 100 ) == 0 ) ) {
+                    System.out.println( " ddc pool size: " + DDC_POOL.size() );
+                }
             }
             return dc;
         }
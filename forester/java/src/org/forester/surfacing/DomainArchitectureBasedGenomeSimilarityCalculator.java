@@ -30,6 +30,8 @@ import java.util.HashSet;
 import java.util.Set;
 
 import org.forester.protein.BinaryDomainCombination;
+import org.forester.protein.DomainIdSymbolTable;
+import org.forester.util.LongHashSet;
 
 public class DomainArchitectureBasedGenomeSimilarityCalculator {
 
@@ -81,12 +83,25 @@ public class DomainArchitectureBasedGenomeSimilarityCalculator {
      * @return shared binary domain combinations based similarity score
      */
     public double calculateSharedBinaryDomainCombinationBasedGenomeSimilarityScore() {
-        final double t = getAllBinaryDomainCombinations().size();
-        final double s = getSharedBinaryDomainCombinations().size();
-        if ( t == 0.0 ) {
-            return MIN_SIMILARITY_SCORE;
+        final LongHashSet bc0 = getCombinableDomainsGenome0().toBinaryDomainCombinationCodes();
+        final LongHashSet bc1 = getCombinableDomainsGenome1().toBinaryDomainCombinationCodes();
+        final LongHashSet ignore = obtainDomainIdCodesToIgnore();
+        int t = 0;
+        int s = 0;
+        for( final long bc : bc0.toArray() ) {
+            if ( ( ignore == null ) || !isToBeIgnored( bc, ignore ) ) {
+                ++t;
+                if ( bc1.contains( bc ) ) {
+                    ++s;
+                }
+            }
+        }
+        for( final long bc : bc1.toArray() ) {
+            if ( !bc0.contains( bc ) && ( ( ignore == null ) || !isToBeIgnored( bc, ignore ) ) ) {
+                ++t;
+            }
         }
-        return ( MAX_SIMILARITY_SCORE - ( ( t - s ) / t ) );
+        return calculateScore( t, s );
     }
 
     /**
@@ -102,12 +117,25 @@ public class DomainArchitectureBasedGenomeSimilarityCalculator {
      * @return shared domains based similarity score
      */
     public double calculateSharedDomainsBasedGenomeSimilarityScore() {
-        final double t = getAllDomains().size();
-        final double s = getSharedDomains().size();
-        if ( t == 0.0 ) {
-            return MIN_SIMILARITY_SCORE;
+        final LongHashSet d0 = getCombinableDomainsGenome0().getAllDomainIdCodes();
+        final LongHashSet d1 = getCombinableDomainsGenome1().getAllDomainIdCodes();
+        final LongHashSet ignore = obtainDomainIdCodesToIgnore();
+        int t = 0;
+        int s = 0;
+        for( final long d : d0.toArray() ) {
+            if ( ( ignore == null ) || !ignore.contains( d ) ) {
+                ++t;
+                if ( d1.contains( d ) ) {
+                    ++s;
+                }
+            }
+        }
+        for( final long d : d1.toArray() ) {
+            if ( !d0.contains( d ) && ( ( ignore == null ) || !ignore.contains( d ) ) ) {
+                ++t;
+            }
         }
-        return ( MAX_SIMILARITY_SCORE - ( ( t - s ) / t ) );
+        return calculateScore( t, s );
     }
 
     public void deleteAllDomainIdsToIgnore() {
@@ -312,6 +340,18 @@ public class DomainArchitectureBasedGenomeSimilarityCalculator {
         return _allow_domains_to_be_ignored;
     }
 
+    // Returns null if no domains are to be ignored.
+    private LongHashSet obtainDomainIdCodesToIgnore() {
+        if ( !isAllowDomainsToBeIgnored() || getDomainIdsToIgnore().isEmpty() ) {
+            return null;
+        }
+        final LongHashSet ignore = new LongHashSet( getDomainIdsToIgnore().size() );
+        for( final String d : getDomainIdsToIgnore() ) {
+            ignore.add( DomainIdSymbolTable.obtainCode( d ) );
+        }
+        return ignore;
+    }
+
     private Set<BinaryDomainCombination> pruneBinaryCombinations( final Set<BinaryDomainCombination> all ) {
         final Set<BinaryDomainCombination> pruned = new HashSet<BinaryDomainCombination>();
         for( final BinaryDomainCombination bc : all ) {
@@ -332,4 +372,17 @@ public class DomainArchitectureBasedGenomeSimilarityCalculator {
         }
         return pruned;
     }
-}
\ No newline at end of file
+
+    // 1 - ( ( t - s ) / t ), for t (distinct) items of which s are shared.
+    private static double calculateScore( final int t, final int s ) {
+        if ( t == 0 ) {
+            return MIN_SIMILARITY_SCORE;
+        }
+        return ( MAX_SIMILARITY_SCORE - ( ( ( double ) t - s ) / t ) );
+    }
+
+    private static boolean isToBeIgnored( final long binary_domain_combination_code, final LongHashSet ignore ) {
+        return ignore.contains( binary_domain_combination_code >>> 32 )
+                || ignore.contains( binary_domain_combination_code & 0xFFFFFFFFL );
+    }
+}
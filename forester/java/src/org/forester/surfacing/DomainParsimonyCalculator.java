@@ -38,6 +38,7 @@ import java.util.TreeSet;
 
 import org.forester.application.surfacing;
 import org.forester.evoinference.matrix.character.BasicCharacterStateMatrix;
+import org.forester.evoinference.matrix.character.BinaryCharacterStateMatrix;
 import org.forester.evoinference.matrix.character.CharacterStateMatrix;
 import org.forester.evoinference.matrix.character.CharacterStateMatrix.BinaryStates;
 import org.forester.evoinference.matrix.character.CharacterStateMatrix.GainLossStates;
@@ -48,9 +49,9 @@ import org.forester.phylogeny.PhylogenyNode;
 import org.forester.phylogeny.data.BinaryCharacters;
 import org.forester.phylogeny.iterators.PhylogenyNodeIterator;
 import org.forester.protein.BinaryDomainCombination;
-import org.forester.protein.BinaryDomainCombination.DomainCombinationType;
 import org.forester.species.Species;
 import org.forester.util.ForesterUtil;
+import org.forester.util.ParallelUtil;
 
 public final class DomainParsimonyCalculator {
 
@@ -60,6 +61,7 @@ public final class DomainParsimonyCalculator {
     private Map<String, Set<String>>                _domain_id_to_secondary_features_map;
     private CharacterStateMatrix<GainLossStates>    _gain_loss_matrix;
     private final List<GenomeWideCombinableDomains> _gwcd_list;
+    private int                                     _number_of_threads        = 1;
     private final Phylogeny                         _phylogeny;
     private SortedSet<String>                       _positive_filter;
     private int                                     _total_gains;
@@ -107,6 +109,7 @@ public final class DomainParsimonyCalculator {
         }
         reset();
         final DolloParsimony dollo = DolloParsimony.createInstance();
+        dollo.setNumberOfThreads( getNumberOfThreads() );
         dollo.setReturnGainLossMatrix( true );
         dollo.setReturnInternalStates( true );
         final CharacterStateMatrix<BinaryStates> states = createMatrixOfSecondaryFeaturePresenceOrAbsence( mapping_results_map );
@@ -307,6 +310,17 @@ public final class DomainParsimonyCalculator {
         return present;
     }
 
+    /**
+     * Sets the number of threads passed on to the Dollo and Fitch parsimony
+     * calculators (default: one).
+     *
+     * @param number_of_threads
+     */
+    public void setNumberOfThreads( final int number_of_threads ) {
+        ParallelUtil.checkNumberOfThreads( number_of_threads );
+        _number_of_threads = number_of_threads;
+    }
+
     int calculateNumberOfBinaryDomainCombination() {
         if ( getGenomeWideCombinableDomainsList().isEmpty() ) {
             throw new IllegalArgumentException( "genome wide combinable domains list is empty" );
@@ -373,6 +387,7 @@ public final class DomainParsimonyCalculator {
     private void executeDolloParsimony( final boolean on_domain_presence ) {
         reset();
         final DolloParsimony dollo = DolloParsimony.createInstance();
+        dollo.setNumberOfThreads( getNumberOfThreads() );
         dollo.setReturnGainLossMatrix( true );
         dollo.setReturnInternalStates( true );
         CharacterStateMatrix<BinaryStates> states = null;
@@ -400,6 +415,7 @@ public final class DomainParsimonyCalculator {
             System.out.println( "   Fitch parsimony: use_last = true" );
         }
         final FitchParsimony<BinaryStates> fitch = new FitchParsimony<BinaryStates>();
+        fitch.setNumberOfThreads( getNumberOfThreads() );
         fitch.setRandomize( randomize );
         if ( randomize ) {
             fitch.setRandomNumberSeed( random_number_seed );
@@ -431,6 +447,7 @@ public final class DomainParsimonyCalculator {
             System.out.println( "   Fitch parsimony: use_last = true" );
         }
         final FitchParsimony<BinaryStates> fitch = new FitchParsimony<BinaryStates>();
+        fitch.setNumberOfThreads( getNumberOfThreads() );
         fitch.setRandomize( randomize );
         if ( randomize ) {
             fitch.setRandomNumberSeed( random_number_seed );
@@ -467,6 +484,10 @@ public final class DomainParsimonyCalculator {
         return _gwcd_list;
     }
 
+    private int getNumberOfThreads() {
+        return _number_of_threads;
+    }
+
     private Phylogeny getPhylogeny() {
         return _phylogeny;
     }
@@ -561,8 +582,8 @@ public final class DomainParsimonyCalculator {
             ++identifier_index;
         }
         final int number_of_characters = all_binary_combinations.size();
-        final CharacterStateMatrix<CharacterStateMatrix.BinaryStates> matrix = new BasicCharacterStateMatrix<CharacterStateMatrix.BinaryStates>( number_of_identifiers,
-                number_of_characters );
+        final CharacterStateMatrix<CharacterStateMatrix.BinaryStates> matrix = new BinaryCharacterStateMatrix( number_of_identifiers,
+                                                                                                       number_of_characters );
         int character_index = 0;
         for( final BinaryDomainCombination bc : all_binary_combinations ) {
             matrix.setCharacter( character_index++, bc.toString() );
@@ -576,23 +597,11 @@ public final class DomainParsimonyCalculator {
             }
             all_identifiers.add( species_id );
             matrix.setIdentifier( identifier_index, species_id );
-            for( int ci = 0; ci < matrix.getNumberOfCharacters(); ++ci ) {
-                BinaryDomainCombination bc = null;
-                if ( gwcd.getDomainCombinationType() == DomainCombinationType.DIRECTED_ADJACTANT ) {
-                    bc = AdjactantDirectedBinaryDomainCombination.obtainInstance( matrix.getCharacter( ci ) );
-                }
-                else if ( gwcd.getDomainCombinationType() == DomainCombinationType.DIRECTED ) {
-                    bc = DirectedBinaryDomainCombination.obtainInstance( matrix.getCharacter( ci ) );
-                }
-                else {
-                    bc = BasicBinaryDomainCombination.obtainInstance( matrix.getCharacter( ci ) );
-                }
-                if ( binary_combinations_per_genome[ identifier_index ].contains( bc ) ) {
-                    matrix.setState( identifier_index, ci, CharacterStateMatrix.BinaryStates.PRESENT );
-                }
-                else {
-                    matrix.setState( identifier_index, ci, CharacterStateMatrix.BinaryStates.ABSENT );
-                }
+            // All states are absent initially.
+            for( final BinaryDomainCombination bc : binary_combinations_per_genome[ identifier_index ] ) {
+                matrix.setState( identifier_index,
+                                 matrix.getCharacterIndex( bc.toString() ),
+                                 CharacterStateMatrix.BinaryStates.PRESENT );
             }
             ++identifier_index;
         }
@@ -624,8 +633,8 @@ public final class DomainParsimonyCalculator {
                 }
             }
         }
-        final CharacterStateMatrix<CharacterStateMatrix.BinaryStates> matrix = new BasicCharacterStateMatrix<CharacterStateMatrix.BinaryStates>( number_of_identifiers,
-                number_of_characters );
+        final CharacterStateMatrix<CharacterStateMatrix.BinaryStates> matrix = new BinaryCharacterStateMatrix( number_of_identifiers,
+                                                                                                       number_of_characters );
         int character_index = 0;
         for( final String id : all_domain_ids ) {
             if ( positive_filter == null ) {
@@ -695,8 +704,8 @@ public final class DomainParsimonyCalculator {
             }
         }
         final int number_of_characters = all_binary_combinations_mapped.size();
-        final CharacterStateMatrix<CharacterStateMatrix.BinaryStates> matrix = new BasicCharacterStateMatrix<CharacterStateMatrix.BinaryStates>( number_of_identifiers,
-                number_of_characters );
+        final CharacterStateMatrix<CharacterStateMatrix.BinaryStates> matrix = new BinaryCharacterStateMatrix( number_of_identifiers,
+                                                                                                       number_of_characters );
         int character_index = 0;
         for( final BinaryDomainCombination bc : all_binary_combinations_mapped ) {
             matrix.setCharacter( character_index++, bc.toString() );
@@ -710,23 +719,11 @@ public final class DomainParsimonyCalculator {
             }
             all_identifiers.add( species_id );
             matrix.setIdentifier( identifier_index, species_id );
-            for( int ci = 0; ci < matrix.getNumberOfCharacters(); ++ci ) {
-                BinaryDomainCombination bc = null;
-                if ( gwcd.getDomainCombinationType() == DomainCombinationType.DIRECTED_ADJACTANT ) {
-                    bc = AdjactantDirectedBinaryDomainCombination.obtainInstance( matrix.getCharacter( ci ) );
-                }
-                else if ( gwcd.getDomainCombinationType() == DomainCombinationType.DIRECTED ) {
-                    bc = DirectedBinaryDomainCombination.obtainInstance( matrix.getCharacter( ci ) );
-                }
-                else {
-                    bc = BasicBinaryDomainCombination.obtainInstance( matrix.getCharacter( ci ) );
-                }
-                if ( binary_combinations_per_genome_mapped[ identifier_index ].contains( bc ) ) {
-                    matrix.setState( identifier_index, ci, CharacterStateMatrix.BinaryStates.PRESENT );
-                }
-                else {
-                    matrix.setState( identifier_index, ci, CharacterStateMatrix.BinaryStates.ABSENT );
-                }
+            // All states are absent initially.
+            for( final BinaryDomainCombination bc : binary_combinations_per_genome_mapped[ identifier_index ] ) {
+                matrix.setState( identifier_index,
+                                 matrix.getCharacterIndex( bc.toString() ),
+                                 CharacterStateMatrix.BinaryStates.PRESENT );
             }
             ++identifier_index;
         }
@@ -776,8 +773,8 @@ public final class DomainParsimonyCalculator {
             }
         }
         final int number_of_characters = all_secondary_features.size();
-        final CharacterStateMatrix<CharacterStateMatrix.BinaryStates> matrix = new BasicCharacterStateMatrix<CharacterStateMatrix.BinaryStates>( number_of_identifiers,
-                number_of_characters );
+        final CharacterStateMatrix<CharacterStateMatrix.BinaryStates> matrix = new BinaryCharacterStateMatrix( number_of_identifiers,
+                                                                                                       number_of_characters );
         int character_index = 0;
         for( final String second_id : all_secondary_features ) {
             matrix.setCharacter( character_index++, second_id );
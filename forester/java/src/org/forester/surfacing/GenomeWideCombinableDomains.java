@@ -34,6 +34,7 @@ import org.forester.protein.BinaryDomainCombination;
 import org.forester.protein.BinaryDomainCombination.DomainCombinationType;
 import org.forester.species.Species;
 import org.forester.util.DescriptiveStatistics;
+import org.forester.util.LongHashSet;
 
 public interface GenomeWideCombinableDomains {
 
@@ -50,6 +51,14 @@ public interface GenomeWideCombinableDomains {
      */
     public SortedSet<String> getAllDomainIds();
 
+    /**
+     * This should return the codes (see DomainIdSymbolTable) of all domains
+     * ids present in the genome.
+     *
+     * @return a set of domain id codes
+     */
+    public LongHashSet getAllDomainIdCodes();
+
     public DomainCombinationType getDomainCombinationType();
 
     /**
@@ -71,6 +80,14 @@ public interface GenomeWideCombinableDomains {
      */
     public SortedSet<BinaryDomainCombination> toBinaryDomainCombinations();
 
+    /**
+     * This should return the codes of all binary domain combinations present
+     * in the genome (see BinaryDomainCombination.getCode()).
+     *
+     * @return a set of binary domain combination codes
+     */
+    public LongHashSet toBinaryDomainCombinationCodes();
+
     public StringBuilder toStringBuilder( GenomeWideCombinableDomainsSortOrder order );
 
     SortedSet<String> getMostPromiscuosDomain();
@@ -31,12 +31,18 @@ import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.Writer;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Random;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.forester.evoinference.matrix.distance.BasicSymmetricalDistanceMatrix;
 import org.forester.evoinference.matrix.distance.DistanceMatrix;
@@ -48,6 +54,7 @@ import org.forester.species.Species;
 import org.forester.surfacing.DomainSimilarityCalculator.Detailedness;
 import org.forester.util.DescriptiveStatistics;
 import org.forester.util.ForesterUtil;
+import org.forester.util.ParallelUtil;
 
 public class PairwiseGenomeComparator {
 
@@ -95,6 +102,70 @@ public class PairwiseGenomeComparator {
                                             final Map<String, Integer> tax_code_to_id_map,
                                             final boolean calc_similarity_scores,
                                             final Phylogeny phy ) {
+        performPairwiseComparisons( html_desc,
+                                    sort_by_species_count_first,
+                                    detailedness,
+                                    ignore_domains_without_combs_in_all_spec,
+                                    ignore_domains_specific_to_one_species,
+                                    domain_similarity_sort_field,
+                                    domain_similarity_print_option,
+                                    scoring,
+                                    domain_id_to_go_ids_map,
+                                    go_id_to_term_map,
+                                    go_namespace_limit,
+                                    species,
+                                    number_of_genomes,
+                                    list_of_genome_wide_combinable_domains,
+                                    pw_calc,
+                                    automated_pairwise_comparison_suffix,
+                                    verbose,
+                                    automated_pairwise_comparison_prefix,
+                                    command_line_prg_name,
+                                    out_dir,
+                                    write_pairwise_comparisons,
+                                    tax_code_to_id_map,
+                                    calc_similarity_scores,
+                                    phy,
+                                    1 );
+    }
+
+    /**
+     * Compares all pairs of genomes, using the given number of threads.
+     * <p>
+     * Pairs are compared (and their pairwise comparison files written) in
+     * parallel, whereas the distance matrices are filled and the verbose
+     * output is printed on the calling thread, in the same order as with one
+     * thread. Results are thus independent of the number of threads.
+     *
+     * @param threads
+     *            the number of threads to use (at least one)
+     */
+    public void performPairwiseComparisons( final StringBuilder html_desc,
+                                            final boolean sort_by_species_count_first,
+                                            final Detailedness detailedness,
+                                            final boolean ignore_domains_without_combs_in_all_spec,
+                                            final boolean ignore_domains_specific_to_one_species,
+                                            final DomainSimilarity.DomainSimilaritySortField domain_similarity_sort_field,
+                                            final DomainSimilarity.PRINT_OPTION domain_similarity_print_option,
+                                            final DomainSimilarity.DomainSimilarityScoring scoring,
+                                            final Map<String, List<GoId>> domain_id_to_go_ids_map,
+                                            final Map<GoId, GoTerm> go_id_to_term_map,
+                                            final GoNameSpace go_namespace_limit,
+                                            final Species[] species,
+                                            final int number_of_genomes,
+                                            final List<GenomeWideCombinableDomains> list_of_genome_wide_combinable_domains,
+                                            final PairwiseDomainSimilarityCalculator pw_calc,
+                                            final String automated_pairwise_comparison_suffix,
+                                            final boolean verbose,
+                                            final String automated_pairwise_comparison_prefix,
+                                            final String command_line_prg_name,
+                                            final File out_dir,
+                                            final boolean write_pairwise_comparisons,
+                                            final Map<String, Integer> tax_code_to_id_map,
+                                            final boolean calc_similarity_scores,
+                                            final Phylogeny phy,
+                                            final int threads ) {
+        ParallelUtil.checkNumberOfThreads( threads );
         init();
         final BasicSymmetricalDistanceMatrix domain_distance_scores_means = new BasicSymmetricalDistanceMatrix( number_of_genomes );
         final BasicSymmetricalDistanceMatrix shared_domains_based_distances = new BasicSymmetricalDistanceMatrix( number_of_genomes );
@@ -110,119 +181,87 @@ public class PairwiseGenomeComparator {
             System.out.println( " | shared-binary-combinations-based]" );
             System.out.println();
         }
+        final List<Callable<PairwiseComparison>> tasks = new ArrayList<Callable<PairwiseComparison>>();
         for( int i = 0; i < number_of_genomes; ++i ) {
-            final String species_i = species[ i ].getSpeciesId();
-            domain_distance_scores_means.setIdentifier( i, species_i );
-            shared_domains_based_distances.setIdentifier( i, species_i );
-            shared_binary_combinations_based_distances.setIdentifier( i, species_i );
-            if ( verbose ) {
-                System.out.println( ( i + 1 ) + "/" + number_of_genomes );
-            }
             for( int j = 0; j < i; ++j ) {
-                if ( ( list_of_genome_wide_combinable_domains.get( i ).getSize() < 1 )
-                        || ( list_of_genome_wide_combinable_domains.get( j ).getSize() < 1 ) ) {
-                    domain_distance_scores_means
-                    .setValue( i, j, DomainArchitectureBasedGenomeSimilarityCalculator.MAX_SIMILARITY_SCORE );
-                    shared_domains_based_distances
-                    .setValue( i, j, DomainArchitectureBasedGenomeSimilarityCalculator.MAX_SIMILARITY_SCORE );
-                    shared_binary_combinations_based_distances
-                    .setValue( i, j, DomainArchitectureBasedGenomeSimilarityCalculator.MAX_SIMILARITY_SCORE );
-                    continue;
-                }
-                final List<GenomeWideCombinableDomains> genome_pair = new ArrayList<GenomeWideCombinableDomains>( 2 );
-                genome_pair.add( list_of_genome_wide_combinable_domains.get( i ) );
-                genome_pair.add( list_of_genome_wide_combinable_domains.get( j ) );
-                DomainSimilarityCalculator.GoAnnotationOutput go_annotation_output = DomainSimilarityCalculator.GoAnnotationOutput.NONE;
-                if ( domain_id_to_go_ids_map != null ) {
-                    go_annotation_output = DomainSimilarityCalculator.GoAnnotationOutput.ALL;
-                }
-                final DomainSimilarityCalculator calc = new BasicDomainSimilarityCalculator( domain_similarity_sort_field,
-                                                                                             sort_by_species_count_first,
-                                                                                             true,
-                                                                                             calc_similarity_scores,
-                                                                                             true );
-                final SortedSet<DomainSimilarity> similarities = calc
-                        .calculateSimilarities( pw_calc,
-                                                genome_pair,
-                                                ignore_domains_without_combs_in_all_spec,
-                                                ignore_domains_specific_to_one_species );
-                SurfacingUtil.decoratePrintableDomainSimilarities( similarities, detailedness );
-                final DescriptiveStatistics stats = SurfacingUtil
-                        .calculateDescriptiveStatisticsForMeanValues( similarities );
-                final String species_j = species[ j ].getSpeciesId();
-                final DomainArchitectureBasedGenomeSimilarityCalculator genome_similarity_calculator = new DomainArchitectureBasedGenomeSimilarityCalculator( list_of_genome_wide_combinable_domains
-                                                                                                                                                              .get( i ),
-                                                                                                                                                              list_of_genome_wide_combinable_domains
-                                                                                                                                                              .get( j ) );
-                genome_similarity_calculator.setAllowDomainsToBeIgnored( false );
-                double dissimilarity_score_mean;
-                if ( stats.getN() < 1 ) {
-                    // No domains in common
-                    dissimilarity_score_mean = 1.0;
-                }
-                else {
-                    dissimilarity_score_mean = 1.0 - stats.arithmeticMean();
-                }
-                final double shared_domains_based_genome_distance = 1.0 - genome_similarity_calculator
-                        .calculateSharedDomainsBasedGenomeSimilarityScore();
-                final double shared_binary_combinations_based_genome_distance = 1.0 - genome_similarity_calculator
-                        .calculateSharedBinaryDomainCombinationBasedGenomeSimilarityScore();
-                domain_distance_scores_means.setValue( i, j, dissimilarity_score_mean );
-                shared_domains_based_distances.setValue( i, j, shared_domains_based_genome_distance );
-                shared_binary_combinations_based_distances.setValue( i,
-                                                                     j,
-                                                                     shared_binary_combinations_based_genome_distance );
-                if ( verbose ) {
-                    System.out.print( species_i + "-" );
-                    System.out.print( species_j + ": " );
-                    System.out.print( ForesterUtil.round( dissimilarity_score_mean, 2 ) );
-                    if ( stats.getN() > 1 ) {
-                        System.out.print( " (" + ForesterUtil.round( stats.sampleStandardDeviation(), 2 ) + ")" );
-                    }
-                    else {
-                        System.out.print( " (n/a)" );
+                final int x = i;
+                final int y = j;
+                tasks.add( new Callable<PairwiseComparison>() {
+
+                    @Override
+                    public PairwiseComparison call() {
+                        return comparePair( html_desc,
+                                            sort_by_species_count_first,
+                                            detailedness,
+                                            ignore_domains_without_combs_in_all_spec,
+                                            ignore_domains_specific_to_one_species,
+                                            domain_similarity_sort_field,
+                                            domain_similarity_print_option,
+                                            scoring,
+                                            species,
+                                            list_of_genome_wide_combinable_domains,
+                                            pw_calc,
+                                            automated_pairwise_comparison_suffix,
+                                            automated_pairwise_comparison_prefix,
+                                            out_dir,
+                                            write_pairwise_comparisons,
+                                            tax_code_to_id_map,
+                                            calc_similarity_scores,
+                                            phy,
+                                            verbose && ( threads == 1 ),
+                                            x,
+                                            y );
                     }
-                    System.out.print( " [" + stats.getN() + "]" );
-                    System.out.print( " | " );
-                    System.out.print( ForesterUtil.round( shared_domains_based_genome_distance, 2 ) );
-                    System.out.print( " | " );
-                    System.out.println( ForesterUtil.round( shared_binary_combinations_based_genome_distance, 2 ) );
+                } );
+            }
+        }
+        final OrderedTasks<PairwiseComparison> ordered_tasks = new OrderedTasks<PairwiseComparison>( tasks, threads );
+        try {
+            for( int i = 0; i < number_of_genomes; ++i ) {
+                final String species_i = species[ i ].getSpeciesId();
+                domain_distance_scores_means.setIdentifier( i, species_i );
+                shared_domains_based_distances.setIdentifier( i, species_i );
+                shared_binary_combinations_based_distances.setIdentifier( i, species_i );
+                if ( verbose ) {
+                    System.out.println( ( i + 1 ) + "/" + number_of_genomes );
                 }
-                String pairwise_similarities_output_file_str = automated_pairwise_comparison_prefix + species_i + "_"
-                        + species_j + automated_pairwise_comparison_suffix;
-                switch ( domain_similarity_print_option ) {
-                    case HTML:
-                        if ( !pairwise_similarities_output_file_str.endsWith( ".html" ) ) {
-                            pairwise_similarities_output_file_str += ".html";
+                for( int j = 0; j < i; ++j ) {
+                    final PairwiseComparison c = ordered_tasks.next();
+                    domain_distance_scores_means.setValue( i, j, c._dissimilarity_score_mean );
+                    shared_domains_based_distances.setValue( i, j, c._shared_domains_based_genome_distance );
+                    shared_binary_combinations_based_distances
+                    .setValue( i, j, c._shared_binary_combinations_based_genome_distance );
+                    if ( c._stats == null ) {
+                        // At least one of the genomes is empty
+                        continue;
+                    }
+                    if ( verbose ) {
+                        System.out.print( species_i + "-" );
+                        System.out.print( species[ j ].getSpeciesId() + ": " );
+                        System.out.print( ForesterUtil.round( c._dissimilarity_score_mean, 2 ) );
+                        if ( c._stats.getN() > 1 ) {
+                            System.out.print( " (" + ForesterUtil.round( c._stats.sampleStandardDeviation(), 2 ) + ")" );
                         }
-                        break;
-                }
-                if ( write_pairwise_comparisons ) {
-                    try {
-                        final Writer writer = new BufferedWriter( new FileWriter( out_dir == null ? pairwise_similarities_output_file_str
-                                : out_dir + ForesterUtil.FILE_SEPARATOR + pairwise_similarities_output_file_str ) );
-                        SurfacingUtil.writeDomainSimilaritiesToFile( html_desc,
-                                                                     new StringBuilder( species_i + "-" + species_j ),
-                                                                     null,
-                                                                     writer,
-                                                                     null,
-                                                                     similarities,
-                                                                     true,
-                                                                     null,
-                                                                     domain_similarity_print_option,
-                                                                     scoring,
-                                                                     false,
-                                                                     tax_code_to_id_map,
-                                                                     phy,
-                                                                     null );
+                        else {
+                            System.out.print( " (n/a)" );
+                        }
+                        System.out.print( " [" + c._stats.getN() + "]" );
+                        System.out.print( " | " );
+                        System.out.print( ForesterUtil.round( c._shared_domains_based_genome_distance, 2 ) );
+                        System.out.print( " | " );
+                        System.out.println( ForesterUtil.round( c._shared_binary_combinations_based_genome_distance,
+                                                                2 ) );
                     }
-                    catch ( final IOException e ) {
+                    if ( c._write_exception != null ) {
                         ForesterUtil.fatalError( command_line_prg_name, "Failed to write similarites to: \""
-                                + pairwise_similarities_output_file_str + "\" [" + e.getMessage() + "]" );
+                                + c._output_file + "\" [" + c._write_exception.getMessage() + "]" );
                     }
                 }
             }
         }
+        finally {
+            ordered_tasks.shutdown();
+        }
         getDomainDistanceScoresMeans().add( domain_distance_scores_means );
         getSharedDomainsBasedDistances().add( shared_domains_based_distances );
         getSharedBinaryCombinationsBasedDistances().add( shared_binary_combinations_based_distances );
@@ -238,6 +277,36 @@ public class PairwiseGenomeComparator {
                                                      final int number_of_resamplings,
                                                      final double jacknife_ratio,
                                                      final long random_seed ) {
+        performPairwiseComparisonsJacknifed( species,
+                                             number_of_genomes,
+                                             list_of_genome_wide_combinable_domains,
+                                             verbose,
+                                             number_of_resamplings,
+                                             jacknife_ratio,
+                                             random_seed,
+                                             1 );
+    }
+
+    /**
+     * Jacknife resampling of the genome distances, using the given number of
+     * threads.
+     * <p>
+     * The domains to ignore are picked for all resamplings beforehand (in the
+     * same order as with one thread), then the rows of all distance matrices
+     * are calculated in parallel. Results are thus independent of the number
+     * of threads.
+     *
+     * @param threads
+     *            the number of threads to use (at least one)
+     */
+    public void performPairwiseComparisonsJacknifed( final Species[] species,
+                                                     final int number_of_genomes,
+                                                     final List<GenomeWideCombinableDomains> list_of_genome_wide_combinable_domains,
+                                                     final boolean verbose,
+                                                     final int number_of_resamplings,
+                                                     final double jacknife_ratio,
+                                                     final long random_seed,
+                                                     final int threads ) {
         init();
         if ( number_of_resamplings < 2 ) {
             throw new IllegalArgumentException( "attempt to perform jacknife resampling with less than 2 resamplings" );
@@ -248,6 +317,7 @@ public class PairwiseGenomeComparator {
         else if ( jacknife_ratio >= 1.0 ) {
             throw new IllegalArgumentException( "attempt to perform jacknife resampling with jacknife ratio 1.0 or more" );
         }
+        ParallelUtil.checkNumberOfThreads( threads );
         final String[] all_unique_domain_ids = getAllUniqueDomainIdAsArray( list_of_genome_wide_combinable_domains );
         if ( verbose ) {
             System.out.println();
@@ -257,37 +327,46 @@ public class PairwiseGenomeComparator {
             System.out.print( "resampling " );
         }
         final Random generator = new Random( random_seed );
+        final List<Callable<double[][]>> tasks = new ArrayList<Callable<double[][]>>();
         for( int r = 0; r < number_of_resamplings; ++r ) {
-            if ( verbose ) {
-                System.out.print( " " + r );
-            }
             final SortedSet<String> domain_ids_to_ignore = randomlyPickDomainIds( all_unique_domain_ids,
                                                                                   jacknife_ratio,
                                                                                   generator );
-            final BasicSymmetricalDistanceMatrix shared_domains_based_distances = new BasicSymmetricalDistanceMatrix( number_of_genomes );
-            final BasicSymmetricalDistanceMatrix shared_binary_combinations_based_distances = new BasicSymmetricalDistanceMatrix( number_of_genomes );
             for( int i = 0; i < number_of_genomes; ++i ) {
-                final String species_i = species[ i ].getSpeciesId();
-                shared_domains_based_distances.setIdentifier( i, species_i );
-                shared_binary_combinations_based_distances.setIdentifier( i, species_i );
-                for( int j = 0; j < i; ++j ) {
-                    final List<GenomeWideCombinableDomains> genome_pair = new ArrayList<GenomeWideCombinableDomains>( 2 );
-                    genome_pair.add( list_of_genome_wide_combinable_domains.get( i ) );
-                    genome_pair.add( list_of_genome_wide_combinable_domains.get( j ) );
-                    final DomainArchitectureBasedGenomeSimilarityCalculator genome_simiarity_calculator = new DomainArchitectureBasedGenomeSimilarityCalculator( list_of_genome_wide_combinable_domains
-                                                                                                                                                                 .get( i ),
-                                                                                                                                                                 list_of_genome_wide_combinable_domains
-                                                                                                                                                                 .get( j ) );
-                    genome_simiarity_calculator.setAllowDomainsToBeIgnored( true );
-                    genome_simiarity_calculator.setDomainIdsToIgnore( domain_ids_to_ignore );
-                    shared_domains_based_distances.setValue( i, j, 1.0 - genome_simiarity_calculator
-                                                             .calculateSharedDomainsBasedGenomeSimilarityScore() );
-                    shared_binary_combinations_based_distances.setValue( i, j, 1.0 - genome_simiarity_calculator
-                                                                         .calculateSharedBinaryDomainCombinationBasedGenomeSimilarityScore() );
+                final int x = i;
+                tasks.add( new Callable<double[][]>() {
+
+                    @Override
+                    public double[][] call() {
+                        return compareRowJacknifed( list_of_genome_wide_combinable_domains, domain_ids_to_ignore, x );
+                    }
+                } );
+            }
+        }
+        final OrderedTasks<double[][]> ordered_tasks = new OrderedTasks<double[][]>( tasks, threads );
+        try {
+            for( int r = 0; r < number_of_resamplings; ++r ) {
+                if ( verbose ) {
+                    System.out.print( " " + r );
+                }
+                final BasicSymmetricalDistanceMatrix shared_domains_based_distances = new BasicSymmetricalDistanceMatrix( number_of_genomes );
+                final BasicSymmetricalDistanceMatrix shared_binary_combinations_based_distances = new BasicSymmetricalDistanceMatrix( number_of_genomes );
+                for( int i = 0; i < number_of_genomes; ++i ) {
+                    final String species_i = species[ i ].getSpeciesId();
+                    shared_domains_based_distances.setIdentifier( i, species_i );
+                    shared_binary_combinations_based_distances.setIdentifier( i, species_i );
+                    final double[][] row = ordered_tasks.next();
+                    for( int j = 0; j < i; ++j ) {
+                        shared_domains_based_distances.setValue( i, j, row[ 0 ][ j ] );
+                        shared_binary_combinations_based_distances.setValue( i, j, row[ 1 ][ j ] );
+                    }
                 }
+                getSharedDomainsBasedDistances().add( shared_domains_based_distances );
+                getSharedBinaryCombinationsBasedDistances().add( shared_binary_combinations_based_distances );
             }
-            getSharedDomainsBasedDistances().add( shared_domains_based_distances );
-            getSharedBinaryCombinationsBasedDistances().add( shared_binary_combinations_based_distances );
+        }
+        finally {
+            ordered_tasks.shutdown();
         }
         if ( verbose ) {
             System.out.println();
@@ -329,4 +408,184 @@ public class PairwiseGenomeComparator {
         }
         return random_domain_ids;
     }
+
+    // Compares genome i with genome j (j < i), and writes the pairwise comparison file.
+    // Failures to write are reported in the result, not thrown.
+    static private PairwiseComparison comparePair( final StringBuilder html_desc,
+                                                   final boolean sort_by_species_count_first,
+                                                   final Detailedness detailedness,
+                                                   final boolean ignore_domains_without_combs_in_all_spec,
+                                                   final boolean ignore_domains_specific_to_one_species,
+                                                   final DomainSimilarity.DomainSimilaritySortField domain_similarity_sort_field,
+                                                   final DomainSimilarity.PRINT_OPTION domain_similarity_print_option,
+                                                   final DomainSimilarity.DomainSimilarityScoring scoring,
+                                                   final Species[] species,
+                                                   final List<GenomeWideCombinableDomains> list_of_genome_wide_combinable_domains,
+                                                   final PairwiseDomainSimilarityCalculator pw_calc,
+                                                   final String automated_pairwise_comparison_suffix,
+                                                   final String automated_pairwise_comparison_prefix,
+                                                   final File out_dir,
+                                                   final boolean write_pairwise_comparisons,
+                                                   final Map<String, Integer> tax_code_to_id_map,
+                                                   final boolean calc_similarity_scores,
+                                                   final Phylogeny phy,
+                                                   final boolean verbose_calc,
+                                                   final int i,
+                                                   final int j ) {
+        final PairwiseComparison c = new PairwiseComparison();
+        if ( ( list_of_genome_wide_combinable_domains.get( i ).getSize() < 1 )
+                || ( list_of_genome_wide_combinable_domains.get( j ).getSize() < 1 ) ) {
+            c._dissimilarity_score_mean = DomainArchitectureBasedGenomeSimilarityCalculator.MAX_SIMILARITY_SCORE;
+            c._shared_domains_based_genome_distance = DomainArchitectureBasedGenomeSimilarityCalculator.MAX_SIMILARITY_SCORE;
+            c._shared_binary_combinations_based_genome_distance = DomainArchitectureBasedGenomeSimilarityCalculator.MAX_SIMILARITY_SCORE;
+            return c;
+        }
+        final List<GenomeWideCombinableDomains> genome_pair = new ArrayList<GenomeWideCombinableDomains>( 2 );
+        genome_pair.add( list_of_genome_wide_combinable_domains.get( i ) );
+        genome_pair.add( list_of_genome_wide_combinable_domains.get( j ) );
+        final DomainSimilarityCalculator calc = new BasicDomainSimilarityCalculator( domain_similarity_sort_field,
+                                                                                     sort_by_species_count_first,
+                                                                                     true,
+                                                                                     calc_similarity_scores,
+                                                                                     verbose_calc );
+        final SortedSet<DomainSimilarity> similarities = calc
+                .calculateSimilarities( pw_calc,
+                                        genome_pair,
+                                        ignore_domains_without_combs_in_all_spec,
+                                        ignore_domains_specific_to_one_species );
+        SurfacingUtil.decoratePrintableDomainSimilarities( similarities, detailedness );
+        c._stats = SurfacingUtil.calculateDescriptiveStatisticsForMeanValues( similarities );
+        final String species_i = species[ i ].getSpeciesId();
+        final String species_j = species[ j ].getSpeciesId();
+        final DomainArchitectureBasedGenomeSimilarityCalculator genome_similarity_calculator = new DomainArchitectureBasedGenomeSimilarityCalculator( list_of_genome_wide_combinable_domains
+                                                                                                                                                      .get( i ),
+                                                                                                                                                      list_of_genome_wide_combinable_domains
+                                                                                                                                                      .get( j ) );
+        genome_similarity_calculator.setAllowDomainsToBeIgnored( false );
+        if ( c._stats.getN() < 1 ) {
+            // No domains in common
+            c._dissimilarity_score_mean = 1.0;
+        }
+        else {
+            c._dissimilarity_score_mean = 1.0 - c._stats.arithmeticMean();
+        }
+        c._shared_domains_based_genome_distance = 1.0 - genome_similarity_calculator
+                .calculateSharedDomainsBasedGenomeSimilarityScore();
+        c._shared_binary_combinations_based_genome_distance = 1.0 - genome_similarity_calculator
+                .calculateSharedBinaryDomainCombinationBasedGenomeSimilarityScore();
+        String pairwise_similarities_output_file_str = automated_pairwise_comparison_prefix + species_i + "_"
+                + species_j + automated_pairwise_comparison_suffix;
+        switch ( domain_similarity_print_option ) {
+            case HTML:
+                if ( !pairwise_similarities_output_file_str.endsWith( ".html" ) ) {
+                    pairwise_similarities_output_file_str += ".html";
+                }
+                break;
+        }
+        if ( write_pairwise_comparisons ) {
+            c._output_file = pairwise_similarities_output_file_str;
+            try {
+                final Writer writer = new BufferedWriter( new FileWriter( out_dir == null ? pairwise_similarities_output_file_str
+                        : out_dir + ForesterUtil.FILE_SEPARATOR + pairwise_similarities_output_file_str ) );
+                SurfacingUtil.writeDomainSimilaritiesToFile( html_desc,
+                                                             new StringBuilder( species_i + "-" + species_j ),
+                                                             null,
+                                                             writer,
+                                                             null,
+                                                             similarities,
+                                                             true,
+                                                             null,
+                                                             domain_similarity_print_option,
+                                                             scoring,
+                                                             false,
+                                                             tax_code_to_id_map,
+                                                             phy,
+                                                             null );
+            }
+            catch ( final IOException e ) {
+                c._write_exception = e;
+            }
+        }
+        return c;
+    }
+
+    // Returns the shared domains based (index 0) and the shared binary combinations
+    // based (index 1) distances of genome i to genomes 0..i-1.
+    static private double[][] compareRowJacknifed( final List<GenomeWideCombinableDomains> list_of_genome_wide_combinable_domains,
+                                                   final SortedSet<String> domain_ids_to_ignore,
+                                                   final int i ) {
+        final double[][] row = new double[ 2 ][ i ];
+        for( int j = 0; j < i; ++j ) {
+            final DomainArchitectureBasedGenomeSimilarityCalculator genome_simiarity_calculator = new DomainArchitectureBasedGenomeSimilarityCalculator( list_of_genome_wide_combinable_domains
+                                                                                                                                                         .get( i ),
+                                                                                                                                                         list_of_genome_wide_combinable_domains
+                                                                                                                                                         .get( j ) );
+            genome_simiarity_calculator.setAllowDomainsToBeIgnored( true );
+            genome_simiarity_calculator.setDomainIdsToIgnore( domain_ids_to_ignore );
+            row[ 0 ][ j ] = 1.0 - genome_simiarity_calculator.calculateSharedDomainsBasedGenomeSimilarityScore();
+            row[ 1 ][ j ] = 1.0 - genome_simiarity_calculator
+                    .calculateSharedBinaryDomainCombinationBasedGenomeSimilarityScore();
+        }
+        return row;
+    }
+
+    /*
+     * Runs tasks on a fixed number of threads (on the calling thread, for one
+     * thread), at most 2 * threads tasks ahead of the one whose result is
+     * taken next. Results are taken in the order of the tasks.
+     */
+    private final static class OrderedTasks<T> {
+
+        private final ExecutorService   _executor;
+        private final Queue<Future<T>>  _pending;
+        private final List<Callable<T>> _tasks;
+        private final int               _threads;
+        private int                     _next;
+
+        OrderedTasks( final List<Callable<T>> tasks, final int threads ) {
+            _tasks = tasks;
+            _threads = threads;
+            _next = 0;
+            _pending = new ArrayDeque<Future<T>>();
+            _executor = threads > 1 ? Executors.newFixedThreadPool( threads ) : null;
+        }
+
+        final T next() {
+            if ( _executor == null ) {
+                try {
+                    return _tasks.get( _next++ ).call();
+                }
+                catch ( final RuntimeException e ) {
+                    throw e;
+                }
+                catch ( final Exception e ) {
+                    throw new RuntimeException( e );
+                }
+            }
+            while ( ( _next < _tasks.size() ) && ( _pending.size() < ( 2 * _threads ) ) ) {
+                _pending.add( _executor.submit( _tasks.get( _next++ ) ) );
+            }
+            return ParallelUtil.getResult( _pending.poll() );
+        }
+
+        final void shutdown() {
+            if ( _executor != null ) {
+                _executor.shutdownNow();
+            }
+        }
+    }
+
+    /*
+     * The result of comparing one pair of genomes (_stats is null if at least one
+     * of the genomes is empty).
+     */
+    private final static class PairwiseComparison {
+
+        DescriptiveStatistics _stats;
+        double                _dissimilarity_score_mean;
+        String                _output_file;
+        double                _shared_binary_combinations_based_genome_distance;
+        double                _shared_domains_based_genome_distance;
+        IOException           _write_exception;
+    }
 }
@@ -26,8 +26,8 @@
 
 package org.forester.surfacing;
 
-import org.forester.protein.BasicDomain;
 import org.forester.protein.Domain;
+import org.forester.protein.DomainIdSymbolTable;
 import org.forester.util.ForesterUtil;
 
 /*
@@ -36,13 +36,13 @@ import org.forester.util.ForesterUtil;
  */
 public class SimpleDomain implements Domain {
 
-    final private short _id;
+    final private int _id;
 
     public SimpleDomain( final String id ) {
         if ( ForesterUtil.isEmpty( id ) ) {
             throw new IllegalArgumentException( "attempt to create protein domain with null or empty id" );
         }
-        _id = BasicDomain.obtainIdAsShort( id );
+        _id = DomainIdSymbolTable.obtainCode( id );
     }
 
     @Override
@@ -55,7 +55,7 @@ public class SimpleDomain implements Domain {
 
     @Override
     public String getDomainId() {
-        return BasicDomain.obtainIdFromShort( _id );
+        return DomainIdSymbolTable.obtainId( _id );
     }
 
     @Override
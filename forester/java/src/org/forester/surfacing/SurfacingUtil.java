@@ -100,8 +100,10 @@ import org.forester.util.TaxonomyColors;
 public final class SurfacingUtil {
 
     public final static Pattern              PATTERN_SP_STYLE_TAXONOMY        = Pattern.compile( "^[A-Z0-9]{3,5}$" );
-    private final static Map<String, String> _TAXCODE_HEXCOLORSTRING_MAP      = new HashMap<String, String>();
-    private final static Map<String, String> _TAXCODE_TAXGROUP_MAP            = new HashMap<String, String>();
+    private final static Map<String, String> _TAXCODE_HEXCOLORSTRING_MAP      = Collections
+            .synchronizedMap( new HashMap<String, String>() );
+    private final static Map<String, String> _TAXCODE_TAXGROUP_MAP            = Collections
+            .synchronizedMap( new HashMap<String, String>() );
     private static final Comparator<Domain>  ASCENDING_CONFIDENCE_VALUE_ORDER = new Comparator<Domain>() {
 
         @Override
@@ -33,6 +33,7 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
@@ -41,6 +42,7 @@ import org.forester.evoinference.matrix.character.BasicCharacterStateMatrix;
 import org.forester.evoinference.matrix.character.CharacterStateMatrix;
 import org.forester.evoinference.matrix.character.CharacterStateMatrix.BinaryStates;
 import org.forester.evoinference.matrix.character.CharacterStateMatrix.GainLossStates;
+import org.forester.evoinference.matrix.distance.DistanceMatrix;
 import org.forester.io.parsers.HmmPfamOutputParser;
 import org.forester.io.parsers.nexus.PaupLogParser;
 import org.forester.io.parsers.nhx.NHXParser;
@@ -93,6 +95,12 @@ public class TestSurfacing {
             return false;
         }
         System.out.println( "OK." );
+        System.out.print( "  Pairwise genome comparator (threads): " );
+        if ( !TestSurfacing.testPairwiseGenomeComparatorThreads() ) {
+            System.out.println( "failed." );
+            return false;
+        }
+        System.out.println( "OK." );
         System.out.print( "  Hmmpfam output parser: " );
         if ( !TestSurfacing.testHmmPfamOutputParser( test_dir ) ) {
             System.out.println( "failed." );
@@ -140,6 +148,12 @@ public class TestSurfacing {
             return false;
         }
         System.out.println( "OK." );
+        System.out.print( "  Basic domain similarity calculator (threads): " );
+        if ( !TestSurfacing.testBasicDomainSimilarityCalculatorThreads() ) {
+            System.out.println( "failed." );
+            return false;
+        }
+        System.out.println( "OK." );
         System.out.print( "  Domain sorting: " );
         if ( !TestSurfacing.testDomainSorting() ) {
             System.out.println( "failed." );
@@ -191,6 +205,37 @@ public class TestSurfacing {
         return true;
     }
 
+    // Genomes SP0, SP1, ... with proteins p0, p1, ..., each with one to four
+    // domains with ids randomly chosen from d0 to d(domain_ids - 1).
+    private static List<GenomeWideCombinableDomains> createRandomGenomes( final long seed,
+                                                                          final int genomes,
+                                                                          final int proteins,
+                                                                          final int domain_ids ) {
+        final Random r = new Random( seed );
+        final List<GenomeWideCombinableDomains> gwcd_list = new ArrayList<GenomeWideCombinableDomains>();
+        for( int g = 0; g < genomes; ++g ) {
+            final List<Protein> protein_list = new ArrayList<Protein>();
+            for( int p = 0; p < proteins; ++p ) {
+                final Protein protein = new BasicProtein( "p" + p, "SP" + g, 0 );
+                final int number_of_domains = 1 + r.nextInt( 4 );
+                for( int d = 0; d < number_of_domains; ++d ) {
+                    protein.addProteinDomain( new BasicDomain( "d" + r.nextInt( domain_ids ),
+                                                               10 * d,
+                                                               ( 10 * d ) + 5,
+                                                               ( short ) 1,
+                                                               ( short ) 1,
+                                                               0.1,
+                                                               -12 ) );
+                }
+                protein_list.add( protein );
+            }
+            gwcd_list.add( BasicGenomeWideCombinableDomains.createInstance( protein_list,
+                                                                            false,
+                                                                            new BasicSpecies( "SP" + g ) ) );
+        }
+        return gwcd_list;
+    }
+
     private static StringBuffer mapToStringBuffer( final Map<PhylogenyNode, CharacterStateMatrix.BinaryStates> map ) {
         final StringBuffer sb = new StringBuffer();
         for( final PhylogenyNode key : map.keySet() ) {
@@ -1220,6 +1265,68 @@ public class TestSurfacing {
         return true;
     }
 
+    private static boolean testBasicDomainSimilarityCalculatorThreads() {
+        try {
+            final List<GenomeWideCombinableDomains> gwcd_list = createRandomGenomes( 7, 5, 60, 50 );
+            final PairwiseDomainSimilarityCalculator[] pw_calcs = {
+                    new CombinationsBasedPairwiseDomainSimilarityCalculator(),
+                    new DomainCountsBasedPairwiseSimilarityCalculator(),
+                    new ProteinCountsBasedPairwiseDomainSimilarityCalculator() };
+            for( final PairwiseDomainSimilarityCalculator pw_calc : pw_calcs ) {
+                final BasicDomainSimilarityCalculator calc1 = new BasicDomainSimilarityCalculator( DomainSimilarity.DomainSimilaritySortField.DOMAIN_ID,
+                                                                                                   false,
+                                                                                                   false,
+                                                                                                   true );
+                final BasicDomainSimilarityCalculator calc4 = new BasicDomainSimilarityCalculator( DomainSimilarity.DomainSimilaritySortField.DOMAIN_ID,
+                                                                                                   false,
+                                                                                                   false,
+                                                                                                   true );
+                calc4.setNumberOfThreads( 4 );
+                final SortedSet<DomainSimilarity> sims1 = calc1.calculateSimilarities( pw_calc, gwcd_list, false, true );
+                final SortedSet<DomainSimilarity> sims4 = calc4.calculateSimilarities( pw_calc, gwcd_list, false, true );
+                if ( sims1.isEmpty() || ( sims1.size() != sims4.size() ) ) {
+                    return false;
+                }
+                final Iterator<DomainSimilarity> it1 = sims1.iterator();
+                final Iterator<DomainSimilarity> it4 = sims4.iterator();
+                while ( it1.hasNext() ) {
+                    final DomainSimilarity s1 = it1.next();
+                    final DomainSimilarity s4 = it4.next();
+                    if ( !s1.getDomainId().equals( s4.getDomainId() ) ) {
+                        return false;
+                    }
+                    if ( ( s1.getN() != s4.getN() ) || ( s1.getMaximalDifference() != s4.getMaximalDifference() )
+                            || ( s1.getMaximalDifferenceInCounts() != s4.getMaximalDifferenceInCounts() ) ) {
+                        return false;
+                    }
+                    if ( ( s1.getMeanSimilarityScore() != s4.getMeanSimilarityScore() )
+                            || ( s1.getMinimalSimilarityScore() != s4.getMinimalSimilarityScore() )
+                            || ( s1.getMaximalSimilarityScore() != s4.getMaximalSimilarityScore() ) ) {
+                        return false;
+                    }
+                    if ( !s1.getSpecies().equals( s4.getSpecies() ) ) {
+                        return false;
+                    }
+                }
+            }
+            try {
+                new BasicDomainSimilarityCalculator( DomainSimilarity.DomainSimilaritySortField.DOMAIN_ID,
+                                                     false,
+                                                     false,
+                                                     true ).setNumberOfThreads( 0 );
+                return false;
+            }
+            catch ( final IllegalArgumentException e ) {
+                // Expected.
+            }
+        }
+        catch ( final Exception e ) {
+            e.printStackTrace( System.out );
+            return false;
+        }
+        return true;
+    }
+
     private static boolean testBinaryDomainCombination() {
         try {
             final BasicBinaryDomainCombination s0 = BasicBinaryDomainCombination.obtainInstance( "a", "a" );
@@ -2542,6 +2649,128 @@ public class TestSurfacing {
         return true;
     }
 
+    private static boolean testPairwiseGenomeComparatorThreads() {
+        try {
+            final int number_of_genomes = 7;
+            final List<GenomeWideCombinableDomains> gwcd_list = createRandomGenomes( 42, number_of_genomes - 1, 40, 30 );
+            // The last genome is empty.
+            gwcd_list.add( BasicGenomeWideCombinableDomains.createInstance( new ArrayList<Protein>(),
+                                                                            false,
+                                                                            new BasicSpecies( "SP"
+                                                                                    + ( number_of_genomes - 1 ) ) ) );
+            final Species[] species = new Species[ number_of_genomes ];
+            for( int g = 0; g < number_of_genomes; ++g ) {
+                species[ g ] = gwcd_list.get( g ).getSpecies();
+            }
+            final PairwiseGenomeComparator[] pwgcs = new PairwiseGenomeComparator[ 2 ];
+            final int[] threads = { 1, 3 };
+            for( int t = 0; t < threads.length; ++t ) {
+                pwgcs[ t ] = new PairwiseGenomeComparator();
+                pwgcs[ t ].performPairwiseComparisons( new StringBuilder(),
+                                                       false,
+                                                       DomainSimilarityCalculator.Detailedness.PUNCTILIOUS,
+                                                       false,
+                                                       false,
+                                                       DomainSimilarity.DomainSimilaritySortField.DOMAIN_ID,
+                                                       DomainSimilarity.PRINT_OPTION.HTML,
+                                                       DomainSimilarity.DomainSimilarityScoring.COMBINATIONS,
+                                                       null,
+                                                       null,
+                                                       null,
+                                                       species,
+                                                       number_of_genomes,
+                                                       gwcd_list,
+                                                       new CombinationsBasedPairwiseDomainSimilarityCalculator(),
+                                                       null,
+                                                       false,
+                                                       null,
+                                                       "test",
+                                                       null,
+                                                       false,
+                                                       null,
+                                                       true,
+                                                       null,
+                                                       threads[ t ] );
+            }
+            if ( !isEqual( pwgcs[ 0 ].getDomainDistanceScoresMeans(), pwgcs[ 1 ].getDomainDistanceScoresMeans() ) ) {
+                return false;
+            }
+            if ( !isEqual( pwgcs[ 0 ].getSharedDomainsBasedDistances(), pwgcs[ 1 ].getSharedDomainsBasedDistances() ) ) {
+                return false;
+            }
+            if ( !isEqual( pwgcs[ 0 ].getSharedBinaryCombinationsBasedDistances(),
+                           pwgcs[ 1 ].getSharedBinaryCombinationsBasedDistances() ) ) {
+                return false;
+            }
+            if ( !isEqual( pwgcs[ 0 ].getSharedDomainsBasedDistances().get( 0 ).getValue( 6, 2 ),
+                           DomainArchitectureBasedGenomeSimilarityCalculator.MAX_SIMILARITY_SCORE ) ) {
+                return false;
+            }
+            for( int t = 0; t < threads.length; ++t ) {
+                pwgcs[ t ] = new PairwiseGenomeComparator();
+                pwgcs[ t ].performPairwiseComparisonsJacknifed( species,
+                                                                number_of_genomes - 1,
+                                                                gwcd_list.subList( 0, number_of_genomes - 1 ),
+                                                                false,
+                                                                5,
+                                                                0.3,
+                                                                7,
+                                                                threads[ t ] );
+            }
+            if ( pwgcs[ 1 ].getSharedDomainsBasedDistances().size() != 5 ) {
+                return false;
+            }
+            if ( !isEqual( pwgcs[ 0 ].getSharedDomainsBasedDistances(), pwgcs[ 1 ].getSharedDomainsBasedDistances() ) ) {
+                return false;
+            }
+            if ( !isEqual( pwgcs[ 0 ].getSharedBinaryCombinationsBasedDistances(),
+                           pwgcs[ 1 ].getSharedBinaryCombinationsBasedDistances() ) ) {
+                return false;
+            }
+            try {
+                new PairwiseGenomeComparator().performPairwiseComparisonsJacknifed( species,
+                                                                                    number_of_genomes,
+                                                                                    gwcd_list,
+                                                                                    false,
+                                                                                    5,
+                                                                                    0.3,
+                                                                                    7,
+                                                                                    0 );
+                return false;
+            }
+            catch ( final IllegalArgumentException e ) {
+                // Expected.
+            }
+        }
+        catch ( final Exception e ) {
+            e.printStackTrace( System.out );
+            return false;
+        }
+        return true;
+    }
+
+    private static boolean isEqual( final List<DistanceMatrix> a, final List<DistanceMatrix> b ) {
+        if ( a.size() != b.size() ) {
+            return false;
+        }
+        for( int m = 0; m < a.size(); ++m ) {
+            if ( a.get( m ).getSize() != b.get( m ).getSize() ) {
+                return false;
+            }
+            for( int i = 0; i < a.get( m ).getSize(); ++i ) {
+                if ( !a.get( m ).getIdentifier( i ).equals( b.get( m ).getIdentifier( i ) ) ) {
+                    return false;
+                }
+                for( int j = 0; j < a.get( m ).getSize(); ++j ) {
+                    if ( a.get( m ).getValue( i, j ) != b.get( m ).getValue( i, j ) ) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
     private static boolean testDomainArchitectureBasedGenomeSimilarityCalculator() {
         try {
             final Domain a = new BasicDomain( "a", 23, 25, ( short ) 1, ( short ) 4, 0.1, -12 );
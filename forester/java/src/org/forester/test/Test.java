@@ -32,18 +32,24 @@ import java.io.StringWriter;
 import java.io.Writer;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.Random;
 import java.util.Set;
 import java.util.SortedSet;
 
 import org.forester.application.support_transfer;
 import org.forester.archaeopteryx.AptxUtil;
+import org.forester.archaeopteryx.NodeLocationIndex;
 import org.forester.archaeopteryx.TreePanelUtil;
 import org.forester.archaeopteryx.webservices.WebserviceUtil;
+import org.forester.datastructures.IndexedMaxPriorityQueue;
 import org.forester.development.DevelopmentTools;
 import org.forester.evoinference.TestPhylogenyReconstruction;
 import org.forester.evoinference.matrix.character.CharacterStateMatrix;
@@ -64,12 +70,15 @@ import org.forester.io.parsers.util.ParserUtils;
 import org.forester.io.writers.PhylogenyWriter;
 import org.forester.io.writers.SequenceWriter;
 import org.forester.msa.BasicMsa;
+import org.forester.msa.ColumnMajorMsa;
 import org.forester.msa.DeleteableMsa;
 import org.forester.msa.Mafft;
 import org.forester.msa.Msa;
 import org.forester.msa.Msa.MSA_FORMAT;
+import org.forester.msa.MsaColumnStatistics;
 import org.forester.msa.MsaInferrer;
 import org.forester.msa.MsaMethods;
+import org.forester.msa.ResampleableMsa;
 import org.forester.pccx.TestPccx;
 import org.forester.phylogeny.Phylogeny;
 import org.forester.phylogeny.PhylogenyBranch;
@@ -98,7 +107,9 @@ import org.forester.phylogeny.factories.PhylogenyFactory;
 import org.forester.phylogeny.iterators.PhylogenyNodeIterator;
 import org.forester.protein.BasicDomain;
 import org.forester.protein.BasicProtein;
+import org.forester.protein.BinaryDomainCombination;
 import org.forester.protein.Domain;
+import org.forester.protein.DomainIdSymbolTable;
 import org.forester.protein.Protein;
 import org.forester.protein.ProteinId;
 import org.forester.rio.TestRIO;
@@ -109,6 +120,8 @@ import org.forester.sequence.BasicSequence;
 import org.forester.sequence.MolecularSequence;
 import org.forester.species.BasicSpecies;
 import org.forester.species.Species;
+import org.forester.surfacing.BasicBinaryDomainCombination;
+import org.forester.surfacing.DirectedBinaryDomainCombination;
 import org.forester.surfacing.TestSurfacing;
 import org.forester.tools.ConfidenceAssessor;
 import org.forester.tools.SupportCount;
@@ -121,6 +134,8 @@ import org.forester.util.DescriptiveStatistics;
 import org.forester.util.ForesterConstants;
 import org.forester.util.ForesterUtil;
 import org.forester.util.GeneralTable;
+import org.forester.util.LongHashSet;
+import org.forester.util.LongObjectHashMap;
 import org.forester.util.SequenceAccessionTools;
 import org.forester.ws.seqdb.SequenceDatabaseEntry;
 import org.forester.ws.seqdb.SequenceDbWsTools;
@@ -280,6 +295,15 @@ public final class Test {
             System.out.println( "failed." );
             failed++;
         }
+        System.out.print( "Hmmscan output parser cache: " );
+        if ( testHmmscanOutputParserCache() ) {
+            System.out.println( "OK." );
+            succeeded++;
+        }
+        else {
+            System.out.println( "failed." );
+            failed++;
+        }
         System.out.print( "Overlap removal: " );
         if ( !org.forester.test.Test.testOverlapRemoval() ) {
             System.out.println( "failed." );
@@ -343,6 +367,15 @@ public final class Test {
             System.out.println( "failed." );
             failed++;
         }
+        System.out.print( "Aptx node location index: " );
+        if ( Test.testNodeLocationIndex() ) {
+            System.out.println( "OK." );
+            succeeded++;
+        }
+        else {
+            System.out.println( "failed." );
+            failed++;
+        }
         System.out.print( "Basic node construction and parsing of NHX (node level): " );
         if ( Test.testNHXNodeParsing() ) {
             System.out.println( "OK." );
@@ -406,6 +439,24 @@ public final class Test {
             System.out.println( "failed." );
             failed++;
         }
+        System.out.print( "Phylogeny writer (streaming): " );
+        if ( Test.testPhylogenyWriterStreaming() ) {
+            System.out.println( "OK." );
+            succeeded++;
+        }
+        else {
+            System.out.println( "failed." );
+            failed++;
+        }
+        System.out.print( "Phylogeny writer (parallel): " );
+        if ( Test.testPhylogenyWriterParallel() ) {
+            System.out.println( "OK." );
+            succeeded++;
+        }
+        else {
+            System.out.println( "failed." );
+            failed++;
+        }
         System.out.print( "Nexus characters parsing: " );
         if ( Test.testNexusCharactersParsing() ) {
             System.out.println( "OK." );
@@ -823,6 +874,15 @@ public final class Test {
             System.out.println( "failed." );
             failed++;
         }
+        System.out.print( "Primitive long collections: " );
+        if ( Test.testLongHashSetAndMap() ) {
+            System.out.println( "OK." );
+            succeeded++;
+        }
+        else {
+            System.out.println( "failed." );
+            failed++;
+        }
         System.out.print( "General table: " );
         if ( Test.testGeneralTable() ) {
             System.out.println( "OK." );
@@ -931,6 +991,33 @@ public final class Test {
             System.out.println( "failed." );
             failed++;
         }
+        System.out.print( "Column major MSA: " );
+        if ( Test.testColumnMajorMsa() ) {
+            System.out.println( "OK." );
+            succeeded++;
+        }
+        else {
+            System.out.println( "failed." );
+            failed++;
+        }
+        System.out.print( "Deleteable MSA gap statistics: " );
+        if ( Test.testDeleteableMsaGapStatistics() ) {
+            System.out.println( "OK." );
+            succeeded++;
+        }
+        else {
+            System.out.println( "failed." );
+            failed++;
+        }
+        System.out.print( "Indexed max priority queue: " );
+        if ( Test.testIndexedMaxPriorityQueue() ) {
+            System.out.println( "OK." );
+            succeeded++;
+        }
+        else {
+            System.out.println( "failed." );
+            failed++;
+        }
         if ( PERFORM_DB_TESTS ) {
             System.out.print( "Uniprot Entry Retrieval: " );
             if ( Test.testUniprotEntryRetrieval() ) {
@@ -1097,6 +1184,15 @@ public final class Test {
             if ( !ForesterUtil.isEngulfed( d6, covered ) ) {
                 return false;
             }
+            final BitSet covered_bits = new BitSet();
+            for( int i = 0; i < covered.size(); ++i ) {
+                covered_bits.set( i, covered.get( i ) );
+            }
+            for( final Domain d : new Domain[] { d0, d1, d2, d3, d4, d5, d6 } ) {
+                if ( ForesterUtil.isEngulfed( d, covered_bits ) != ForesterUtil.isEngulfed( d, covered ) ) {
+                    return false;
+                }
+            }
             final Domain a = new BasicDomain( "a", 0, 10, ( short ) 1, ( short ) 1, 0.1, 1 );
             final Domain b = new BasicDomain( "b", 8, 20, ( short ) 1, ( short ) 1, 0.2, 1 );
             final Domain c = new BasicDomain( "c", 15, 16, ( short ) 1, ( short ) 1, 0.3, 1 );
@@ -1323,6 +1419,15 @@ public final class Test {
             if ( ForesterUtil.calculateOverlap( d4, covered ) != 2 ) {
                 return false;
             }
+            final BitSet covered_bits = new BitSet();
+            for( int i = 0; i < covered.size(); ++i ) {
+                covered_bits.set( i, covered.get( i ) );
+            }
+            for( final Domain d : new Domain[] { d0, d1, d2, d3, d4 } ) {
+                if ( ForesterUtil.calculateOverlap( d, covered_bits ) != ForesterUtil.calculateOverlap( d, covered ) ) {
+                    return false;
+                }
+            }
             final Domain a = new BasicDomain( "a", ( short ) 2, ( short ) 5, ( short ) 1, ( short ) 1, 1, -1 );
             final Domain b = new BasicDomain( "b", ( short ) 2, ( short ) 10, ( short ) 1, ( short ) 1, 0.1, -1 );
             final Protein ab = new BasicProtein( "ab", "varanus", 0 );
@@ -2621,6 +2726,85 @@ public final class Test {
         return true;
     }
 
+    private static boolean testLongHashSetAndMap() {
+        try {
+            final LongHashSet s = new LongHashSet();
+            final Set<Long> ref = new HashSet<Long>();
+            final Random r = new Random( 11 );
+            for( int i = 0; i < 10000; ++i ) {
+                final long v = ( ( long ) r.nextInt( 3000 ) << 32 ) | r.nextInt( 50 );
+                if ( s.add( v ) != ref.add( v ) ) {
+                    return false;
+                }
+            }
+            if ( s.add( 0 ) != ref.add( 0L ) ) {
+                return false;
+            }
+            if ( !s.contains( 0 ) || s.add( 0 ) ) {
+                return false;
+            }
+            if ( s.size() != ref.size() ) {
+                return false;
+            }
+            for( final long v : s.toArray() ) {
+                if ( !ref.contains( v ) ) {
+                    return false;
+                }
+            }
+            for( int i = 0; i < 1000; ++i ) {
+                final long v = r.nextLong();
+                if ( s.contains( v ) != ref.contains( v ) ) {
+                    return false;
+                }
+            }
+            final LongObjectHashMap<String> m = new LongObjectHashMap<String>();
+            for( final long v : s.toArray() ) {
+                if ( m.put( v, String.valueOf( v ) ) != null ) {
+                    return false;
+                }
+            }
+            if ( m.size() != ref.size() ) {
+                return false;
+            }
+            for( final Long v : ref ) {
+                if ( !String.valueOf( v ).equals( m.get( v ) ) ) {
+                    return false;
+                }
+            }
+            if ( !"0".equals( m.put( 0, "zero" ) ) || !"zero".equals( m.get( 0 ) ) || ( m.size() != ref.size() ) ) {
+                return false;
+            }
+            if ( m.get( -1 ) != null ) {
+                return false;
+            }
+            final int a = DomainIdSymbolTable.obtainCode( "symbol_table_test_a" );
+            final int b = DomainIdSymbolTable.obtainCode( "symbol_table_test_b" );
+            if ( ( a == b ) || ( DomainIdSymbolTable.obtainCode( "symbol_table_test_a" ) != a ) ) {
+                return false;
+            }
+            if ( !DomainIdSymbolTable.obtainId( b ).equals( "symbol_table_test_b" ) ) {
+                return false;
+            }
+            final BinaryDomainCombination bc = BasicBinaryDomainCombination.obtainInstance( "symbol_table_test_b",
+                                                                                            "symbol_table_test_a" );
+            if ( bc.getCode() != ( ( ( long ) a << 32 ) | b ) ) {
+                return false;
+            }
+            if ( BasicBinaryDomainCombination.obtainInstance( "symbol_table_test_a", "symbol_table_test_b" ) != bc ) {
+                return false;
+            }
+            if ( DirectedBinaryDomainCombination.obtainInstance( "symbol_table_test_b", "symbol_table_test_a" )
+                    .getCode() != ( ( ( long ) b << 32 ) | a ) ) {
+                return false;
+            }
+        }
+        catch ( final Exception e ) {
+            e.printStackTrace( System.out );
+            return false;
+        }
+        return true;
+    }
+
     private static boolean testBasicTable() {
         try {
             final BasicTable<String> t0 = new BasicTable<String>();
@@ -3354,6 +3538,40 @@ public final class Test {
             if ( ds3.getNumberOfDomains() != 3 ) {
                 return false;
             }
+            final DomainArchitecture ds4 = new DomainArchitecture();
+            ds4.addDomain( new ProteinDomain( "y", 30, 40, 0.2 ) );
+            ds4.addDomain( "x", 10, 20, null, 0.1 );
+            ds4.addDomain( "z", 30, 35, "id_z", 0.3 );
+            ds4.addDomain( new ProteinDomain( "w", 5, 8 ) );
+            ds4.addDomain( "v", 50, 60, null, 0.5 );
+            ds4.setTotalLength( 100 );
+            if ( !ds4.asSimpleText().toString().equals( "w~x~y~z~v" ) ) {
+                return false;
+            }
+            if ( ( ds4.getDomainFrom( 3 ) != 30 ) || ( ds4.getDomainTo( 3 ) != 35 )
+                    || !ds4.getDomain( 3 ).getId().equals( "id_z" ) || ( ds4.getDomainConfidence( 1 ) != 0.1 ) ) {
+                return false;
+            }
+            if ( ( ds4.getDomains().size() != 5 ) || !ds4.getDomains().get( ds4.getDomains().firstKey() ).getName()
+                    .equals( "w" ) ) {
+                return false;
+            }
+            final DomainArchitecture ds5 = ( DomainArchitecture ) ds4.copy();
+            ds5.addDomain( "u", 1, 2, null, 0.1 );
+            if ( ( ds4.getNumberOfDomains() != 5 ) || !ds5.getDomainName( 0 ).equals( "u" ) ) {
+                return false;
+            }
+            final DomainArchitecture ds6 = new DomainArchitecture( ds4.toNHX().toString().substring( 4 ) );
+            if ( !ds6.isEqual( ds4 ) || ( ds6.getTotalLength() != 100 ) ) {
+                return false;
+            }
+            try {
+                new DomainArchitecture( "120>30>40>0.9>b>50>60" );
+                return false;
+            }
+            catch ( final IllegalArgumentException e ) {
+                // Expected.
+            }
             // Event
             // -----
             final Event e1 = new Event( Event.EventType.fusion );
@@ -5880,6 +6098,114 @@ public final class Test {
         return true;
     }
 
+    private static boolean testHmmscanOutputParserCache() {
+        final String test_dir = Test.PATH_TO_TEST_DATA;
+        File cache_dir = null;
+        try {
+            cache_dir = File.createTempFile( "forester_hmmscan_cache", "" );
+            if ( !cache_dir.delete() || !cache_dir.mkdir() ) {
+                return false;
+            }
+            final File input = new File( test_dir + ForesterUtil.getFileSeparator() + "hmmscan30b3_output_2" );
+            final HmmscanPerDomainTableParser parser0 = new HmmscanPerDomainTableParser( input,
+                                                                                         "MONBR",
+                                                                                         INDIVIDUAL_SCORE_CUTOFF.NONE );
+            final List<Protein> proteins0 = parser0.parse();
+            final HmmscanPerDomainTableParser parser1 = new HmmscanPerDomainTableParser( input,
+                                                                                         "MONBR",
+                                                                                         INDIVIDUAL_SCORE_CUTOFF.NONE );
+            parser1.setCacheDirectory( cache_dir );
+            parser1.parse();
+            if ( parser1.isLoadedFromCache() ) {
+                return false;
+            }
+            final HmmscanPerDomainTableParser parser2 = new HmmscanPerDomainTableParser( input,
+                                                                                         "MONBR",
+                                                                                         INDIVIDUAL_SCORE_CUTOFF.NONE );
+            parser2.setCacheDirectory( cache_dir );
+            final List<Protein> proteins2 = parser2.parse();
+            if ( !parser2.isLoadedFromCache() ) {
+                return false;
+            }
+            if ( ( parser2.getProteinsEncountered() != 4 ) || ( parser2.getDomainsEncountered() != 69 )
+                    || ( parser2.getProteinsStored() != parser0.getProteinsStored() )
+                    || ( parser2.getDomainsStored() != parser0.getDomainsStored() )
+                    || !parser2.getDomainsStoredSet().equals( parser0.getDomainsStoredSet() ) ) {
+                return false;
+            }
+            if ( proteins2.size() != proteins0.size() ) {
+                return false;
+            }
+            for( int i = 0; i < proteins0.size(); ++i ) {
+                final Protein a = proteins0.get( i );
+                final Protein b = proteins2.get( i );
+                if ( !a.getProteinId().equals( b.getProteinId() ) || ( a.getLength() != b.getLength() )
+                        || !a.getSpecies().equals( b.getSpecies() )
+                        || ( a.getNumberOfProteinDomains() != b.getNumberOfProteinDomains() ) ) {
+                    return false;
+                }
+                for( int j = 0; j < a.getNumberOfProteinDomains(); ++j ) {
+                    final Domain da = a.getProteinDomain( j );
+                    final Domain db = b.getProteinDomain( j );
+                    if ( !da.getDomainId().equals( db.getDomainId() ) || ( da.getFrom() != db.getFrom() )
+                            || ( da.getTo() != db.getTo() ) || ( da.getNumber() != db.getNumber() )
+                            || ( da.getTotalCount() != db.getTotalCount() )
+                            || !Test.isEqual( da.getPerDomainEvalue(), db.getPerDomainEvalue() )
+                            || !Test.isEqual( da.getPerDomainScore(), db.getPerDomainScore() ) ) {
+                        return false;
+                    }
+                }
+            }
+            // Different settings must not use the cached result.
+            final HmmscanPerDomainTableParser parser3 = new HmmscanPerDomainTableParser( input,
+                                                                                         "MONBR",
+                                                                                         INDIVIDUAL_SCORE_CUTOFF.NONE );
+            parser3.setCacheDirectory( cache_dir );
+            parser3.setIgnoreDufs( true );
+            parser3.parse();
+            if ( parser3.isLoadedFromCache() ) {
+                return false;
+            }
+            // Failing to write the cache file must not fail the parse.
+            final File[] cache_files = cache_dir.listFiles();
+            if ( ( cache_files == null ) || ( cache_files.length != 1 ) || !cache_files[ 0 ].delete() ) {
+                return false;
+            }
+            final File blocking_dir = new File( cache_files[ 0 ].getPath() + ".tmp" );
+            if ( !blocking_dir.mkdir() ) {
+                return false;
+            }
+            final HmmscanPerDomainTableParser parser4 = new HmmscanPerDomainTableParser( input,
+                                                                                         "MONBR",
+                                                                                         INDIVIDUAL_SCORE_CUTOFF.NONE );
+            parser4.setCacheDirectory( cache_dir );
+            final List<Protein> proteins4 = parser4.parse();
+            if ( parser4.isLoadedFromCache() || ( proteins4.size() != proteins0.size() )
+                    || ( parser4.getDomainsStored() != parser0.getDomainsStored() ) ) {
+                return false;
+            }
+            if ( !blocking_dir.delete() || cache_files[ 0 ].exists() ) {
+                return false;
+            }
+        }
+        catch ( final Exception e ) {
+            e.printStackTrace( System.out );
+            return false;
+        }
+        finally {
+            if ( cache_dir != null ) {
+                final File[] files = cache_dir.listFiles();
+                if ( files != null ) {
+                    for( final File f : files ) {
+                        f.delete();
+                    }
+                }
+                cache_dir.delete();
+            }
+        }
+        return true;
+    }
+
     private static boolean testLastExternalNodeMethods() {
         try {
             final PhylogenyFactory factory = ParserBasedPhylogenyFactory.getInstance();
@@ -6434,6 +6760,238 @@ public final class Test {
         return true;
     }
 
+    private static boolean testColumnMajorMsa() {
+        try {
+            final Msa msa = GeneralMsaParser.parse( new FileInputStream( PATH_TO_TEST_DATA + "bcl.aln" ) );
+            final ColumnMajorMsa cmsa = ColumnMajorMsa.createInstance( msa );
+            if ( ( cmsa.getNumberOfSequences() != msa.getNumberOfSequences() )
+                    || ( cmsa.getLength() != msa.getLength() ) ) {
+                return false;
+            }
+            for( int row = 0; row < msa.getNumberOfSequences(); ++row ) {
+                if ( !cmsa.getIdentifier( row ).equals( msa.getIdentifier( row ) ) ) {
+                    return false;
+                }
+                if ( !cmsa.getSequence( row ).getMolecularSequenceAsString()
+                        .equals( msa.getSequence( row ).getMolecularSequenceAsString() ) ) {
+                    return false;
+                }
+            }
+            if ( !isEqual( MsaMethods.calcGapRatio( cmsa ), MsaMethods.calcGapRatio( msa ) ) ) {
+                return false;
+            }
+            for( final int k : new int[] { 6, 7, 20, 21 } ) {
+                if ( !isEqual( MsaMethods.calcNormalizedShannonsEntropy( k, cmsa ),
+                               MsaMethods.calcNormalizedShannonsEntropy( k, msa ) ) ) {
+                    return false;
+                }
+                final MsaColumnStatistics stats = MsaMethods.calculateColumnStatistics( k, cmsa );
+                if ( ( stats.getK() != k ) || ( stats.getLength() != msa.getLength() ) ) {
+                    return false;
+                }
+                for( int col = 0; col < msa.getLength(); ++col ) {
+                    if ( stats.getGapCount( col ) != MsaMethods.calcGapSumPerColumn( msa, col ) ) {
+                        return false;
+                    }
+                    if ( !isEqual( stats.getIdentityRatio( col ), MsaMethods.calculateIdentityRatio( msa, col ) ) ) {
+                        return false;
+                    }
+                    if ( !isEqual( stats.getNormalizedShannonsEntropy( col ),
+                                   MsaMethods.calcNormalizedShannonsEntropy( k, msa, col ) ) ) {
+                        return false;
+                    }
+                }
+            }
+            for( int col = 0; col < msa.getLength(); ++col ) {
+                if ( MsaMethods.calcGapSumPerColumn( cmsa, col ) != MsaMethods.calcGapSumPerColumn( msa, col ) ) {
+                    return false;
+                }
+                if ( !isEqual( MsaMethods.calculateIdentityRatio( cmsa, col ),
+                               MsaMethods.calculateIdentityRatio( msa, col ) ) ) {
+                    return false;
+                }
+                if ( !MsaMethods.calculateResidueDestributionPerColumn( cmsa, col )
+                        .equals( MsaMethods.calculateResidueDestributionPerColumn( msa, col ) ) ) {
+                    return false;
+                }
+                if ( !cmsa.getColumnAt( col ).equals( msa.getColumnAt( col ) ) ) {
+                    return false;
+                }
+            }
+            final ResampleableMsa rmsa = new ResampleableMsa( cmsa );
+            final int[] positions = new int[ cmsa.getLength() ];
+            for( int i = 0; i < positions.length; ++i ) {
+                positions[ i ] = positions.length - 1 - i;
+            }
+            rmsa.resample( positions );
+            if ( rmsa.getResidueAt( 3, 0 ) != msa.getResidueAt( 3, msa.getLength() - 1 ) ) {
+                return false;
+            }
+            final DeleteableMsa dmsa = DeleteableMsa.createInstance( ColumnMajorMsa.createInstance( msa ) );
+            final String id = msa.getIdentifier( 2 );
+            dmsa.deleteRow( msa.getIdentifier( 0 ), false );
+            dmsa.deleteRow( msa.getIdentifier( 1 ), false );
+            dmsa.deleteGapOnlyColumns();
+            if ( !dmsa.getIdentifier( 0 ).equals( id ) ) {
+                return false;
+            }
+            if ( !isGapStatisticsEqual( dmsa ) ) {
+                return false;
+            }
+            dmsa.setResidueAt( 0, 0, '-' );
+            if ( !dmsa.isGapAt( 0, 0 ) || !isGapStatisticsEqual( dmsa ) ) {
+                return false;
+            }
+            try {
+                cmsa.setResidueAt( 0, 0, '\u00C4' );
+                return false;
+            }
+            catch ( final IllegalArgumentException e ) {
+                // Expected.
+            }
+        }
+        catch ( final Exception e ) {
+            e.printStackTrace( System.out );
+            return false;
+        }
+        return true;
+    }
+
+    private static boolean testDeleteableMsaGapStatistics() {
+        try {
+            final List<MolecularSequence> l = new ArrayList<MolecularSequence>();
+            l.add( BasicSequence.createAaSequence( "a", "A--AA-A-" ) );
+            l.add( BasicSequence.createAaSequence( "b", "-B-BBB--" ) );
+            l.add( BasicSequence.createAaSequence( "c", "C-C---CC" ) );
+            l.add( BasicSequence.createAaSequence( "d", "--D-D---" ) );
+            l.add( BasicSequence.createAaSequence( "e", "EE--EE-E" ) );
+            l.add( BasicSequence.createAaSequence( "f", "---F---F" ) );
+            final DeleteableMsa dmsa = DeleteableMsa.createInstance( l );
+            if ( !isGapStatisticsEqual( dmsa ) ) {
+                return false;
+            }
+            dmsa.deleteRow( "c", false );
+            if ( !isGapStatisticsEqual( dmsa ) ) {
+                return false;
+            }
+            dmsa.setResidueAt( 0, 1, 'x' );
+            dmsa.setResidueAt( 1, 0, '-' );
+            dmsa.setResidueAt( 3, 7, '-' );
+            if ( !isGapStatisticsEqual( dmsa ) ) {
+                return false;
+            }
+            dmsa.deleteGapOnlyColumns();
+            if ( !isGapStatisticsEqual( dmsa ) ) {
+                return false;
+            }
+            dmsa.setIdentifier( 2, "new_d" );
+            if ( dmsa.getRowIndex( "new_d" ) != 2 ) {
+                return false;
+            }
+            if ( dmsa.getRowIndex( "d" ) != -1 ) {
+                return false;
+            }
+            dmsa.deleteRow( "new_d", true );
+            dmsa.deleteRow( "a", false );
+            dmsa.deleteGapColumns( 0.5 );
+            if ( !isGapStatisticsEqual( dmsa ) ) {
+                return false;
+            }
+            if ( dmsa.getRowIndex( "f" ) != 2 ) {
+                return false;
+            }
+        }
+        catch ( final Exception e ) {
+            e.printStackTrace( System.out );
+            return false;
+        }
+        return true;
+    }
+
+    private static boolean isGapStatisticsEqual( final DeleteableMsa dmsa ) {
+        final Msa msa = BasicMsa.createInstance( dmsa.asSequenceList() );
+        if ( !isEqual( MsaMethods.calcGapRatio( dmsa ), MsaMethods.calcGapRatio( msa ) ) ) {
+            return false;
+        }
+        if ( !Arrays.equals( MsaMethods.calcNumberOfGapsInMsa( dmsa ), MsaMethods.calcNumberOfGapsInMsa( msa ) ) ) {
+            return false;
+        }
+        final double[] gappiness = dmsa.calcGappiness();
+        for( int col = 0; col < msa.getLength(); ++col ) {
+            final int gaps = MsaMethods.calcGapSumPerColumn( msa, col );
+            if ( ( dmsa.getGapCountAtColumn( col ) != gaps )
+                    || ( dmsa.isAllGap( col ) != ( gaps == msa.getNumberOfSequences() ) )
+                    || !isEqual( gappiness[ col ], ( double ) gaps / msa.getNumberOfSequences() ) ) {
+                return false;
+            }
+        }
+        for( int row = 0; row < msa.getNumberOfSequences(); ++row ) {
+            int gaps = 0;
+            for( int col = 0; col < msa.getLength(); ++col ) {
+                if ( msa.isGapAt( row, col ) ) {
+                    ++gaps;
+                }
+            }
+            if ( dmsa.getGapCountAtRow( row ) != gaps ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean testIndexedMaxPriorityQueue() {
+        try {
+            final IndexedMaxPriorityQueue q = new IndexedMaxPriorityQueue( 6 );
+            q.insert( 3, 1.0 );
+            q.insert( 0, 5.0 );
+            q.insert( 5, 2.0 );
+            q.insert( 1, 5.0 );
+            q.insert( 4, 0.5 );
+            if ( q.size() != 5 ) {
+                return false;
+            }
+            if ( q.contains( 2 ) || !q.contains( 4 ) ) {
+                return false;
+            }
+            if ( q.peek() != 0 ) {
+                return false;
+            }
+            q.setPriority( 0, 1.5 );
+            q.setPriority( 4, 3.0 );
+            q.remove( 5 );
+            if ( q.poll() != 1 ) {
+                return false;
+            }
+            if ( q.poll() != 4 ) {
+                return false;
+            }
+            if ( !isEqual( q.getPriority( 0 ), 1.5 ) ) {
+                return false;
+            }
+            if ( q.poll() != 0 ) {
+                return false;
+            }
+            if ( q.poll() != 3 ) {
+                return false;
+            }
+            if ( !q.isEmpty() ) {
+                return false;
+            }
+            try {
+                q.peek();
+                return false;
+            }
+            catch ( final NoSuchElementException e ) {
+                // Expected.
+            }
+        }
+        catch ( final Exception e ) {
+            e.printStackTrace( System.out );
+            return false;
+        }
+        return true;
+    }
+
     private static boolean testNextNodeWithCollapsing() {
         try {
             final PhylogenyFactory factory = ParserBasedPhylogenyFactory.getInstance();
@@ -8123,6 +8681,73 @@ public final class Test {
         return true;
     }
 
+    // The node found by scanning the phylogeny in postorder (as done by TreePanel before).
+    private static PhylogenyNode findNodeByScanning( final Phylogeny p, final int h, final int x, final int y ) {
+        for( final PhylogenyNodeIterator iter = p.iteratorPostorder(); iter.hasNext(); ) {
+            final PhylogenyNode node = iter.next();
+            if ( ( p.isRooted() || !node.isRoot() || ( node.getNumberOfDescendants() > 2 ) )
+                    && ( ( node.getXcoord() - h ) <= x ) && ( ( node.getXcoord() + h ) >= x )
+                    && ( ( node.getYcoord() - h ) <= y ) && ( ( node.getYcoord() + h ) >= y ) ) {
+                return node;
+            }
+        }
+        return null;
+    }
+
+    private static boolean testNodeLocationIndex() {
+        try {
+            final StringBuilder sb = new StringBuilder( "(" );
+            for( int i = 0; i < 100; ++i ) {
+                sb.append( i > 0 ? "," : "" ).append( "((a" + i + ",b" + i + "),c" + i + ")" );
+            }
+            sb.append( ")" );
+            final Phylogeny p = ParserBasedPhylogenyFactory.getInstance().create( sb.toString(), new NHXParser() )[ 0 ];
+            final Random r = new Random( 42 );
+            for( final PhylogenyNodeIterator iter = p.iteratorPreorder(); iter.hasNext(); ) {
+                final PhylogenyNode node = iter.next();
+                node.setXcoord( ( r.nextFloat() * 300 ) - 50 );
+                node.setYcoord( r.nextInt( 250 ) + 0.5f );
+            }
+            for( int t = 0; t < 2; ++t ) {
+                p.setRooted( t == 0 );
+                for( final int h : new int[] { 0, 3, 7 } ) {
+                    final NodeLocationIndex index = NodeLocationIndex.createInstance( p, h );
+                    for( int i = 0; i < 5000; ++i ) {
+                        final int x = r.nextInt( 320 ) - 60;
+                        final int y = r.nextInt( 270 ) - 10;
+                        if ( index.findNode( x, y ) != findNodeByScanning( p, h, x, y ) ) {
+                            return false;
+                        }
+                    }
+                    if ( !index.isApplicable( p, h ) || index.isApplicable( p, h + 1 ) ) {
+                        return false;
+                    }
+                }
+            }
+            final NodeLocationIndex index = NodeLocationIndex.createInstance( p, 5 );
+            p.setRooted( true );
+            if ( index.isApplicable( p, 5 ) ) {
+                return false;
+            }
+            if ( !index.isCoordinatesUnchanged() ) {
+                return false;
+            }
+            final PhylogenyNode n = p.getNode( "b7" );
+            n.setYcoord( n.getYcoord() + 1 );
+            if ( index.isCoordinatesUnchanged() ) {
+                return false;
+            }
+            if ( NodeLocationIndex.createInstance( new Phylogeny(), 5 ).findNode( 0, 0 ) != null ) {
+                return false;
+            }
+        }
+        catch ( final Exception e ) {
+            e.printStackTrace( System.out );
+            return false;
+        }
+        return true;
+    }
+
     private static boolean testNHParsing() {
         try {
             final PhylogenyFactory factory = ParserBasedPhylogenyFactory.getInstance();
@@ -9995,6 +10620,132 @@ public final class Test {
         return true;
     }
 
+    private static boolean testPhylogenyWriterParallel() {
+        try {
+            final PhylogenyFactory factory = ParserBasedPhylogenyFactory.getInstance();
+            final List<Phylogeny> trees = new ArrayList<Phylogeny>();
+            for( int i = 0; i < 60; ++i ) {
+                trees.add( factory.create( "((A" + i + ":0." + i + ",B:2)[&&NHX:B=" + i + "." + ( i % 7 )
+                                                   + "],(C:4,(D:5,E" + i + ":6):7[&&NHX:B=" + ( 100 - i ) + "]):8)r" + i,
+                                           new NHXParser() )[ 0 ] );
+            }
+            final Phylogeny[] trees_array = trees.toArray( new Phylogeny[ trees.size() ] );
+            final PhylogenyWriter w1 = new PhylogenyWriter();
+            final PhylogenyWriter w4 = new PhylogenyWriter();
+            w4.setNumberOfThreads( 4 );
+            final StringWriter s1 = new StringWriter();
+            final StringWriter s4 = new StringWriter();
+            w1.toPhyloXML( s1, trees, 0, ForesterUtil.LINE_SEPARATOR );
+            w4.toPhyloXML( s4, trees, 0, ForesterUtil.LINE_SEPARATOR );
+            if ( !s1.toString().equals( s4.toString() ) ) {
+                return false;
+            }
+            if ( s1.toString().indexOf( "<name>r59</name>" ) < s1.toString().indexOf( "<name>r58</name>" ) ) {
+                return false;
+            }
+            final StringWriter s1a = new StringWriter();
+            final StringWriter s4a = new StringWriter();
+            w1.toPhyloXML( s1a, trees_array, 0, "" );
+            w4.toPhyloXML( s4a, trees_array, 0, "" );
+            if ( !s1a.toString().equals( s4a.toString() ) ) {
+                return false;
+            }
+            final File f1 = File.createTempFile( "forester_test_", ".nh" );
+            final File f4 = File.createTempFile( "forester_test_", ".nh" );
+            f1.delete();
+            f4.delete();
+            f1.deleteOnExit();
+            f4.deleteOnExit();
+            w1.toNewHampshireX( trees_array, f1, ForesterUtil.LINE_SEPARATOR );
+            w4.toNewHampshireX( trees_array, f4, ForesterUtil.LINE_SEPARATOR );
+            final String nhx1 = ForesterUtil.file2list( f1 ).toString();
+            final String nhx4 = ForesterUtil.file2list( f4 ).toString();
+            f1.delete();
+            f4.delete();
+            if ( !nhx1.equals( nhx4 ) || ( nhx1.indexOf( "B=59.3" ) < 0 ) ) {
+                return false;
+            }
+        }
+        catch ( final Exception e ) {
+            e.printStackTrace( System.out );
+            return false;
+        }
+        return true;
+    }
+
+    private static boolean testPhylogenyWriterStreaming() {
+        try {
+            final PhylogenyFactory factory = ParserBasedPhylogenyFactory.getInstance();
+            final Phylogeny p0 = factory
+                    .create( "((A:1[&&NHX:S=HUMAN],B:2)ab:3[&&NHX:B=90],(C:4,(D:5,E:6)de:7[&&NHX:D=Y])cde:8)r",
+                             new NHXParser() )[ 0 ];
+            final PhylogenyWriter w = new PhylogenyWriter();
+            StringWriter sw = new StringWriter();
+            w.toNewHampshire( sw, p0, true );
+            if ( !sw.toString().equals( p0.toNewHampshire() ) ) {
+                return false;
+            }
+            if ( !sw.toString().equals( "((A:1.0,B:2.0)ab:3.0,(C:4.0,(D:5.0,E:6.0)de:7.0)cde:8.0)r;" ) ) {
+                return false;
+            }
+            sw = new StringWriter();
+            w.toNewHampshireX( sw, p0 );
+            if ( !sw.toString().equals( p0.toNewHampshireX() ) ) {
+                return false;
+            }
+            sw = new StringWriter();
+            w.toNexus( sw, p0, NH_CONVERSION_SUPPORT_VALUE_STYLE.NONE );
+            if ( !sw.toString().equals( p0.toNexus() ) ) {
+                return false;
+            }
+            sw = new StringWriter();
+            w.toPhyloXML( sw, p0, 0 );
+            if ( !sw.toString().equals( p0.toPhyloXML( 0 ) ) ) {
+                return false;
+            }
+            // Deep tree, indentation must grow with depth.
+            final int n = 300;
+            final StringBuilder nh = new StringBuilder();
+            for( int i = 1; i < n; ++i ) {
+                nh.append( '(' );
+            }
+            nh.append( "a0" );
+            for( int i = 1; i < n; ++i ) {
+                nh.append( ",a" + i + ")" );
+            }
+            final Phylogeny p1 = factory.create( nh.toString(), new NHXParser() )[ 0 ];
+            final String x = p1.toPhyloXML( 0 );
+            final String ind = ForesterUtil.pad( "", 2 * n, ' ', true ).toString();
+            if ( x.indexOf( ForesterUtil.LINE_SEPARATOR + ind + "<clade>" + ForesterUtil.LINE_SEPARATOR + ind
+                    + "  <name>a0</name>" ) < 0 ) {
+                return false;
+            }
+            if ( x.indexOf( ForesterUtil.LINE_SEPARATOR + ind + "  <clade>" ) >= 0 ) {
+                return false;
+            }
+            final File f = File.createTempFile( "forester_test_", ".nh" );
+            f.delete();
+            f.deleteOnExit();
+            final Phylogeny[] ps = { p0, p1, p0 };
+            w.toNewHampshire( ps, true, f, ForesterUtil.LINE_SEPARATOR );
+            final Phylogeny[] ps_read = factory.create( f, new NHXParser() );
+            f.delete();
+            if ( ps_read.length != 3 ) {
+                return false;
+            }
+            for( int i = 0; i < ps.length; ++i ) {
+                if ( !ps_read[ i ].toNewHampshire().equals( ps[ i ].toNewHampshire() ) ) {
+                    return false;
+                }
+            }
+        }
+        catch ( final Exception e ) {
+            e.printStackTrace( System.out );
+            return false;
+        }
+        return true;
+    }
+
     private static boolean testPostOrderIterator() {
         try {
             final PhylogenyFactory factory = ParserBasedPhylogenyFactory.getInstance();
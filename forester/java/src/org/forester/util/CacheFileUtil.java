@@ -0,0 +1,218 @@
+// $Id:
+// FORESTER -- software libraries and applications
+// for evolutionary biology research and applications.
+//
+// Copyright (C) 2014 Christian M. Zmasek
+// Copyright (C) 2014 Sanford-Burnham Medical Research Institute
+// All rights reserved
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA
+//
+// Contact: phylosoft @ gmail . com
+// WWW: https://sites.google.com/site/cmzmasek/home/software/forester
+
+
+package org.forester.util;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+
+/*
+ * Helpers for binary cache files of parse results (one per source file, in a
+ * cache directory): naming, a common header (magic number, version, size and
+ * CRC32 checksum of the source file), strings, and writing via a temporary
+ * file. A cache file is only used if the source file has the same size and
+ * checksum as when it was written. Cache files are read through memory
+ * mapping; callers treat cache files which cannot be read or written as
+ * missing (a failed write results in a warning, not in a failed parse).
+ */
+public final class CacheFileUtil {
+
+    private final static int MAP_CHUNK = 1 << 28;
+
+    private CacheFileUtil() {
+        // Hidden constructor.
+    }
+
+    /**
+     * Returns the CRC32 checksum of the content of file (read through memory
+     * mapping).
+     */
+    public static long calcChecksum( final File file ) throws IOException {
+        final CRC32 crc = new CRC32();
+        final RandomAccessFile raf = new RandomAccessFile( file, "r" );
+        try {
+            final FileChannel channel = raf.getChannel();
+            final long size = channel.size();
+            for( long pos = 0; pos < size; pos += MAP_CHUNK ) {
+                crc.update( channel.map( MapMode.READ_ONLY, pos, Math.min( MAP_CHUNK, size - pos ) ) );
+            }
+        }
+        finally {
+            raf.close();
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * Maps the whole content of raf (read-only).
+     */
+    public static MappedByteBuffer map( final RandomAccessFile raf ) throws IOException {
+        final FileChannel channel = raf.getChannel();
+        return channel.map( MapMode.READ_ONLY, 0, channel.size() );
+    }
+
+    /**
+     * Returns the directory given as value of option cache_dir_option
+     * (created if it does not exist), or null if the option is not set.
+     * Exits with a fatal error if no value is given or if the directory
+     * cannot be created or written to.
+     */
+    public static File obtainCacheDirectory( final CommandLineArguments cla,
+                                             final String cache_dir_option,
+                                             final String prg_name ) {
+        if ( !cla.isOptionSet( cache_dir_option ) ) {
+            return null;
+        }
+        if ( !cla.isOptionValueSet( cache_dir_option ) ) {
+            ForesterUtil.fatalError( prg_name, "no value for cache directory: -" + cache_dir_option + "=<dir>" );
+        }
+        final File cache_dir = new File( cla.getOptionValue( cache_dir_option ) );
+        if ( !cache_dir.exists() ) {
+            final boolean success = cache_dir.mkdir();
+            if ( !success || !cache_dir.exists() ) {
+                ForesterUtil.fatalError( prg_name, "failed to create \"" + cache_dir + "\"" );
+            }
+        }
+        if ( !cache_dir.isDirectory() || !cache_dir.canWrite() ) {
+            ForesterUtil.fatalError( prg_name, "cannot write to \"" + cache_dir + "\"" );
+        }
+        return cache_dir;
+    }
+
+    /**
+     * Returns the cache file for source_file in cache_dir (the name of the
+     * source file plus a hash of its path, since source files in different
+     * directories might have the same name).
+     */
+    public static File obtainCacheFile( final File cache_dir, final File source_file, final String suffix )
+            throws IOException {
+        final String path = source_file.getCanonicalPath();
+        return new File( cache_dir, source_file.getName() + "_" + Integer.toHexString( path.hashCode() ) + suffix );
+    }
+
+    /**
+     * Reads the header written by writeHeader and returns true if it has the
+     * given values.
+     */
+    public static boolean readHeader( final ByteBuffer b,
+                                      final long magic,
+                                      final int version,
+                                      final long source_size,
+                                      final long source_checksum ) {
+        return ( b.getLong() == magic ) && ( b.getInt() == version ) && ( b.getLong() == source_size )
+                && ( b.getLong() == source_checksum );
+    }
+
+    /**
+     * Reads a String written by writeString (null is stored with length -1).
+     */
+    public static String readString( final ByteBuffer b ) {
+        final int length = b.getInt();
+        if ( length < 0 ) {
+            return null;
+        }
+        final byte[] bytes = new byte[ length ];
+        b.get( bytes );
+        return new String( bytes, StandardCharsets.UTF_8 );
+    }
+
+    /**
+     * Writes cache_file (as written by content) via a temporary file: an existing cache file is replaced only by a
+     * complete one, and the temporary file is deleted if writing fails.
+     */
+    public static void write( final File cache_file, final ContentWriter content ) throws IOException {
+        final File tmp = new File( cache_file.getPath() + ".tmp" );
+        final DataOutputStream out = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( tmp ) ) );
+        boolean written = false;
+        try {
+            content.write( out );
+            out.close();
+            written = true;
+        }
+        finally {
+            if ( !written ) {
+                try {
+                    out.close();
+                }
+                catch ( final IOException e ) {
+                    // The exception which caused this is more informative.
+                }
+                tmp.delete();
+            }
+        }
+        if ( cache_file.exists() && !cache_file.delete() ) {
+            tmp.delete();
+            throw new IOException( "could not delete outdated cache file [" + cache_file + "]" );
+        }
+        if ( !tmp.renameTo( cache_file ) ) {
+            tmp.delete();
+            throw new IOException( "could not rename [" + tmp + "] to [" + cache_file + "]" );
+        }
+    }
+
+    /**
+     * Writes the header: magic number and version of the cache file format,
+     * size and checksum of the source file.
+     */
+    public static void writeHeader( final DataOutputStream out,
+                                    final long magic,
+                                    final int version,
+                                    final long source_size,
+                                    final long source_checksum ) throws IOException {
+        out.writeLong( magic );
+        out.writeInt( version );
+        out.writeLong( source_size );
+        out.writeLong( source_checksum );
+    }
+
+    public static void writeString( final DataOutputStream out, final String s ) throws IOException {
+        if ( s == null ) {
+            out.writeInt( -1 );
+            return;
+        }
+        final byte[] bytes = s.getBytes( StandardCharsets.UTF_8 );
+        out.writeInt( bytes.length );
+        out.write( bytes );
+    }
+
+    public interface ContentWriter {
+
+        /**
+         * Writes the content of a cache file, starting with its header.
+         */
+        void write( DataOutputStream out ) throws IOException;
+    }
+}
@@ -49,6 +49,7 @@ import java.text.NumberFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Date;
 import java.util.List;
@@ -234,6 +235,27 @@ public final class ForesterUtil {
         return ( 255.0 * ( value - smaller ) ) / ( larger - smaller );
     }
 
+    /**
+     * Returns the number of positions of Domain domain which are covered
+     * (set) in covered_positions. Goes over stretches of covered positions
+     * rather than over single positions.
+     *
+     * @param domain
+     * @param covered_positions
+     * @return
+     */
+    public static int calculateOverlap( final Domain domain, final BitSet covered_positions ) {
+        final int end = domain.getTo() + 1;
+        int overlap_count = 0;
+        int i = covered_positions.nextSetBit( domain.getFrom() );
+        while ( ( i >= 0 ) && ( i < end ) ) {
+            final int stretch_end = Math.min( covered_positions.nextClearBit( i ), end );
+            overlap_count += stretch_end - i;
+            i = covered_positions.nextSetBit( stretch_end );
+        }
+        return overlap_count;
+    }
+
     public static int calculateOverlap( final Domain domain, final List<Boolean> covered_positions ) {
         int overlap_count = 0;
         for( int i = domain.getFrom(); i <= domain.getTo(); ++i ) {
@@ -597,6 +619,15 @@ public final class ForesterUtil {
         return true;
     }
 
+    /**
+     * Same as isEngulfed( Domain, List&lt;Boolean&gt; ), with the covered
+     * positions as set bits.
+     *
+     */
+    public static boolean isEngulfed( final Domain domain, final BitSet covered_positions ) {
+        return covered_positions.nextClearBit( domain.getFrom() ) > domain.getTo();
+    }
+
     final public static boolean isEqual( final double a, final double b ) {
         return ( ( Math.abs( a - b ) ) < ZERO_DIFF );
     }
@@ -1138,23 +1169,11 @@ public final class ForesterUtil {
         final Protein pruned_protein = new BasicProtein( protein.getProteinId().getId(), protein.getSpecies()
                                                          .getSpeciesId(), protein.getLength() );
         final List<Domain> sorted = SurfacingUtil.sortDomainsWithAscendingConfidenceValues( protein );
-        final List<Boolean> covered_positions = new ArrayList<Boolean>();
+        final BitSet covered_positions = new BitSet( protein.getLength() + 1 );
         for( final Domain domain : sorted ) {
             if ( ( ( max_allowed_overlap < 0 ) || ( ForesterUtil.calculateOverlap( domain, covered_positions ) <= max_allowed_overlap ) )
                     && ( !remove_engulfed_domains || !isEngulfed( domain, covered_positions ) ) ) {
-                final int covered_positions_size = covered_positions.size();
-                for( int i = covered_positions_size; i < domain.getFrom(); ++i ) {
-                    covered_positions.add( false );
-                }
-                final int new_covered_positions_size = covered_positions.size();
-                for( int i = domain.getFrom(); i <= domain.getTo(); ++i ) {
-                    if ( i < new_covered_positions_size ) {
-                        covered_positions.set( i, true );
-                    }
-                    else {
-                        covered_positions.add( true );
-                    }
-                }
+                covered_positions.set( domain.getFrom(), domain.getTo() + 1 );
                 pruned_protein.addProteinDomain( domain );
             }
         }
@@ -0,0 +1,177 @@
+// $Id:
+// FORESTER -- software libraries and applications
+// for evolutionary biology research and applications.
+//
+// Copyright (C) 2014 Christian M. Zmasek
+// Copyright (C) 2014 Sanford-Burnham Medical Research Institute
+// All rights reserved
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA
+//
+// Contact: phylosoft @ gmail . com
+// WWW: https://sites.google.com/site/cmzmasek/home/software/forester
+
+
+package org.forester.util;
+
+/*
+ * Set of long values, stored in a primitive array (open addressing with linear
+ * probing), without boxing.
+ *
+ * Not thread-safe.
+ */
+public final class LongHashSet {
+
+    private final static int MIN_CAPACITY = 16;
+    private boolean          _has_zero;
+    private long[]           _keys;
+    private int              _size;
+
+    public LongHashSet() {
+        this( MIN_CAPACITY );
+    }
+
+    /**
+     * @param expected_size
+     *            the number of values expected to be added
+     */
+    public LongHashSet( final int expected_size ) {
+        if ( expected_size < 0 ) {
+            throw new IllegalArgumentException( "attempt to create set with negative expected size" );
+        }
+        _keys = new long[ calcCapacity( expected_size ) ];
+        _size = 0;
+        _has_zero = false;
+    }
+
+    /**
+     * Adds value v.
+     *
+     * @return true if v was not contained already
+     */
+    public boolean add( final long v ) {
+        if ( v == 0 ) {
+            if ( _has_zero ) {
+                return false;
+            }
+            _has_zero = true;
+            ++_size;
+            return true;
+        }
+        final int mask = _keys.length - 1;
+        int i = mix( v ) & mask;
+        while ( _keys[ i ] != 0 ) {
+            if ( _keys[ i ] == v ) {
+                return false;
+            }
+            i = ( i + 1 ) & mask;
+        }
+        _keys[ i ] = v;
+        ++_size;
+        if ( ( 2 * _size ) > _keys.length ) {
+            rehash( 2 * _keys.length );
+        }
+        return true;
+    }
+
+    public void addAll( final LongHashSet s ) {
+        if ( s._has_zero ) {
+            add( 0 );
+        }
+        for( final long v : s._keys ) {
+            if ( v != 0 ) {
+                add( v );
+            }
+        }
+    }
+
+    public boolean contains( final long v ) {
+        if ( v == 0 ) {
+            return _has_zero;
+        }
+        final int mask = _keys.length - 1;
+        int i = mix( v ) & mask;
+        while ( _keys[ i ] != 0 ) {
+            if ( _keys[ i ] == v ) {
+                return true;
+            }
+            i = ( i + 1 ) & mask;
+        }
+        return false;
+    }
+
+    public boolean isEmpty() {
+        return _size == 0;
+    }
+
+    public int size() {
+        return _size;
+    }
+
+    /**
+     * Returns the values of this set (in no particular order).
+     *
+     */
+    public long[] toArray() {
+        final long[] a = new long[ _size ];
+        int c = 0;
+        if ( _has_zero ) {
+            a[ c++ ] = 0;
+        }
+        for( final long v : _keys ) {
+            if ( v != 0 ) {
+                a[ c++ ] = v;
+            }
+        }
+        return a;
+    }
+
+    private void rehash( final int capacity ) {
+        final long[] old = _keys;
+        _keys = new long[ capacity ];
+        final int mask = capacity - 1;
+        for( final long v : old ) {
+            if ( v != 0 ) {
+                int i = mix( v ) & mask;
+                while ( _keys[ i ] != 0 ) {
+                    i = ( i + 1 ) & mask;
+                }
+                _keys[ i ] = v;
+            }
+        }
+    }
+
+    final static int calcCapacity( final int expected_size ) {
+        int capacity = MIN_CAPACITY;
+        while ( capacity < ( 2L * expected_size ) + 1 ) {
+            if ( capacity >= ( 1 << 30 ) ) {
+                throw new IllegalArgumentException( "expected size is too large: " + expected_size );
+            }
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    // Finalizer of MurmurHash3 (64 bit), for keys with regular bit patterns.
+    final static int mix( final long v ) {
+        long h = v;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return ( int ) h;
+    }
+}
@@ -0,0 +1,131 @@
+// $Id:
+// FORESTER -- software libraries and applications
+// for evolutionary biology research and applications.
+//
+// Copyright (C) 2014 Christian M. Zmasek
+// Copyright (C) 2014 Sanford-Burnham Medical Research Institute
+// All rights reserved
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA
+//
+// Contact: phylosoft @ gmail . com
+// WWW: https://sites.google.com/site/cmzmasek/home/software/forester
+
+
+package org.forester.util;
+
+/*
+ * Map of long keys to objects, stored in arrays (open addressing with linear
+ * probing), without boxing of the keys. Null values are not allowed (empty
+ * slots have a null value).
+ *
+ * Not thread-safe.
+ */
+public final class LongObjectHashMap<V> {
+
+    private long[]   _keys;
+    private int      _size;
+    private Object[] _values;
+
+    public LongObjectHashMap() {
+        this( 0 );
+    }
+
+    /**
+     * @param expected_size
+     *            the number of entries expected to be put
+     */
+    public LongObjectHashMap( final int expected_size ) {
+        if ( expected_size < 0 ) {
+            throw new IllegalArgumentException( "attempt to create map with negative expected size" );
+        }
+        final int capacity = LongHashSet.calcCapacity( expected_size );
+        _keys = new long[ capacity ];
+        _values = new Object[ capacity ];
+        _size = 0;
+    }
+
+    public boolean containsKey( final long key ) {
+        return get( key ) != null;
+    }
+
+    /**
+     * Returns the value for key, or null if there is none.
+     *
+     */
+    @SuppressWarnings( "unchecked")
+    public V get( final long key ) {
+        final int mask = _keys.length - 1;
+        int i = LongHashSet.mix( key ) & mask;
+        while ( _values[ i ] != null ) {
+            if ( _keys[ i ] == key ) {
+                return ( V ) _values[ i ];
+            }
+            i = ( i + 1 ) & mask;
+        }
+        return null;
+    }
+
+    /**
+     * Puts value for key.
+     *
+     * @return the previous value for key, or null if there was none
+     */
+    @SuppressWarnings( "unchecked")
+    public V put( final long key, final V value ) {
+        if ( value == null ) {
+            throw new IllegalArgumentException( "attempt to put null value" );
+        }
+        final int mask = _keys.length - 1;
+        int i = LongHashSet.mix( key ) & mask;
+        while ( _values[ i ] != null ) {
+            if ( _keys[ i ] == key ) {
+                final V previous = ( V ) _values[ i ];
+                _values[ i ] = value;
+                return previous;
+            }
+            i = ( i + 1 ) & mask;
+        }
+        _keys[ i ] = key;
+        _values[ i ] = value;
+        ++_size;
+        if ( ( 2 * _size ) > _keys.length ) {
+            rehash( 2 * _keys.length );
+        }
+        return null;
+    }
+
+    public int size() {
+        return _size;
+    }
+
+    private void rehash( final int capacity ) {
+        final long[] old_keys = _keys;
+        final Object[] old_values = _values;
+        _keys = new long[ capacity ];
+        _values = new Object[ capacity ];
+        final int mask = capacity - 1;
+        for( int j = 0; j < old_keys.length; ++j ) {
+            if ( old_values[ j ] != null ) {
+                int i = LongHashSet.mix( old_keys[ j ] ) & mask;
+                while ( _values[ i ] != null ) {
+                    i = ( i + 1 ) & mask;
+                }
+                _keys[ i ] = old_keys[ j ];
+                _values[ i ] = old_values[ j ];
+            }
+        }
+    }
+}
@@ -0,0 +1,190 @@
+// $Id:
+// FORESTER -- software libraries and applications
+// for evolutionary biology research and applications.
+//
+// Copyright (C) 2014 Christian M. Zmasek
+// Copyright (C) 2014 Sanford-Burnham Medical Research Institute
+// All rights reserved
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA
+//
+// Contact: phylosoft @ gmail . com
+// WWW: https://sites.google.com/site/cmzmasek/home/software/forester
+
+
+package org.forester.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/*
+ * Helpers for running independent tasks in a fixed thread pool: splitting a
+ * number of units into contiguous ranges, waiting for results, and passing on
+ * what a task threw (unchecked exceptions and errors as they are, anything else
+ * wrapped in a RuntimeException).
+ */
+public final class ParallelUtil {
+
+    private final static int RANGES_PER_THREAD = 4;
+
+    private ParallelUtil() {
+        // Hidden constructor.
+    }
+
+    /**
+     * Throws an IllegalArgumentException if number_of_threads is smaller
+     * than one.
+     */
+    public static void checkNumberOfThreads( final int number_of_threads ) {
+        if ( number_of_threads < 1 ) {
+            throw new IllegalArgumentException( "number of threads cannot be smaller than one" );
+        }
+    }
+
+    /**
+     * Returns callables executing task on disjoint, contiguous ranges covering
+     * 0 to number_of_units - 1 (a few ranges per thread), for running them in
+     * an existing executor with invokeAll.
+     *
+     * @param number_of_units
+     *            the number of units
+     * @param number_of_threads
+     *            the number of threads, at least one
+     * @param task
+     *            the task, which must only write results for the units of
+     *            its range
+     * @return the callables, in the order of the ranges
+     */
+    public static <T> List<Callable<T>> createRangeTasks( final int number_of_units,
+                                                          final int number_of_threads,
+                                                          final RangeTask<T> task ) {
+        checkNumberOfThreads( number_of_threads );
+        final int number_of_ranges = Math.min( number_of_units, number_of_threads * RANGES_PER_THREAD );
+        final List<Callable<T>> ranges = new ArrayList<Callable<T>>( number_of_ranges );
+        for( int r = 0; r < number_of_ranges; ++r ) {
+            final int first = ( int ) ( ( ( long ) number_of_units * r ) / number_of_ranges );
+            final int last = ( int ) ( ( ( long ) number_of_units * ( r + 1 ) ) / number_of_ranges );
+            ranges.add( new Callable<T>() {
+
+                @Override
+                public T call() {
+                    return task.execute( first, last );
+                }
+            } );
+        }
+        return ranges;
+    }
+
+    /**
+     * Executes task on disjoint, contiguous ranges covering 0 to
+     * number_of_units - 1 and returns the results of the ranges, in the order
+     * of the ranges. With one thread (or less than two units) task is
+     * executed once, on the whole range, in the calling thread.
+     *
+     * @param number_of_units
+     *            the number of units
+     * @param number_of_threads
+     *            the number of threads, at least one
+     * @param task
+     *            the task, which must only write results for the units of
+     *            its range
+     * @return the results of the ranges
+     */
+    public static <T> List<T> executeRanges( final int number_of_units,
+                                             final int number_of_threads,
+                                             final RangeTask<T> task ) {
+        checkNumberOfThreads( number_of_threads );
+        if ( ( number_of_threads == 1 ) || ( number_of_units < 2 ) ) {
+            final List<T> results = new ArrayList<T>( 1 );
+            results.add( task.execute( 0, number_of_units ) );
+            return results;
+        }
+        final ExecutorService executor = Executors.newFixedThreadPool( number_of_threads );
+        try {
+            return invokeAll( executor, createRangeTasks( number_of_units, number_of_threads, task ) );
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Waits for future and returns its result.
+     *
+     */
+    public static <T> T getResult( final Future<T> future ) {
+        try {
+            return future.get();
+        }
+        catch ( final InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException( "interrupted while waiting for a task", e );
+        }
+        catch ( final ExecutionException e ) {
+            throw propagateCause( e );
+        }
+    }
+
+    /**
+     * Executes tasks in executor and returns their results, in the order of
+     * the tasks.
+     *
+     */
+    public static <T> List<T> invokeAll( final ExecutorService executor, final List<? extends Callable<T>> tasks ) {
+        final List<Future<T>> futures;
+        try {
+            futures = executor.invokeAll( tasks );
+        }
+        catch ( final InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException( "interrupted while waiting for a task", e );
+        }
+        final List<T> results = new ArrayList<T>( futures.size() );
+        for( final Future<T> future : futures ) {
+            results.add( getResult( future ) );
+        }
+        return results;
+    }
+
+    /**
+     * Throws the cause of e if it is unchecked, otherwise returns it wrapped
+     * in a RuntimeException (to be thrown by the caller, after handling the
+     * checked exceptions it declares).
+     *
+     */
+    public static RuntimeException propagateCause( final ExecutionException e ) {
+        final Throwable cause = e.getCause();
+        if ( cause instanceof RuntimeException ) {
+            throw ( RuntimeException ) cause;
+        }
+        else if ( cause instanceof Error ) {
+            throw ( Error ) cause;
+        }
+        return new RuntimeException( cause );
+    }
+
+    public interface RangeTask<T> {
+
+        /**
+         * Executes the task for units first to last - 1.
+         */
+        T execute( int first, int last );
+    }
+}